@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.callback;
+
+import java.util.List;
+
+/**
+ * A listener which receives blocks from a {@link BlockCallbackServer} in batches.
+ *
+ * <p>When the server is configured with a {@link CallbackJournal}, each batch contains the entries read from the
+ * journal in a single pass, and the batch is committed once this method returns. If this method throws an exception,
+ * the batch will be delivered again. Otherwise, each received block is delivered as a batch of one.</p>
+ */
+@FunctionalInterface
+public interface BlockCallbackBatchListener {
+    
+    /**
+     * Called with a batch of newly-received blocks, in the order they were received.
+     * @param blocks an unmodifiable list of blocks
+     */
+    void onNewBlocks(List<BlockData> blocks);
+    
+}
@@ -7,56 +7,106 @@ package uk.oczadly.karl.jnano.callback;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import uk.oczadly.karl.jnano.internal.JNC;
-import uk.oczadly.karl.jnano.internal.JNH;
-import uk.oczadly.karl.jnano.internal.httpserver.HttpCallback;
-import uk.oczadly.karl.jnano.internal.httpserver.HttpRequest;
-import uk.oczadly.karl.jnano.internal.httpserver.HttpServerThread;
-import uk.oczadly.karl.jnano.model.HexData;
-import uk.oczadly.karl.jnano.model.NanoAccount;
-import uk.oczadly.karl.jnano.model.NanoAmount;
-import uk.oczadly.karl.jnano.model.block.Block;
-import uk.oczadly.karl.jnano.model.block.BlockType;
-import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import uk.oczadly.karl.jnano.internal.httpserver.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+/**
+ * An HTTP server which receives block callbacks from a node.
+ *
+ * <p>Requests are handled by a single non-blocking selector thread, which supports persistent (keep-alive)
+ * connections and pipelined requests from the node. Listeners are notified through a separate executor once each
+ * request has been acknowledged. The connection, header and body size limits can be configured before the server is
+ * started.</p>
+ *
+ * <p>To avoid losing callbacks while listeners are slow or the process restarts, a {@link CallbackJournal} can be
+ * configured through {@link #setJournal(CallbackJournal)}.</p>
+ */
 public class BlockCallbackServer {
     
+    private static final int JOURNAL_BATCH_SIZE = 256;
+    private static final long JOURNAL_MIN_BACKOFF = 100, JOURNAL_MAX_BACKOFF = 30000;
+    
+    private final ServerSocketChannel serverChannel; // Null if created from a legacy server socket
     private final ServerSocket serverSocket;
     private final ExecutorService executorService;
     private final Gson gson;
     private final Set<BlockCallbackListener> listeners = new CopyOnWriteArraySet<>();
+    private final Set<BlockCallbackBatchListener> batchListeners = new CopyOnWriteArraySet<>();
     private final HttpCallback callbackListener = new HttpCallbackProcessor();
     
-    private HttpServerThread thread;
+    private volatile int maxConnections = 256;
+    private volatile int maxHeaderSize = 8192;
+    private volatile int maxBodySize = 1 << 20;
+    private volatile long idleTimeout = 60000;
+    private volatile CallbackJournal journal;
+    private HttpServer server;
+    private JournalConsumer journalConsumer;
     
     
     public BlockCallbackServer(int port) throws IOException {
-        this(new ServerSocket(port, 0));
+        this(new InetSocketAddress(port));
     }
     
     public BlockCallbackServer(int port, InetAddress address) throws IOException {
-        this(new ServerSocket(port, 0, address));
+        this(new InetSocketAddress(address, port));
+    }
+    
+    public BlockCallbackServer(InetSocketAddress address) throws IOException {
+        this(bind(address), Executors.newFixedThreadPool(100), new GsonBuilder().create()); // Max 100 threads
     }
     
+    /**
+     * Constructs a callback server from an existing server socket. If the socket was not created from a
+     * {@link ServerSocketChannel}, connections are instead serviced by a blocking thread-per-connection server, and
+     * the {@link #setMaxConnections(int) connection limit} is not applied.
+     * @param server the server socket
+     * @deprecated use {@link #BlockCallbackServer(InetSocketAddress)}
+     */
+    @Deprecated
     public BlockCallbackServer(ServerSocket server) {
         this(server, Executors.newFixedThreadPool(100), new GsonBuilder().create()); // Max 100 threads
     }
     
+    /**
+     * @deprecated use {@link #BlockCallbackServer(ServerSocketChannel, ExecutorService, Gson)}
+     */
+    @Deprecated
     protected BlockCallbackServer(ServerSocket serverSocket, ExecutorService executorService, Gson gson) {
+        this.serverChannel = serverSocket.getChannel();
         this.serverSocket = serverSocket;
         this.executorService = executorService;
         this.gson = gson;
     }
     
+    protected BlockCallbackServer(ServerSocketChannel serverChannel, ExecutorService executorService, Gson gson) {
+        this.serverChannel = serverChannel;
+        this.serverSocket = serverChannel.socket();
+        this.executorService = executorService;
+        this.gson = gson;
+    }
+    
     
     /**
      * Registers a new listener to be called when new blocks are processed.
@@ -77,6 +127,26 @@ public class BlockCallbackServer {
         return this.listeners.remove(listener);
     }
     
+    /**
+     * Registers a new listener to be called with batches of new blocks.
+     *
+     * @param listener the listener instance to send updates to
+     * @see BlockCallbackBatchListener
+     */
+    public void registerBatchListener(BlockCallbackBatchListener listener) {
+        this.batchListeners.add(listener);
+    }
+    
+    /**
+     * Removes a previously registered batch listener.
+     *
+     * @param listener the listener instance to remove
+     * @return whether the listener instance was previously registered
+     */
+    public boolean unregisterBatchListener(BlockCallbackBatchListener listener) {
+        return this.batchListeners.remove(listener);
+    }
+    
     /**
      * Notifies the registered block listener instances.
      * @param block the block data
@@ -84,15 +154,134 @@ public class BlockCallbackServer {
      * @param node the node's external address
      */
     protected void notifyListeners(BlockData block, String target, InetAddress node) {
-        this.listeners.forEach(listener -> listener.onNewBlock(block, target, node));
+        RuntimeException error = null;
+        for (BlockCallbackListener listener : listeners) {
+            try {
+                listener.onNewBlock(block, target, node);
+            } catch (RuntimeException e) {
+                // Continue notifying the remaining listeners
+                if (error == null) error = e; else error.addSuppressed(e);
+            }
+        }
+        if (error != null) throw error;
+    }
+    
+    /**
+     * Notifies the registered batch listener instances.
+     * @param blocks the blocks
+     */
+    protected void notifyBatchListeners(List<BlockData> blocks) {
+        List<BlockData> unmodifiable = Collections.unmodifiableList(blocks);
+        RuntimeException error = null;
+        for (BlockCallbackBatchListener listener : batchListeners) {
+            try {
+                listener.onNewBlocks(unmodifiable);
+            } catch (RuntimeException e) {
+                if (error == null) error = e; else error.addSuppressed(e);
+            }
+        }
+        if (error != null) throw error;
+    }
+    
+    
+    /**
+     * @return the local port which the server is bound to
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Sets the maximum number of concurrent connections. Additional connections will be closed immediately.
+     * @param maxConnections the maximum number of connections (default 256)
+     * @throws IllegalStateException if the server is currently running
+     */
+    public synchronized void setMaxConnections(int maxConnections) {
+        checkNotRunning();
+        if (maxConnections <= 0)
+            throw new IllegalArgumentException("Max connections must be positive.");
+        this.maxConnections = maxConnections;
+    }
+    
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    
+    /**
+     * Sets the maximum size of the request line and headers of a single request.
+     * @param maxHeaderSize the maximum header size, in bytes (default 8 KiB)
+     * @throws IllegalStateException if the server is currently running
+     */
+    public synchronized void setMaxHeaderSize(int maxHeaderSize) {
+        checkNotRunning();
+        if (maxHeaderSize < 64)
+            throw new IllegalArgumentException("Max header size must be at least 64 bytes.");
+        this.maxHeaderSize = maxHeaderSize;
+    }
+    
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+    
+    /**
+     * Sets the maximum size of the body of a single request.
+     * @param maxBodySize the maximum body size, in bytes (default 1 MiB)
+     * @throws IllegalStateException if the server is currently running
+     */
+    public synchronized void setMaxBodySize(int maxBodySize) {
+        checkNotRunning();
+        if (maxBodySize <= 0)
+            throw new IllegalArgumentException("Max body size must be positive.");
+        this.maxBodySize = maxBodySize;
+    }
+    
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+    
+    /**
+     * Sets the duration after which idle connections are closed.
+     * @param idleTimeout the idle timeout in milliseconds, or zero to keep idle connections open (default 60 seconds)
+     * @throws IllegalStateException if the server is currently running
+     */
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        checkNotRunning();
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException("Idle timeout cannot be negative.");
+        this.idleTimeout = idleTimeout;
+    }
+    
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+    
+    
+    /**
+     * Sets the journal which received callbacks are written to before they are acknowledged, or null to disable
+     * journalling. When set, listeners are notified asynchronously from a single consumer thread, and any entries
+     * which were not processed while the server was last running are replayed when it is started.
+     *
+     * <p>The journal is not closed by this server.</p>
+     *
+     * @param journal the journal, or null
+     * @throws IllegalStateException if the server is currently running
+     * @see CallbackJournal
+     */
+    public synchronized void setJournal(CallbackJournal journal) {
+        checkNotRunning();
+        this.journal = journal;
+    }
+    
+    public CallbackJournal getJournal() {
+        return journal;
     }
     
     
     /**
      * @return whether the server is currently running
      */
-    public boolean isRunning() {
-        return this.thread != null && this.thread.isAlive();
+    public synchronized boolean isRunning() {
+        return this.server != null && this.server.isRunning();
     }
     
     /**
@@ -100,17 +289,37 @@ public class BlockCallbackServer {
      * and is executed from a newly issued thread.
      *
      * @throws IllegalStateException if the server is already running
+     * @throws UncheckedIOException  if the server could not be started
      */
     public synchronized void start() {
         if (this.isRunning())
             throw new IllegalStateException("Server is currently running");
         
-        this.thread = new HttpServerThread(this.serverSocket, callbackListener, this.executorService);
-        this.thread.start();
+        CallbackJournal journal = this.journal;
+        if (journal != null) {
+            // Replay from the last committed entry
+            journal.rewind();
+            this.journalConsumer = new JournalConsumer(journal);
+            this.journalConsumer.start();
+        }
+        if (serverChannel != null) {
+            this.server = new NioHttpServer(serverChannel, callbackListener,
+                    journal == null ? executorService : null, maxConnections, maxHeaderSize, maxBodySize, idleTimeout);
+        } else {
+            this.server = new BlockingHttpServer(serverSocket, callbackListener, executorService, journal == null,
+                    maxHeaderSize, maxBodySize, idleTimeout);
+        }
+        try {
+            this.server.start();
+        } catch (IOException e) {
+            stopJournalConsumer();
+            throw new UncheckedIOException("Couldn't start the HTTP server.", e);
+        }
     }
     
     /**
-     * Stops the HTTP server from running and frees the network port.
+     * Stops the HTTP server from running and closes any open connections. The server remains bound to the network
+     * port, and may be started again.
      *
      * @throws IllegalStateException if the server is not currently running
      */
@@ -118,38 +327,196 @@ public class BlockCallbackServer {
         if (!this.isRunning())
             throw new IllegalStateException("Server is not currently running");
         
-        this.thread.interrupt();
-        this.thread = null;
+        this.server.stop();
+        this.server = null;
+        stopJournalConsumer();
+    }
+    
+    private void stopJournalConsumer() {
+        if (journalConsumer != null) {
+            journalConsumer.shutdown();
+            journalConsumer = null;
+        }
+    }
+    
+    private void checkNotRunning() {
+        if (isRunning())
+            throw new IllegalStateException("Server configuration cannot be updated while the server is running.");
+    }
+    
+    private static ServerSocketChannel bind(SocketAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.socket().bind(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
     }
     
     
     private class HttpCallbackProcessor implements HttpCallback {
+        @Override
+        public CompletableFuture<Boolean> onReceive(HttpRequest request) {
+            CallbackJournal journal = BlockCallbackServer.this.journal;
+            if (journal == null) return ACCEPTED;
+            try {
+                // Synced to disk (if enabled) from the journal's own thread, rather than the server thread
+                return journal.appendAsync(request.getPath(), request.getClientAddr(), request.getBodyBytes())
+                        .handle((offset, ex) -> {
+                            if (ex != null) ex.printStackTrace();
+                            return ex == null;
+                        });
+            } catch (IOException e) {
+                e.printStackTrace();
+                return CompletableFuture.completedFuture(false); // Don't acknowledge
+            }
+        }
+        
         @Override
         public void onRequest(HttpRequest request) {
-            JsonObject json = JNH.parseJson(request.getBody());
-            
-            BlockType subtype = gson.fromJson(json.get("subtype"), BlockType.class);
-            
-            JsonObject blockJson = JNH.parseJson(json.get("block").getAsString());
-            // Manually add subtype property for parsing (not included automatically)
-            if (blockJson.get("type").getAsString().equals(BlockType.STATE.getProtocolName()))
-                blockJson.addProperty("subtype", StateBlockSubType.getFromLegacyType(subtype).getProtocolName());
-            Block block = JNC.BLOCK_DESERIALIZER.deserialize(blockJson);
-            
-            BlockData blockData = new BlockData(request.getBody(),
-                    NanoAccount.parse(json.get("account").getAsString()),
-                    JNH.getJson(json, "hash", HexData::new),
-                    block,
-                    subtype,
-                    json.has("is_send")
-                            ? json.get("is_send").getAsBoolean()
-                            : block.getType() == BlockType.SEND,
-                    json.has("amount")
-                            ? NanoAmount.valueOfRaw(json.get("amount").getAsString())
-                            : null);
-            
-            notifyListeners(blockData, request.getPath(), request.getClientAddr()); // Notify listeners
+            BlockData block = parseBody(request);
+            try {
+                notifyListeners(block, request.getPath(), request.getClientAddr()); // Notify listeners
+            } finally {
+                if (!batchListeners.isEmpty())
+                    notifyBatchListeners(Collections.singletonList(block));
+            }
+        }
+    }
+    
+    /**
+     * Notifies the listeners of the entries in the journal, committing only the entries which every listener has
+     * processed without throwing an exception. If a listener fails, the remaining entries are retried after an
+     * exponential backoff (listeners which succeeded may therefore be notified of the same entry more than once).
+     * Entries which cannot be parsed are skipped, as they would never succeed.
+     */
+    private class JournalConsumer extends Thread {
+        private final CallbackJournal journal;
+        private final Object backoffLock = new Object();
+        private volatile boolean running = true;
+        private long backoff;
+        
+        JournalConsumer(CallbackJournal journal) {
+            super("http-callback-journal-consumer");
+            this.journal = journal;
+        }
+        
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    List<CallbackJournal.Entry> entries = journal.read(JOURNAL_BATCH_SIZE, 250);
+                    if (entries.isEmpty()) continue;
+                    
+                    int processed = process(entries);
+                    if (processed > 0)
+                        journal.commit(entries.get(processed - 1).getNextOffset());
+                    if (processed < entries.size()) {
+                        journal.rewind(); // Retry from the failed entry
+                        backoff = Math.min(Math.max(backoff * 2, JOURNAL_MIN_BACKOFF), JOURNAL_MAX_BACKOFF);
+                        synchronized (backoffLock) {
+                            if (running) backoffLock.wait(backoff);
+                        }
+                    } else {
+                        backoff = 0;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace(); // Journal closed or corrupt
+                    return;
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+        
+        /** Returns the number of leading entries which were successfully processed. */
+        private int process(List<CallbackJournal.Entry> entries) {
+            List<BlockData> blocks = new ArrayList<>(entries.size());
+            int processed = 0;
+            for (CallbackJournal.Entry entry : entries) {
+                BlockData block;
+                try {
+                    block = parseBody(new HttpRequest(entry.getClientAddress(), entry.getPath(), entry.getBody()));
+                } catch (Exception e) {
+                    e.printStackTrace(); // Malformed, so skip
+                    processed++;
+                    continue;
+                }
+                try {
+                    notifyListeners(block, entry.getPath(), entry.getClientAddress());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    break;
+                }
+                blocks.add(block);
+                processed++;
+            }
+            if (!blocks.isEmpty() && !batchListeners.isEmpty()) {
+                try {
+                    notifyBatchListeners(blocks);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return 0; // Retry the whole batch
+                }
+            }
+            return processed;
+        }
+        
+        void shutdown() {
+            running = false;
+            synchronized (backoffLock) {
+                backoffLock.notifyAll(); // Interrupt backoff
+            }
+            if (Thread.currentThread() != this) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Parses the callback body in a single streaming pass. The values are retained as strings, and the block contents
+     * are only deserialized when requested.
+     */
+    static BlockData parseBody(HttpRequest request) {
+        String account = null, hash = null, block = null, subtype = null, amount = null;
+        Boolean isSend = null;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(request.getBodyBytes()), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "account": account = reader.nextString(); break;
+                    case "hash":    hash = reader.nextString(); break;
+                    case "subtype": subtype = reader.nextString(); break;
+                    case "amount":  amount = reader.nextString(); break;
+                    case "is_send":
+                        isSend = reader.peek() == JsonToken.BOOLEAN
+                                ? reader.nextBoolean() : Boolean.parseBoolean(reader.nextString());
+                        break;
+                    case "block":
+                        // Block contents are usually a string, but may be an object if json_block is enabled
+                        block = reader.peek() == JsonToken.STRING
+                                ? reader.nextString() : JsonParser.parseReader(reader).toString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonParseException("Couldn't parse callback body.", e);
         }
+        return new BlockData(request::getBody, account, hash, block, subtype, isSend, amount);
     }
     
 }
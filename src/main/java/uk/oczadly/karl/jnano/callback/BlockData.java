@@ -5,35 +5,61 @@
 
 package uk.oczadly.karl.jnano.callback;
 
+import com.google.gson.JsonObject;
+import uk.oczadly.karl.jnano.internal.JNC;
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.Block;
 import uk.oczadly.karl.jnano.model.block.BlockType;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+
+import java.util.function.Supplier;
 
 /**
  * This class encapsulates a variety of data relating to newly-processed blocks. Instances of this class are generated
  * and returned by a {@link BlockCallbackServer} as new blocks are received.
+ *
+ * <p>When created by a callback server, the values of this class are parsed lazily on first access. In particular,
+ * the block contents are only deserialized if {@link #getBlockContents()} is called.</p>
  */
 public class BlockData {
     
-    private final String rawJson;
-    private final HexData blockHash;
-    private final NanoAccount account;
-    private final Block block;
+    private final Supplier<String> rawJsonSupplier;
+    private final String accountStr, hashStr, amountStr, blockJson, subtypeStr;
     private final BlockType subtype;
-    private final boolean isSend;
-    private final NanoAmount amount;
+    private final Boolean isSendVal;
+    private volatile String rawJson;
+    private volatile NanoAccount account;
+    private volatile HexData blockHash;
+    private volatile NanoAmount amount;
+    private volatile Block block;
     
     public BlockData(String rawJson, NanoAccount account, HexData blockHash, Block block, BlockType subtype,
                      boolean isSend, NanoAmount amount) {
+        this.rawJsonSupplier = null;
+        this.accountStr = this.hashStr = this.amountStr = this.blockJson = this.subtypeStr = null;
         this.rawJson = rawJson;
         this.account = account;
         this.blockHash = blockHash;
         this.block = block;
         this.subtype = subtype;
         this.amount = amount;
-        this.isSend = isSend;
+        this.isSendVal = isSend;
+    }
+    
+    /** Constructs a lazily-parsed instance from the raw callback values. */
+    BlockData(Supplier<String> rawJson, String account, String hash, String blockJson, String subtype,
+              Boolean isSend, String amount) {
+        this.rawJsonSupplier = rawJson;
+        this.accountStr = account;
+        this.hashStr = hash;
+        this.blockJson = blockJson;
+        this.subtypeStr = subtype;
+        this.subtype = subtype != null ? BlockType.fromName(subtype) : null;
+        this.isSendVal = isSend;
+        this.amountStr = amount;
     }
     
     
@@ -41,7 +67,10 @@ public class BlockData {
      * @return the raw JSON block received from the node
      */
     public String getRawJson() {
-        return rawJson;
+        String raw = rawJson;
+        if (raw == null && rawJsonSupplier != null)
+            rawJson = raw = rawJsonSupplier.get();
+        return raw;
     }
     
     
@@ -49,21 +78,37 @@ public class BlockData {
      * @return the account who the block belongs to
      */
     public NanoAccount getAccountAddress() {
-        return account;
+        NanoAccount acc = account;
+        if (acc == null && accountStr != null)
+            account = acc = NanoAccount.parse(accountStr);
+        return acc;
     }
     
     /**
      * @return the identifying hash of the block
      */
     public HexData getBlockHash() {
-        return blockHash;
+        HexData hash = blockHash;
+        if (hash == null && hashStr != null)
+            blockHash = hash = new HexData(hashStr);
+        return hash;
     }
     
     /**
+     * Returns the contents of the block. If this object was created by a callback server, the block will be
+     * deserialized on the first call to this method.
+     *
      * @return the block's contents
      */
     public Block getBlockContents() {
-        return block;
+        Block b = block;
+        if (b == null && blockJson != null) {
+            synchronized (this) {
+                if ((b = block) == null)
+                    block = b = parseBlock();
+            }
+        }
+        return b;
     }
     
     /**
@@ -81,14 +126,32 @@ public class BlockData {
      * @return if the block is a SEND transaction
      */
     public boolean isSendTransaction() {
-        return isSend;
+        if (isSendVal != null) return isSendVal;
+        Block b = getBlockContents(); // Legacy nodes only, where is_send isn't specified
+        return b != null && b.getType() == BlockType.SEND;
     }
     
     /**
      * @return the value of funds involved, or null if non-transactional
      */
     public NanoAmount getTransactionalAmount() {
-        return amount;
+        NanoAmount amt = amount;
+        if (amt == null && amountStr != null)
+            amount = amt = NanoAmount.valueOfRaw(amountStr);
+        return amt;
+    }
+    
+    
+    private Block parseBlock() {
+        JsonObject json = JNH.parseJson(blockJson);
+        // Manually add subtype property for parsing (not included automatically)
+        if (subtypeStr != null && !json.has("subtype")
+                && json.get("type").getAsString().equals(BlockType.STATE.getProtocolName())) {
+            StateBlockSubType stateSubtype = StateBlockSubType.getFromName(subtypeStr);
+            if (stateSubtype != null)
+                json.addProperty("subtype", stateSubtype.getProtocolName());
+        }
+        return JNC.BLOCK_DESERIALIZER.deserialize(json);
     }
     
 }
@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.callback;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * A durable, append-only journal of received block callbacks, backed by memory-mapped segment files.
+ *
+ * <p>When attached to a {@link BlockCallbackServer} through {@link BlockCallbackServer#setJournal(CallbackJournal)},
+ * each callback is written to the journal <em>before</em> it is acknowledged to the node. Listeners are then notified
+ * asynchronously from the journal, and the consumer offset is persisted after each processed batch. Any entries which
+ * were not processed before the process exited will be replayed when the server is next started, providing
+ * at-least-once delivery.</p>
+ *
+ * <p>Entries are stored within fixed-size segment files in the given directory, and each entry is protected by a
+ * CRC-32 checksum so that partially-written entries are discarded when the journal is re-opened. Segments are deleted
+ * once all of their entries have been committed. By default, data is flushed to the storage device by the operating
+ * system; use {@link #setSyncOnAppend(boolean)} to force each entry to disk before it is acknowledged. Entries
+ * appended through {@link #appendAsync} are synced by a background thread, which syncs the entries of concurrent
+ * callers together.</p>
+ *
+ * <p>This class supports concurrent appends, but only a single consumer.</p>
+ */
+public final class CallbackJournal implements Closeable {
+    
+    /** The default size of each segment file (64 MiB). */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    
+    private static final int HEADER_SIZE = 8; // Length (int) + CRC-32 (int)
+    private static final int END_OF_SEGMENT = -1;
+    private static final String SEGMENT_PREFIX = "segment-", SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "consumer.offset";
+    private static final ThreadFactory SYNC_THREAD_FACTORY = JNH.threadFactory("CallbackJournal-Sync", true);
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private final MappedByteBuffer offsetBuffer;
+    private final List<PendingSync> pendingSyncs = new ArrayList<>();
+    private long writeOffset, readOffset, committedOffset, syncedOffset;
+    private boolean syncOnAppend, closed, syncing;
+    
+    /**
+     * Opens (or creates) a journal in the given directory, using the default segment size.
+     * @param directory the directory to store the journal files in
+     * @throws IOException if the journal cannot be opened
+     */
+    public CallbackJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+    
+    /**
+     * Opens (or creates) a journal in the given directory.
+     * @param directory   the directory to store the journal files in
+     * @param segmentSize the size of each segment file, in bytes, which limits the maximum size of an entry
+     * @throws IOException if the journal cannot be opened
+     */
+    public CallbackJournal(Path directory, int segmentSize) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("Directory cannot be null.");
+        if (segmentSize < 1024)
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes.");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        
+        // Load consumer offset
+        try (FileChannel ch = FileChannel.open(directory.resolve(OFFSET_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.offsetBuffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        this.committedOffset = offsetBuffer.getLong(0);
+        
+        // Map existing segments
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long base = Long.parseUnsignedLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()), 16);
+                if (base + segmentSize <= committedOffset) {
+                    Files.deleteIfExists(file); // Already consumed
+                } else {
+                    segments.put(base, map(file));
+                }
+            }
+        }
+        recover();
+        this.readOffset = committedOffset;
+        this.syncedOffset = writeOffset;
+    }
+    
+    
+    /**
+     * Sets whether each appended entry should be forced to the storage device before {@link #append} returns (or the
+     * future returned by {@link #appendAsync} completes). This protects against power loss, at the cost of
+     * throughput.
+     * @param syncOnAppend true to sync every entry
+     */
+    public synchronized void setSyncOnAppend(boolean syncOnAppend) {
+        this.syncOnAppend = syncOnAppend;
+    }
+    
+    /**
+     * @return the offset at which the next entry will be written
+     */
+    public synchronized long getWriteOffset() {
+        return writeOffset;
+    }
+    
+    /**
+     * @return the persisted consumer offset, before which all entries have been processed
+     */
+    public synchronized long getCommittedOffset() {
+        return committedOffset;
+    }
+    
+    /**
+     * @return the number of bytes of entries which have not yet been committed
+     */
+    public synchronized long getBacklog() {
+        return writeOffset - committedOffset;
+    }
+    
+    /**
+     * Appends a callback request to the journal.
+     * @param path       the HTTP target path
+     * @param clientAddr the address of the node, or null
+     * @param body       the raw request body
+     * @return the offset of the written entry
+     * @throws IOException if the entry could not be written
+     */
+    public long append(String path, InetAddress clientAddr, byte[] body) throws IOException {
+        byte[] pathBytes = path != null ? path.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] addrBytes = clientAddr != null ? clientAddr.getAddress() : new byte[0];
+        synchronized (this) {
+            long offset = write(pathBytes, addrBytes, body);
+            if (syncOnAppend) segments.floorEntry(offset).getValue().force();
+            return offset;
+        }
+    }
+    
+    /**
+     * Appends a callback request to the journal without blocking on the storage device. If
+     * {@link #setSyncOnAppend(boolean) sync on append} is enabled, the returned future completes once the entry has
+     * been forced to the storage device by a background thread; otherwise, it will already be complete.
+     * @param path       the HTTP target path
+     * @param clientAddr the address of the node, or null
+     * @param body       the raw request body
+     * @return a future which completes with the offset of the written entry
+     * @throws IOException if the entry could not be written
+     */
+    public CompletableFuture<Long> appendAsync(String path, InetAddress clientAddr, byte[] body) throws IOException {
+        byte[] pathBytes = path != null ? path.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] addrBytes = clientAddr != null ? clientAddr.getAddress() : new byte[0];
+        synchronized (this) {
+            long offset = write(pathBytes, addrBytes, body);
+            if (!syncOnAppend)
+                return CompletableFuture.completedFuture(offset);
+            PendingSync sync = new PendingSync(offset);
+            pendingSyncs.add(sync);
+            if (!syncing) {
+                syncing = true;
+                SYNC_THREAD_FACTORY.newThread(this::syncPending).start();
+            }
+            return sync.future;
+        }
+    }
+    
+    /**
+     * Reads the next batch of entries which have not yet been read by the consumer, waiting until at least one entry
+     * is available or the timeout elapses. After a journal is opened, reading begins from the committed offset.
+     * @param maxEntries the maximum number of entries to return
+     * @param timeout    the maximum time to wait in milliseconds, or zero to return immediately
+     * @return the entries, which will be empty if the timeout elapsed
+     * @throws IOException          if the journal is closed or corrupt
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized List<Entry> read(int maxEntries, long timeout) throws IOException, InterruptedException {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Max entries must be positive.");
+        long deadline = System.currentTimeMillis() + timeout;
+        while (readOffset == writeOffset) {
+            checkOpen();
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return Collections.emptyList();
+            wait(remaining);
+        }
+        checkOpen();
+        
+        List<Entry> entries = new ArrayList<>(Math.min(maxEntries, 64));
+        while (entries.size() < maxEntries && readOffset < writeOffset) {
+            Map.Entry<Long, MappedByteBuffer> segment = segments.floorEntry(readOffset);
+            if (segment == null)
+                throw new IOException("Journal segment is missing.");
+            int pos = (int)(readOffset - segment.getKey());
+            int length = pos + 4 <= segmentSize ? segment.getValue().getInt(pos) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                readOffset = segment.getKey() + segmentSize; // Continue in next segment
+                continue;
+            } else if (length <= 0) {
+                throw new IOException("Journal entry at offset " + readOffset + " is corrupt.");
+            }
+            entries.add(decode(segment.getValue(), pos, length, readOffset));
+            readOffset += HEADER_SIZE + length;
+        }
+        return entries;
+    }
+    
+    /**
+     * Persists the consumer offset, marking all entries before the given offset as processed. Fully committed segment
+     * files are deleted.
+     * @param offset the offset to commit, typically {@link Entry#getNextOffset()} of the last processed entry
+     * @throws IOException if the journal is closed
+     */
+    public synchronized void commit(long offset) throws IOException {
+        checkOpen();
+        if (offset < committedOffset || offset > writeOffset)
+            throw new IllegalArgumentException("Offset is out of range.");
+        committedOffset = offset;
+        offsetBuffer.putLong(0, offset);
+        if (syncOnAppend) offsetBuffer.force();
+        
+        // Delete consumed segments (except the current write segment)
+        Long current = segments.floorKey(writeOffset);
+        Iterator<Long> it = segments.keySet().iterator();
+        while (it.hasNext()) {
+            long base = it.next();
+            if (base + segmentSize > offset || (current != null && base == current)) break;
+            it.remove();
+            try {
+                Files.deleteIfExists(segmentPath(base));
+            } catch (IOException ignored) {} // May fail on some platforms while still mapped
+        }
+    }
+    
+    /**
+     * Rewinds the consumer to the last committed offset, so that uncommitted entries will be read again.
+     */
+    public synchronized void rewind() {
+        readOffset = committedOffset;
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        for (MappedByteBuffer segment : segments.values())
+            segment.force();
+        offsetBuffer.force();
+        segments.clear();
+        notifyAll();
+    }
+    
+    
+    /** Writes an entry at the current write offset. Must be called while holding the lock. */
+    private long write(byte[] pathBytes, byte[] addrBytes, byte[] body) throws IOException {
+        checkOpen();
+        if (pathBytes.length > Short.MAX_VALUE)
+            throw new IOException("Path is too long.");
+        int length = 2 + pathBytes.length + 1 + addrBytes.length + body.length;
+        if (length > segmentSize - HEADER_SIZE - 4)
+            throw new IOException("Entry exceeds the segment size.");
+        
+        MappedByteBuffer segment = writeSegment(length);
+        int pos = (int)(writeOffset - segments.floorKey(writeOffset));
+        
+        // Write payload first, then publish it by writing the length
+        int p = pos + HEADER_SIZE;
+        segment.putShort(p, (short)pathBytes.length);
+        p = putBytes(segment, p + 2, pathBytes);
+        segment.put(p, (byte)addrBytes.length);
+        p = putBytes(segment, p + 1, addrBytes);
+        putBytes(segment, p, body);
+        segment.putInt(pos + 4, checksum(segment, pos + HEADER_SIZE, length));
+        segment.putInt(pos, length);
+        
+        long offset = writeOffset;
+        writeOffset += HEADER_SIZE + length;
+        notifyAll();
+        return offset;
+    }
+    
+    /**
+     * Forces the segments written since the last sync to the storage device, and completes the waiting futures. Runs
+     * on a background thread until no syncs are pending, so that concurrent appends are synced together.
+     */
+    private void syncPending() {
+        while (true) {
+            List<PendingSync> batch;
+            Collection<MappedByteBuffer> dirty;
+            long target;
+            synchronized (this) {
+                if (pendingSyncs.isEmpty() || closed) {
+                    // Entries are forced when the journal is closed
+                    pendingSyncs.forEach(PendingSync::complete);
+                    pendingSyncs.clear();
+                    syncing = false;
+                    return;
+                }
+                batch = new ArrayList<>(pendingSyncs);
+                pendingSyncs.clear();
+                target = writeOffset;
+                Long from = segments.floorKey(syncedOffset);
+                dirty = new ArrayList<>((from != null ? segments.tailMap(from, true) : segments).values());
+            }
+            try {
+                for (MappedByteBuffer segment : dirty)
+                    segment.force();
+            } catch (RuntimeException e) {
+                batch.forEach(sync -> sync.future.completeExceptionally(e));
+                continue;
+            }
+            synchronized (this) {
+                syncedOffset = Math.max(syncedOffset, target);
+            }
+            batch.forEach(PendingSync::complete);
+        }
+    }
+    
+    /** Returns the segment to write an entry of the given length to, rolling over to a new segment if needed. */
+    private MappedByteBuffer writeSegment(int length) throws IOException {
+        Map.Entry<Long, MappedByteBuffer> current = segments.floorEntry(writeOffset);
+        if (current != null && writeOffset - current.getKey() < segmentSize) {
+            int pos = (int)(writeOffset - current.getKey());
+            if (pos + HEADER_SIZE + length <= segmentSize - 4) // Always leave room for an end marker
+                return current.getValue();
+            current.getValue().putInt(pos, END_OF_SEGMENT);
+            writeOffset = current.getKey() + segmentSize;
+        }
+        MappedByteBuffer segment = map(segmentPath(writeOffset));
+        segments.put(writeOffset, segment);
+        return segment;
+    }
+    
+    /** Determines the write offset by scanning the last segment, discarding any partially written entry. */
+    private void recover() {
+        if (segments.isEmpty()) {
+            writeOffset = committedOffset;
+            return;
+        }
+        Map.Entry<Long, MappedByteBuffer> last = segments.lastEntry();
+        MappedByteBuffer segment = last.getValue();
+        int pos = 0;
+        while (pos + 4 <= segmentSize) {
+            int length = segment.getInt(pos);
+            if (length == END_OF_SEGMENT) {
+                pos = segmentSize;
+                break;
+            }
+            if (length <= 0 || pos + HEADER_SIZE + length > segmentSize || !checksumValid(segment, pos, length))
+                break;
+            pos += HEADER_SIZE + length;
+        }
+        // Clear any partially written data, so it cannot be mistaken for an entry later on
+        byte[] zeroes = new byte[4096];
+        for (int i = pos; i < segmentSize; i += zeroes.length) {
+            int len = Math.min(zeroes.length, segmentSize - i);
+            if (!Arrays.equals(readBytes(segment, i, len), len == zeroes.length ? zeroes : new byte[len]))
+                putBytes(segment, i, len == zeroes.length ? zeroes : new byte[len]);
+        }
+        writeOffset = Math.max(last.getKey() + pos, committedOffset);
+    }
+    
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+    
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%s%016x%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX));
+    }
+    
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Journal is closed.");
+    }
+    
+    private static boolean checksumValid(MappedByteBuffer segment, int pos, int length) {
+        return checksum(segment, pos + HEADER_SIZE, length) == segment.getInt(pos + 4);
+    }
+    
+    private static int checksum(MappedByteBuffer segment, int pos, int length) {
+        ByteBuffer dup = segment.duplicate();
+        dup.limit(pos + length).position(pos);
+        CRC32 crc = new CRC32();
+        crc.update(dup);
+        return (int)crc.getValue();
+    }
+    
+    private static Entry decode(MappedByteBuffer segment, int pos, int length, long offset) throws IOException {
+        int p = pos + HEADER_SIZE, end = p + length;
+        byte[] path = readBytes(segment, p + 2, segment.getShort(p));
+        p += 2 + path.length;
+        byte[] addr = readBytes(segment, p + 1, segment.get(p));
+        p += 1 + addr.length;
+        byte[] body = readBytes(segment, p, end - p);
+        return new Entry(offset, offset + HEADER_SIZE + length, new String(path, StandardCharsets.UTF_8),
+                addr.length > 0 ? InetAddress.getByAddress(addr) : null, body);
+    }
+    
+    private static int putBytes(MappedByteBuffer buffer, int pos, byte[] bytes) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(pos);
+        dup.put(bytes);
+        return pos + bytes.length;
+    }
+    
+    private static byte[] readBytes(MappedByteBuffer buffer, int pos, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(pos);
+        byte[] bytes = new byte[length];
+        dup.get(bytes);
+        return bytes;
+    }
+    
+    
+    private static final class PendingSync {
+        final long offset;
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+        
+        PendingSync(long offset) {
+            this.offset = offset;
+        }
+        
+        void complete() {
+            future.complete(offset);
+        }
+    }
+    
+    /**
+     * A callback request which was read from the journal.
+     */
+    public static final class Entry {
+        private final long offset, nextOffset;
+        private final String path;
+        private final InetAddress clientAddr;
+        private final byte[] body;
+        
+        private Entry(long offset, long nextOffset, String path, InetAddress clientAddr, byte[] body) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.path = path;
+            this.clientAddr = clientAddr;
+            this.body = body;
+        }
+        
+        /** @return the offset of this entry */
+        public long getOffset() {
+            return offset;
+        }
+        
+        /** @return the offset of the following entry, which should be committed once this entry is processed */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+        
+        /** @return the HTTP target path */
+        public String getPath() {
+            return path;
+        }
+        
+        /** @return the address of the node which sent the callback, or null if unknown */
+        public InetAddress getClientAddress() {
+            return clientAddr;
+        }
+        
+        /** @return the raw request body */
+        public byte[] getBody() {
+            return body;
+        }
+    }
+    
+}
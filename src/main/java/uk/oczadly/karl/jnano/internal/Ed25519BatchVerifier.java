@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal;
+
+import com.rfksystems.blake2b.security.Blake2b512Digest;
+import net.i2p.crypto.eddsa.math.Curve;
+import net.i2p.crypto.eddsa.math.GroupElement;
+import net.i2p.crypto.eddsa.math.ScalarOps;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Verifies large sets of Ed25519-Blake2b signatures using randomized batch verification.
+ *
+ * <p>Each batch checks the single equation {@code [Σz·s]B = Σ[z]R + Σ[z·h]A} for random 128-bit coefficients
+ * {@code z}, evaluated with one multi-scalar multiplication (interleaved signed 4-bit windows). The terms of signatures
+ * sharing a public key are merged, so the key is only decoded and multiplied once per batch. If a batch fails, every
+ * signature within it is verified individually to identify the invalid ones.</p>
+ *
+ * <p>The equation is checked without the cofactor, as individual verification is. This only gives the same result
+ * when {@code R} and {@code A} lie in the prime-order subgroup, as a small-order component may otherwise be cancelled
+ * out by the random coefficient. Signatures whose points have a small-order component, or whose encoded points are
+ * not canonical, are therefore verified individually. Public keys which pass this check are remembered, so the check
+ * is usually only performed for {@code R}.</p>
+ *
+ * <p>Batches are distributed across the common {@link ForkJoinPool}.</p>
+ */
+final class Ed25519BatchVerifier {
+    private Ed25519BatchVerifier() {}
+    
+    /** The number of signatures verified by a single batch equation. */
+    static final int BATCH_SIZE = 64;
+    /** Below this size, the batch equation is slower than verifying the signatures individually. */
+    static final int MIN_BATCH_SIZE = 4;
+    /** The number of public keys which are remembered as having no small-order component. */
+    static final int KEY_CACHE_SIZE = 4096;
+    
+    private static final Curve CURVE = Ed25519Blake2b.CURVE_SPEC.getCurve();
+    private static final ScalarOps SCALAR_OPS = Ed25519Blake2b.CURVE_SPEC.getScalarOps();
+    private static final GroupElement BASE = Ed25519Blake2b.CURVE_SPEC.getB();
+    private static final byte[] ZERO = new byte[32];
+    /** The order of the base point, l = 2^252 + 27742317777372353535851937790883648493. */
+    private static final byte[] ORDER = JNC.ENC_16.decode(
+            "EDD3F55C1A631258D69CF7A2DEF9DE1400000000000000000000000000000010");
+    
+    /** Public keys which are known to have no small-order component. */
+    private static final Map<ByteBuffer, Boolean> TORSION_FREE_KEYS = Collections.synchronizedMap(
+            new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                    return size() > KEY_CACHE_SIZE;
+                }
+            });
+    
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+    
+    
+    /**
+     * Verifies a set of signatures, each over a single message.
+     * @param pubKeys the public keys
+     * @param data    the messages
+     * @param sigs    the signatures
+     * @return an array of results, in the same order as the given signatures
+     */
+    static boolean[] verifyAll(byte[][] pubKeys, byte[][] data, byte[][] sigs) {
+        boolean[] results = new boolean[sigs.length];
+        VerifyTask task = new VerifyTask(pubKeys, data, sigs, results, 0, sigs.length);
+        if (sigs.length <= BATCH_SIZE) {
+            task.compute(); // Not worth handing off
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return results;
+    }
+    
+    /**
+     * Verifies the signatures within the given range, storing the results.
+     */
+    static void verifyRange(byte[][] pubKeys, byte[][] data, byte[][] sigs, boolean[] results, int from, int to) {
+        if (to - from >= MIN_BATCH_SIZE) {
+            Batch batch = new Batch(to - from);
+            boolean[] batched = new boolean[to - from];
+            for (int i = from; i < to; i++) {
+                if (!(batched[i - from] = batch.add(pubKeys[i], data[i], sigs[i])))
+                    results[i] = verifyOne(pubKeys[i], data[i], sigs[i]);
+            }
+            boolean valid = batch.size() > 0 && batch.verify();
+            for (int i = from; i < to; i++) {
+                if (batched[i - from]) // Fall back to individual checks to find the failures
+                    results[i] = valid || verifyOne(pubKeys[i], data[i], sigs[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++)
+                results[i] = verifyOne(pubKeys[i], data[i], sigs[i]);
+        }
+    }
+    
+    private static boolean verifyOne(byte[] pubKey, byte[] data, byte[] sig) {
+        return Ed25519Blake2b.verify(pubKey, new byte[][] { data }, sig);
+    }
+    
+    
+    /**
+     * Accumulates the terms of a single batch equation.
+     */
+    static final class Batch {
+        private final MessageDigest digest = new Blake2b512Digest();
+        private final SecureRandom random = RANDOM.get();
+        private final GroupElement[] points;
+        private final byte[][] scalars;
+        private final Map<ByteBuffer, Integer> keyIndexes = new HashMap<>();
+        private byte[] baseScalar = ZERO;
+        private int pointCount, sigCount;
+        
+        Batch(int capacity) {
+            this.points = new GroupElement[capacity * 2];
+            this.scalars = new byte[capacity * 2][];
+        }
+        
+        /** @return the number of signatures in the batch */
+        int size() {
+            return sigCount;
+        }
+        
+        /**
+         * Adds a signature to the batch. Signatures with non-canonical encodings, or with points that have a
+         * small-order component, are not added.
+         * @return true if added, false if the signature must be verified individually
+         */
+        boolean add(byte[] pubKey, byte[] data, byte[] sig) {
+            byte[] rBytes = Arrays.copyOfRange(sig, 0, 32);
+            if (!isCanonical(pubKey) || !isCanonical(rBytes)) return false;
+            
+            // Decode points
+            ByteBuffer keyId = ByteBuffer.wrap(pubKey);
+            Integer keyIndex = keyIndexes.get(keyId);
+            GroupElement r, a = null;
+            try {
+                r = new GroupElement(CURVE, rBytes);
+                if (keyIndex == null)
+                    a = new GroupElement(CURVE, pubKey);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            if (!isTorsionFree(r)) return false;
+            if (a != null && !TORSION_FREE_KEYS.containsKey(keyId)) {
+                if (!isTorsionFree(a)) return false;
+                TORSION_FREE_KEYS.put(ByteBuffer.wrap(pubKey.clone()), Boolean.TRUE);
+            }
+            
+            // h = H(R || A || M), s = S mod l
+            digest.update(rBytes);
+            digest.update(pubKey);
+            digest.update(data);
+            byte[] h = SCALAR_OPS.reduce(digest.digest());
+            byte[] s = new byte[64];
+            System.arraycopy(sig, 32, s, 0, 32);
+            s = SCALAR_OPS.reduce(s);
+            
+            // Random coefficient
+            byte[] z = new byte[32];
+            byte[] zRand = new byte[16];
+            random.nextBytes(zRand);
+            System.arraycopy(zRand, 0, z, 0, 16);
+            
+            // Accumulate terms
+            baseScalar = SCALAR_OPS.multiplyAndAdd(z, s, baseScalar);
+            points[pointCount] = r;
+            scalars[pointCount++] = z;
+            if (keyIndex == null) {
+                keyIndexes.put(keyId, pointCount);
+                points[pointCount] = a;
+                scalars[pointCount++] = SCALAR_OPS.multiplyAndAdd(z, h, ZERO);
+            } else {
+                scalars[keyIndex] = SCALAR_OPS.multiplyAndAdd(z, h, scalars[keyIndex]);
+            }
+            sigCount++;
+            return true;
+        }
+        
+        /**
+         * Evaluates the batch equation.
+         * @return true if every signature in the batch is valid
+         */
+        boolean verify() {
+            GroupElement lhs = BASE.scalarMultiply(baseScalar);
+            GroupElement rhs = multiScalarMultiply(points, scalars, pointCount);
+            // Compare projective coordinates (X1/Z1 = X2/Z2 and Y1/Z1 = Y2/Z2)
+            return !lhs.getX().multiply(rhs.getZ()).subtract(rhs.getX().multiply(lhs.getZ())).isNonZero()
+                    && !lhs.getY().multiply(rhs.getZ()).subtract(rhs.getY().multiply(lhs.getZ())).isNonZero();
+        }
+    }
+    
+    
+    /**
+     * Tests whether a point lies in the prime-order subgroup, by checking that {@code [l]P} is the neutral element.
+     */
+    static boolean isTorsionFree(GroupElement p) {
+        GroupElement q = multiScalarMultiply(new GroupElement[] { p }, new byte[][] { ORDER }, 1);
+        return !q.getX().isNonZero() && !q.getY().subtract(q.getZ()).isNonZero();
+    }
+    
+    /**
+     * Computes {@code Σ[scalars[i]]points[i]} using interleaved signed 4-bit windows.
+     * @return the sum, in P3 representation
+     */
+    static GroupElement multiScalarMultiply(GroupElement[] points, byte[][] scalars, int count) {
+        byte[][] digits = new byte[count][];
+        GroupElement[][] tables = new GroupElement[count][];
+        int top = -1;
+        for (int i = 0; i < count; i++) {
+            digits[i] = toSignedRadix16(scalars[i]);
+            for (int j = 63; j > top; j--) {
+                if (digits[i][j] != 0) {
+                    top = j;
+                    break;
+                }
+            }
+            // Cached multiples 1P to 8P
+            GroupElement p = points[i];
+            GroupElement[] table = tables[i] = new GroupElement[8];
+            table[0] = p.toCached();
+            GroupElement multiple = p.dbl().toP3();
+            table[1] = multiple.toCached();
+            for (int j = 2; j < 8; j++) {
+                multiple = multiple.add(table[0]).toP3();
+                table[j] = multiple.toCached();
+            }
+        }
+        
+        GroupElement acc = CURVE.getZero(GroupElement.Representation.P3);
+        for (int j = top; j >= 0; j--) {
+            if (j != top)
+                acc = acc.dbl().toP2().dbl().toP2().dbl().toP2().dbl().toP3();
+            for (int i = 0; i < count; i++) {
+                int d = digits[i][j];
+                if (d > 0) {
+                    acc = acc.add(tables[i][d - 1]).toP3();
+                } else if (d < 0) {
+                    acc = acc.sub(tables[i][-d - 1]).toP3();
+                }
+            }
+        }
+        return acc;
+    }
+    
+    /**
+     * Converts a 32-byte little-endian scalar (less than 2^255) into 64 signed digits between -8 and 8.
+     */
+    static byte[] toSignedRadix16(byte[] a) {
+        byte[] e = new byte[64];
+        for (int i = 0; i < 32; i++) {
+            e[2 * i] = (byte)(a[i] & 15);
+            e[2 * i + 1] = (byte)((a[i] >> 4) & 15);
+        }
+        int carry = 0;
+        for (int i = 0; i < 63; i++) {
+            e[i] += carry;
+            carry = (e[i] + 8) >> 4;
+            e[i] -= carry << 4;
+        }
+        e[63] += carry;
+        return e;
+    }
+    
+    /**
+     * Tests whether a point encoding is canonical (the y coordinate is reduced, and zero x coordinates are positive).
+     * Only canonical encodings can be compared by value, which is how individual verification checks {@code R}.
+     */
+    static boolean isCanonical(byte[] point) {
+        int top = point[31] & 0x7F;
+        boolean highOnes = top == 0x7F;
+        for (int i = 1; i < 31 && highOnes; i++)
+            highOnes = point[i] == (byte)0xFF;
+        int low = point[0] & 0xFF;
+        if (highOnes && low >= 0xED) return false; // y >= p
+        if ((point[31] & 0x80) != 0) {
+            // x = 0 when y = 1 or y = p - 1
+            if (highOnes && low == 0xEC) return false;
+            if (low == 1 && top == 0) {
+                boolean zeroes = true;
+                for (int i = 1; i < 31 && zeroes; i++)
+                    zeroes = point[i] == 0;
+                if (zeroes) return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    private static final class VerifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final byte[][] pubKeys, data, sigs;
+        private final boolean[] results;
+        private final int from, to;
+        
+        VerifyTask(byte[][] pubKeys, byte[][] data, byte[][] sigs, boolean[] results, int from, int to) {
+            this.pubKeys = pubKeys;
+            this.data = data;
+            this.sigs = sigs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            int len = to - from;
+            if (len <= BATCH_SIZE) {
+                verifyRange(pubKeys, data, sigs, results, from, to);
+            } else {
+                // Split on a batch boundary
+                int mid = from + ((len / BATCH_SIZE + 1) / 2) * BATCH_SIZE;
+                invokeAll(new VerifyTask(pubKeys, data, sigs, results, from, mid),
+                        new VerifyTask(pubKeys, data, sigs, results, mid, to));
+            }
+        }
+    }
+    
+}
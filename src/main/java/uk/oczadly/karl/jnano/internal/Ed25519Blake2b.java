@@ -10,6 +10,7 @@ import com.rfksystems.blake2b.security.Blake2bProvider;
 import net.i2p.crypto.eddsa.EdDSAEngine;
 import net.i2p.crypto.eddsa.EdDSAPrivateKey;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import net.i2p.crypto.eddsa.math.FieldElement;
 import net.i2p.crypto.eddsa.math.GroupElement;
 import net.i2p.crypto.eddsa.spec.EdDSANamedCurveSpec;
 import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
@@ -33,8 +34,11 @@ public class Ed25519Blake2b {
     /** The message digest algorithm used (Blake2b-512) */
     private static final MessageDigest MESSAGE_DIGEST = new Blake2b512Digest();
     
+    /** Per-thread engines, as neither the engine nor the digest can be shared between threads. */
+    private static final ThreadLocal<EdDSAEngine> ENGINES = ThreadLocal.withInitial(Ed25519Blake2b::newEngine);
+    
     /** Curve spec, based on the default ED_25519_CURVE_SPEC implementation. */
-    private static final EdDSANamedCurveSpec CURVE_SPEC = new EdDSANamedCurveSpec(
+    static final EdDSANamedCurveSpec CURVE_SPEC = new EdDSANamedCurveSpec(
             "Ed25519Blake2b",
             EdDSANamedCurveTable.ED_25519_CURVE_SPEC.getCurve(),
             MESSAGE_DIGEST.getAlgorithm(),
@@ -47,7 +51,7 @@ public class Ed25519Blake2b {
      * @return a new EdDSAEngine
      */
     public static EdDSAEngine newEngine() {
-        return new EdDSAEngine(MESSAGE_DIGEST);
+        return new EdDSAEngine(new Blake2b512Digest());
     }
     
     /**
@@ -92,6 +96,60 @@ public class Ed25519Blake2b {
         return getPrivKeySpec(privKey).getA().toByteArray();
     }
     
+    /**
+     * Derives the public keys of many private keys.
+     *
+     * <p>Each key is multiplied using the curve's precomputed table of base point multiples, and the resulting
+     * points are encoded using a single shared field inversion (Montgomery's trick).</p>
+     *
+     * @param privKeys the concatenated private keys
+     * @param offset   the index of the first key to derive
+     * @param count    the number of keys to derive
+     * @param out      the array in which the public keys are stored, at the same positions as the private keys
+     */
+    public static void derivePublicKeys(byte[] privKeys, int offset, int count, byte[] out) {
+        GroupElement base = CURVE_SPEC.getB();
+        MessageDigest digest = new Blake2b512Digest();
+        GroupElement[] points = new GroupElement[count];
+        FieldElement[] products = new FieldElement[count];
+        byte[] scalar = new byte[32];
+        for (int i = 0; i < count; i++) {
+            // Expand private key into the (clamped) secret scalar
+            digest.update(privKeys, (offset + i) * 32, 32);
+            byte[] h = digest.digest();
+            System.arraycopy(h, 0, scalar, 0, 32);
+            scalar[0] &= (byte)248;
+            scalar[31] &= (byte)63;
+            scalar[31] |= (byte)64;
+            
+            points[i] = base.scalarMultiply(scalar);
+            products[i] = i == 0 ? points[i].getZ() : products[i - 1].multiply(points[i].getZ());
+        }
+        if (count == 0) return;
+        
+        // Batch inversion of Z coordinates
+        FieldElement inv = products[count - 1].invert();
+        for (int i = count - 1; i >= 0; i--) {
+            GroupElement p = points[i];
+            FieldElement zInv = i == 0 ? inv : inv.multiply(products[i - 1]);
+            inv = inv.multiply(p.getZ());
+            
+            byte[] enc = p.getY().multiply(zInv).toByteArray();
+            if (p.getX().multiply(zInv).isNegative())
+                enc[31] |= (byte)0x80;
+            System.arraycopy(enc, 0, out, (offset + i) * 32, 32);
+        }
+    }
+    
+    /**
+     * Expands a private key into the secret scalar, prefix and public key used for signing.
+     * @param privKey the private key
+     * @return the expanded key, which can be reused for multiple signatures
+     */
+    public static EdDSAPrivateKey expandPrivateKey(byte[] privKey) {
+        return new EdDSAPrivateKey(getPrivKeySpec(privKey));
+    }
+    
     /**
      * Signs a set of data.
      * @param privKey the private key
@@ -99,9 +157,20 @@ public class Ed25519Blake2b {
      * @return the signature, as a byte array
      */
     public static byte[] sign(byte[] privKey, byte[][] data) {
+        return sign(expandPrivateKey(privKey), data);
+    }
+    
+    /**
+     * Signs a set of data using an expanded private key.
+     * @param privKey the expanded private key
+     * @param data    the data to sign
+     * @return the signature, as a byte array
+     * @see #expandPrivateKey(byte[])
+     */
+    public static byte[] sign(EdDSAPrivateKey privKey, byte[][] data) {
         try {
-            EdDSAEngine engine = newEngine();
-            engine.initSign(new EdDSAPrivateKey(getPrivKeySpec(privKey)));
+            EdDSAEngine engine = ENGINES.get();
+            engine.initSign(privKey);
             
             if (data.length == 1) {
                 return engine.signOneShot(data[0]);
@@ -132,7 +201,7 @@ public class Ed25519Blake2b {
         }
         // Verify
         try {
-            EdDSAEngine engine = newEngine();
+            EdDSAEngine engine = ENGINES.get();
             engine.initVerify(new EdDSAPublicKey(pubKeySpec));
             
             if (data.length == 1) {
@@ -147,4 +216,17 @@ public class Ed25519Blake2b {
         }
     }
     
+    /**
+     * Verifies a set of signatures, each over a single message. Large sets are verified in batches across the common
+     * fork-join pool.
+     * @param pubKeys the public keys
+     * @param data    the messages
+     * @param sigs    the signatures
+     * @return an array of results, in the same order as the given signatures
+     * @see Ed25519BatchVerifier
+     */
+    public static boolean[] verifyAll(byte[][] pubKeys, byte[][] data, byte[][] sigs) {
+        return Ed25519BatchVerifier.verifyAll(pubKeys, data, sigs);
+    }
+    
 }
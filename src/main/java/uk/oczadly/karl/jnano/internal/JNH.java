@@ -11,6 +11,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.rfksystems.blake2b.Blake2b;
 import uk.oczadly.karl.jnano.internal.utils.Functions;
+import uk.oczadly.karl.jnano.internal.utils.NanoCodec;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 
@@ -18,19 +19,17 @@ import java.math.BigInteger;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 /**
  * JNano helper class.
  */
 public class JNH {
     
-    private static final Pattern HEX_PATTERN = Pattern.compile("[0-9A-Fa-f]+");
-    
-    
     /** For java 8 compatibility */
     public static <T> Set<T> ofSet(T... elements) {
         Set<T> set = new HashSet<>(elements.length);
@@ -102,7 +101,7 @@ public class JNH {
     public static boolean isValidHex(String str, int len) {
         if (str == null) return true;
         if (len > 0 && str.length() != len) return false;
-        return HEX_PATTERN.matcher(str).matches();
+        return !str.isEmpty() && NanoCodec.isHex(str);
     }
     
     /**
@@ -286,6 +285,19 @@ public class JNH {
         return max;
     }
     
+    /**
+     * Cancels the source future when the dependent future is cancelled, as dependent stages of a
+     * {@link CompletableFuture} don't cancel the stages they depend on.
+     * @return the dependent future
+     */
+    public static <T> CompletableFuture<T> propagateCancel(Future<?> source, CompletableFuture<T> dependent) {
+        dependent.whenComplete((r, ex) -> {
+            if (dependent.isCancelled())
+                source.cancel(true);
+        });
+        return dependent;
+    }
+    
     public static ThreadFactory threadFactory(String namePrefix, boolean daemon) {
         return threadFactory(namePrefix, daemon, Thread.NORM_PRIORITY);
     }
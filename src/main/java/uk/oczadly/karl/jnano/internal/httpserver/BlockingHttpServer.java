@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.httpserver;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A blocking HTTP server, which services each connection from the given executor. Only a single request is accepted
+ * per connection.
+ *
+ * <p>This server is only used for server sockets which were not created from a
+ * {@link java.nio.channels.ServerSocketChannel}, and so cannot be used by {@link NioHttpServer}.</p>
+ */
+public final class BlockingHttpServer implements HttpServer {
+    
+    private static final int ACCEPT_TIMEOUT_MS = 1000;
+    
+    private final ServerSocket serverSocket;
+    private final HttpCallback callback;
+    private final Executor executor;
+    private final boolean dispatch;
+    private final int maxHeaderSize, maxBodySize;
+    private final int idleTimeout;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    
+    private volatile boolean running;
+    private Thread thread;
+    
+    /**
+     * @param serverSocket  the bound server socket
+     * @param callback      the callback to notify of requests
+     * @param executor      the executor used to service connections
+     * @param dispatch      whether {@link HttpCallback#onRequest} should be called, in addition to
+     *                      {@link HttpCallback#onReceive}
+     * @param maxHeaderSize the maximum size of the request line and headers, in bytes
+     * @param maxBodySize   the maximum size of the request body, in bytes
+     * @param idleTimeout   the read timeout in milliseconds, or zero for no timeout
+     */
+    public BlockingHttpServer(ServerSocket serverSocket, HttpCallback callback, Executor executor, boolean dispatch,
+                              int maxHeaderSize, int maxBodySize, long idleTimeout) {
+        this.serverSocket = serverSocket;
+        this.callback = callback;
+        this.executor = executor;
+        this.dispatch = dispatch;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.idleTimeout = (int)Math.min(idleTimeout, Integer.MAX_VALUE);
+    }
+    
+    
+    @Override
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+    
+    @Override
+    public synchronized void start() throws IOException {
+        if (isRunning())
+            throw new IllegalStateException("Server is currently running.");
+        serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MS); // Periodically check whether the server has been stopped
+        running = true;
+        thread = new Thread(this::run, "http-server-thread");
+        thread.start();
+    }
+    
+    @Override
+    public synchronized void stop() {
+        if (!isRunning())
+            throw new IllegalStateException("Server is not currently running.");
+        running = false;
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // No more connections are accepted, so close the open ones
+        for (Socket socket : connections)
+            closeQuietly(socket);
+    }
+    
+    
+    private void run() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                continue;
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) return;
+                e.printStackTrace();
+                continue;
+            }
+            connections.add(socket);
+            try {
+                executor.execute(() -> handle(socket));
+            } catch (RejectedExecutionException e) {
+                connections.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+    
+    private void handle(Socket socket) {
+        try {
+            socket.setSoTimeout(idleTimeout);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            
+            // Request line and headers
+            String[] requestLine = readLine(in).split(" ");
+            if (requestLine.length != 3) {
+                respond(out, "400 Bad Request");
+                return;
+            }
+            int length = -1;
+            boolean chunked = false, expectContinue = false;
+            int headerSize = 0;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                headerSize += line.length() + 2;
+                if (headerSize > maxHeaderSize) {
+                    respond(out, "431 Request Header Fields Too Large");
+                    return;
+                }
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    respond(out, "400 Bad Request");
+                    return;
+                }
+                String name = line.substring(0, colon).trim(), value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("content-length")) {
+                    try {
+                        length = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        respond(out, "400 Bad Request");
+                        return;
+                    }
+                } else if (name.equalsIgnoreCase("transfer-encoding")) {
+                    chunked = true;
+                } else if (name.equalsIgnoreCase("expect")) {
+                    expectContinue = value.equalsIgnoreCase("100-continue");
+                }
+            }
+            
+            if (!requestLine[0].equals("POST")) {
+                respond(out, "405 Method Not Allowed");
+                return;
+            } else if (chunked || length < 0) {
+                respond(out, "411 Length Required");
+                return;
+            } else if (length > maxBodySize) {
+                respond(out, "413 Payload Too Large");
+                return;
+            }
+            if (expectContinue && requestLine[2].equalsIgnoreCase("HTTP/1.1")) {
+                out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+            
+            // Body
+            byte[] body = new byte[length];
+            new DataInputStream(in).readFully(body);
+            HttpRequest request = new HttpRequest(socket.getInetAddress(), requestLine[1], body);
+            boolean accepted;
+            try {
+                accepted = callback.onReceive(request).get();
+            } catch (Exception e) {
+                e.printStackTrace();
+                accepted = false;
+            }
+            respond(out, accepted ? "200 OK" : "500 Internal Server Error");
+            socket.close();
+            if (accepted && dispatch)
+                callback.onRequest(request);
+        } catch (EOFException | SocketTimeoutException ignored) {
+        } catch (SocketException e) {
+            if (running) e.printStackTrace(); // Otherwise closed by stop()
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+    
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0)
+                throw new EOFException();
+            if (sb.length() > maxHeaderSize)
+                throw new IOException("Header line too long.");
+            if (b != '\r')
+                sb.append((char)b);
+        }
+        return sb.toString();
+    }
+    
+    private static void respond(OutputStream out, String status) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+    
+}
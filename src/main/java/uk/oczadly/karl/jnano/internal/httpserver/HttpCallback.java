@@ -5,8 +5,23 @@
 
 package uk.oczadly.karl.jnano.internal.httpserver;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface HttpCallback {
     
+    /** A completed future which accepts the request. */
+    CompletableFuture<Boolean> ACCEPTED = CompletableFuture.completedFuture(true);
+    
+    /**
+     * Called from the server thread once a request has been received, but before it is acknowledged. This method
+     * should not block; the request is acknowledged once the returned future completes.
+     * @param request the request
+     * @return a future which completes with true if the request was accepted, or false to respond with an error status
+     */
+    default CompletableFuture<Boolean> onReceive(HttpRequest request) {
+        return ACCEPTED;
+    }
+    
     void onRequest(HttpRequest request);
     
 }
@@ -6,18 +6,18 @@
 package uk.oczadly.karl.jnano.internal.httpserver;
 
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 
 public class HttpRequest {
     
-    private InetAddress clientAddr;
+    private final InetAddress clientAddr;
     private final String path;
-    private final int contentLength;
-    private final String body;
+    private final byte[] body;
+    private volatile String bodyStr;
     
-    public HttpRequest(InetAddress clientAddr, String path, int contentLength, String body) {
+    public HttpRequest(InetAddress clientAddr, String path, byte[] body) {
         this.clientAddr = clientAddr;
         this.path = path;
-        this.contentLength = contentLength;
         this.body = body;
     }
     
@@ -31,11 +31,24 @@ public class HttpRequest {
     }
     
     public int getContentLength() {
-        return contentLength;
+        return body.length;
     }
     
-    public String getBody() {
+    /**
+     * @return the raw body bytes (not copied, should not be modified)
+     */
+    public byte[] getBodyBytes() {
         return body;
     }
     
+    /**
+     * @return the body, decoded as UTF-8
+     */
+    public String getBody() {
+        String str = bodyStr;
+        if (str == null)
+            bodyStr = str = new String(body, StandardCharsets.UTF_8);
+        return str;
+    }
+    
 }
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.httpserver;
+
+import java.io.IOException;
+
+/**
+ * A server which accepts HTTP {@code POST} requests and passes them to a {@link HttpCallback}.
+ */
+public interface HttpServer {
+    
+    boolean isRunning();
+    
+    void start() throws IOException;
+    
+    /**
+     * Stops the server and closes all of the client connections. The server socket remains bound, and the server may
+     * be started again.
+     */
+    void stop();
+    
+}
@@ -1,43 +0,0 @@
-/*
- * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
- * Licensed under the MIT License
- */
-
-package uk.oczadly.karl.jnano.internal.httpserver;
-
-import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-
-public class HttpServerThread extends Thread {
-    
-    private ServerSocket socket;
-    private HttpCallback callbackListener;
-    private ExecutorService executorService;
-    
-    
-    public HttpServerThread(ServerSocket socket, HttpCallback callbackListener, ExecutorService executorService) {
-        super("http-server-thread");
-        this.socket = socket;
-        this.callbackListener = callbackListener;
-        this.executorService = executorService;
-    }
-    
-    
-    @Override
-    public void run() {
-        while (!Thread.interrupted()) {
-            try {
-                Socket socket = this.socket.accept(); // Listen for requests
-                socket.setSoTimeout(10000);
-                socket.setKeepAlive(false);
-                // Start new thread for client
-                this.executorService.submit(new HttpRequestHandler(socket, this.callbackListener));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-    
-}
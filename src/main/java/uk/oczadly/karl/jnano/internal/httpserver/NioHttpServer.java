@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.httpserver;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A minimal, non-blocking HTTP/1.1 server which accepts {@code POST} requests and passes them to a callback.
+ *
+ * <p>All connections are serviced by a single selector thread. Connections are persistent (unless requested otherwise
+ * by the client), and pipelined requests are parsed and acknowledged in order. Each request is answered with an empty
+ * {@code 200 OK} response as soon as it has been fully received and accepted by {@link HttpCallback#onReceive}, and
+ * the callback is then executed through the given executor. Acceptance may complete asynchronously, in which case the
+ * response (and any following pipelined responses) are sent once the future completes. Requests with an {@code Expect: 100-continue} header are
+ * sent an interim {@code 100 Continue} response once their headers have been accepted.</p>
+ */
+public final class NioHttpServer implements HttpServer {
+    
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final int MAX_PENDING_RESPONSES = 64;
+    private static final long SELECT_TIMEOUT_MS = 1000;
+    
+    private static final ByteBuffer RESPONSE_CONTINUE = ByteBuffer.wrap(
+            "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    private static final ByteBuffer RESPONSE_OK = response("200 OK", false);
+    private static final ByteBuffer RESPONSE_OK_CLOSE = response("200 OK", true);
+    private static final ByteBuffer RESPONSE_BAD_REQUEST = response("400 Bad Request", true);
+    private static final ByteBuffer RESPONSE_BAD_METHOD = response("405 Method Not Allowed", true);
+    private static final ByteBuffer RESPONSE_LENGTH_REQUIRED = response("411 Length Required", true);
+    private static final ByteBuffer RESPONSE_TOO_LARGE = response("413 Payload Too Large", true);
+    private static final ByteBuffer RESPONSE_HEADERS_TOO_LARGE = response("431 Request Header Fields Too Large", true);
+    private static final ByteBuffer RESPONSE_SERVER_ERROR = response("500 Internal Server Error", true);
+    
+    private final ServerSocketChannel serverChannel;
+    private final HttpCallback callback;
+    private final Executor executor;
+    private final int maxConnections, maxHeaderSize, maxBodySize;
+    private final long idleTimeoutNanos;
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>(); // Run by the selector thread
+    
+    private volatile boolean running;
+    private Thread thread;
+    private Selector selector;
+    private int connectionCount; // Only accessed by the selector thread
+    
+    /**
+     * @param serverChannel  the bound server channel
+     * @param callback       the callback to notify of requests
+     * @param executor       the executor used to run {@link HttpCallback#onRequest}, or null to only call
+     *                       {@link HttpCallback#onReceive}
+     * @param maxConnections the maximum number of concurrent connections
+     * @param maxHeaderSize  the maximum size of the request line and headers, in bytes
+     * @param maxBodySize    the maximum size of the request body, in bytes
+     * @param idleTimeout    the idle time in milliseconds after which a connection is closed, or zero for no timeout
+     */
+    public NioHttpServer(ServerSocketChannel serverChannel, HttpCallback callback, Executor executor,
+                         int maxConnections, int maxHeaderSize, int maxBodySize, long idleTimeout) {
+        this.serverChannel = serverChannel;
+        this.callback = callback;
+        this.executor = executor;
+        this.maxConnections = maxConnections;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+    }
+    
+    
+    @Override
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+    
+    @Override
+    public synchronized void start() throws IOException {
+        if (isRunning())
+            throw new IllegalStateException("Server is currently running.");
+        selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "http-server-thread");
+        thread.start();
+    }
+    
+    @Override
+    public synchronized void stop() {
+        if (!isRunning())
+            throw new IllegalStateException("Server is not currently running.");
+        running = false;
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    
+    private void run() {
+        Selector selector = this.selector;
+        long lastSweep = System.nanoTime();
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MS);
+                Runnable completion;
+                while ((completion = completions.poll()) != null)
+                    completion.run();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        try {
+                            accept(selector);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    } else {
+                        Connection conn = (Connection)key.attachment();
+                        try {
+                            if (key.isReadable()) conn.read();
+                            if (key.isValid() && key.isWritable()) conn.flush();
+                        } catch (IOException e) {
+                            conn.close();
+                        }
+                    }
+                }
+                // Close idle connections
+                long now = System.nanoTime();
+                if (idleTimeoutNanos > 0 && now - lastSweep >= TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT_MS)) {
+                    lastSweep = now;
+                    for (SelectionKey key : selector.keys()) {
+                        Connection conn = (Connection)key.attachment();
+                        if (conn != null && now - conn.lastActivity > idleTimeoutNanos)
+                            conn.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                Connection conn = (Connection)key.attachment();
+                if (conn != null) conn.close();
+            }
+            try {
+                selector.close(); // Also deregisters the server channel
+            } catch (IOException ignored) {}
+        }
+    }
+    
+    private void accept(Selector selector) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (connectionCount >= maxConnections) {
+                channel.close(); // Connection limit reached
+                continue;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+                connectionCount++;
+            } catch (IOException e) {
+                channel.close();
+            }
+        }
+    }
+    
+    private CompletableFuture<Boolean> receive(HttpRequest request) {
+        try {
+            return callback.onReceive(request);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+    
+    private void dispatch(HttpRequest request) {
+        try {
+            executor.execute(() -> {
+                try {
+                    callback.onRequest(request);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    
+    /** The state of a single client connection. Only accessed by the selector thread. */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final InetAddress clientAddr;
+        private final Queue<Response> pendingWrites = new ArrayDeque<>();
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE); // In write mode between reads
+        private long lastActivity = System.nanoTime();
+        private boolean closing, closed;
+        
+        // State of a request whose headers have been parsed, but body has not yet been fully received
+        private boolean awaitingBody;
+        private String path;
+        private int contentLength;
+        private boolean keepAlive;
+        
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            InetSocketAddress remote = (InetSocketAddress)channel.socket().getRemoteSocketAddress();
+            this.clientAddr = remote != null ? remote.getAddress() : null;
+        }
+        
+        
+        void read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                int maxSize = Math.max(maxHeaderSize, maxBodySize);
+                if (buffer.capacity() >= maxSize) {
+                    close(); // Cannot occur unless limits were exceeded
+                    return;
+                }
+                ByteBuffer newBuffer = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, maxSize));
+                buffer.flip();
+                buffer = newBuffer.put(buffer);
+            }
+            int read = channel.read(buffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            lastActivity = System.nanoTime();
+            
+            // Process all buffered requests
+            buffer.flip();
+            while (!closing && parse());
+            buffer.compact();
+            if (buffer.position() == 0 && buffer.capacity() > INITIAL_BUFFER_SIZE)
+                buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE); // Release enlarged buffer
+            flush();
+        }
+        
+        void flush() throws IOException {
+            Response next;
+            while ((next = pendingWrites.peek()) != null && next.data != null) { // Stop at unacknowledged requests
+                channel.write(next.data);
+                if (next.data.hasRemaining()) break; // Socket buffer is full
+                pendingWrites.poll();
+                lastActivity = System.nanoTime();
+            }
+            if (closing && pendingWrites.isEmpty()) {
+                close();
+            } else if (!closed) {
+                int ops = 0;
+                if (!pendingWrites.isEmpty()) ops |= SelectionKey.OP_WRITE;
+                if (!closing && pendingWrites.size() < MAX_PENDING_RESPONSES) ops |= SelectionKey.OP_READ;
+                key.interestOps(ops);
+            }
+        }
+        
+        void close() {
+            if (closed) return;
+            closed = true;
+            connectionCount--;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+        
+        
+        /** Parses the next request from the buffer (in read mode). Returns false if more data is required. */
+        private boolean parse() {
+            if (!awaitingBody && !parseHeaders())
+                return false;
+            if (buffer.remaining() < contentLength) {
+                if (buffer.capacity() < contentLength) {
+                    ByteBuffer newBuffer = ByteBuffer.allocate(contentLength);
+                    newBuffer.put(buffer).flip();
+                    buffer = newBuffer;
+                }
+                return false;
+            }
+            byte[] body = new byte[contentLength];
+            buffer.get(body);
+            awaitingBody = false;
+            
+            HttpRequest request = new HttpRequest(clientAddr, path, body);
+            CompletableFuture<Boolean> accepted = receive(request);
+            Response response = new Response(null);
+            pendingWrites.add(response);
+            if (accepted.isDone()) {
+                return acknowledge(response, request,
+                        !accepted.isCompletedExceptionally() && accepted.getNow(false), keepAlive);
+            }
+            // Acknowledge from the selector thread once accepted
+            boolean keepConn = keepAlive;
+            accepted.whenComplete((result, ex) -> {
+                completions.add(() -> {
+                    if (closed) return;
+                    acknowledge(response, request, ex == null && result, keepConn);
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        close();
+                    }
+                });
+                selector.wakeup();
+            });
+            return true;
+        }
+        
+        private boolean acknowledge(Response response, HttpRequest request, boolean accepted, boolean keepAlive) {
+            ByteBuffer data = !accepted ? RESPONSE_SERVER_ERROR : keepAlive ? RESPONSE_OK : RESPONSE_OK_CLOSE;
+            response.data = data.duplicate();
+            if (data != RESPONSE_OK)
+                closing = true;
+            if (accepted && executor != null)
+                dispatch(request);
+            return accepted;
+        }
+        
+        private boolean parseHeaders() {
+            int start = buffer.position();
+            int end = indexOfHeaderEnd(buffer);
+            if (end < 0) {
+                if (buffer.remaining() >= maxHeaderSize)
+                    respond(RESPONSE_HEADERS_TOO_LARGE);
+                return false;
+            } else if (end - start > maxHeaderSize) {
+                respond(RESPONSE_HEADERS_TOO_LARGE);
+                return false;
+            }
+            
+            // Request line
+            int lineEnd = indexOfCrlf(buffer, start, end);
+            String[] requestLine = ascii(buffer, start, lineEnd).split(" ");
+            if (requestLine.length != 3) {
+                respond(RESPONSE_BAD_REQUEST);
+                return false;
+            }
+            boolean http11 = requestLine[2].equalsIgnoreCase("HTTP/1.1");
+            
+            // Headers
+            int length = -1;
+            boolean connClose = false, connKeepAlive = false, chunked = false, expectContinue = false;
+            for (int pos = lineEnd + 2; pos < end - 2; ) {
+                int eol = indexOfCrlf(buffer, pos, end);
+                int colon = indexOf(buffer, pos, eol, (byte)':');
+                if (colon < 0) {
+                    respond(RESPONSE_BAD_REQUEST);
+                    return false;
+                }
+                if (nameEquals(buffer, pos, colon, "content-length")) {
+                    length = parseLength(buffer, colon + 1, eol);
+                    if (length == -2) {
+                        respond(RESPONSE_BAD_REQUEST);
+                        return false;
+                    }
+                } else if (nameEquals(buffer, pos, colon, "connection")) {
+                    String value = ascii(buffer, colon + 1, eol).trim();
+                    connClose = value.equalsIgnoreCase("close");
+                    connKeepAlive = value.equalsIgnoreCase("keep-alive");
+                } else if (nameEquals(buffer, pos, colon, "transfer-encoding")) {
+                    chunked = true;
+                } else if (nameEquals(buffer, pos, colon, "expect")) {
+                    expectContinue = ascii(buffer, colon + 1, eol).trim().equalsIgnoreCase("100-continue");
+                }
+                pos = eol + 2;
+            }
+            
+            if (!requestLine[0].equals("POST")) {
+                respond(RESPONSE_BAD_METHOD);
+                return false;
+            } else if (chunked || length < 0) {
+                respond(RESPONSE_LENGTH_REQUIRED);
+                return false;
+            } else if (length > maxBodySize) {
+                respond(RESPONSE_TOO_LARGE);
+                return false;
+            }
+            
+            buffer.position(end);
+            if (expectContinue && http11 && buffer.remaining() < length)
+                pendingWrites.add(new Response(RESPONSE_CONTINUE.duplicate())); // Client waits before sending body
+            this.awaitingBody = true;
+            this.path = requestLine[1];
+            this.contentLength = length;
+            this.keepAlive = http11 ? !connClose : connKeepAlive;
+            return true;
+        }
+        
+        private void respond(ByteBuffer response) {
+            pendingWrites.add(new Response(response.duplicate()));
+            if (response != RESPONSE_OK) {
+                closing = true;
+            }
+        }
+    }
+    
+    /** A queued response, whose data is null until the request has been acknowledged. */
+    private static final class Response {
+        private ByteBuffer data;
+        
+        Response(ByteBuffer data) {
+            this.data = data;
+        }
+    }
+    
+    
+    /** Returns the index following the blank line which terminates the headers, or -1 if not yet received. */
+    private static int indexOfHeaderEnd(ByteBuffer buf) {
+        for (int i = buf.position(); i + 3 < buf.limit(); i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n' && buf.get(i + 2) == '\r' && buf.get(i + 3) == '\n')
+                return i + 4;
+        }
+        return -1;
+    }
+    
+    private static int indexOfCrlf(ByteBuffer buf, int from, int to) {
+        for (int i = from; i + 1 < to; i++)
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n') return i;
+        return to;
+    }
+    
+    private static int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++)
+            if (buf.get(i) == b) return i;
+        return -1;
+    }
+    
+    private static boolean nameEquals(ByteBuffer buf, int from, int to, String name) {
+        while (to > from && buf.get(to - 1) == ' ') to--; // Trailing whitespace
+        if (to - from != name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            int c = buf.get(from + i);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != name.charAt(i)) return false;
+        }
+        return true;
+    }
+    
+    /** Parses a non-negative decimal value, returning -2 if invalid. */
+    private static int parseLength(ByteBuffer buf, int from, int to) {
+        long val = 0;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == ' ' || b == '\t') {
+                if (digits) break;
+                continue;
+            }
+            if (b < '0' || b > '9') return -2;
+            val = val * 10 + (b - '0');
+            if (val > Integer.MAX_VALUE) return -2;
+            digits = true;
+        }
+        return digits ? (int)val : -2;
+    }
+    
+    private static String ascii(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buf.get(from + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+    
+    private static ByteBuffer response(String status, boolean close) {
+        String response = "HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n" + (close ? "Connection: close\r\n" : "")
+                + "\r\n";
+        return ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    }
+    
+}
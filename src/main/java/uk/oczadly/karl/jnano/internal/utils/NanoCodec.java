@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+/**
+ * Table-driven encoders and decoders for the fixed-length base32 segments of account addresses, and for hexadecimal
+ * strings.
+ *
+ * <p>Base32 values are processed in 40-bit groups (5 bytes or 8 characters). The 52-character key segment is treated
+ * as 7 groups with 4 leading zero characters, as the 256-bit key is left-padded with 4 zero bits to 260 bits. When
+ * decoding, the validity of every character is accumulated and checked once at the end, rather than branching on
+ * each character. Decode methods return null if the input contains illegal characters.</p>
+ */
+public final class NanoCodec {
+    private NanoCodec() {}
+    
+    /** The length of an encoded address key segment. */
+    public static final int KEY_CHARS = 52;
+    /** The length of an encoded address checksum segment. */
+    public static final int CHECKSUM_CHARS = 8;
+    
+    private static final char[] B32_CHARS = "13456789abcdefghijkmnopqrstuwxyz".toCharArray();
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] B32_VALUES = reverseTable(B32_CHARS);
+    private static final byte[] HEX_VALUES = reverseTable(HEX_CHARS);
+    private static final char[] HEX_PAIRS = new char[512]; // Two chars per byte value
+    
+    static {
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i * 2] = HEX_CHARS[i >>> 4];
+            HEX_PAIRS[i * 2 + 1] = HEX_CHARS[i & 0xF];
+        }
+        // Allow lowercase hex
+        for (int i = 10; i < 16; i++)
+            HEX_VALUES['a' + i - 10] = (byte)i;
+    }
+    
+    
+    /**
+     * Encodes a 32-byte public key as a 52-character address segment.
+     */
+    public static String encodeKey(byte[] key) {
+        char[] chars = new char[KEY_CHARS];
+        encodeKey(key, 0, chars, 0);
+        return new String(chars);
+    }
+    
+    /**
+     * Encodes a 32-byte public key as a 52-character address segment into the given array.
+     */
+    public static void encodeKey(byte[] key, int keyOffset, char[] dest, int destOffset) {
+        // The first group only contains 2 bytes (the 4 leading characters are omitted)
+        int first = ((key[keyOffset] & 0xFF) << 8) | (key[keyOffset + 1] & 0xFF);
+        dest[destOffset] = B32_CHARS[first >>> 15];
+        dest[destOffset + 1] = B32_CHARS[(first >>> 10) & 31];
+        dest[destOffset + 2] = B32_CHARS[(first >>> 5) & 31];
+        dest[destOffset + 3] = B32_CHARS[first & 31];
+        for (int g = 1; g < 7; g++)
+            encodeGroup(readGroup(key, keyOffset + g * 5 - 3), dest, destOffset + g * 8 - 4);
+    }
+    
+    /**
+     * Decodes a 52-character address segment into a 32-byte public key.
+     * @return the key, or null if the segment is not valid
+     */
+    public static byte[] decodeKey(CharSequence str, int offset) {
+        byte[] key = new byte[32];
+        int c0 = str.charAt(offset), c1 = str.charAt(offset + 1);
+        int c2 = str.charAt(offset + 2), c3 = str.charAt(offset + 3);
+        int v0 = B32_VALUES[c0 & 0x7F], v1 = B32_VALUES[c1 & 0x7F];
+        int v2 = B32_VALUES[c2 & 0x7F], v3 = B32_VALUES[c3 & 0x7F];
+        long invalid = ((c0 | c1 | c2 | c3) >>> 7) | ((v0 | v1 | v2 | v3) >>> 31)
+                | (v0 >>> 1); // Padding bits must be zero
+        int first = (v0 << 15) | (v1 << 10) | (v2 << 5) | v3;
+        key[0] = (byte)(first >>> 8);
+        key[1] = (byte)first;
+        for (int g = 1; g < 7; g++) {
+            long group = decodeGroup(str, offset + g * 8 - 4);
+            invalid |= group >>> 40;
+            writeGroup(group, key, g * 5 - 3);
+        }
+        return invalid == 0 ? key : null;
+    }
+    
+    /**
+     * Encodes a 5-byte checksum as an 8-character address segment.
+     */
+    public static String encodeChecksum(byte[] checksum) {
+        char[] chars = new char[CHECKSUM_CHARS];
+        encodeChecksum(checksum, chars, 0);
+        return new String(chars);
+    }
+    
+    /**
+     * Encodes a 5-byte checksum as an 8-character address segment into the given array.
+     */
+    public static void encodeChecksum(byte[] checksum, char[] dest, int offset) {
+        encodeGroup(readGroup(checksum, 0), dest, offset);
+    }
+    
+    /**
+     * Decodes an 8-character address segment into a 5-byte checksum.
+     * @return the checksum, or null if the segment is not valid
+     */
+    public static byte[] decodeChecksum(CharSequence str, int offset) {
+        long group = decodeGroup(str, offset);
+        if ((group >>> 40) != 0) return null;
+        byte[] checksum = new byte[5];
+        writeGroup(group, checksum, 0);
+        return checksum;
+    }
+    
+    /**
+     * Encodes the given bytes as an uppercase hexadecimal string.
+     */
+    public static String encodeHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int pair = (bytes[i] & 0xFF) << 1;
+            chars[i * 2] = HEX_PAIRS[pair];
+            chars[i * 2 + 1] = HEX_PAIRS[pair + 1];
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Decodes a hexadecimal string (of either case) with an even number of characters.
+     * @return the bytes, or null if the string is not valid hexadecimal
+     */
+    public static byte[] decodeHex(CharSequence str) {
+        int len = str.length();
+        if ((len & 1) != 0) return null;
+        byte[] bytes = new byte[len / 2];
+        int invalid = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            int c0 = str.charAt(i * 2), c1 = str.charAt(i * 2 + 1);
+            int v0 = HEX_VALUES[c0 & 0x7F], v1 = HEX_VALUES[c1 & 0x7F];
+            invalid |= ((c0 | c1) >>> 7) | ((v0 | v1) >>> 31);
+            bytes[i] = (byte)((v0 << 4) | v1);
+        }
+        return invalid == 0 ? bytes : null;
+    }
+    
+    /**
+     * Tests whether the given string only consists of hexadecimal characters (of either case).
+     */
+    public static boolean isHex(CharSequence str) {
+        int invalid = 0;
+        for (int i = 0; i < str.length(); i++) {
+            int c = str.charAt(i);
+            invalid |= (c >>> 7) | (HEX_VALUES[c & 0x7F] >>> 31);
+        }
+        return invalid == 0;
+    }
+    
+    
+    private static long readGroup(byte[] src, int offset) {
+        return ((src[offset] & 0xFFL) << 32) | ((src[offset + 1] & 0xFFL) << 24) | ((src[offset + 2] & 0xFFL) << 16)
+                | ((src[offset + 3] & 0xFFL) << 8) | (src[offset + 4] & 0xFFL);
+    }
+    
+    private static void writeGroup(long group, byte[] dest, int offset) {
+        dest[offset] = (byte)(group >>> 32);
+        dest[offset + 1] = (byte)(group >>> 24);
+        dest[offset + 2] = (byte)(group >>> 16);
+        dest[offset + 3] = (byte)(group >>> 8);
+        dest[offset + 4] = (byte)group;
+    }
+    
+    private static void encodeGroup(long group, char[] dest, int offset) {
+        dest[offset] = B32_CHARS[(int)(group >>> 35) & 31];
+        dest[offset + 1] = B32_CHARS[(int)(group >>> 30) & 31];
+        dest[offset + 2] = B32_CHARS[(int)(group >>> 25) & 31];
+        dest[offset + 3] = B32_CHARS[(int)(group >>> 20) & 31];
+        dest[offset + 4] = B32_CHARS[(int)(group >>> 15) & 31];
+        dest[offset + 5] = B32_CHARS[(int)(group >>> 10) & 31];
+        dest[offset + 6] = B32_CHARS[(int)(group >>> 5) & 31];
+        dest[offset + 7] = B32_CHARS[(int)group & 31];
+    }
+    
+    /**
+     * Decodes 8 characters into a 40-bit group. Bits above the group are set if any characters are invalid.
+     */
+    private static long decodeGroup(CharSequence str, int offset) {
+        long group = 0;
+        int invalid = 0;
+        for (int i = 0; i < 8; i++) {
+            int c = str.charAt(offset + i);
+            int v = B32_VALUES[c & 0x7F];
+            invalid |= (c >>> 7) | (v >>> 31);
+            group = (group << 5) | (v & 31);
+        }
+        return group | ((long)invalid << 40);
+    }
+    
+    private static byte[] reverseTable(char[] alphabet) {
+        byte[] table = new byte[128];
+        for (int i = 0; i < table.length; i++)
+            table[i] = -1;
+        for (int i = 0; i < alphabet.length; i++)
+            table[alphabet[i]] = (byte)i;
+        return table;
+    }
+    
+}
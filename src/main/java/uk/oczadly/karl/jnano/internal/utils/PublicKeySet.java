@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import uk.oczadly.karl.jnano.internal.NanoConst;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe, open-addressing hash set of 32-byte keys, stored as primitive {@code long} words.
+ *
+ * <p>Each key occupies 4 consecutive words in a flat array, avoiding a per-element object overhead. Collisions are
+ * resolved through linear probing, and removals use backward-shift deletion so no tombstones are left behind. Reads
+ * are performed optimistically and will only block when a concurrent write is in progress.</p>
+ */
+public final class PublicKeySet {
+    
+    private static final int WORDS = 4;
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private final StampedLock lock = new StampedLock();
+    private long[] table; // A slot with all-zero words is empty
+    private int mask, size, resizeThreshold;
+    private boolean containsZero; // The all-zero key is tracked separately
+    
+    public PublicKeySet() {
+        this(16);
+    }
+    
+    public PublicKeySet(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Expected size cannot be negative.");
+        allocate(capacityFor(expectedSize));
+    }
+    
+    
+    public boolean add(byte[] key) {
+        checkKey(key);
+        long w0 = word(key, 0), w1 = word(key, 1), w2 = word(key, 2), w3 = word(key, 3);
+        long stamp = lock.writeLock();
+        try {
+            if (isZero(w0, w1, w2, w3)) {
+                if (containsZero) return false;
+                containsZero = true;
+                size++;
+                return true;
+            }
+            int slot = find(table, w0, w1, w2, w3);
+            if (slot >= 0) return false; // Already present
+            insert(table, ~slot, w0, w1, w2, w3);
+            if (++size > resizeThreshold)
+                resize((mask + 1) << 1);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    public boolean remove(byte[] key) {
+        checkKey(key);
+        long w0 = word(key, 0), w1 = word(key, 1), w2 = word(key, 2), w3 = word(key, 3);
+        long stamp = lock.writeLock();
+        try {
+            if (isZero(w0, w1, w2, w3)) {
+                if (!containsZero) return false;
+                containsZero = false;
+                size--;
+                return true;
+            }
+            int slot = find(table, w0, w1, w2, w3);
+            if (slot < 0) return false;
+            delete(slot);
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    public boolean contains(byte[] key) {
+        checkKey(key);
+        long w0 = word(key, 0), w1 = word(key, 1), w2 = word(key, 2), w3 = word(key, 3);
+        boolean zero = isZero(w0, w1, w2, w3);
+        
+        // Attempt an optimistic (lock-free) read first
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = zero ? containsZero : find(table, w0, w1, w2, w3) >= 0;
+            if (lock.validate(stamp))
+                return found;
+        }
+        // Fall back to a read lock
+        stamp = lock.readLock();
+        try {
+            return zero ? containsZero : find(table, w0, w1, w2, w3) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            allocate(capacityFor(0));
+            size = 0;
+            containsZero = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    
+    /** Must be called with the write lock held. */
+    private void resize(int capacity) {
+        long[] oldTable = table;
+        allocate(capacity);
+        for (int i = 0; i < oldTable.length; i += WORDS) {
+            long w0 = oldTable[i], w1 = oldTable[i + 1], w2 = oldTable[i + 2], w3 = oldTable[i + 3];
+            if (!isZero(w0, w1, w2, w3))
+                insert(table, ~find(table, w0, w1, w2, w3), w0, w1, w2, w3);
+        }
+    }
+    
+    /** Must be called with the write lock held. */
+    private void delete(int slot) {
+        // Backward-shift deletion: move subsequent entries of the probe sequence into the vacated slot
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (true) {
+            int i = next * WORDS;
+            long w0 = table[i], w1 = table[i + 1], w2 = table[i + 2], w3 = table[i + 3];
+            if (isZero(w0, w1, w2, w3)) break;
+            int home = hash(w0, w1, w2, w3) & mask;
+            // Move the entry if its home slot does not lie cyclically within (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                insert(table, hole, w0, w1, w2, w3);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        insert(table, hole, 0, 0, 0, 0);
+    }
+    
+    private void allocate(int capacity) {
+        this.table = new long[capacity * WORDS];
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int)(capacity * LOAD_FACTOR);
+    }
+    
+    
+    /**
+     * Returns the slot index of the key if present, or the complement ({@code ~slot}) of the empty slot where it
+     * should be inserted.
+     */
+    private static int find(long[] table, long w0, long w1, long w2, long w3) {
+        int mask = table.length / WORDS - 1; // Derived from the array, in case of an inconsistent optimistic read
+        int slot = hash(w0, w1, w2, w3) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int i = slot * WORDS;
+            long t0 = table[i], t1 = table[i + 1], t2 = table[i + 2], t3 = table[i + 3];
+            if (t0 == w0 && t1 == w1 && t2 == w2 && t3 == w3)
+                return slot;
+            if (isZero(t0, t1, t2, t3))
+                return ~slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~0; // Only reachable from an inconsistent optimistic read
+    }
+    
+    private static void insert(long[] table, int slot, long w0, long w1, long w2, long w3) {
+        int i = slot * WORDS;
+        table[i] = w0;
+        table[i + 1] = w1;
+        table[i + 2] = w2;
+        table[i + 3] = w3;
+    }
+    
+    private static int hash(long w0, long w1, long w2, long w3) {
+        // Keys are usually uniformly distributed (public keys and hashes), but mix anyway to guard against patterns
+        long h = (w0 ^ w1 ^ w2 ^ w3) * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+    
+    private static boolean isZero(long w0, long w1, long w2, long w3) {
+        return (w0 | w1 | w2 | w3) == 0;
+    }
+    
+    private static long word(byte[] key, int index) {
+        int offset = index * 8;
+        long val = 0;
+        for (int i = 0; i < 8; i++)
+            val = (val << 8) | (key[offset + i] & 0xFF);
+        return val;
+    }
+    
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+    
+    private static void checkKey(byte[] key) {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null.");
+        if (key.length != NanoConst.LEN_KEY_B)
+            throw new IllegalArgumentException("Key must be " + NanoConst.LEN_KEY_B + " bytes long.");
+    }
+    
+}
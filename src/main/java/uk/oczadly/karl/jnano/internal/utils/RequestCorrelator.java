@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Correlates outgoing requests with their asynchronous responses using unique numeric IDs.
+ *
+ * <p>Each request is represented by a {@link CompletableFuture}, which is completed when the matching response is
+ * received, or completed exceptionally with a {@link TimeoutException} (if a timeout was specified) or a
+ * {@link CancellationException} (if {@link #cancelAll()} is called). Timeouts are tracked by a shared
+ * {@link TimingWheel}, so no threads are blocked while awaiting a response.</p>
+ */
+public final class RequestCorrelator<T> {
+    
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, Request> pending = new ConcurrentHashMap<>();
+    private final TimingWheel timer;
+    
+    public RequestCorrelator() {
+        this(TimingWheel.SHARED);
+    }
+    
+    public RequestCorrelator(TimingWheel timer) {
+        this.timer = timer;
+    }
+    
+    
+    /**
+     * Registers a new pending request.
+     * @param timeout the timeout in milliseconds, or zero for no timeout
+     * @return the request handle
+     */
+    public Request register(long timeout) {
+        Request request = new Request(nextId.incrementAndGet());
+        pending.put(request.id, request);
+        if (timeout > 0) {
+            request.timeout = timer.schedule(() -> request.fail(new TimeoutException("Request timed out.")),
+                    timeout, TimeUnit.MILLISECONDS);
+        }
+        return request;
+    }
+    
+    /**
+     * Completes the request with the given ID.
+     * @param id     the request ID
+     * @param result the response value
+     * @return true if a pending request was completed
+     */
+    public boolean complete(long id, T result) {
+        Request request = pending.remove(id);
+        return request != null && request.future.complete(result);
+    }
+    
+    /**
+     * Completes the request with the given (hexadecimal) ID string, as previously returned by
+     * {@link Request#getIdString()}.
+     * @param id     the request ID string
+     * @param result the response value
+     * @return true if a pending request was completed
+     */
+    public boolean complete(String id, T result) {
+        try {
+            return complete(Long.parseUnsignedLong(id, 16), result);
+        } catch (NumberFormatException e) {
+            return false; // Not one of our IDs
+        }
+    }
+    
+    /**
+     * Cancels all of the currently pending requests.
+     */
+    public void cancelAll() {
+        for (Request request : pending.values())
+            request.cancel();
+    }
+    
+    /**
+     * @return the number of requests awaiting a response
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+    
+    
+    /**
+     * A pending request handle.
+     */
+    public final class Request {
+        private final long id;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private volatile TimingWheel.Timeout timeout;
+        
+        private Request(long id) {
+            this.id = id;
+            future.whenComplete((r, e) -> {
+                pending.remove(id);
+                TimingWheel.Timeout t = timeout;
+                if (t != null) t.cancel();
+            });
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        /**
+         * @return the ID of this request, encoded as a lowercase hexadecimal string
+         */
+        public String getIdString() {
+            return Long.toHexString(id);
+        }
+        
+        public CompletableFuture<T> getFuture() {
+            return future;
+        }
+        
+        /**
+         * Cancels this request, removing it from the pending set.
+         */
+        public void cancel() {
+            fail(new CancellationException("Request was cancelled."));
+        }
+        
+        private void fail(Throwable t) {
+            pending.remove(id); // Before completing, so that waiting threads observe the removal
+            future.completeExceptionally(t);
+        }
+    }
+    
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A hashed timing wheel, used for scheduling large numbers of approximate timeouts with constant-time insertion and
+ * cancellation.
+ *
+ * <p>Scheduled timeouts are handed to a single background worker thread through a lock-free queue, which places them
+ * into the appropriate wheel bucket. The worker advances one bucket every tick, and executes the tasks of any expired
+ * timeouts. Tasks should therefore be short and non-blocking.</p>
+ *
+ * <p>The worker thread is started when a timeout is first scheduled, and exits once no timeouts have been pending for
+ * a full revolution of the wheel. Instances other than {@link #SHARED} should be {@link #shutdown() shut down} by their
+ * owner once they are no longer needed.</p>
+ */
+public final class TimingWheel {
+    
+    /** A shared instance with a tick duration of 10 milliseconds. */
+    public static final TimingWheel SHARED = new TimingWheel(10, TimeUnit.MILLISECONDS, 512);
+    
+    private static final ThreadFactory THREAD_FACTORY = JNH.threadFactory("TimingWheel-Worker", true);
+    
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.nanoTime();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean shutdown;
+    private volatile Thread worker;
+    
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("Tick duration must be positive.");
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException("Wheel size must be a positive power of two.");
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = wheelSize - 1;
+        this.wheel = (Queue<Timeout>[])new Queue<?>[wheelSize];
+        for (int i = 0; i < wheelSize; i++)
+            wheel[i] = new ArrayDeque<>();
+    }
+    
+    
+    /**
+     * Schedules a task to be executed once the given delay has elapsed.
+     * @param task  the task to run
+     * @param delay the delay
+     * @param unit  the unit of {@code delay}
+     * @return a handle which can be used to cancel the timeout
+     * @throws IllegalStateException if the timing wheel has been shut down
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null)
+            throw new IllegalArgumentException("Task cannot be null.");
+        if (shutdown)
+            throw new IllegalStateException("Timing wheel has been shut down.");
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0)));
+        pending.add(timeout); // Before starting, so an exiting worker observes it
+        startWorker();
+        return timeout;
+    }
+    
+    /**
+     * Stops the worker thread. Any timeouts which have not yet expired will not be executed, and no further timeouts
+     * may be scheduled.
+     *
+     * @throws IllegalStateException if this is the {@link #SHARED} instance
+     */
+    public void shutdown() {
+        if (this == SHARED)
+            throw new IllegalStateException("The shared timing wheel cannot be shut down.");
+        shutdown = true;
+        Thread t = worker;
+        if (t != null) t.interrupt();
+    }
+    
+    /**
+     * @return true if {@link #shutdown()} has been called
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+    
+    
+    boolean isWorkerRunning() {
+        return running.get();
+    }
+    
+    private void startWorker() {
+        if (!running.get() && running.compareAndSet(false, true)) {
+            Thread t = THREAD_FACTORY.newThread(new Worker());
+            worker = t;
+            t.start();
+        }
+    }
+    
+    
+    private class Worker implements Runnable {
+        private long tick = (System.nanoTime() - startTime) / tickNanos;
+        private int scheduled, idleTicks;
+        
+        @Override
+        public void run() {
+            while (awaitNextTick()) {
+                transferPending();
+                expireBucket(wheel[(int)(tick & mask)]);
+                tick++;
+                
+                if (scheduled > 0 || !pending.isEmpty()) {
+                    idleTicks = 0;
+                } else if (++idleTicks >= wheel.length) {
+                    running.set(false);
+                    // A timeout may have been scheduled before the running flag was cleared
+                    if (pending.isEmpty() || !running.compareAndSet(false, true))
+                        return;
+                    idleTicks = 0;
+                }
+            }
+            // Shut down, so discard the remaining timeouts
+            pending.clear();
+            for (Queue<Timeout> bucket : wheel)
+                bucket.clear();
+        }
+        
+        private boolean awaitNextTick() {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos;
+            while ((sleepNanos = deadline - (System.nanoTime() - startTime)) > 0) {
+                if (shutdown) return false;
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ignored) {}
+            }
+            return !shutdown;
+        }
+        
+        private void transferPending() {
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.cancelled) continue;
+                long expiryTick = Math.max(timeout.deadline / tickNanos, tick); // Never schedule in the past
+                timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+                wheel[(int)(expiryTick & mask)].add(timeout);
+                scheduled++;
+            }
+        }
+        
+        private void expireBucket(Queue<Timeout> bucket) {
+            Iterator<Timeout> it = bucket.iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.cancelled) {
+                    it.remove();
+                    scheduled--;
+                } else if (timeout.remainingRounds <= 0) {
+                    it.remove();
+                    scheduled--;
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+            }
+        }
+    }
+    
+    
+    /**
+     * A handle to a scheduled timeout.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+        private long remainingRounds; // Only accessed by the worker thread
+        
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * Cancels the timeout. The task will not be executed if it has not already run.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        private void expire() {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model;
+
+import java.util.Collection;
+
+/**
+ * A fixed-size array of {@link NanoAmount} values, stored as primitive words.
+ *
+ * <p>This class is intended for aggregating large numbers of amounts, such as the balances of many accounts. Each
+ * element occupies 16 bytes with no per-element object, and the {@link #add(int, NanoAmount)}, {@link #sum()} and
+ * related methods operate directly on the stored words without creating intermediate {@code NanoAmount} objects.
+ * Elements are initialized to zero.</p>
+ *
+ * <p>This class is not thread-safe, and instances must be externally synchronized if modified concurrently.</p>
+ *
+ * @see NanoAmount
+ */
+public final class AmountArray {
+    
+    private final long[] words; // Alternating hi, lo
+    
+    /**
+     * Constructs an array of the given size, with all amounts initialized to zero.
+     * @param size the number of elements
+     */
+    public AmountArray(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Size cannot be negative.");
+        this.words = new long[size * 2];
+    }
+    
+    
+    /**
+     * Returns the number of elements in this array.
+     * @return the size of the array
+     */
+    public int size() {
+        return words.length / 2;
+    }
+    
+    /**
+     * Returns the amount stored at the given index.
+     * @param index the element index
+     * @return the amount
+     */
+    public NanoAmount get(int index) {
+        checkIndex(index);
+        return NanoAmount.valueOfRaw(words[index * 2], words[index * 2 + 1]);
+    }
+    
+    /**
+     * Sets the amount stored at the given index.
+     * @param index  the element index
+     * @param amount the new amount
+     */
+    public void set(int index, NanoAmount amount) {
+        checkIndex(index);
+        if (amount == null)
+            throw new IllegalArgumentException("Amount cannot be null.");
+        words[index * 2] = amount.hi;
+        words[index * 2 + 1] = amount.lo;
+    }
+    
+    /**
+     * Adds an amount to the element at the given index.
+     * @param index  the element index
+     * @param amount the amount to add
+     * @throws ArithmeticException if the resulting amount is above the maximum possible balance, in which case the
+     *                             element is left unchanged
+     */
+    public void add(int index, NanoAmount amount) {
+        checkIndex(index);
+        if (amount == null)
+            throw new IllegalArgumentException("Amount cannot be null.");
+        int i = index * 2;
+        long hi = words[i], lo = words[i + 1];
+        long sumLo = lo + amount.lo;
+        long sumHi = hi + amount.hi + NanoAmount.addCarry(lo, amount.lo, sumLo);
+        if (NanoAmount.addCarry(hi, amount.hi, sumHi) != 0)
+            throw new ArithmeticException("Result amount is greater than the largest representable amount.");
+        words[i] = sumHi;
+        words[i + 1] = sumLo;
+    }
+    
+    /**
+     * Subtracts an amount from the element at the given index.
+     * @param index  the element index
+     * @param amount the amount to subtract
+     * @throws ArithmeticException if {@code amount} is greater than the current element, in which case the element
+     *                             is left unchanged
+     */
+    public void subtract(int index, NanoAmount amount) {
+        checkIndex(index);
+        if (amount == null)
+            throw new IllegalArgumentException("Amount cannot be null.");
+        int i = index * 2;
+        long hi = words[i], lo = words[i + 1];
+        long diffLo = lo - amount.lo;
+        long diffHi = hi - amount.hi - NanoAmount.subBorrow(lo, amount.lo, diffLo);
+        if (NanoAmount.subBorrow(hi, amount.hi, diffHi) != 0)
+            throw new ArithmeticException("Result amount is negative.");
+        words[i] = diffHi;
+        words[i + 1] = diffLo;
+    }
+    
+    /**
+     * Returns the sum of all the elements in this array.
+     * @return the total amount
+     * @throws ArithmeticException if the sum is above the maximum possible balance
+     */
+    public NanoAmount sum() {
+        return sum(0, size());
+    }
+    
+    /**
+     * Returns the sum of the elements within the given range.
+     * @param fromIndex the index of the first element (inclusive)
+     * @param toIndex   the index of the last element (exclusive)
+     * @return the total amount
+     * @throws ArithmeticException if the sum is above the maximum possible balance
+     */
+    public NanoAmount sum(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("Invalid range.");
+        long hi = 0, lo = 0, overflow = 0;
+        for (int i = fromIndex * 2; i < toIndex * 2; i += 2) {
+            long sumLo = lo + words[i + 1];
+            long sumHi = hi + words[i] + NanoAmount.addCarry(lo, words[i + 1], sumLo);
+            overflow |= NanoAmount.addCarry(hi, words[i], sumHi);
+            hi = sumHi;
+            lo = sumLo;
+        }
+        if (overflow != 0)
+            throw new ArithmeticException("Result amount is greater than the largest representable amount.");
+        return NanoAmount.valueOfRaw(hi, lo);
+    }
+    
+    /**
+     * Returns the elements of this array as an array of {@link NanoAmount} objects.
+     * @return a new array of amounts
+     */
+    public NanoAmount[] toArray() {
+        NanoAmount[] arr = new NanoAmount[size()];
+        for (int i = 0; i < arr.length; i++)
+            arr[i] = get(i);
+        return arr;
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds.");
+    }
+    
+    
+    /**
+     * Constructs an array containing the given amounts.
+     * @param amounts the amounts
+     * @return the array of amounts
+     */
+    public static AmountArray of(NanoAmount... amounts) {
+        if (amounts == null)
+            throw new IllegalArgumentException("Amounts array cannot be null.");
+        AmountArray arr = new AmountArray(amounts.length);
+        for (int i = 0; i < amounts.length; i++)
+            arr.set(i, amounts[i]);
+        return arr;
+    }
+    
+    /**
+     * Constructs an array containing the given amounts, in the iteration order of the collection.
+     * @param amounts the amounts
+     * @return the array of amounts
+     */
+    public static AmountArray of(Collection<NanoAmount> amounts) {
+        if (amounts == null)
+            throw new IllegalArgumentException("Amounts collection cannot be null.");
+        AmountArray arr = new AmountArray(amounts.size());
+        int i = 0;
+        for (NanoAmount amount : amounts)
+            arr.set(i++, amount);
+        return arr;
+    }
+    
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model;
+
+import com.google.gson.*;
+import com.google.gson.annotations.JsonAdapter;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.NanoConst;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents an immutable 256-bit (32-byte) value, such as a block hash, root or key.
+ *
+ * <p>Unlike {@link HexData}, the value is stored as four {@code long} words rather than a string and byte array,
+ * making equality checks and hashing significantly cheaper and reducing the memory used by each instance to a single
+ * object. This makes it well suited as a key for large maps and caches. The hexadecimal representation is only
+ * computed when requested.</p>
+ *
+ * <p>When serialized to a JSON object, it will be converted to a 64-character hexadecimal string as returned by
+ * the {@link #toHexString()} method.</p>
+ *
+ * @see HexData
+ */
+@JsonAdapter(Hash256.JsonAdapter.class)
+public final class Hash256 implements Comparable<Hash256> {
+    
+    /** The length of the value, in bytes. */
+    public static final int LENGTH = NanoConst.LEN_HASH_B;
+    
+    /** Constant Hash256 object representing a value of zero. */
+    public static final Hash256 ZERO = new Hash256(0, 0, 0, 0);
+    
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+    
+    private final long w0, w1, w2, w3; // Big-endian words
+    
+    private Hash256(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+    
+    
+    /**
+     * Returns the value of this object, encoded as an uppercase hexadecimal string.
+     * @return this object, as a 64-character hex string
+     */
+    public String toHexString() {
+        char[] chars = new char[LENGTH * 2];
+        writeHex(w0, chars, 0);
+        writeHex(w1, chars, 16);
+        writeHex(w2, chars, 32);
+        writeHex(w3, chars, 48);
+        return new String(chars);
+    }
+    
+    /**
+     * Returns the value of this object, encoded as a {@code byte} array.
+     * @return this object, as a 32-length byte array
+     */
+    public byte[] toByteArray() {
+        byte[] arr = new byte[LENGTH];
+        writeTo(arr, 0);
+        return arr;
+    }
+    
+    /**
+     * Returns the value of this object as a {@link HexData} object.
+     * @return this object, as a 32-byte hex object
+     */
+    public HexData toHexData() {
+        return new HexData(toByteArray());
+    }
+    
+    /**
+     * Writes the 32 bytes of this value into the given array.
+     * @param dest   the destination array
+     * @param offset the position in the array at which the first byte is written
+     */
+    public void writeTo(byte[] dest, int offset) {
+        if (dest == null)
+            throw new IllegalArgumentException("Destination array cannot be null.");
+        if (offset < 0 || offset > dest.length - LENGTH)
+            throw new IndexOutOfBoundsException("Not enough space in the destination array.");
+        writeLong(w0, dest, offset);
+        writeLong(w1, dest, offset + 8);
+        writeLong(w2, dest, offset + 16);
+        writeLong(w3, dest, offset + 24);
+    }
+    
+    /**
+     * Writes the 32 bytes of this value into the given buffer, at its current position. The byte order of the buffer
+     * is ignored.
+     * @param dest the destination buffer
+     */
+    public void writeTo(ByteBuffer dest) {
+        if (dest == null)
+            throw new IllegalArgumentException("Destination buffer cannot be null.");
+        if (dest.remaining() < LENGTH)
+            throw new IndexOutOfBoundsException("Not enough space in the destination buffer.");
+        if (dest.hasArray()) {
+            writeTo(dest.array(), dest.arrayOffset() + dest.position());
+            dest.position(dest.position() + LENGTH);
+        } else {
+            dest.put(toByteArray());
+        }
+    }
+    
+    /**
+     * Returns true if this value is zero.
+     * @return true if all bits are zero
+     */
+    public boolean isZero() {
+        return (w0 | w1 | w2 | w3) == 0;
+    }
+    
+    
+    /**
+     * Compares the unsigned values of this object and the given value.
+     * @param o the value to compare with
+     * @return a negative value, zero or a positive value if this value is less than, equal to, or greater than the
+     *         given value
+     */
+    @Override
+    public int compareTo(Hash256 o) {
+        int c = Long.compareUnsigned(w0, o.w0);
+        if (c == 0) c = Long.compareUnsigned(w1, o.w1);
+        if (c == 0) c = Long.compareUnsigned(w2, o.w2);
+        if (c == 0) c = Long.compareUnsigned(w3, o.w3);
+        return c;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Hash256)) return false;
+        Hash256 h = (Hash256)o;
+        return w0 == h.w0 && w1 == h.w1 && w2 == h.w2 && w3 == h.w3;
+    }
+    
+    @Override
+    public int hashCode() {
+        // Hashes are uniformly distributed, so folding the words is sufficient
+        long h = w0 ^ w1 ^ w2 ^ w3;
+        return (int)(h ^ (h >>> 32));
+    }
+    
+    @Override
+    public String toString() {
+        return toHexString();
+    }
+    
+    
+    /**
+     * Constructs a Hash256 from an array of 32 bytes.
+     * @param bytes the bytes
+     * @return the value
+     */
+    public static Hash256 of(byte[] bytes) {
+        if (bytes == null)
+            throw new IllegalArgumentException("Byte array cannot be null.");
+        if (bytes.length != LENGTH)
+            throw new IllegalArgumentException("Byte array must have a length of 32.");
+        return of(bytes, 0);
+    }
+    
+    /**
+     * Constructs a Hash256 from 32 bytes of the given array.
+     * @param bytes  the source array
+     * @param offset the position of the first byte in the array
+     * @return the value
+     */
+    public static Hash256 of(byte[] bytes, int offset) {
+        if (bytes == null)
+            throw new IllegalArgumentException("Byte array cannot be null.");
+        if (offset < 0 || offset > bytes.length - LENGTH)
+            throw new IndexOutOfBoundsException("Not enough bytes in the source array.");
+        return new Hash256(readLong(bytes, offset), readLong(bytes, offset + 8), readLong(bytes, offset + 16),
+                readLong(bytes, offset + 24));
+    }
+    
+    /**
+     * Reads a Hash256 from the next 32 bytes of the given buffer, advancing its position. The byte order of the buffer
+     * is ignored.
+     * @param buffer the source buffer
+     * @return the value
+     */
+    public static Hash256 of(ByteBuffer buffer) {
+        if (buffer == null)
+            throw new IllegalArgumentException("Buffer cannot be null.");
+        if (buffer.remaining() < LENGTH)
+            throw new IndexOutOfBoundsException("Not enough bytes remaining in the buffer.");
+        byte[] bytes = new byte[LENGTH];
+        buffer.get(bytes);
+        return of(bytes, 0);
+    }
+    
+    /**
+     * Constructs a Hash256 from a 32-byte hex object.
+     * @param hex the hex value
+     * @return the value
+     */
+    public static Hash256 of(HexData hex) {
+        if (hex == null)
+            throw new IllegalArgumentException("Hex value cannot be null.");
+        if (hex.length() != LENGTH)
+            throw new IllegalArgumentException("Hex value must have a length of 32 bytes.");
+        return of(hex.toByteArray(), 0);
+    }
+    
+    /**
+     * Parses a Hash256 from a 64-character hexadecimal string (case-insensitive).
+     * @param hex the hexadecimal string
+     * @return the value
+     */
+    public static Hash256 parse(String hex) {
+        if (hex == null)
+            throw new IllegalArgumentException("Hex value cannot be null.");
+        if (hex.length() != LENGTH * 2 || !JNH.isValidHex(hex, LENGTH * 2))
+            throw new IllegalArgumentException("Hex value must be a 64-character hexadecimal string.");
+        return new Hash256(parseWord(hex, 0), parseWord(hex, 16), parseWord(hex, 32), parseWord(hex, 48));
+    }
+    
+    
+    private static long parseWord(String hex, int offset) {
+        return Long.parseUnsignedLong(hex.substring(offset, offset + 16), 16);
+    }
+    
+    private static void writeHex(long word, char[] dest, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            dest[offset + i] = HEX_CHARS[(int)word & 0xF];
+            word >>>= 4;
+        }
+    }
+    
+    private static long readLong(byte[] src, int offset) {
+        long val = 0;
+        for (int i = 0; i < 8; i++)
+            val = (val << 8) | (src[offset + i] & 0xFF);
+        return val;
+    }
+    
+    private static void writeLong(long val, byte[] dest, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            dest[offset + i] = (byte)val;
+            val >>>= 8;
+        }
+    }
+    
+    
+    static class JsonAdapter implements JsonSerializer<Hash256>, JsonDeserializer<Hash256> {
+        @Override
+        public Hash256 deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+                throws JsonParseException {
+            return parse(json.getAsString());
+        }
+        
+        @Override
+        public JsonElement serialize(Hash256 src, Type typeOfSrc, JsonSerializationContext context) {
+            return new JsonPrimitive(src.toHexString());
+        }
+    }
+    
+}
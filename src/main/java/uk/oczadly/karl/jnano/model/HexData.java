@@ -7,8 +7,9 @@ package uk.oczadly.karl.jnano.model;
 
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
-import uk.oczadly.karl.jnano.internal.JNC;
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.NanoCodec;
+import uk.oczadly.karl.jnano.util.InternPool;
 
 import java.lang.reflect.Type;
 import java.util.Arrays;
@@ -21,7 +22,8 @@ import java.util.Arrays;
  *
  * <p>When serialized to a JSON object, it will be converted to a hexadecimal string as returned by the
  * {@link #toHexString()} method. When deserializing from a JSON field, it will assume the value to be a hexadecimal
- * string and call the {@link #HexData(String)} constructor.</p>
+ * string and call the {@link #HexData(String)} constructor. Repeated values may be shared by enabling the
+ * {@link InternPool#HEX_VALUES} pool.</p>
  *
  * @author Karl Oczadly
  */
@@ -86,7 +88,7 @@ public class HexData {
             throw new IllegalArgumentException("'length' must be zero or greater.");
         this.valBytes = JNH.leftPadByteArray(Arrays.copyOf(bytes, bytes.length), length, true);
         this.byteLength = length;
-        this.valHex = JNC.ENC_16.encode(valBytes);
+        this.valHex = NanoCodec.encodeHex(valBytes);
     }
     
     
@@ -109,12 +111,22 @@ public class HexData {
         return Arrays.copyOf(valBytes, valBytes.length);
     }
     
+    /**
+     * Writes the bytes of this value into the given array, without creating an intermediate copy.
+     *
+     * @param dest   the destination array
+     * @param offset the position in the array at which the first byte is written
+     */
+    public final void writeTo(byte[] dest, int offset) {
+        System.arraycopy(_toByteArray(), 0, dest, offset, byteLength);
+    }
+    
     /** Returns the value as a byte array, without copying the cached value. */
     private byte[] _toByteArray() {
         if (valBytes == null) {
             synchronized (this) {
                 if (valBytes == null)
-                    valBytes = JNC.ENC_16.decode(toHexString());
+                    valBytes = NanoCodec.decodeHex(toHexString());
             }
         }
         return valBytes;
@@ -215,7 +227,7 @@ public class HexData {
         @Override
         public HexData deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
                 throws JsonParseException {
-            return new HexData(json.getAsString());
+            return InternPool.HEX_VALUES.intern(json.getAsString(), HexData::new);
         }
         
         @Override
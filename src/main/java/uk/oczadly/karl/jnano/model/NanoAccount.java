@@ -11,15 +11,13 @@ import uk.oczadly.karl.jnano.internal.Ed25519Blake2b;
 import uk.oczadly.karl.jnano.internal.JNC;
 import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.internal.NanoConst;
-import uk.oczadly.karl.jnano.internal.utils.BaseEncoder;
+import uk.oczadly.karl.jnano.internal.utils.NanoCodec;
+import uk.oczadly.karl.jnano.util.InternPool;
 import uk.oczadly.karl.jnano.util.WalletUtil;
 
 import java.lang.reflect.Type;
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.*;
 
 /**
  * <p>This is an immutable class which represents an individual Nano account address. A wide range of Java-based
@@ -32,13 +30,13 @@ import java.util.regex.Pattern;
  *
  * <p>Using the built-in JSON adapter, this class will call {@link #parse(String)} for deserializing, allowing
  * accounts encoded in either address or public key formats. When serializing this class, the {@link #toAddress()}
- * method will be used to convert into address format.</p>
+ * method will be used to convert into address format. Repeated accounts may be shared by enabling the
+ * {@link InternPool#ACCOUNTS} pool.</p>
  */
 @JsonAdapter(NanoAccount.Adapter.class)
 public final class NanoAccount {
     
     private static final BigInteger MAX_INDEX_VAL = JNC.BIGINT_MAX_256;
-    private static final Pattern PREFIX_VALIDATE_PATTERN = Pattern.compile("^[0-9A-Za-z]+$");
     
     /**
      * The character which separates the prefix from the address string.
@@ -70,7 +68,7 @@ public final class NanoAccount {
     
     private final byte[] keyBytes;
     private final String prefix;
-    // Fields below may be initialized lazily
+    // Fields below may be initialized lazily (values are immutable, so racing threads will compute equal values)
     private volatile byte[] cachedCheckBytes;
     private volatile String cachedAddress, cachedHex, cachedSegAddr, cachedSegCheck;
     private volatile BigInteger index;
@@ -165,17 +163,29 @@ public final class NanoAccount {
         return Arrays.copyOf(keyBytes, keyBytes.length);
     }
     
+    /**
+     * Writes the 32 bytes of the public key into the given array, without creating an intermediate copy.
+     * @param dest   the destination array
+     * @param offset the position in the array at which the first byte is written
+     */
+    public void writePublicKey(byte[] dest, int offset) {
+        System.arraycopy(keyBytes, 0, dest, offset, keyBytes.length);
+    }
+    
     /**
      * @return an array of bytes which represent the checksum of this address
      */
     public byte[] getChecksumBytes() {
-        if (cachedCheckBytes == null) {
-            synchronized (this) {
-                if (cachedCheckBytes == null)
-                    cachedCheckBytes = calculateChecksumBytes(keyBytes);
-            }
-        }
-        return Arrays.copyOf(cachedCheckBytes, cachedCheckBytes.length);
+        byte[] checksum = checksumBytes();
+        return Arrays.copyOf(checksum, checksum.length);
+    }
+    
+    /** Returns the checksum bytes, without copying the cached value. */
+    private byte[] checksumBytes() {
+        byte[] checksum = cachedCheckBytes;
+        if (checksum == null)
+            cachedCheckBytes = checksum = calculateChecksumBytes(keyBytes);
+        return checksum;
     }
     
     /**
@@ -185,12 +195,9 @@ public final class NanoAccount {
      * @return the integer-based index of this account, derived from the key byte array
      */
     public BigInteger getAccountIndex() {
-        if (index == null) {
-            synchronized (this) {
-                if (index == null)
-                    index = new BigInteger(1, keyBytes);
-            }
-        }
+        BigInteger index = this.index;
+        if (index == null)
+            this.index = index = new BigInteger(1, keyBytes);
         return index;
     }
     
@@ -200,13 +207,10 @@ public final class NanoAccount {
      * @return this address, represented by a 64-character hexadecimal string
      */
     public String toPublicKey() {
-        if (cachedHex == null) {
-            synchronized (this) {
-                if (cachedHex == null)
-                    cachedHex = JNC.ENC_16.encode(keyBytes);
-            }
-        }
-        return cachedHex;
+        String hex = cachedHex;
+        if (hex == null)
+            cachedHex = hex = NanoCodec.encodeHex(keyBytes);
+        return hex;
     }
     
     /**
@@ -214,47 +218,40 @@ public final class NanoAccount {
      * <p>Example returned value: {@code nano_34qjpc8t1u6wnb584pc4iwsukwa8jhrobpx4oea5gbaitnqafm6qsgoacpiz}</p>
      * @return this address, complete with prefix and checksum
      */
-    public synchronized String toAddress() {
-        if (cachedAddress == null) {
-            synchronized (this) {
-                if (cachedAddress == null) {
-                    // Generate
-                    StringBuilder sb = new StringBuilder(
-                            60 + (getPrefix() == null ? 0 : getPrefix().length() + 1)); // Capacity
-                    if (getPrefix() != null)
-                        sb.append(getPrefix()).append(PREFIX_SEPARATOR_CHAR);
-                    cachedAddress = sb.append(getAddressSegment()).append(getAddressChecksumSegment()).toString();
-                    return cachedAddress;
-                }
+    public String toAddress() {
+        String address = cachedAddress;
+        if (address == null) {
+            int prefixLen = prefix == null ? 0 : prefix.length() + 1;
+            char[] chars = new char[prefixLen + NanoCodec.KEY_CHARS + NanoCodec.CHECKSUM_CHARS];
+            if (prefix != null) {
+                prefix.getChars(0, prefix.length(), chars, 0);
+                chars[prefix.length()] = PREFIX_SEPARATOR_CHAR;
             }
+            NanoCodec.encodeKey(keyBytes, 0, chars, prefixLen);
+            NanoCodec.encodeChecksum(checksumBytes(), chars, prefixLen + NanoCodec.KEY_CHARS);
+            cachedAddress = address = new String(chars);
         }
-        return cachedAddress;
+        return address;
     }
     
     /**
      * @return this address, without the prefix or checksum segments
      */
     public String getAddressSegment() {
-        if (cachedSegAddr == null) {
-            synchronized (this) {
-                if (cachedSegAddr == null)
-                    cachedSegAddr = JNC.ENC_32.encode(getPublicKeyBytes());
-            }
-        }
-        return cachedSegAddr;
+        String segment = cachedSegAddr;
+        if (segment == null)
+            cachedSegAddr = segment = NanoCodec.encodeKey(keyBytes);
+        return segment;
     }
     
     /**
      * @return the checksum segment of this address
      */
     public String getAddressChecksumSegment() {
-        if (cachedSegCheck == null) {
-            synchronized (this) {
-                if (cachedSegCheck == null)
-                    cachedSegCheck = JNC.ENC_32.encode(getChecksumBytes());
-            }
-        }
-        return cachedSegCheck;
+        String segment = cachedSegCheck;
+        if (segment == null)
+            cachedSegCheck = segment = NanoCodec.encodeChecksum(checksumBytes());
+        return segment;
     }
     
     
@@ -403,10 +400,19 @@ public final class NanoAccount {
                 || (separatorIndex != -1 && (address.length() - separatorIndex) != 61)) // Prefix
             throw new AddressFormatException("Address length is invalid.");
         
-        return parseAddressSegment(
-                address.substring(address.length() - 60, address.length() - 8),       // Address
-                (separatorIndex == -1 ? null : address.substring(0, separatorIndex)), // Prefix
-                address.substring(address.length() - 8));                             // Checksum
+        int keyOffset = address.length() - 60;
+        String prefix = separatorIndex == -1 ? null : address.substring(0, separatorIndex);
+        validatePrefix(prefix);
+        byte[] keyBytes = decodeKey(address, keyOffset);
+        byte[] checksum = NanoCodec.decodeChecksum(address, keyOffset + NanoCodec.KEY_CHARS);
+        if (checksum == null)
+            throw new AddressFormatException("Address contains illegal characters.");
+        byte[] expectedChecksum = calculateChecksumBytes(keyBytes);
+        if (!Arrays.equals(checksum, expectedChecksum))
+            throw new AddressFormatException("Provided checksum did not match the computed checksum.");
+        
+        // The given string is the canonical address, so keep it for toAddress()
+        return new NanoAccount(prefix, keyBytes, expectedChecksum, address, null, null, null, null);
     }
     
     /**
@@ -448,15 +454,12 @@ public final class NanoAccount {
             throw new IllegalArgumentException("Address argument cannot be null.");
         if (address.length() != 52)
             throw new AddressFormatException("Address string must be 52 characters long.");
-        if (address.charAt(0) != '1' && address.charAt(0) != '3')
-            throw new AddressFormatException("Addresses may only begin with characters 1 or 3.");
         validatePrefix(prefix);
         if (checksum != null && checksum.length() != 8)
             throw new AddressFormatException("Expected checksum string must be 8 characters long.");
         
         // Create object
-        NanoAccount account = new NanoAccount(
-                prefix, decodeKey(address, JNC.ENC_32), address, null, null);
+        NanoAccount account = new NanoAccount(prefix, decodeKey(address, 0), address, null, null);
         
         // Verify checksum (if provided)
         if (checksum != null && !checksum.equals(account.getAddressChecksumSegment()))
@@ -489,8 +492,10 @@ public final class NanoAccount {
         if (key == null) throw new IllegalArgumentException("Public key argument cannot be null.");
         if (key.length() != 64) throw new AddressFormatException("Key string must be 64 characters long.");
         
-        key = key.toUpperCase();
-        return new NanoAccount(prefix, decodeKey(key, JNC.ENC_16), null, key, null);
+        byte[] keyBytes = NanoCodec.decodeHex(key);
+        if (keyBytes == null)
+            throw new AddressFormatException("Key string contains illegal characters.");
+        return new NanoAccount(prefix, keyBytes, null, key.toUpperCase(), null);
     }
     
     
@@ -527,6 +532,53 @@ public final class NanoAccount {
     }
     
     
+    /**
+     * Parses each of the given addresses or public keys, in the same manner as {@link #parse(String)}.
+     *
+     * @param strs the account address strings
+     * @return a list of the created account objects, in the same order as the given strings
+     * @throws AddressFormatException if any of the strings do not meet the required format criteria
+     * @see #parse(String)
+     */
+    public static List<NanoAccount> parseAll(Collection<String> strs) {
+        return parseAll(strs, DEFAULT_PREFIX);
+    }
+    
+    /**
+     * Parses each of the given addresses or public keys, in the same manner as {@link #parse(String, String)}.
+     *
+     * @param strs          the account address strings
+     * @param defaultPrefix the default protocol identifier prefix (without separator), or null for no prefix
+     * @return a list of the created account objects, in the same order as the given strings
+     * @throws AddressFormatException if any of the strings do not meet the required format criteria
+     * @see #parse(String, String)
+     */
+    public static List<NanoAccount> parseAll(Collection<String> strs, String defaultPrefix) {
+        if (strs == null) throw new IllegalArgumentException("Account strings collection cannot be null.");
+        List<NanoAccount> accounts = new ArrayList<>(strs.size());
+        for (String str : strs)
+            accounts.add(parse(str, defaultPrefix));
+        return accounts;
+    }
+    
+    /**
+     * Formats each of the given accounts as an address string, as returned by {@link #toAddress()}.
+     *
+     * @param accounts the accounts
+     * @return a list of the address strings, in the same order as the given accounts
+     * @see #toAddress()
+     */
+    public static List<String> encodeAll(Collection<NanoAccount> accounts) {
+        if (accounts == null) throw new IllegalArgumentException("Accounts collection cannot be null.");
+        List<String> addresses = new ArrayList<>(accounts.size());
+        for (NanoAccount account : accounts) {
+            if (account == null) throw new IllegalArgumentException("Accounts collection cannot contain null.");
+            addresses.add(account.toAddress());
+        }
+        return addresses;
+    }
+    
+    
     /**
      * Checks whether a given address string is a valid Nano address. For an address to be considered valid, the format
      * must be of an appropriate length, contain an approved prefix, and have a matching checksum value.
@@ -608,16 +660,14 @@ public final class NanoAccount {
         return JNH.reverseArray(JNH.blake2b(5, keyBytes));
     }
     
-    /** Helper method to calculate bytes from an encoded address. */
-    private static byte[] decodeKey(String encodedData, BaseEncoder decoder) {
-        byte[] keyBytes;
-        try {
-            keyBytes = decoder.decode(encodedData);
-        } catch (IllegalArgumentException e) { // Catch illegal characters
-            throw new AddressFormatException(e);
-        }
-        if (keyBytes.length != NanoConst.LEN_KEY_B)
-            throw new AddressFormatException("Address/key bytes could not be decoded.");
+    /** Helper method to calculate key bytes from an encoded address segment. */
+    private static byte[] decodeKey(String address, int offset) {
+        char first = address.charAt(offset);
+        if (first != '1' && first != '3')
+            throw new AddressFormatException("Addresses may only begin with characters 1 or 3.");
+        byte[] keyBytes = NanoCodec.decodeKey(address, offset);
+        if (keyBytes == null)
+            throw new AddressFormatException("Address contains illegal characters.");
         return keyBytes;
     }
     
@@ -625,8 +675,11 @@ public final class NanoAccount {
         if (prefix == null) return;
         if (prefix.length() == 0)
             throw new AddressFormatException("Address prefix cannot be empty.");
-        if (!PREFIX_VALIDATE_PATTERN.matcher(prefix).matches())
-            throw new AddressFormatException("Address prefix contains an illegal character.");
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'A' || c > 'Z') && (c < 'a' || c > 'z'))
+                throw new AddressFormatException("Address prefix contains an illegal character.");
+        }
     }
     
     private static boolean comparePrefix(String prefix, String[] prefixes) {
@@ -643,7 +696,7 @@ public final class NanoAccount {
             String str = json.getAsString();
             if (str.equals("") || str.equals("0"))
                 return null;
-            return parse(str);
+            return InternPool.ACCOUNTS.intern(str, NanoAccount::parse);
         }
         
         @Override
@@ -7,14 +7,12 @@ package uk.oczadly.karl.jnano.model;
 
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
-import uk.oczadly.karl.jnano.internal.JNC;
 import uk.oczadly.karl.jnano.internal.utils.UnitHelper;
 import uk.oczadly.karl.jnano.util.NanoUnit;
 
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Objects;
 
 /**
  * An immutable class which represents a quantity of Nano.
@@ -36,26 +34,35 @@ import java.util.Objects;
  * System.out.println("Ban: " + amount.getAs(UNIT_BAN)); // "Ban: 2.79"
  * }</pre>
  *
+ * <p>Values are stored as a pair of {@code long} words holding the unsigned 128-bit raw value, so arithmetic,
+ * comparisons and conversion to and from raw and base-unit strings do not allocate any intermediate {@link BigInteger}
+ * or {@link BigDecimal} objects. For summing large numbers of amounts, consider using an {@link AmountArray}.</p>
+ *
  * @author Karl Oczadly
+ * @see AmountArray
  */
 @JsonAdapter(NanoAmount.JsonAdapter.class)
 public final class NanoAmount implements Comparable<NanoAmount> {
     
-    private static final BigInteger MAX_VAL_RAW = JNC.BIGINT_MAX_128;
     private static final Denomination BASE_UNIT = NanoUnit.BASE_UNIT;
-    private static final BigInteger TOSTRING_THRESH = BigInteger.TEN.pow(BASE_UNIT.getExponent() - 6);
+    private static final long MASK_32 = 0xFFFFFFFFL;
+    private static final int[] POW10_INT = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+            1000000000 };
+    private static final int MAX_DIGITS = 39;
     
     /** A zero-value amount. */
-    public static final NanoAmount ZERO = new NanoAmount(BigInteger.ZERO);
+    public static final NanoAmount ZERO = new NanoAmount(0, 0);
     
     /** The maximum possible balance value, equal to the amount created in the genesis block. */
-    public static final NanoAmount MAX_VALUE = new NanoAmount(MAX_VAL_RAW);
+    public static final NanoAmount MAX_VALUE = new NanoAmount(-1, -1);
     
     /**
      * A constant value representing a single {@link NanoUnit#RAW raw} unit ({@code 1 raw}).
      * <p>This is the smallest representable quantity of Nano possible.</p>
      */
-    public static final NanoAmount ONE_RAW = new NanoAmount(BigInteger.ONE);
+    public static final NanoAmount ONE_RAW = new NanoAmount(0, 1);
+    
+    private static final NanoAmount TOSTRING_THRESH = valueOfRawExponent(BASE_UNIT.getExponent() - 6);
     
     /**
      * A constant value representing a single {@link NanoUnit#BASE_UNIT Nano} unit ({@code 1 Nano}).
@@ -65,22 +72,13 @@ public final class NanoAmount implements Comparable<NanoAmount> {
     public static final NanoAmount ONE_NANO = NanoAmount.valueOfNano(BigDecimal.ONE);
     
     
-    private final BigInteger rawValue;
+    final long hi, lo; // Unsigned 128-bit raw value
+    private volatile BigInteger cachedRawValue; // performance optimization
     private volatile BigDecimal cachedBaseUnitValue; // performance optimization
     
-    private NanoAmount(BigInteger rawValue) {
-        if (rawValue == null)
-            throw new IllegalArgumentException("Raw value cannot be null.");
-        if (rawValue.compareTo(BigInteger.ZERO) < 0)
-            throw new IllegalArgumentException("NanoAmount cannot represent negative amounts.");
-        if (rawValue.compareTo(MAX_VAL_RAW) > 0)
-            throw new IllegalArgumentException("NanoAmount value is too large.");
-        this.rawValue = rawValue;
-    }
-    
-    private NanoAmount(BigInteger rawValue, BigDecimal cachedBaseUnitValue) {
-        this(rawValue);
-        this.cachedBaseUnitValue = cachedBaseUnitValue.stripTrailingZeros();
+    private NanoAmount(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
     }
     
     
@@ -90,7 +88,33 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return the value, in raw units
      */
     public BigInteger getAsRaw() {
-        return rawValue;
+        BigInteger raw = cachedRawValue;
+        if (raw == null) {
+            if (hi == 0 && lo >= 0) {
+                raw = BigInteger.valueOf(lo);
+            } else {
+                byte[] bytes = new byte[16];
+                writeTo(bytes, 0);
+                raw = new BigInteger(1, bytes);
+            }
+            cachedRawValue = raw;
+        }
+        return raw;
+    }
+    
+    /**
+     * Writes the raw value of this amount into the given array as 16 big-endian bytes, as used within blocks.
+     *
+     * @param dest   the destination array
+     * @param offset the position in the array at which the first byte is written
+     */
+    public void writeTo(byte[] dest, int offset) {
+        if (offset < 0 || offset > dest.length - 16)
+            throw new IndexOutOfBoundsException("Not enough space in the destination array.");
+        for (int i = 0; i < 8; i++) {
+            dest[offset + i] = (byte)(hi >>> (56 - i * 8));
+            dest[offset + 8 + i] = (byte)(lo >>> (56 - i * 8));
+        }
     }
     
     /**
@@ -117,7 +141,7 @@ public final class NanoAmount implements Comparable<NanoAmount> {
             if (cachedBaseUnitValue != null)
                 return cachedBaseUnitValue; // Return from cache
         }
-        BigDecimal amount = UnitHelper.convert(new BigDecimal(rawValue), 0, unit.getExponent());
+        BigDecimal amount = UnitHelper.convert(new BigDecimal(getAsRaw()), 0, unit.getExponent());
         if (unit == BASE_UNIT)
             cachedBaseUnitValue = amount; // Store in cache
         return amount;
@@ -132,7 +156,7 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      */
     @Override
     public String toString() {
-        boolean useBase = rawValue.equals(BigInteger.ZERO) || rawValue.compareTo(TOSTRING_THRESH) >= 0;
+        boolean useBase = isZero() || compareTo(TOSTRING_THRESH) >= 0;
         return toString(useBase ? BASE_UNIT : NanoUnit.RAW);
     }
     
@@ -153,7 +177,11 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return this value in raw, as a string
      */
     public String toRawString() {
-        return rawValue.toString();
+        if (hi == 0)
+            return Long.toUnsignedString(lo);
+        char[] digits = new char[MAX_DIGITS];
+        int start = formatDigits(hi, lo, digits);
+        return new String(digits, start, MAX_DIGITS - start);
     }
     
     /**
@@ -165,7 +193,39 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return this value in the base unit, as a string
      */
     public String toNanoString() {
-        return getAsNano().toPlainString();
+        return toDecimalString(BASE_UNIT.getExponent());
+    }
+    
+    /**
+     * Returns true if this amount is equal to zero.
+     *
+     * @return true if this amount is zero
+     */
+    public boolean isZero() {
+        return (hi | lo) == 0;
+    }
+    
+    /** Formats the raw value as a plain decimal string shifted by the exponent, without trailing zeroes. */
+    private String toDecimalString(int exponent) {
+        char[] digits = new char[MAX_DIGITS];
+        int start = formatDigits(hi, lo, digits);
+        int intLen = MAX_DIGITS - start - exponent; // Digits before the decimal point
+        int end = MAX_DIGITS;
+        while (end > start && end > MAX_DIGITS - exponent && digits[end - 1] == '0')
+            end--; // Strip trailing zeroes from the fractional part
+        int fracLen = end - Math.max(start, MAX_DIGITS - exponent);
+        if (fracLen == 0)
+            return intLen > 0 ? new String(digits, start, intLen) : "0";
+        
+        StringBuilder sb = new StringBuilder(MAX_DIGITS + 2 - Math.min(intLen, 0));
+        if (intLen > 0) {
+            sb.append(digits, start, intLen).append('.');
+        } else {
+            sb.append("0.");
+            for (int i = intLen; i < 0; i++)
+                sb.append('0');
+        }
+        return sb.append(digits, end - fracLen, fracLen).toString();
     }
     
     
@@ -179,17 +239,19 @@ public final class NanoAmount implements Comparable<NanoAmount> {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof NanoAmount)) return false;
-        return Objects.equals(rawValue, ((NanoAmount)o).rawValue);
+        NanoAmount that = (NanoAmount)o;
+        return hi == that.hi && lo == that.lo;
     }
     
     @Override
     public int hashCode() {
-        return rawValue.hashCode();
+        return 31 * Long.hashCode(hi) + Long.hashCode(lo);
     }
     
     @Override
     public int compareTo(NanoAmount o) {
-        return rawValue.compareTo(o.rawValue);
+        int c = Long.compareUnsigned(hi, o.hi);
+        return c != 0 ? c : Long.compareUnsigned(lo, o.lo);
     }
     
     
@@ -201,11 +263,12 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @throws ArithmeticException if the resulting amount is above the maximum possible balance
      */
     public NanoAmount add(NanoAmount amount) {
-        if (amount.equals(ZERO)) return this;
-        BigInteger newVal = rawValue.add(amount.rawValue);
-        if (newVal.compareTo(MAX_VAL_RAW) > 0)
+        if (amount.isZero()) return this;
+        long sumLo = lo + amount.lo;
+        long sumHi = hi + amount.hi + addCarry(lo, amount.lo, sumLo);
+        if (addCarry(hi, amount.hi, sumHi) != 0)
             throw new ArithmeticException("Result amount is greater than the largest representable amount.");
-        return valueOfRaw(newVal);
+        return valueOfRaw(sumHi, sumLo);
     }
     
     /**
@@ -216,10 +279,12 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @throws ArithmeticException if {@code amount} is greater than this
      */
     public NanoAmount subtract(NanoAmount amount) {
-        if (amount.equals(ZERO)) return this;
-        if (this.equals(amount)) return ZERO;
-        if (this.compareTo(amount) < 0) throw new ArithmeticException("Result amount is negative.");
-        return valueOfRaw(rawValue.subtract(amount.rawValue));
+        if (amount.isZero()) return this;
+        long diffLo = lo - amount.lo;
+        long diffHi = hi - amount.hi - subBorrow(lo, amount.lo, diffLo);
+        if (subBorrow(hi, amount.hi, diffHi) != 0)
+            throw new ArithmeticException("Result amount is negative.");
+        return valueOfRaw(diffHi, diffLo);
     }
     
     /**
@@ -231,7 +296,18 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return the absolute difference between this and {@code other}
      */
     public NanoAmount difference(NanoAmount other) {
-        return valueOfRaw(rawValue.subtract(other.rawValue).abs());
+        return compareTo(other) >= 0 ? subtract(other) : other.subtract(this);
+    }
+    
+    
+    /** Returns the carry (0 or 1) out of the unsigned addition {@code a + b = sum}. */
+    static long addCarry(long a, long b, long sum) {
+        return ((a & b) | ((a | b) & ~sum)) >>> 63;
+    }
+    
+    /** Returns the borrow (0 or 1) out of the unsigned subtraction {@code a - b = diff}. */
+    static long subBorrow(long a, long b, long diff) {
+        return ((~a & b) | (~(a ^ b) & diff)) >>> 63;
     }
     
     
@@ -245,7 +321,11 @@ public final class NanoAmount implements Comparable<NanoAmount> {
     public static NanoAmount valueOf(long val, Denomination unit) {
         if (unit.getExponent() == 0)
             return valueOfRaw(val); // Skip conversion if source unit is raw
-        return valueOf(BigDecimal.valueOf(val), unit);
+        if (val < 0)
+            throw new IllegalArgumentException("Source amount cannot be negative.");
+        long[] words = { val & MASK_32, val >>> 32, 0, 0 };
+        multiplyPow10(words, unit.getExponent());
+        return valueOf(words);
     }
     
     /**
@@ -271,11 +351,10 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      *                                  {@code unit}
      */
     public static NanoAmount valueOf(BigDecimal val, Denomination unit) {
-        if (unit == BASE_UNIT) {
-            return new NanoAmount(UnitHelper.convertToRaw(val, unit.getExponent()), val);
-        } else {
-            return new NanoAmount(UnitHelper.convertToRaw(val, unit.getExponent()));
-        }
+        NanoAmount amount = valueOfRaw(UnitHelper.convertToRaw(val, unit.getExponent()));
+        if (unit == BASE_UNIT && !amount.isZero() && !amount.equals(ONE_RAW))
+            amount.cachedBaseUnitValue = val.stripTrailingZeros();
+        return amount;
     }
     
     /**
@@ -290,7 +369,9 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      *                                  {@code unit}
      */
     public static NanoAmount valueOf(String val, Denomination unit) {
-        return valueOf(new BigDecimal(val), unit);
+        if (val == null) throw new IllegalArgumentException("Value cannot be null.");
+        NanoAmount amount = parseDecimal(val, unit.getExponent());
+        return amount != null ? amount : valueOf(new BigDecimal(val), unit);
     }
     
     /**
@@ -300,9 +381,16 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return a {@link NanoAmount} instance representing the given value
      */
     public static NanoAmount valueOfRaw(BigInteger raw) {
-        if (raw.equals(BigInteger.ZERO)) return ZERO;
-        if (raw.equals(BigInteger.ONE)) return ONE_RAW;
-        return new NanoAmount(raw);
+        if (raw == null)
+            throw new IllegalArgumentException("Raw value cannot be null.");
+        if (raw.signum() < 0)
+            throw new IllegalArgumentException("NanoAmount cannot represent negative amounts.");
+        if (raw.bitLength() > 128)
+            throw new IllegalArgumentException("NanoAmount value is too large.");
+        NanoAmount amount = valueOfRaw(raw.shiftRight(64).longValue(), raw.longValue());
+        if (amount.cachedRawValue == null)
+            amount.cachedRawValue = raw;
+        return amount;
     }
     
     /**
@@ -313,7 +401,9 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @throws NumberFormatException if val is not a valid integer
      */
     public static NanoAmount valueOfRaw(String raw) {
-        return valueOfRaw(new BigInteger(raw));
+        if (raw == null) throw new IllegalArgumentException("Raw value cannot be null.");
+        NanoAmount amount = raw.indexOf('.') < 0 ? parseDecimal(raw, 0) : null;
+        return amount != null ? amount : valueOfRaw(new BigInteger(raw));
     }
     
     /**
@@ -323,7 +413,30 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return a {@link NanoAmount} instance representing the given value
      */
     public static NanoAmount valueOfRaw(long raw) {
-        return valueOfRaw(BigInteger.valueOf(raw));
+        if (raw < 0)
+            throw new IllegalArgumentException("NanoAmount cannot represent negative amounts.");
+        return valueOfRaw(0, raw);
+    }
+    
+    /**
+     * Returns a NanoAmount from 16 big-endian bytes of the given array, as used within blocks. This is the inverse of
+     * {@link #writeTo(byte[], int)}.
+     *
+     * @param src    the source array
+     * @param offset the position of the first byte in the array
+     * @return a {@link NanoAmount} instance representing the given value
+     */
+    public static NanoAmount valueOfRaw(byte[] src, int offset) {
+        if (src == null)
+            throw new IllegalArgumentException("Source array cannot be null.");
+        if (offset < 0 || offset > src.length - 16)
+            throw new IndexOutOfBoundsException("Not enough bytes in the source array.");
+        long hi = 0, lo = 0;
+        for (int i = 0; i < 8; i++) {
+            hi = (hi << 8) | (src[offset + i] & 0xFF);
+            lo = (lo << 8) | (src[offset + 8 + i] & 0xFF);
+        }
+        return valueOfRaw(hi, lo);
     }
     
     /**
@@ -334,7 +447,20 @@ public final class NanoAmount implements Comparable<NanoAmount> {
      * @return a {@link NanoAmount} instance representing the given value
      */
     public static NanoAmount valueOfRawExponent(int exponent) {
-        return valueOfRaw(BigInteger.TEN.pow(exponent));
+        if (exponent < 0)
+            throw new IllegalArgumentException("Exponent cannot be negative.");
+        long[] words = { 1, 0, 0, 0 };
+        multiplyPow10(words, exponent);
+        return valueOf(words);
+    }
+    
+    /** Returns the amount with the given unsigned 128-bit raw value. */
+    static NanoAmount valueOfRaw(long hi, long lo) {
+        if (hi == 0) {
+            if (lo == 0) return ZERO;
+            if (lo == 1) return ONE_RAW;
+        }
+        return new NanoAmount(hi, lo);
     }
     
     /**
@@ -383,6 +509,100 @@ public final class NanoAmount implements Comparable<NanoAmount> {
     }
     
     
+    /*
+     * The methods below operate on values held as four little-endian 32-bit words, so that each word can be
+     * multiplied or divided by a power of 10 (up to 10^9) without overflowing a long.
+     */
+    
+    private static NanoAmount valueOf(long[] words) {
+        return valueOfRaw((words[3] << 32) | words[2], (words[1] << 32) | words[0]);
+    }
+    
+    /** Computes {@code words = words * mul + add}, throwing if the result does not fit in 128 bits. */
+    private static void multiplyAdd(long[] words, long mul, long add) {
+        long carry = add;
+        for (int i = 0; i < 4; i++) {
+            long t = words[i] * mul + carry;
+            words[i] = t & MASK_32;
+            carry = t >>> 32;
+        }
+        if (carry != 0)
+            throw new IllegalArgumentException("NanoAmount value is too large.");
+    }
+    
+    private static void multiplyPow10(long[] words, int exponent) {
+        if ((words[0] | words[1] | words[2] | words[3]) == 0) return;
+        if (exponent >= MAX_DIGITS)
+            throw new IllegalArgumentException("NanoAmount value is too large.");
+        for (; exponent > 0; exponent -= 9)
+            multiplyAdd(words, POW10_INT[Math.min(exponent, 9)], 0);
+    }
+    
+    /**
+     * Writes the decimal digits of the unsigned 128-bit value into the end of the array.
+     * @return the index of the most significant digit
+     */
+    private static int formatDigits(long hi, long lo, char[] dest) {
+        long[] words = { lo & MASK_32, lo >>> 32, hi & MASK_32, hi >>> 32 };
+        int pos = dest.length;
+        boolean remaining;
+        do {
+            // Divide by 10^9, keeping the remainder as the next 9 digits
+            long rem = 0;
+            for (int i = 3; i >= 0; i--) {
+                long cur = (rem << 32) | words[i];
+                words[i] = cur / 1000000000;
+                rem = cur % 1000000000;
+            }
+            remaining = (words[0] | words[1] | words[2] | words[3]) != 0;
+            for (int i = 0; i < 9 && (remaining || rem != 0 || i == 0); i++) {
+                dest[--pos] = (char)('0' + rem % 10);
+                rem /= 10;
+            }
+        } while (remaining);
+        return pos;
+    }
+    
+    /**
+     * Parses a plain decimal string of digits with an optional decimal point, in the given unit exponent.
+     * @return the amount, or null if the string is not in a plain decimal format
+     */
+    private static NanoAmount parseDecimal(String val, int exponent) {
+        int len = val.length(), point = -1;
+        for (int i = 0; i < len; i++) {
+            char c = val.charAt(i);
+            if (c == '.' && point < 0) {
+                point = i;
+            } else if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        if (len == 0 || (len == 1 && point == 0)) return null;
+        
+        int end = len, scale = 0;
+        if (point >= 0) {
+            while (end > point + 1 && val.charAt(end - 1) == '0')
+                end--; // Trailing zeroes of the fractional part
+            scale = end - point - 1;
+            if (scale > exponent)
+                throw new IllegalArgumentException("Source amount has too many decimal places.");
+        }
+        long[] words = new long[4];
+        int chunk = 0, chunkLen = 0;
+        for (int i = 0; i < end; i++) {
+            if (i == point) continue;
+            chunk = chunk * 10 + (val.charAt(i) - '0');
+            if (++chunkLen == 9) {
+                multiplyAdd(words, POW10_INT[9], chunk);
+                chunk = chunkLen = 0;
+            }
+        }
+        multiplyAdd(words, POW10_INT[chunkLen], chunk);
+        multiplyPow10(words, exponent - scale);
+        return valueOf(words);
+    }
+    
+    
     /**
      * This interface is to be implemented by custom units or value denominations.
      *
@@ -400,13 +620,13 @@ public final class NanoAmount implements Comparable<NanoAmount> {
          * @return the exponent of this denomination
          */
         int getExponent();
-    
+        
         /**
          * Returns the equivalent value of a single unit in {@code raw} (the smallest possible unit).
          * @return the equivalent raw value of 1 unit
          */
         BigInteger getRawValue();
-    
+        
         /**
          * Returns the friendly display name of this unit, eg: {@code Nano}.
          * @return the display name of this denomination
@@ -421,7 +641,7 @@ public final class NanoAmount implements Comparable<NanoAmount> {
         private final String name;
         private final int exponent;
         private final BigInteger rawVal;
-    
+        
         /**
          * Constructs a new unit Denomination constant.
          * @param name     the name of the unit
@@ -442,7 +662,7 @@ public final class NanoAmount implements Comparable<NanoAmount> {
         public BigInteger getRawValue() {
             return rawVal;
         }
-    
+        
         @Override
         public String getDisplayName() {
             return name;
@@ -10,15 +10,28 @@ import com.google.gson.JsonParseException;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
 import uk.oczadly.karl.jnano.internal.JNC;
-import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.internal.NanoConst;
+import uk.oczadly.karl.jnano.model.Hash256;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.interfaces.IBlock;
+import uk.oczadly.karl.jnano.model.block.interfaces.IBlockAccount;
+import uk.oczadly.karl.jnano.model.epoch.EpochUpgradeRegistry;
+import uk.oczadly.karl.jnano.model.epoch.UnrecognizedEpochException;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
 import uk.oczadly.karl.jnano.util.CryptoUtil;
+import uk.oczadly.karl.jnano.util.NetworkConstants;
+import uk.oczadly.karl.jnano.util.SigningKey;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -34,9 +47,10 @@ import java.util.Objects;
  * {@link BlockDeserializer} class. This class can automatically be serialized and deserialized by Gson, as a
  * built-in JSON adapter is provided and automatically registered.</p>
  */
-@JsonAdapter(BlockDeserializer.JsonAdapter.class)
+@JsonAdapter(BlockDeserializer.StreamingAdapter.class)
 public abstract class Block implements IBlock {
     
+    private transient volatile Hash256 hashValue;
     private transient volatile HexData hash;
     
     @Expose @SerializedName("type")
@@ -85,13 +99,27 @@ public abstract class Block implements IBlock {
     
     @Override
     public final HexData getHash() {
-        if (hash == null) {
+        HexData h = hash;
+        if (h == null)
+            hash = h = getHash256().toHexData();
+        return h;
+    }
+    
+    /**
+     * Returns the hash of this block as a fixed-width {@link Hash256} value. This is cheaper to compare, hash and
+     * store than the value returned by {@link #getHash()}, and should be preferred when keying large collections.
+     *
+     * @return the hash of this block
+     */
+    public final Hash256 getHash256() {
+        Hash256 h = hashValue;
+        if (h == null) {
             synchronized (this) {
-                if (hash == null)
-                    hash = CryptoUtil.hash(hashables());
+                if ((h = hashValue) == null)
+                    hashValue = h = BlockHasher.hash(this);
             }
         }
-        return hash;
+        return h;
     }
     
     /**
@@ -149,6 +177,25 @@ public abstract class Block implements IBlock {
         return sig;
     }
     
+    /**
+     * Signs this block using the provided signing key, and updates the signature attribute of this block.
+     *
+     * <p>The computed value will overwrite the existing {@code signature} value in this block. Note that this will
+     * not update any {@code account} fields the block may have, even if the supplied key does not match the
+     * account.</p>
+     *
+     * @param key the expanded key of the signer
+     * @return the computed signature value
+     */
+    public final synchronized HexData sign(SigningKey key) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
+        
+        HexData sig = key.sign(sigBytes());
+        setSignature(sig);
+        return sig;
+    }
+    
     /**
      * Tests whether the signature is valid and was signed by the specified account.
      *
@@ -172,7 +219,7 @@ public abstract class Block implements IBlock {
      * @return the content bytes
      */
     protected byte[][] sigBytes() {
-        return new byte[][] { getHash().toByteArray() };
+        return new byte[][] { getHash256().toByteArray() };
     }
     
     /**
@@ -181,6 +228,22 @@ public abstract class Block implements IBlock {
      */
     protected abstract byte[][] hashables();
     
+    /** Returns the 16-byte big-endian encoding of a balance, as used within the hashables. */
+    static byte[] balanceBytes(NanoAmount balance) {
+        byte[] bytes = new byte[16];
+        balance.writeTo(bytes, 0);
+        return bytes;
+    }
+    
+    /**
+     * Writes the hashable fields of this block to the hasher. Subclasses provided by this library override this to
+     * write their fields directly, rather than copying them into the arrays returned by {@link #hashables()}.
+     */
+    void writeHashables(BlockHasher hasher) {
+        for (byte[] field : hashables())
+            hasher.put(field);
+    }
+    
     @Override
     public final WorkSolution getWorkSolution() {
         return work;
@@ -243,6 +306,36 @@ public abstract class Block implements IBlock {
         return json;
     }
     
+    /**
+     * Returns the length of this block when encoded in binary by {@link #writeTo(ByteBuffer)}.
+     * @return the encoded length, in bytes
+     * @throws IllegalArgumentException if the block type cannot be encoded in binary
+     */
+    public final int getBinaryLength() {
+        return BlockCodec.encodedLength(this);
+    }
+    
+    /**
+     * Encodes this block into the given buffer in a compact fixed-length binary format, advancing its position.
+     *
+     * <p>The fields are written in the same layout as the node's network protocol, preceded by a single tag byte
+     * identifying the block type (and the subtype of state blocks). State blocks occupy 217 bytes in total. A null
+     * signature or work value is written as zero. Blocks may be decoded using {@link #readFrom(ByteBuffer)}, or in bulk
+     * through a {@link BlockInputStream}. The byte order of the buffer is ignored.</p>
+     *
+     * <p>Only the block types provided by this library are supported. Account prefixes are not retained.</p>
+     *
+     * @param dest the destination buffer
+     * @throws IllegalArgumentException  if the block type cannot be encoded in binary
+     * @throws IndexOutOfBoundsException if there is not enough space remaining in the buffer
+     * @see #getBinaryLength()
+     */
+    public final void writeTo(ByteBuffer dest) {
+        if (dest == null)
+            throw new IllegalArgumentException("Destination buffer cannot be null.");
+        BlockCodec.write(this, dest);
+    }
+    
     /**
      * Fill blank or missing parameters with {@link JsonObject#addProperty(String, String)}.
      * <p>This method should be overridden by subclasses where applicable.</p>
@@ -285,7 +378,7 @@ public abstract class Block implements IBlock {
         Block block = (Block)obj;
         if (!getTypeString().equalsIgnoreCase(block.getTypeString()))
             return false; // Type doesn't match
-        return getHash().equals(block.getHash());
+        return getHash256().equals(block.getHash256());
     }
     
     /**
@@ -305,7 +398,7 @@ public abstract class Block implements IBlock {
     
     @Override
     public final int hashCode() {
-        return getHash().hashCode();
+        return getHash256().hashCode();
     }
     
     /**
@@ -315,6 +408,124 @@ public abstract class Block implements IBlock {
     public abstract Block clone();
     
     
+    /**
+     * Tests whether the signatures of many blocks are valid, using the {@link NetworkConstants#NANO Nano network}'s
+     * epoch registry to identify the signers of epoch blocks.
+     *
+     * <p>Only blocks which contain their owning account ({@link IBlockAccount}) are supported by this method.
+     * {@link StateBlock} epoch blocks are checked against the signer of their epoch upgrade, as with
+     * {@link StateBlock#verifySignature(EpochUpgradeRegistry)}.</p>
+     *
+     * @param blocks the blocks to verify
+     * @return an array containing the result of each block, in the same order as the given list
+     * @throws IllegalArgumentException   if a block does not contain an account
+     * @throws UnrecognizedEpochException if an epoch block's version was not recognized
+     * @see #verifySignatures(List, EpochUpgradeRegistry)
+     */
+    public static boolean[] verifySignatures(List<? extends Block> blocks) {
+        return verifySignatures(blocks, NetworkConstants.NANO.getEpochUpgrades());
+    }
+    
+    /**
+     * Tests whether the signatures of many blocks are valid.
+     *
+     * <p>Only blocks which contain their owning account ({@link IBlockAccount}) are supported by this method.
+     * {@link StateBlock} epoch blocks are checked against the signer of their epoch upgrade, as with
+     * {@link StateBlock#verifySignature(EpochUpgradeRegistry)}.</p>
+     *
+     * <p>The signatures are checked using randomized batch verification, which is significantly faster than
+     * verifying each block individually, and the work is distributed across the common fork-join pool. Any failing
+     * batches are re-checked block by block, so the results are the same as calling
+     * {@link #verifySignature(NanoAccount)} for each block.</p>
+     *
+     * @param blocks        the blocks to verify
+     * @param epochRegistry the epoch registry to be used when checking epoch blocks
+     * @return an array containing the result of each block, in the same order as the given list; a block with a null
+     *         {@code signature} is never valid
+     * @throws IllegalArgumentException   if a block does not contain an account
+     * @throws UnrecognizedEpochException if an epoch block's version was not recognized
+     */
+    public static boolean[] verifySignatures(List<? extends Block> blocks, EpochUpgradeRegistry epochRegistry) {
+        if (blocks == null)
+            throw new IllegalArgumentException("Blocks list cannot be null.");
+        if (epochRegistry == null)
+            throw new IllegalArgumentException("Epoch registry cannot be null.");
+        
+        List<NanoAccount> signers = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            if (block instanceof StateBlock) {
+                signers.add(((StateBlock)block).getSigner(epochRegistry));
+            } else if (block instanceof IBlockAccount) {
+                signers.add(((IBlockAccount)block).getAccount());
+            } else {
+                throw new IllegalArgumentException("Block does not contain an account.");
+            }
+        }
+        return verifySignatures(blocks, signers);
+    }
+    
+    /**
+     * Tests whether the signatures of many blocks are valid, each checked against the corresponding account.
+     *
+     * <p>The signatures are checked using randomized batch verification, which is significantly faster than
+     * verifying each block individually, and the work is distributed across the common fork-join pool. Any failing
+     * batches are re-checked block by block, so the results are the same as calling
+     * {@link #verifySignature(NanoAccount)} for each block.</p>
+     *
+     * @param blocks  the blocks to verify
+     * @param signers the signer accounts (public keys) of each block, in the same order
+     * @return an array containing the result of each block, in the same order as the given list; a block with a null
+     *         {@code signature} is never valid
+     */
+    public static boolean[] verifySignatures(List<? extends Block> blocks, List<NanoAccount> signers) {
+        if (blocks == null)
+            throw new IllegalArgumentException("Blocks list cannot be null.");
+        if (signers == null)
+            throw new IllegalArgumentException("Signers list cannot be null.");
+        if (blocks.size() != signers.size())
+            throw new IllegalArgumentException("Blocks and signers lists must be the same size.");
+        
+        int count = 0;
+        int[] indexes = new int[blocks.size()];
+        byte[][] data = new byte[blocks.size()][], sigs = new byte[blocks.size()][], keys = new byte[blocks.size()][];
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            NanoAccount signer = signers.get(i);
+            if (block == null)
+                throw new IllegalArgumentException("Block cannot be null.");
+            if (signer == null)
+                throw new IllegalArgumentException("Account cannot be null.");
+            HexData sig = block.getSignature();
+            if (sig == null) continue; // Never valid
+            
+            byte[][] sigBytes = block.sigBytes();
+            data[count] = sigBytes.length == 1 ? sigBytes[0] : concat(sigBytes);
+            sigs[count] = sig.toByteArray();
+            keys[count] = signer.getPublicKeyBytes();
+            indexes[count++] = i;
+        }
+        boolean[] verified = CryptoUtil.verifySigs(Arrays.copyOf(data, count), Arrays.copyOf(sigs, count),
+                Arrays.copyOf(keys, count));
+        boolean[] results = new boolean[blocks.size()];
+        for (int i = 0; i < count; i++)
+            results[indexes[i]] = verified[i];
+        return results;
+    }
+    
+    private static byte[] concat(byte[][] arrays) {
+        int len = 0;
+        for (byte[] arr : arrays)
+            len += arr.length;
+        byte[] result = new byte[len];
+        int pos = 0;
+        for (byte[] arr : arrays) {
+            System.arraycopy(arr, 0, result, pos, arr.length);
+            pos += arr.length;
+        }
+        return result;
+    }
+    
+    
     /**
      * Parses a block from a given JSON string using the default deserializer.
      * <p>The following types are supported: {@link StateBlock state}, {@link ChangeBlock change}, {@link OpenBlock
@@ -326,10 +537,12 @@ public abstract class Block implements IBlock {
      */
     public static Block parse(String json) {
         try {
-            return parse(JNH.parseJson(json));
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.setLenient(true);
+            return JNC.BLOCK_DESERIALIZER.deserialize(reader);
         } catch (BlockDeserializer.BlockParseException e) {
             throw e;
-        } catch (JsonParseException e) {
+        } catch (IOException | JsonParseException e) {
             throw new BlockDeserializer.BlockParseException(e);
         }
     }
@@ -347,4 +560,21 @@ public abstract class Block implements IBlock {
         return JNC.BLOCK_DESERIALIZER.deserialize(json);
     }
     
+    /**
+     * Decodes a block from the given buffer, as encoded by {@link #writeTo(ByteBuffer)}, advancing its position. The
+     * byte order of the buffer is ignored.
+     *
+     * <p>A zero signature or work value is decoded as null, and accounts will use the default Nano prefix.</p>
+     *
+     * @param src the source buffer
+     * @return a new {@link Block} decoded from the buffer
+     * @throws BlockDeserializer.BlockParseException if the data is truncated or the type is not recognized, in which
+     *                                               case the position of the buffer is left unchanged
+     */
+    public static Block readFrom(ByteBuffer src) {
+        if (src == null)
+            throw new IllegalArgumentException("Source buffer cannot be null.");
+        return BlockCodec.read(src);
+    }
+    
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import uk.oczadly.karl.jnano.internal.NanoConst;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes blocks in the fixed-length binary layout used by the node's network protocol.
+ *
+ * <p>Each block is encoded as a single tag byte followed by the block's fields. The lower 4 bits of the tag hold the
+ * node's block type identifier ({@code 2} to {@code 6}). As the node does not transmit the subtype of state blocks,
+ * the upper 4 bits hold the subtype of state blocks, and are zero for legacy blocks. Following the node, the work
+ * value is little-endian for legacy blocks and big-endian for state blocks. A missing signature or work value is
+ * encoded as zero, and zero values are decoded as null.</p>
+ */
+final class BlockCodec {
+    private BlockCodec() {}
+    
+    static final int LEN_SEND = 152, LEN_RECEIVE = 136, LEN_OPEN = 168, LEN_CHANGE = 136, LEN_STATE = 216;
+    /** The length of the largest encoded block, including the tag. */
+    static final int MAX_LENGTH = LEN_STATE + 1;
+    
+    private static final int TAG_SEND = 2, TAG_RECEIVE = 3, TAG_OPEN = 4, TAG_CHANGE = 5, TAG_STATE = 6;
+    private static final StateBlockSubType[] SUBTYPES = {
+            null, StateBlockSubType.SEND, StateBlockSubType.RECEIVE, StateBlockSubType.OPEN,
+            StateBlockSubType.CHANGE, StateBlockSubType.EPOCH };
+    
+    private static final int LEN_HASH = NanoConst.LEN_HASH_B, LEN_KEY = NanoConst.LEN_KEY_B,
+            LEN_SIG = NanoConst.LEN_SIGNATURE_B, LEN_WORK = 8;
+    
+    
+    /**
+     * Returns the number of bytes following the given tag, or -1 if the tag is not valid.
+     */
+    static int bodyLength(int tag) {
+        int subtype = (tag >>> 4) & 0xF;
+        switch (tag & 0xF) {
+            case TAG_SEND:    return subtype == 0 ? LEN_SEND : -1;
+            case TAG_RECEIVE: return subtype == 0 ? LEN_RECEIVE : -1;
+            case TAG_OPEN:    return subtype == 0 ? LEN_OPEN : -1;
+            case TAG_CHANGE:  return subtype == 0 ? LEN_CHANGE : -1;
+            case TAG_STATE:   return subtype > 0 && subtype < SUBTYPES.length ? LEN_STATE : -1;
+            default:          return -1;
+        }
+    }
+    
+    /**
+     * Returns the encoded length of the block, including the tag.
+     */
+    static int encodedLength(Block block) {
+        return bodyLength(tag(block)) + 1;
+    }
+    
+    /**
+     * Encodes the block into the buffer at its current position, advancing the position.
+     */
+    static void write(Block block, ByteBuffer dest) {
+        int tag = tag(block);
+        int len = bodyLength(tag) + 1;
+        if (dest.remaining() < len)
+            throw new IndexOutOfBoundsException("Not enough space in the destination buffer.");
+        if (dest.hasArray()) {
+            write(block, tag, dest.array(), dest.arrayOffset() + dest.position());
+            dest.position(dest.position() + len);
+        } else {
+            byte[] bytes = new byte[len];
+            write(block, tag, bytes, 0);
+            dest.put(bytes);
+        }
+    }
+    
+    /**
+     * Encodes the block into the array, and returns the number of bytes written.
+     */
+    static int write(Block block, byte[] dest, int offset) {
+        int tag = tag(block);
+        write(block, tag, dest, offset);
+        return bodyLength(tag) + 1;
+    }
+    
+    /**
+     * Decodes a block from the buffer at its current position, advancing the position.
+     */
+    static Block read(ByteBuffer src) {
+        if (!src.hasRemaining())
+            throw new BlockDeserializer.BlockParseException("No block data remaining in the buffer.");
+        int tag = src.get(src.position()) & 0xFF;
+        int len = bodyLength(tag);
+        if (len < 0)
+            throw new BlockDeserializer.BlockParseException("Unrecognized block type tag " + tag + ".");
+        if (src.remaining() < len + 1)
+            throw new BlockDeserializer.BlockParseException("Block data is truncated.");
+        Block block;
+        if (src.hasArray()) {
+            block = read(tag, src.array(), src.arrayOffset() + src.position() + 1);
+        } else {
+            byte[] bytes = new byte[len + 1];
+            src.duplicate().get(bytes);
+            block = read(tag, bytes, 1);
+        }
+        src.position(src.position() + len + 1);
+        return block;
+    }
+    
+    /**
+     * Decodes the body of a block with the given tag, which must be valid.
+     */
+    static Block read(int tag, byte[] src, int offset) {
+        switch (tag & 0xF) {
+            case TAG_SEND:
+                return new SendBlock(readSig(src, offset + 80), readWorkLE(src, offset + 144),
+                        readHash(src, offset), readAccount(src, offset + 32),
+                        NanoAmount.valueOfRaw(src, offset + 64));
+            case TAG_RECEIVE:
+                return new ReceiveBlock(readSig(src, offset + 64), readWorkLE(src, offset + 128),
+                        readHash(src, offset), readHash(src, offset + 32));
+            case TAG_OPEN:
+                return new OpenBlock(readSig(src, offset + 96), readWorkLE(src, offset + 160),
+                        readHash(src, offset), readAccount(src, offset + 64), readAccount(src, offset + 32));
+            case TAG_CHANGE:
+                return new ChangeBlock(readSig(src, offset + 64), readWorkLE(src, offset + 128),
+                        readHash(src, offset), readAccount(src, offset + 32));
+            case TAG_STATE:
+                return new StateBlock(SUBTYPES[tag >>> 4], readSig(src, offset + 144),
+                        readWorkBE(src, offset + 208), readAccount(src, offset), readHash(src, offset + 32),
+                        readAccount(src, offset + 64), NanoAmount.valueOfRaw(src, offset + 96),
+                        readHash(src, offset + 112));
+            default:
+                throw new BlockDeserializer.BlockParseException("Unrecognized block type tag " + tag + ".");
+        }
+    }
+    
+    
+    private static int tag(Block block) {
+        if (block instanceof StateBlock) {
+            StateBlockSubType subtype = ((StateBlock)block).getSubType();
+            for (int i = 1; i < SUBTYPES.length; i++)
+                if (SUBTYPES[i] == subtype)
+                    return TAG_STATE | (i << 4);
+        } else if (block instanceof SendBlock) {
+            return TAG_SEND;
+        } else if (block instanceof ReceiveBlock) {
+            return TAG_RECEIVE;
+        } else if (block instanceof OpenBlock) {
+            return TAG_OPEN;
+        } else if (block instanceof ChangeBlock) {
+            return TAG_CHANGE;
+        }
+        throw new IllegalArgumentException("Block type \"" + block.getTypeString() + "\" cannot be encoded in binary.");
+    }
+    
+    private static void write(Block block, int tag, byte[] dest, int offset) {
+        dest[offset++] = (byte)tag;
+        switch (tag & 0xF) {
+            case TAG_SEND:
+                SendBlock send = (SendBlock)block;
+                writeHash(send.getPreviousBlockHash(), dest, offset);
+                send.getDestinationAccount().writePublicKey(dest, offset + 32);
+                send.getBalance().writeTo(dest, offset + 64);
+                writeSig(block, dest, offset + 80);
+                writeWorkLE(block, dest, offset + 144);
+                break;
+            case TAG_RECEIVE:
+                ReceiveBlock receive = (ReceiveBlock)block;
+                writeHash(receive.getPreviousBlockHash(), dest, offset);
+                writeHash(receive.getSourceBlockHash(), dest, offset + 32);
+                writeSig(block, dest, offset + 64);
+                writeWorkLE(block, dest, offset + 128);
+                break;
+            case TAG_OPEN:
+                OpenBlock open = (OpenBlock)block;
+                writeHash(open.getSourceBlockHash(), dest, offset);
+                open.getRepresentative().writePublicKey(dest, offset + 32);
+                open.getAccount().writePublicKey(dest, offset + 64);
+                writeSig(block, dest, offset + 96);
+                writeWorkLE(block, dest, offset + 160);
+                break;
+            case TAG_CHANGE:
+                ChangeBlock change = (ChangeBlock)block;
+                writeHash(change.getPreviousBlockHash(), dest, offset);
+                change.getRepresentative().writePublicKey(dest, offset + 32);
+                writeSig(block, dest, offset + 64);
+                writeWorkLE(block, dest, offset + 128);
+                break;
+            case TAG_STATE:
+                StateBlock state = (StateBlock)block;
+                state.getAccount().writePublicKey(dest, offset);
+                writeHash(state.getPreviousBlockHash(), dest, offset + 32);
+                state.getRepresentative().writePublicKey(dest, offset + 64);
+                state.getBalance().writeTo(dest, offset + 96);
+                writeHash(state.getLink().asHex(), dest, offset + 112);
+                writeSig(block, dest, offset + 144);
+                WorkSolution work = block.getWorkSolution();
+                long workVal = work != null ? work.getAsLong() : 0;
+                for (int i = 0; i < LEN_WORK; i++)
+                    dest[offset + 208 + i] = (byte)(workVal >>> (56 - i * 8));
+                break;
+        }
+    }
+    
+    private static void writeHash(HexData hash, byte[] dest, int offset) {
+        if (hash.length() != LEN_HASH)
+            throw new IllegalArgumentException("Hash length is incorrect.");
+        hash.writeTo(dest, offset);
+    }
+    
+    private static void writeSig(Block block, byte[] dest, int offset) {
+        HexData sig = block.getSignature();
+        if (sig == null) {
+            for (int i = 0; i < LEN_SIG; i++)
+                dest[offset + i] = 0;
+        } else {
+            if (sig.length() != LEN_SIG)
+                throw new IllegalArgumentException("Signature length is incorrect.");
+            sig.writeTo(dest, offset);
+        }
+    }
+    
+    private static void writeWorkLE(Block block, byte[] dest, int offset) {
+        WorkSolution work = block.getWorkSolution();
+        long val = work != null ? work.getAsLong() : 0;
+        for (int i = 0; i < LEN_WORK; i++)
+            dest[offset + i] = (byte)(val >>> (i * 8));
+    }
+    
+    private static HexData readHash(byte[] src, int offset) {
+        byte[] bytes = new byte[LEN_HASH];
+        System.arraycopy(src, offset, bytes, 0, LEN_HASH);
+        return new HexData(bytes);
+    }
+    
+    private static NanoAccount readAccount(byte[] src, int offset) {
+        byte[] bytes = new byte[LEN_KEY];
+        System.arraycopy(src, offset, bytes, 0, LEN_KEY);
+        return new NanoAccount(bytes);
+    }
+    
+    private static HexData readSig(byte[] src, int offset) {
+        int nonZero = 0;
+        for (int i = 0; i < LEN_SIG; i++)
+            nonZero |= src[offset + i];
+        if (nonZero == 0) return null;
+        byte[] bytes = new byte[LEN_SIG];
+        System.arraycopy(src, offset, bytes, 0, LEN_SIG);
+        return new HexData(bytes);
+    }
+    
+    private static WorkSolution readWorkLE(byte[] src, int offset) {
+        long val = 0;
+        for (int i = LEN_WORK - 1; i >= 0; i--)
+            val = (val << 8) | (src[offset + i] & 0xFF);
+        return val != 0 ? new WorkSolution(val) : null;
+    }
+    
+    private static WorkSolution readWorkBE(byte[] src, int offset) {
+        long val = 0;
+        for (int i = 0; i < LEN_WORK; i++)
+            val = (val << 8) | (src[offset + i] & 0xFF);
+        return val != 0 ? new WorkSolution(val) : null;
+    }
+    
+}
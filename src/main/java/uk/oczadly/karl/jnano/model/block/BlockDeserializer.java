@@ -6,9 +6,13 @@
 package uk.oczadly.karl.jnano.model.block;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import uk.oczadly.karl.jnano.internal.JNC;
-import uk.oczadly.karl.jnano.internal.JNH;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collections;
@@ -106,6 +110,47 @@ public final class BlockDeserializer {
     }
     
     
+    /**
+     * <p>Reads a block from a {@link JsonReader} in a single forward pass, without building an intermediate
+     * {@link JsonObject}. The next value of the reader must either be a JSON object, or a string which contains a
+     * JSON object.</p>
+     *
+     * <p>Blocks which use the default deserializer of their {@link BlockType} are constructed directly from the read
+     * fields. For other registered deserializers, the fields are collected into a {@code JsonObject} which is then
+     * passed to the deserializer.</p>
+     *
+     * @param reader the JSON reader
+     * @return the deserialized block object
+     * @throws IOException         if the reader could not be read from, or the JSON is malformed
+     * @throws BlockParseException if the block could not be parsed
+     */
+    public Block deserialize(JsonReader reader) throws IOException {
+        BlockJsonReader fields;
+        try {
+            fields = BlockJsonReader.read(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new BlockParseException("Could not parse block (malformed json?).", e);
+        }
+        if (fields.type == null)
+            throw new BlockParseException("No block type is specified.");
+        
+        String blockType = fields.type.toLowerCase();
+        
+        Function<JsonObject, ? extends Block> deserializer = getDeserializer(blockType);
+        if (deserializer != null) {
+            try {
+                BlockType type = BlockType.fromName(blockType);
+                if (type != null && deserializer == type.getDeserializerFunction())
+                    return fields.toBlock(type); // Bind fields directly
+                return deserializer.apply(fields.toJsonObject());
+            } catch (Exception e) {
+                throw new BlockParseException("Could not parse block (malformed json?).", e);
+            }
+        }
+        throw new BlockParseException("Block type \"" + blockType + "\" is not supported by the deserializer.");
+    }
+    
+    
     /**
      * Constructs a new BlockDeserializer with the standard supported block types.
      *
@@ -146,7 +191,7 @@ public final class BlockDeserializer {
         public JsonAdapter() {
             this(JNC.BLOCK_DESERIALIZER);
         }
-    
+        
         /**
          * With the specified block deserializer.
          * @param deserializer the block deserializer
@@ -164,13 +209,63 @@ public final class BlockDeserializer {
         @Override
         public Block deserialize(JsonElement element, Type type, JsonDeserializationContext context)
                 throws JsonParseException {
-            // Check if string — sometimes blocks are passed as string representations
-            JsonObject jsonObj = element.isJsonObject()
-                    ? element.getAsJsonObject()
-                    : JNH.parseJson(element.getAsString());
-            return deserializer.deserialize(jsonObj);
+            if (element.isJsonObject())
+                return deserializer.deserialize(element.getAsJsonObject());
+            // Sometimes blocks are passed as string representations
+            try {
+                JsonReader reader = new JsonReader(new StringReader(element.getAsString()));
+                reader.setLenient(true);
+                return deserializer.deserialize(reader);
+            } catch (IOException e) {
+                throw new BlockParseException(e);
+            }
+        }
+    
+    }
+    
+    
+    /**
+     * A Gson {@link TypeAdapter} which allows the serialization and deserialization of blocks. Blocks are read in a
+     * single pass using {@link #deserialize(JsonReader)}, including blocks passed as string representations.
+     */
+    public static class StreamingAdapter extends TypeAdapter<Block> {
+        
+        private final BlockDeserializer deserializer;
+        
+        /** With the default block deserializer. */
+        public StreamingAdapter() {
+            this(JNC.BLOCK_DESERIALIZER);
+        }
+        
+        /**
+         * With the specified block deserializer.
+         * @param deserializer the block deserializer
+         */
+        public StreamingAdapter(BlockDeserializer deserializer) {
+            if (deserializer == null)
+                throw new IllegalArgumentException("Deserializer cannot be null.");
+            this.deserializer = deserializer;
         }
         
+        
+        @Override
+        public void write(JsonWriter out, Block value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                JNC.GSON.toJson(value.toJsonObject(), out);
+            }
+        }
+        
+        @Override
+        public Block read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return deserializer.deserialize(in);
+        }
+    
     }
     
     
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import com.rfksystems.blake2b.Blake2b;
+import uk.oczadly.karl.jnano.internal.NanoConst;
+import uk.oczadly.karl.jnano.model.Hash256;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+
+/**
+ * Computes block hashes using a per-thread digest and buffer, so the block fields are written directly into the
+ * buffer rather than being copied into intermediate arrays.
+ */
+final class BlockHasher {
+    
+    /** The length of the largest hashables (state blocks). */
+    static final int BUFFER_SIZE = 176;
+    
+    private static final ThreadLocal<BlockHasher> INSTANCE = ThreadLocal.withInitial(BlockHasher::new);
+    
+    private final Blake2b digest = new Blake2b(null, NanoConst.LEN_HASH_B, null, null);
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] out = new byte[NanoConst.LEN_HASH_B];
+    private int pos;
+    private boolean inUse;
+    
+    private BlockHasher() {}
+    
+    
+    /**
+     * Computes the hash of the given block.
+     */
+    static Hash256 hash(Block block) {
+        BlockHasher hasher = INSTANCE.get();
+        if (hasher.inUse)
+            hasher = new BlockHasher(); // Re-entered from a custom block's hashables()
+        hasher.inUse = true;
+        try {
+            hasher.pos = 0;
+            hasher.digest.reset();
+            block.writeHashables(hasher);
+            hasher.flush();
+            hasher.digest.digest(hasher.out, 0);
+            return Hash256.of(hasher.out, 0);
+        } finally {
+            hasher.inUse = false;
+        }
+    }
+    
+    
+    void put(byte[] bytes) {
+        if (bytes.length > buffer.length - pos) {
+            flush();
+            digest.update(bytes, 0, bytes.length);
+        } else {
+            System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+            pos += bytes.length;
+        }
+    }
+    
+    void put(HexData hex) {
+        if (hex.length() > buffer.length) {
+            put(hex.toByteArray());
+            return;
+        }
+        reserve(hex.length());
+        hex.writeTo(buffer, pos);
+        pos += hex.length();
+    }
+    
+    void put(NanoAccount account) {
+        reserve(NanoConst.LEN_KEY_B);
+        account.writePublicKey(buffer, pos);
+        pos += NanoConst.LEN_KEY_B;
+    }
+    
+    void put(NanoAmount amount) {
+        reserve(16);
+        amount.writeTo(buffer, pos);
+        pos += 16;
+    }
+    
+    private void reserve(int len) {
+        if (len > buffer.length - pos)
+            flush();
+    }
+    
+    private void flush() {
+        digest.update(buffer, 0, pos);
+        pos = 0;
+    }
+    
+}
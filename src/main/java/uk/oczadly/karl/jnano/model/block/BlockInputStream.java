@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An input stream which reads blocks encoded in the compact binary format of
+ * {@link Block#writeTo(java.nio.ByteBuffer)}, such as the data written by a {@link BlockOutputStream}.
+ *
+ * <p>As each block is read with a small number of reads from the underlying stream, unbuffered streams (such as those
+ * of files and sockets) should be wrapped in a {@link java.io.BufferedInputStream}. This class is not thread-safe.</p>
+ *
+ * @see BlockOutputStream
+ */
+public class BlockInputStream extends FilterInputStream {
+    
+    private final byte[] buffer = new byte[BlockCodec.MAX_LENGTH];
+    
+    /**
+     * Creates a block input stream which reads from the given stream.
+     * @param in the underlying input stream
+     */
+    public BlockInputStream(InputStream in) {
+        super(in);
+        if (in == null)
+            throw new IllegalArgumentException("Input stream cannot be null.");
+    }
+    
+    
+    /**
+     * Reads the next block from the stream.
+     * @return the block, or null if the end of the stream has been reached
+     * @throws EOFException if the stream ends part-way through a block
+     * @throws IOException  if an I/O error occurs, or the block type is not recognized
+     */
+    public Block readBlock() throws IOException {
+        int tag = in.read();
+        if (tag < 0)
+            return null;
+        int len = BlockCodec.bodyLength(tag);
+        if (len < 0)
+            throw new IOException("Unrecognized block type tag " + tag + ".");
+        int pos = 0;
+        while (pos < len) {
+            int n = in.read(buffer, pos, len - pos);
+            if (n < 0)
+                throw new EOFException("Stream ended part-way through a block.");
+            pos += n;
+        }
+        return BlockCodec.read(tag, buffer, 0);
+    }
+    
+    /**
+     * Reads all of the remaining blocks from the stream, until the end of the stream is reached.
+     * @return a list of the blocks, in the order they were read
+     * @throws EOFException if the stream ends part-way through a block
+     * @throws IOException  if an I/O error occurs, or a block type is not recognized
+     */
+    public List<Block> readBlocks() throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        Block block;
+        while ((block = readBlock()) != null)
+            blocks.add(block);
+        return blocks;
+    }
+    
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the fields of a JSON block in a single forward pass of a {@link JsonReader}, without building an intermediate
+ * {@link JsonObject}. The fields of the built-in block types are held as strings and passed to each type's field
+ * mapping, while any other fields are retained so that custom deserializers can still be given a {@code JsonObject}.
+ */
+final class BlockJsonReader {
+    
+    String type;
+    private String subtype, signature, work, account, previous, representative, balance, link, linkAsAccount,
+            destination, source;
+    private Map<String, JsonElement> otherFields;
+    
+    private BlockJsonReader() {}
+    
+    
+    /**
+     * Reads a block object from the reader. If the next value is a string, the block is read from the JSON contained
+     * within the string.
+     */
+    static BlockJsonReader read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING) {
+            // Sometimes blocks are passed as string representations
+            try (JsonReader nested = new JsonReader(new StringReader(in.nextString()))) {
+                nested.setLenient(true);
+                return readObject(nested);
+            }
+        }
+        return readObject(in);
+    }
+    
+    private static BlockJsonReader readObject(JsonReader in) throws IOException {
+        BlockJsonReader fields = new BlockJsonReader();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            JsonToken token = in.peek();
+            if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                fields.putOther(name, JsonParser.parseReader(in));
+            } else if (token == JsonToken.NULL) {
+                in.nextNull();
+                fields.putOther(name, JsonNull.INSTANCE);
+            } else {
+                String val = token == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString();
+                if (!fields.bind(name, val))
+                    fields.putOther(name, new JsonPrimitive(val));
+            }
+        }
+        in.endObject();
+        return fields;
+    }
+    
+    /**
+     * Constructs a block of a built-in type from the fields, using the same field mapping as the type's default
+     * {@link BlockType#getDeserializerFunction() deserializer function}.
+     */
+    Block toBlock(BlockType type) {
+        switch (type) {
+            case STATE:   return StateBlock.fromFields(this::get);
+            case SEND:    return SendBlock.fromFields(this::get);
+            case RECEIVE: return ReceiveBlock.fromFields(this::get);
+            case OPEN:    return OpenBlock.fromFields(this::get);
+            case CHANGE:  return ChangeBlock.fromFields(this::get);
+            default:      throw new AssertionError("Unknown block type.");
+        }
+    }
+    
+    /**
+     * Returns all of the fields as a {@link JsonObject}, for use by custom deserializers.
+     */
+    JsonObject toJsonObject() {
+        JsonObject json = new JsonObject();
+        add(json, "type", type);
+        add(json, "subtype", subtype);
+        add(json, "signature", signature);
+        add(json, "work", work);
+        add(json, "account", account);
+        add(json, "previous", previous);
+        add(json, "representative", representative);
+        add(json, "balance", balance);
+        add(json, "link", link);
+        add(json, "link_as_account", linkAsAccount);
+        add(json, "destination", destination);
+        add(json, "source", source);
+        if (otherFields != null)
+            otherFields.forEach(json::add);
+        return json;
+    }
+    
+    
+    private boolean bind(String name, String val) {
+        switch (name) {
+            case "type":            type = val;           return true;
+            case "subtype":         subtype = val;        return true;
+            case "signature":       signature = val;      return true;
+            case "work":            work = val;           return true;
+            case "account":         account = val;        return true;
+            case "previous":        previous = val;       return true;
+            case "representative":  representative = val; return true;
+            case "balance":         balance = val;        return true;
+            case "link":            link = val;           return true;
+            case "link_as_account": linkAsAccount = val;  return true;
+            case "destination":     destination = val;    return true;
+            case "source":          source = val;         return true;
+            default:                                      return false;
+        }
+    }
+    
+    private void putOther(String name, JsonElement val) {
+        if (otherFields == null)
+            otherFields = new LinkedHashMap<>();
+        otherFields.put(name, val);
+    }
+    
+    /**
+     * Returns the string value of a field, or null if absent. As with {@link JsonElement#getAsString()}, an exception
+     * is thrown if the value is not a primitive.
+     */
+    private String get(String name) {
+        switch (name) {
+            case "type":            return type;
+            case "subtype":         return subtype;
+            case "signature":       return signature;
+            case "work":            return work;
+            case "account":         return account;
+            case "previous":        return previous;
+            case "representative":  return representative;
+            case "balance":         return balance;
+            case "link":            return link;
+            case "link_as_account": return linkAsAccount;
+            case "destination":     return destination;
+            case "source":          return source;
+            default:
+                JsonElement val = otherFields != null ? otherFields.get(name) : null;
+                return val != null ? val.getAsString() : null;
+        }
+    }
+    
+    private static void add(JsonObject json, String name, String val) {
+        if (val != null)
+            json.addProperty(name, val);
+    }
+    
+}
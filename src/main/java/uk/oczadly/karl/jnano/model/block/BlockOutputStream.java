@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream which writes blocks in the compact binary format of {@link Block#writeTo(java.nio.ByteBuffer)}.
+ * The written data can be read back using a {@link BlockInputStream}.
+ *
+ * <p>Blocks written through {@link #writeBlocks(Iterable)} are encoded into an internal buffer and passed to the
+ * underlying stream in batches. This class is not thread-safe.</p>
+ *
+ * @see BlockInputStream
+ */
+public class BlockOutputStream extends FilterOutputStream {
+    
+    private static final int BATCH_SIZE = 32;
+    
+    private final byte[] buffer = new byte[BlockCodec.MAX_LENGTH * BATCH_SIZE];
+    
+    /**
+     * Creates a block output stream which writes to the given stream.
+     * @param out the underlying output stream
+     */
+    public BlockOutputStream(OutputStream out) {
+        super(out);
+        if (out == null)
+            throw new IllegalArgumentException("Output stream cannot be null.");
+    }
+    
+    
+    /**
+     * Writes a single block to the stream.
+     * @param block the block to write
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the block type cannot be encoded in binary
+     */
+    public void writeBlock(Block block) throws IOException {
+        if (block == null)
+            throw new IllegalArgumentException("Block cannot be null.");
+        out.write(buffer, 0, BlockCodec.write(block, buffer, 0));
+    }
+    
+    /**
+     * Writes the given blocks to the stream, in iteration order.
+     * @param blocks the blocks to write
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if a block type cannot be encoded in binary, in which case the preceding
+     *                                  blocks may have already been written
+     */
+    public void writeBlocks(Iterable<? extends Block> blocks) throws IOException {
+        if (blocks == null)
+            throw new IllegalArgumentException("Blocks cannot be null.");
+        int pos = 0;
+        for (Block block : blocks) {
+            if (block == null)
+                throw new IllegalArgumentException("Block cannot be null.");
+            if (pos > buffer.length - BlockCodec.MAX_LENGTH) {
+                out.write(buffer, 0, pos);
+                pos = 0;
+            }
+            pos += BlockCodec.write(block, buffer, pos);
+        }
+        if (pos > 0)
+            out.write(buffer, 0, pos);
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+    
+}
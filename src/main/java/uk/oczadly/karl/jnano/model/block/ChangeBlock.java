@@ -67,11 +67,8 @@ import java.util.function.Function;
 public class ChangeBlock extends Block implements IBlockPrevious, IBlockRepresentative {
     
     /** A function which converts a {@link JsonObject} into a {@link ChangeBlock} instance. */
-    public static final Function<JsonObject, ChangeBlock> DESERIALIZER = json -> new ChangeBlock(
-            JNH.getJson(json, "signature",      HexData::new),
-            JNH.getJson(json, "work",           WorkSolution::new),
-            JNH.getJson(json, "previous",       HexData::new),
-            JNH.getJson(json, "representative", NanoAccount::parseAddress));
+    public static final Function<JsonObject, ChangeBlock> DESERIALIZER =
+            json -> fromFields(key -> JNH.getJson(json, key));
     
     private static final BlockIntent INTENT = new BlockIntent(false, false, true, false, false, false);
     
@@ -135,6 +132,16 @@ public class ChangeBlock extends Block implements IBlockPrevious, IBlockRepresen
         };
     }
     
+    @Override
+    void writeHashables(BlockHasher hasher) {
+        if (getClass() != ChangeBlock.class) {
+            super.writeHashables(hasher); // Subclass may override hashables()
+            return;
+        }
+        hasher.put(getPreviousBlockHash());
+        hasher.put(getRepresentative());
+    }
+    
     @Override
     public ChangeBlock clone() {
         return new ChangeBlock(getSignature(), getWorkSolution(), previous, representative);
@@ -166,5 +173,14 @@ public class ChangeBlock extends Block implements IBlockPrevious, IBlockRepresen
         return JNH.tryRethrow(Block.parse(json), b -> (ChangeBlock)b,
                 e -> new BlockDeserializer.BlockParseException("Block is not a change block.", e));
     }
+    
+    /** Constructs a block from its named JSON field values, which are null if absent. */
+    static ChangeBlock fromFields(Function<String, String> fields) {
+        return new ChangeBlock(
+                JNH.nullable(fields.apply("signature"),      HexData::new),
+                JNH.nullable(fields.apply("work"),           WorkSolution::new),
+                JNH.nullable(fields.apply("previous"),       HexData::new),
+                JNH.nullable(fields.apply("representative"), NanoAccount::parseAddress));
+    }
    
 }
@@ -7,6 +7,7 @@ package uk.oczadly.karl.jnano.model.block;
 
 import uk.oczadly.karl.jnano.internal.JNC;
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.Hash256;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 
@@ -75,6 +76,14 @@ public class LinkData {
         return hex;
     }
     
+    /**
+     * Returns this link data as a fixed-width {@link Hash256} value.
+     * @return this link data as a 256-bit value
+     */
+    public final Hash256 asHash256() {
+        return Hash256.of(hex);
+    }
+    
     /**
      * Returns this link data as an {@link NanoAccount account}.
      * @return this link data as an account
@@ -75,12 +75,8 @@ import java.util.function.Function;
 public class OpenBlock extends Block implements IBlockSource, IBlockAccount, IBlockRepresentative {
     
     /** A function which converts a {@link JsonObject} into a {@link OpenBlock} instance. */
-    public static final Function<JsonObject, OpenBlock> DESERIALIZER = json -> new OpenBlock(
-            JNH.getJson(json, "signature",      HexData::new),
-            JNH.getJson(json, "work",           WorkSolution::new),
-            JNH.getJson(json, "source",         HexData::new),
-            JNH.getJson(json, "account",        NanoAccount::parseAddress),
-            JNH.getJson(json, "representative", NanoAccount::parseAddress));
+    public static final Function<JsonObject, OpenBlock> DESERIALIZER =
+            json -> fromFields(key -> JNH.getJson(json, key));
     
     private static final BlockIntent INTENT = new BlockIntent(false, true, true, true, false, false);
     private static final BlockIntent INTENT_GENESIS = new BlockIntent(false, true, true, true, false, true);
@@ -171,6 +167,17 @@ public class OpenBlock extends Block implements IBlockSource, IBlockAccount, IBl
         };
     }
     
+    @Override
+    void writeHashables(BlockHasher hasher) {
+        if (getClass() != OpenBlock.class) {
+            super.writeHashables(hasher); // Subclass may override hashables()
+            return;
+        }
+        hasher.put(getSourceBlockHash());
+        hasher.put(getRepresentative());
+        hasher.put(getAccount());
+    }
+    
     @Override
     public OpenBlock clone() {
         return new OpenBlock(getSignature(), getWorkSolution(), source, account, representative);
@@ -202,4 +209,14 @@ public class OpenBlock extends Block implements IBlockSource, IBlockAccount, IBl
                 e -> new BlockDeserializer.BlockParseException("Block is not an open block.", e));
     }
     
+    /** Constructs a block from its named JSON field values, which are null if absent. */
+    static OpenBlock fromFields(Function<String, String> fields) {
+        return new OpenBlock(
+                JNH.nullable(fields.apply("signature"),      HexData::new),
+                JNH.nullable(fields.apply("work"),           WorkSolution::new),
+                JNH.nullable(fields.apply("source"),         HexData::new),
+                JNH.nullable(fields.apply("account"),        NanoAccount::parseAddress),
+                JNH.nullable(fields.apply("representative"), NanoAccount::parseAddress));
+    }
+    
 }
@@ -68,11 +68,8 @@ import java.util.function.Function;
 public class ReceiveBlock extends Block implements IBlockPrevious, IBlockSource {
     
     /** A function which converts a {@link JsonObject} into a {@link ReceiveBlock} instance. */
-    public static final Function<JsonObject, ReceiveBlock> DESERIALIZER = json -> new ReceiveBlock(
-            JNH.getJson(json, "signature", HexData::new),
-            JNH.getJson(json, "work",      WorkSolution::new),
-            JNH.getJson(json, "previous",  HexData::new),
-            JNH.getJson(json, "source",    HexData::new));
+    public static final Function<JsonObject, ReceiveBlock> DESERIALIZER =
+            json -> fromFields(key -> JNH.getJson(json, key));
     
     private static final BlockIntent INTENT = new BlockIntent(false, true, false, false, false, false);
     
@@ -138,6 +135,16 @@ public class ReceiveBlock extends Block implements IBlockPrevious, IBlockSource
         };
     }
     
+    @Override
+    void writeHashables(BlockHasher hasher) {
+        if (getClass() != ReceiveBlock.class) {
+            super.writeHashables(hasher); // Subclass may override hashables()
+            return;
+        }
+        hasher.put(getPreviousBlockHash());
+        hasher.put(getSourceBlockHash());
+    }
+    
     @Override
     public ReceiveBlock clone() {
         return new ReceiveBlock(getSignature(), getWorkSolution(), previous, source);
@@ -170,4 +177,13 @@ public class ReceiveBlock extends Block implements IBlockPrevious, IBlockSource
                 e -> new BlockDeserializer.BlockParseException("Block is not a receive block.", e));
     }
     
+    /** Constructs a block from its named JSON field values, which are null if absent. */
+    static ReceiveBlock fromFields(Function<String, String> fields) {
+        return new ReceiveBlock(
+                JNH.nullable(fields.apply("signature"), HexData::new),
+                JNH.nullable(fields.apply("work"),      WorkSolution::new),
+                JNH.nullable(fields.apply("previous"),  HexData::new),
+                JNH.nullable(fields.apply("source"),    HexData::new));
+    }
+    
 }
@@ -74,12 +74,8 @@ import java.util.function.Function;
 public class SendBlock extends Block implements IBlockPrevious, IBlockBalance {
     
     /** A function which converts a {@link JsonObject} into a {@link SendBlock} instance. */
-    public static final Function<JsonObject, SendBlock> DESERIALIZER = json -> new SendBlock(
-            JNH.getJson(json, "signature",   HexData::new),
-            JNH.getJson(json, "work",        WorkSolution::new),
-            JNH.getJson(json, "previous",    HexData::new),
-            JNH.getJson(json, "destination", NanoAccount::parseAddress),
-            JNH.getJson(json, "balance",     NanoAmount::valueOfRaw));
+    public static final Function<JsonObject, SendBlock> DESERIALIZER =
+            json -> fromFields(key -> JNH.getJson(json, key));
     
     private static final BlockIntent INTENT = new BlockIntent(true, false, false, false, false, false);
     
@@ -154,10 +150,21 @@ public class SendBlock extends Block implements IBlockPrevious, IBlockBalance {
         return new byte[][] {
                 getPreviousBlockHash().toByteArray(),
                 getDestinationAccount().getPublicKeyBytes(),
-                JNH.leftPadByteArray(getBalance().getAsRaw().toByteArray(), 16, false)
+                balanceBytes(getBalance())
         };
     }
     
+    @Override
+    void writeHashables(BlockHasher hasher) {
+        if (getClass() != SendBlock.class) {
+            super.writeHashables(hasher); // Subclass may override hashables()
+            return;
+        }
+        hasher.put(getPreviousBlockHash());
+        hasher.put(getDestinationAccount());
+        hasher.put(getBalance());
+    }
+    
     @Override
     public SendBlock clone() {
         return new SendBlock(getSignature(), getWorkSolution(), previous, destination, balance);
@@ -190,4 +197,14 @@ public class SendBlock extends Block implements IBlockPrevious, IBlockBalance {
                 e -> new BlockDeserializer.BlockParseException("Block is not a send block.", e));
     }
     
+    /** Constructs a block from its named JSON field values, which are null if absent. */
+    static SendBlock fromFields(Function<String, String> fields) {
+        return new SendBlock(
+                JNH.nullable(fields.apply("signature"),   HexData::new),
+                JNH.nullable(fields.apply("work"),        WorkSolution::new),
+                JNH.nullable(fields.apply("previous"),    HexData::new),
+                JNH.nullable(fields.apply("destination"), NanoAccount::parseAddress),
+                JNH.nullable(fields.apply("balance"),     NanoAmount::valueOfRaw));
+    }
+    
 }
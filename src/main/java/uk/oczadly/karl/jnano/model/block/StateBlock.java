@@ -138,16 +138,8 @@ public final class StateBlock extends Block implements IBlockLink, IBlockBalance
         IBlockAccount {
     
     /** A function which converts a {@link JsonObject} into a {@link StateBlock} instance. */
-    public static final Function<JsonObject, StateBlock> DESERIALIZER = json -> new StateBlock(
-            JNH.getJson(json, "subtype",         StateBlockSubType::getFromName),
-            JNH.getJson(json, "signature",       HexData::new),
-            JNH.getJson(json, "work",            WorkSolution::new),
-            JNH.getJson(json, "account",         NanoAccount::parseAddress),
-            JNH.getJson(json, "previous",        HexData::new),
-            JNH.getJson(json, "representative",  NanoAccount::parseAddress),
-            JNH.getJson(json, "balance",         NanoAmount::valueOfRaw),
-            JNH.getJson(json, "link",            HexData::new),
-            JNH.getJson(json, "link_as_account", NanoAccount::parseAddress));
+    public static final Function<JsonObject, StateBlock> DESERIALIZER =
+            json -> fromFields(key -> JNH.getJson(json, key));
     
     /** Prefix for block hashing. */
     private static final byte[] HASH_PREAMBLE = JNH.leftPadByteArray(new byte[] {6}, 32, false);
@@ -283,13 +275,21 @@ public final class StateBlock extends Block implements IBlockLink, IBlockBalance
     public boolean verifySignature(EpochUpgradeRegistry epochRegistry) {
         if (epochRegistry == null) throw new IllegalArgumentException("Epoch registry cannot be null.");
         if (getSignature() == null) return false;
-        
+        return verifySignature(getSigner(epochRegistry));
+    }
+    
+    /**
+     * Returns the account expected to have signed this block.
+     * @param epochRegistry the epoch registry to be used when checking epoch blocks
+     * @return the signer account
+     * @throws UnrecognizedEpochException if the block is an epoch block, and the epoch version was not recognized
+     */
+    NanoAccount getSigner(EpochUpgradeRegistry epochRegistry) {
         if (getSubType() == StateBlockSubType.EPOCH) {
             EpochUpgrade epoch = epochRegistry.ofIdentifier(getLink().asHex());
-            return verifySignature(epoch.getSigner().orElse(getAccount()));
-        } else {
-            return verifySignature(getAccount());
+            return epoch.getSigner().orElse(getAccount());
         }
+        return getAccount();
     }
     
     @Override
@@ -330,11 +330,21 @@ public final class StateBlock extends Block implements IBlockLink, IBlockBalance
                 getAccount().getPublicKeyBytes(),
                 getPreviousBlockHash().toByteArray(),
                 getRepresentative().getPublicKeyBytes(),
-                JNH.leftPadByteArray(getBalance().getAsRaw().toByteArray(), 16, false),
+                balanceBytes(getBalance()),
                 getLink().asByteArray()
         };
     }
     
+    @Override
+    void writeHashables(BlockHasher hasher) {
+        hasher.put(HASH_PREAMBLE);
+        hasher.put(getAccount());
+        hasher.put(getPreviousBlockHash());
+        hasher.put(getRepresentative());
+        hasher.put(getBalance());
+        hasher.put(getLink().asHex());
+    }
+    
     @Override
     protected JsonObject buildJsonObject() {
         JsonObject json = super.buildJsonObject();
@@ -377,6 +387,20 @@ public final class StateBlock extends Block implements IBlockLink, IBlockBalance
                 e -> new BlockDeserializer.BlockParseException("Block is not a state block.", e));
     }
     
+    /** Constructs a block from its named JSON field values, which are null if absent. */
+    static StateBlock fromFields(Function<String, String> fields) {
+        return new StateBlock(
+                JNH.nullable(fields.apply("subtype"),         StateBlockSubType::getFromName),
+                JNH.nullable(fields.apply("signature"),       HexData::new),
+                JNH.nullable(fields.apply("work"),            WorkSolution::new),
+                JNH.nullable(fields.apply("account"),         NanoAccount::parseAddress),
+                JNH.nullable(fields.apply("previous"),        HexData::new),
+                JNH.nullable(fields.apply("representative"),  NanoAccount::parseAddress),
+                JNH.nullable(fields.apply("balance"),         NanoAmount::valueOfRaw),
+                JNH.nullable(fields.apply("link"),            HexData::new),
+                JNH.nullable(fields.apply("link_as_account"), NanoAccount::parseAddress));
+    }
+    
     /**
      * Returns a new builder which can be used to construct state blocks.
      * @return a new builder object
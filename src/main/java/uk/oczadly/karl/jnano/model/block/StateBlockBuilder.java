@@ -6,6 +6,7 @@
 package uk.oczadly.karl.jnano.model.block;
 
 import uk.oczadly.karl.jnano.internal.JNC;
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.internal.NanoConst;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
@@ -13,9 +14,13 @@ import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.interfaces.IBlock;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
 import uk.oczadly.karl.jnano.util.NanoUnit;
+import uk.oczadly.karl.jnano.util.SigningKey;
+import uk.oczadly.karl.jnano.util.workgen.GeneratedWork;
 import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
 
 import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -490,18 +495,81 @@ public final class StateBlockBuilder {
     public synchronized StateBlock buildAndSign(HexData privateKey) {
         if (privateKey == null)
             throw new IllegalArgumentException("Private key cannot be null.");
+        return buildAndSign(new SigningKey(privateKey));
+    }
+    
+    /**
+     * Constructs a {@link StateBlock} from the configured parameters, and then signs the block using the provided
+     * signing key. The {@code account} field will also be set if it does not already contain a value. Reusing a
+     * {@link SigningKey} avoids expanding the private key each time a block is signed.
+     *
+     * <p>Fields with an address format ({@code account}, {@code representative} and {@code link_as_account}) will use
+     * the prefix specified by {@link #usingAddressPrefix(String)}. If no value has been set, then the prefix used by
+     * the {@code account} field will be used. If no account is set prior to signing, then the default Nano prefix will
+     * be used.</p>
+     *
+     * @param key the signing key of the account used to sign the block
+     * @return a new instance of the {@link StateBlock} class using the configured parameters
+     * @throws BlockCreationException if there is an error with block creation (eg. invalid argument, work generation)
+     */
+    public synchronized StateBlock buildAndSign(SigningKey key) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
         
         String addressPrefix = getAddressPrefix();
-        NanoAccount account = NanoAccount.fromPrivateKey(privateKey, addressPrefix);
+        NanoAccount account = key.getAccount(addressPrefix);
         if (this.account != null && !this.account.equalsIgnorePrefix(account))
             throw new BlockCreationException("Private key doesn't match the set account value.");
         
-        StateBlock sb = build(subtype, null, work, workGenerator, account, prevHash, rep, balance, linkAccount,
+        StateBlock sb = build(subtype, null, work, null, account, prevHash, rep, balance, linkAccount,
                 addressPrefix);
-        sb.sign(privateKey); // Sign the block
+        sb.sign(key); // Sign the block
+        if (work == null && workGenerator != null)
+            generateWork(sb, workGenerator);
         return sb;
     }
     
+    /**
+     * Constructs a {@link StateBlock} from the configured parameters and signs the block, returning without waiting for
+     * the work to be generated.
+     *
+     * <p>As the signature does not cover the work value, the block is signed immediately and any validation errors are
+     * thrown from this method. If a {@link #generateWork(WorkGenerator) work generator} is specified, then the work is
+     * generated in the background and the returned future completes once it has been set on the block; otherwise the
+     * returned future is already complete. If the work could not be generated, then the future completes
+     * exceptionally with a {@link BlockCreationException}.</p>
+     *
+     * <p>This allows many blocks to be constructed concurrently without a thread waiting on the work for each one.
+     * See {@link #buildAndSign(SigningKey)} for details on how the account and address prefix are applied.</p>
+     *
+     * @param key the signing key of the account used to sign the block
+     * @return a future which completes with the signed block once it contains work
+     * @throws BlockCreationException if there is an error with block creation (eg. invalid argument)
+     */
+    public synchronized CompletableFuture<StateBlock> buildAndSignAsync(SigningKey key) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
+        
+        String addressPrefix = getAddressPrefix();
+        NanoAccount account = key.getAccount(addressPrefix);
+        if (this.account != null && !this.account.equalsIgnorePrefix(account))
+            throw new BlockCreationException("Private key doesn't match the set account value.");
+        
+        StateBlock sb = build(subtype, null, work, null, account, prevHash, rep, balance, linkAccount,
+                addressPrefix);
+        sb.sign(key); // Sign the block
+        if (work != null || workGenerator == null)
+            return CompletableFuture.completedFuture(sb);
+        
+        CompletableFuture<GeneratedWork> futureWork = workGenerator.generate(sb).toCompletableFuture();
+        return JNH.propagateCancel(futureWork, futureWork.handle((genWork, ex) -> {
+            if (ex != null)
+                throw new CompletionException(new BlockCreationException("Couldn't generate work.", ex));
+            sb.setWorkSolution(genWork.getWork());
+            return sb;
+        }));
+    }
+    
     private static StateBlock build(StateBlockSubType subtype, HexData signature, WorkSolution work,
                                     WorkGenerator workGen, NanoAccount account, HexData prevHash, NanoAccount rep,
                                     NanoAmount bal, NanoAccount linkAcc, String addressPrefix) {
@@ -538,19 +606,21 @@ public final class StateBlockBuilder {
         }
         
         // Generate work
-        if (work == null && workGen != null) {
-            try {
-                work = workGen.generate(block).get().getWork();
-                block.setWorkSolution(work);
-            } catch (ExecutionException e) {
-                throw new BlockCreationException("Couldn't generate work.", e);
-            } catch (InterruptedException e) {
-                throw new BlockCreationException("Work generation was interrupted.", e);
-            }
-        }
+        if (work == null && workGen != null)
+            generateWork(block, workGen);
         return block;
     }
     
+    private static void generateWork(StateBlock block, WorkGenerator workGen) {
+        try {
+            block.setWorkSolution(workGen.generate(block).get().getWork());
+        } catch (ExecutionException e) {
+            throw new BlockCreationException("Couldn't generate work.", e);
+        } catch (InterruptedException e) {
+            throw new BlockCreationException("Work generation was interrupted.", e);
+        }
+    }
+    
     private synchronized String getAddressPrefix() {
         if (customAddressPrefix) {
             return addressPrefix;
@@ -10,6 +10,7 @@ import com.google.gson.annotations.JsonAdapter;
 import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.internal.NanoConst;
 import uk.oczadly.karl.jnano.internal.utils.NanoUtil;
+import uk.oczadly.karl.jnano.model.Hash256;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.block.Block;
 import uk.oczadly.karl.jnano.model.block.interfaces.IBlockAccount;
@@ -91,6 +92,18 @@ public final class WorkSolution {
         return calculateDifficulty(root.toByteArray());
     }
     
+    /**
+     * Calculates the difficulty for a given root hash. The root value should be either the previous block hash for
+     * existing accounts, or the account's public key for the first block.
+     * @param root the root hash
+     * @return the difficulty of this work solution for the given root hash
+     * @see #getRoot(Block)
+     */
+    public WorkDifficulty calculateDifficulty(Hash256 root) {
+        if (root == null) throw new IllegalArgumentException("Root hash cannot be null.");
+        return calculateDifficulty(root.toByteArray());
+    }
+    
     /**
      * Calculates the difficulty for a given root hash. The root value should be either the previous block hash for
      * existing accounts, or the account's public key for the first block.
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous tasks which may be in progress at once. Unlike a semaphore, tasks waiting for a
+ * permit are queued in FIFO order without blocking a thread. Priority tasks are queued ahead of all other waiting
+ * tasks.
+ *
+ * <p>Tasks are started on the thread which released the permit, so should only initiate the asynchronous operation
+ * and return.</p>
+ */
+final class AsyncLimiter {
+    
+    private final int limit;
+    private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private final Queue<CompletableFuture<Void>> priorityWaiting = new ArrayDeque<>();
+    private int active;
+    
+    /**
+     * @param limit the maximum number of tasks in progress at once
+     */
+    AsyncLimiter(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit must be at least 1.");
+        this.limit = limit;
+    }
+    
+    
+    /**
+     * Starts the task once a permit is available, which is released once the task's future completes.
+     */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        return submit(task, false);
+    }
+    
+    /**
+     * Starts the task once a permit is available, which is released once the task's future completes. If
+     * {@code priority} is true, then the task is started before any waiting non-priority tasks.
+     */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task, boolean priority) {
+        return acquire(priority).thenCompose(v -> {
+            CompletableFuture<T> future;
+            try {
+                future = task.get();
+            } catch (RuntimeException | Error e) {
+                release();
+                throw e;
+            }
+            return future.whenComplete((r, ex) -> release());
+        });
+    }
+    
+    /**
+     * Returns the number of tasks currently in progress.
+     */
+    synchronized int getActiveCount() {
+        return active;
+    }
+    
+    /**
+     * Returns the number of tasks waiting for a permit.
+     */
+    synchronized int getQueuedCount() {
+        return waiting.size() + priorityWaiting.size();
+    }
+    
+    
+    private synchronized CompletableFuture<Void> acquire(boolean priority) {
+        if (active < limit) {
+            active++;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        (priority ? priorityWaiting : waiting).add(permit);
+        return permit;
+    }
+    
+    private void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = priorityWaiting.poll();
+            if (next == null)
+                next = waiting.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        next.complete(null); // Permit is handed directly to the next task
+    }
+    
+}
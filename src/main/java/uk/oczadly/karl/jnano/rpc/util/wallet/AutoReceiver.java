@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import uk.oczadly.karl.jnano.callback.BlockCallbackListener;
+import uk.oczadly.karl.jnano.callback.BlockData;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.SendBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestMultiAccountsPending;
+import uk.oczadly.karl.jnano.rpc.response.ResponseMultiAccountsPending;
+import uk.oczadly.karl.jnano.websocket.TopicListener;
+import uk.oczadly.karl.jnano.websocket.topic.message.MessageContext;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Automatically receives incoming funds to the accounts managed by a {@link WalletEngine}, as soon as the node
+ * notifies the client of the pending {@code send} blocks.
+ *
+ * <p>This class may be registered as a listener of the WebSocket {@code confirmation} topic (which must be subscribed
+ * to with {@link uk.oczadly.karl.jnano.websocket.topic.TopicConfirmation.SubArgs#includeBlockContents() block
+ * contents}), or as a listener of a {@link uk.oczadly.karl.jnano.callback.BlockCallbackServer}. Whenever a send block
+ * with a destination managed by the engine is received, a {@code receive} action is immediately submitted to the
+ * account's lane, where its work is requested ahead of other actions.</p>
+ *
+ * <p>As notifications may be missed (eg. while the WebSocket is reconnecting), the pending blocks of all managed
+ * accounts can also be retrieved periodically with batched {@code accounts_pending} requests, by calling
+ * {@link #start(Duration)}. A block which is already being received will not be submitted a second time.</p>
+ *
+ * <pre>{@code
+ * AutoReceiver receiver = AutoReceiver.builder(engine)
+ *         .minimumAmount(NanoAmount.valueOfNano("0.000001"))
+ *         .listener((account, block) -> System.out.println("Received funds to " + account))
+ *         .build();
+ *
+ * ws.getTopics().topicConfirmedBlocks().registerListener(receiver);
+ * ws.getTopics().topicConfirmedBlocks().subscribe(new TopicConfirmation.SubArgs()
+ *         .includeBlockContents()
+ *         .filterAccounts(engine.getAccounts()));
+ * receiver.start(Duration.ofMinutes(5)); // Safety net for missed notifications
+ * }</pre>
+ */
+public final class AutoReceiver implements TopicListener<TopicMessageConfirmation>, BlockCallbackListener {
+    
+    private static final ThreadFactory SWEEP_THREAD_FACTORY = JNH.threadFactory("AutoReceiver-Sweep", true);
+    
+    private final WalletEngine engine;
+    private final NanoAmount minAmount;
+    private final int sweepBatchSize, sweepBlockCount;
+    private final Listener listener;
+    private final Set<HexData> inFlight = ConcurrentHashMap.newKeySet();
+    private final LongAdder received = new LongAdder(), failed = new LongAdder();
+    private ScheduledExecutorService sweepExecutor; // Guarded by this
+    
+    private AutoReceiver(WalletEngine engine, NanoAmount minAmount, int sweepBatchSize, int sweepBlockCount,
+                         Listener listener) {
+        this.engine = engine;
+        this.minAmount = minAmount;
+        this.sweepBatchSize = sweepBatchSize;
+        this.sweepBlockCount = sweepBlockCount;
+        this.listener = listener;
+    }
+    
+    
+    /**
+     * Returns the engine which manages the receiving accounts.
+     * @return the wallet engine
+     */
+    public WalletEngine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * Returns the minimum amount of pending blocks which will be received.
+     * @return the minimum amount
+     */
+    public NanoAmount getMinimumAmount() {
+        return minAmount;
+    }
+    
+    /**
+     * @return the number of blocks which have been received
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+    
+    /**
+     * @return the number of blocks which failed to be received
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+    
+    /**
+     * @return the number of blocks which are waiting to be received
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+    
+    
+    /**
+     * Submits a pending block to be received, if the account is managed by the engine and the block is not already
+     * being received.
+     *
+     * @param account    the destination account of the pending block
+     * @param sourceHash the hash of the pending {@code send} block
+     * @param amount     the amount of the pending block
+     * @return true if a {@code receive} action was submitted
+     */
+    public boolean submit(NanoAccount account, HexData sourceHash, NanoAmount amount) {
+        if (account == null || sourceHash == null || amount == null || amount.compareTo(minAmount) < 0
+                || !engine.containsAccount(account) || !inFlight.add(sourceHash))
+            return false;
+        CompletableFuture<Block> future;
+        try {
+            future = engine.receive(account, sourceHash, amount);
+        } catch (IllegalArgumentException e) {
+            inFlight.remove(sourceHash); // Account was removed from the engine
+            return false;
+        }
+        future.whenComplete((block, ex) -> {
+            inFlight.remove(sourceHash);
+            if (ex == null) {
+                received.increment();
+                listener.onReceive(account, block);
+            } else {
+                failed.increment();
+                listener.onFailure(account, sourceHash, unwrap(ex));
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * Retrieves the pending blocks of all the managed accounts from the node, and submits them to be received. Requests
+     * are batched into groups of accounts, as specified by {@link Builder#sweepBatchSize(int)}.
+     *
+     * @return the number of newly submitted blocks
+     * @throws IOException  if an error occurs with the connection to the node
+     * @throws RpcException if the node returns an error
+     */
+    public int sweep() throws IOException, RpcException {
+        List<NanoAccount> accounts = new ArrayList<>(engine.getAccounts());
+        BigInteger threshold = minAmount.compareTo(NanoAmount.ZERO) > 0 ? minAmount.getAsRaw() : null;
+        int submitted = 0;
+        for (int i = 0; i < accounts.size(); i += sweepBatchSize) {
+            String[] batch = accounts.subList(i, Math.min(i + sweepBatchSize, accounts.size())).stream()
+                    .map(NanoAccount::toAddress)
+                    .toArray(String[]::new);
+            ResponseMultiAccountsPending response = engine.getRpcClient().processRequest(
+                    new RequestMultiAccountsPending(batch, sweepBlockCount, threshold, null, null, true));
+            if (response.getPendingBlocks() == null) continue;
+            for (Map.Entry<NanoAccount, LinkedHashMap<HexData, ResponseMultiAccountsPending.PendingBlock>> account
+                    : response.getPendingBlocks().entrySet()) {
+                for (Map.Entry<HexData, ResponseMultiAccountsPending.PendingBlock> pending
+                        : account.getValue().entrySet()) {
+                    if (submit(account.getKey(), pending.getKey(), pending.getValue().getAmount()))
+                        submitted++;
+                }
+            }
+        }
+        return submitted;
+    }
+    
+    /**
+     * Starts periodically sweeping the pending blocks of the managed accounts, beginning immediately. Errors which
+     * occur during a sweep are passed to {@link Listener#onSweepFailure(Exception)}.
+     *
+     * @param interval the delay between the end of one sweep and the start of the next
+     * @throws IllegalStateException if the periodic sweep has already been started
+     */
+    public synchronized void start(Duration interval) {
+        if (interval == null || interval.isNegative() || interval.isZero())
+            throw new IllegalArgumentException("Interval must be positive.");
+        if (sweepExecutor != null)
+            throw new IllegalStateException("Periodic sweep has already been started.");
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(SWEEP_THREAD_FACTORY);
+        sweepExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (IOException | RpcException | RuntimeException e) {
+                listener.onSweepFailure(e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the periodic sweep, if started. Blocks which have already been submitted will still be received.
+     */
+    public synchronized void stop() {
+        if (sweepExecutor != null) {
+            sweepExecutor.shutdownNow();
+            sweepExecutor = null;
+        }
+    }
+    
+    @Override
+    public void onMessage(TopicMessageConfirmation message, MessageContext context) {
+        NanoAccount destination = getDestination(message.getBlock());
+        if (destination != null)
+            submit(destination, message.getHash(), message.getAmount());
+    }
+    
+    @Override
+    public void onNewBlock(BlockData block, String target, InetAddress node) {
+        if (block.isSendTransaction()) {
+            NanoAccount destination = getDestination(block.getBlockContents());
+            if (destination != null)
+                submit(destination, block.getBlockHash(), block.getTransactionalAmount());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "AutoReceiver{" +
+                "engine=" + engine +
+                ", minAmount=" + minAmount +
+                ", inFlight=" + inFlight.size() + '}';
+    }
+    
+    
+    /** Returns the destination account of a send block, or null if not a send. */
+    private static NanoAccount getDestination(Block block) {
+        if (block instanceof StateBlock) {
+            StateBlock sb = (StateBlock)block;
+            return sb.getSubType() == StateBlockSubType.SEND ? sb.getLink().asAccount() : null;
+        } else if (block instanceof SendBlock) {
+            return ((SendBlock)block).getDestinationAccount();
+        }
+        return null;
+    }
+    
+    private static WalletActionException unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null)
+            e = e.getCause();
+        return e instanceof WalletActionException ? (WalletActionException)e
+                : new WalletActionException("Unexpected exception thrown.", e);
+    }
+    
+    
+    /**
+     * Creates a new builder for an auto receiver.
+     * @param engine the engine which manages the receiving accounts
+     * @return a new builder
+     */
+    public static Builder builder(WalletEngine engine) {
+        return new Builder(engine);
+    }
+    
+    
+    /**
+     * A builder class for creating new instances of {@link AutoReceiver}.
+     */
+    public static final class Builder {
+        private static final Listener NO_LISTENER = (account, block) -> {};
+        
+        private final WalletEngine engine;
+        private NanoAmount minAmount = NanoAmount.ZERO;
+        private int sweepBatchSize = 500, sweepBlockCount = 64;
+        private Listener listener = NO_LISTENER;
+        
+        private Builder(WalletEngine engine) {
+            if (engine == null) throw new IllegalArgumentException("Engine cannot be null.");
+            this.engine = engine;
+        }
+        
+        
+        /**
+         * Sets the minimum amount of pending blocks which will be received. Defaults to zero, receiving all blocks.
+         * @param amount the minimum amount
+         * @return this builder
+         */
+        public Builder minimumAmount(NanoAmount amount) {
+            if (amount == null) throw new IllegalArgumentException("Amount cannot be null.");
+            this.minAmount = amount;
+            return this;
+        }
+        
+        /**
+         * Sets the number of accounts included in each {@code accounts_pending} request during a sweep. Defaults to
+         * {@code 500}.
+         * @param batchSize the number of accounts per request
+         * @return this builder
+         */
+        public Builder sweepBatchSize(int batchSize) {
+            if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1.");
+            this.sweepBatchSize = batchSize;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of pending blocks retrieved for each account during a sweep. Defaults to
+         * {@code 64}.
+         * @param count the maximum number of blocks per account
+         * @return this builder
+         */
+        public Builder sweepBlockCount(int count) {
+            if (count < 1) throw new IllegalArgumentException("Block count must be at least 1.");
+            this.sweepBlockCount = count;
+            return this;
+        }
+        
+        /**
+         * Sets the listener which is notified of received blocks and failures.
+         * @param listener the listener, or null to disable notifications
+         * @return this builder
+         */
+        public Builder listener(Listener listener) {
+            this.listener = listener != null ? listener : NO_LISTENER;
+            return this;
+        }
+        
+        /**
+         * Creates a new auto receiver from the configured parameters.
+         * @return a new auto receiver
+         */
+        public AutoReceiver build() {
+            return new AutoReceiver(engine, minAmount, sweepBatchSize, sweepBlockCount, listener);
+        }
+    }
+    
+    
+    /**
+     * A listener which is notified of the outcome of automatic receives.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called when a pending block has been received.
+         * @param account the receiving account
+         * @param block   the published {@code receive} block
+         */
+        void onReceive(NanoAccount account, Block block);
+        
+        /**
+         * Called when a pending block could not be received.
+         * @param account    the receiving account
+         * @param sourceHash the hash of the pending block
+         * @param e          the error
+         */
+        default void onFailure(NanoAccount account, HexData sourceHash, WalletActionException e) {}
+        
+        /**
+         * Called when a periodic sweep of the pending blocks fails.
+         * @param e the error
+         */
+        default void onSweepFailure(Exception e) {}
+    }
+    
+}
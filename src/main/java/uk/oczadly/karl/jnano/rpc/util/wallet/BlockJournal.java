@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An in-memory journal of blocks which have been committed to the cached state of an account, but not yet published.
+ * Entries are held in chain order, along with the state before and after each block, so that the cached state can be
+ * rolled back if a block fails to publish.
+ *
+ * <p>All methods synchronize on the journal itself, so callers may also synchronize on it to change the cached state
+ * atomically with respect to the journal's contents.</p>
+ */
+final class BlockJournal {
+    
+    private final LinkedList<Entry> entries = new LinkedList<>();
+    
+    
+    /**
+     * Appends a new block to the end of the journal.
+     * @param previous the state before the block
+     * @param state    the state after the block
+     * @return the journal entry
+     */
+    synchronized Entry append(AccountState previous, AccountState state) {
+        Entry entry = new Entry(previous, state);
+        entries.add(entry);
+        return entry;
+    }
+    
+    /**
+     * Removes a block from the journal once it has been published.
+     */
+    synchronized void remove(Entry entry) {
+        entries.remove(entry);
+    }
+    
+    /**
+     * Removes a block and all of the blocks which follow it from the journal.
+     * @return the removed entries in chain order, or an empty list if the entry is no longer in the journal
+     */
+    synchronized List<Entry> discardFrom(Entry entry) {
+        int index = entries.indexOf(entry);
+        if (index < 0)
+            return Collections.emptyList();
+        List<Entry> discarded = new ArrayList<>(entries.size() - index);
+        Iterator<Entry> it = entries.listIterator(index);
+        while (it.hasNext()) {
+            discarded.add(it.next());
+            it.remove();
+        }
+        return discarded;
+    }
+    
+    /**
+     * Returns the number of unpublished blocks.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+    
+    
+    static final class Entry {
+        private final AccountState previous, state;
+        
+        private Entry(AccountState previous, AccountState state) {
+            this.previous = previous;
+            this.state = state;
+        }
+        
+        /** Returns the state before the block. */
+        AccountState getPrevious() {
+            return previous;
+        }
+        
+        /** Returns the state after the block. */
+        AccountState getState() {
+            return state;
+        }
+    }
+    
+}
@@ -5,10 +5,12 @@
 
 package uk.oczadly.karl.jnano.rpc.util.wallet;
 
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.rpc.QueryCallback;
 import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
 import uk.oczadly.karl.jnano.rpc.exception.RpcEntityNotFoundException;
 import uk.oczadly.karl.jnano.rpc.exception.RpcException;
@@ -17,16 +19,25 @@ import uk.oczadly.karl.jnano.rpc.request.node.RequestAccountInfo;
 import uk.oczadly.karl.jnano.rpc.request.node.RequestBlockInfo;
 import uk.oczadly.karl.jnano.rpc.request.node.RequestPending;
 import uk.oczadly.karl.jnano.rpc.request.node.RequestProcess;
+import uk.oczadly.karl.jnano.rpc.response.ResponseBlockHash;
 import uk.oczadly.karl.jnano.rpc.response.ResponseBlockInfo;
 import uk.oczadly.karl.jnano.rpc.response.ResponsePending;
 import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockAndState;
 import uk.oczadly.karl.jnano.util.blockproducer.BlockProducer;
 import uk.oczadly.karl.jnano.util.blockproducer.LocalWalletAccount;
+import uk.oczadly.karl.jnano.util.workgen.FutureWork;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -39,8 +50,14 @@ import java.util.function.Supplier;
  *
  * <p>Due to the asynchronous nature of Nano, you should not use multiple instances representing the same account, nor
  * should you use the same account on another wallet, node or system at the same time — doing so can result in
- * unexpected transaction failures. If a block is rejected by the node due to an outdated cached state, the state will
- * be refreshed and a new block generated up to 2 times before failing and throwing an exception.</p>
+ * unexpected transaction failures. If a block is rejected by the node, the state is retrieved from the node and
+ * compared with the cached state. If the block was already published (eg. a previous request timed out) then it is
+ * returned, and if the account was changed elsewhere then a new block is generated from the node's state (up to 2
+ * times). Otherwise, the block itself was invalid and an exception is thrown without retrying.</p>
+ *
+ * <p>Blocks are created and published one at a time, but retrieving and refreshing the state does not wait for other
+ * actions to complete. The cached state is updated optimistically, and will not be overwritten if a block is committed
+ * while the state is being retrieved.</p>
  *
  * <p>Example usage:</p>
  * <pre>{@code
@@ -81,12 +98,15 @@ public class LocalRpcWalletAccount {
     
     private static final NanoAmount DEFAULT_THRESHOLD = NanoAmount.valueOfRawExponent(24);
     private static final int RECEIVE_BATCH_SIZE = 25;
+    private static final int RECEIVE_WORK_WINDOW = 16; // Max blocks with work requested ahead of the last published
     private static final int MAX_RETRY_ATTEMPTS = 3;
     
     private final RpcQueryNode rpcClient;
     private final LocalWalletAccount walletAccount;
     private volatile boolean hasRetrievedState = false;
     private final Lock lock = new ReentrantLock(true);
+    private CompletableFuture<Block> publishTail = CompletableFuture.completedFuture(null); // Guarded by lock
+    private final BlockJournal journal = new BlockJournal();
     
     
     /**
@@ -150,31 +170,39 @@ public class LocalRpcWalletAccount {
      * query.
      *
      * <p>Most implementations should never have to call this method, as the state will automatically be retrieved or
-     * updated when necessary through the other methods.</p>
+     * updated when necessary through the other methods. This method does not wait for other actions on the account to
+     * complete; if a block is committed while the state is being retrieved, then the state is retrieved again. While
+     * blocks created by {@link #sendAsync(NanoAccount, NanoAmount)} or {@link #receiveAsync(HexData)} are awaiting
+     * publication, the cached state is ahead of the node and is left unchanged.</p>
      *
      * @return true if the internally cached state was externally updated and has changed, false if it remains the same
      *         or is the first time retrieving the state
      * @throws WalletActionException if an error occurs with the RPC query
      */
     public boolean refreshState() throws WalletActionException {
-        lock.lock();
-        try {
-            AccountState newState;
-            try {
-                // Retrieve state via RPC
-                newState = AccountState.fromAccountInfo(
-                        rpcClient.processRequest(new RequestAccountInfo(getAccount().toAddress())));
-            } catch (RpcEntityNotFoundException e) {
-                newState = AccountState.UNOPENED; // Account hasn't been opened
-            } catch (RpcException | IOException e) {
-                throw wrapRpcException("Couldn't retrieve account state.", e);
+        for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
+            LocalWalletAccount.StateSnapshot snapshot = walletAccount.getSnapshot();
+            AccountState newState = fetchState();
+            synchronized (journal) {
+                if (journal.size() > 0)
+                    return false; // Unpublished blocks follow on from the node's frontier, so keep the cached state
+                if (walletAccount.compareAndSetState(snapshot, newState)) {
+                    boolean hasChanged = !snapshot.getState().equals(newState) && hasRetrievedState;
+                    hasRetrievedState = true;
+                    return hasChanged;
+                }
             }
-            boolean hasChanged = !hasRetrievedState && walletAccount.updateState(newState);
-            hasRetrievedState = true;
-            return hasChanged;
-        } finally {
-            lock.unlock();
         }
+        return false; // State is being committed concurrently, so is already up to date
+    }
+    
+    /**
+     * Returns the number of blocks created by {@link #sendAsync(NanoAccount, NanoAmount)} or
+     * {@link #receiveAsync(HexData)} which have been committed to the cached state, but not yet published.
+     * @return the number of unpublished blocks
+     */
+    public int getUnpublishedCount() {
+        return journal.size();
     }
     
     /**
@@ -222,6 +250,32 @@ public class LocalRpcWalletAccount {
         return processBlock(() -> walletAccount.createSend(destination, amount));
     }
     
+    /**
+     * Sends the specified amount of funds to an account, returning without waiting for the work to be generated or the
+     * block to be published.
+     *
+     * <p>The block is signed before this method returns, and the account state is updated immediately so that further
+     * blocks may be created straight away. The work is then generated in the background, and the block is published
+     * once its work is available and all previously created asynchronous blocks have been published. This allows many
+     * blocks to be created without waiting for the work of each one in turn.</p>
+     *
+     * <p>The returned future completes exceptionally with a {@link WalletActionException} if the work could not be
+     * generated or the block was rejected, in which case the account state will be refreshed before the next action.
+     * Unlike {@link #send(NanoAccount, NanoAmount)}, rejected blocks are not retried. Cancelling the returned future
+     * before the work has been generated cancels the work and discards the block, along with any asynchronous blocks
+     * created after it.</p>
+     *
+     * @param destination the account where the funds should be sent
+     * @param amount      the amount of funds to send
+     * @return a future which completes with the published {@code send} block
+     * @throws WalletActionException if an error occurs with the RPC query or block construction, or if there are not
+     *                               enough funds available in the account
+     */
+    public CompletableFuture<Block> sendAsync(NanoAccount destination, NanoAmount amount)
+            throws WalletActionException {
+        return processBlockAsync(() -> walletAccount.createSendAsync(destination, amount));
+    }
+    
     /**
      * Attempts to send the entire balance to the specified account, returning an empty value if there are no remaining
      * funds to send (account has zero balance).
@@ -260,21 +314,39 @@ public class LocalRpcWalletAccount {
         
         lock.lock();
         try {
-            ResponseBlockInfo pendingBlockInfo;
-            try {
-                pendingBlockInfo = rpcClient.processRequest(new RequestBlockInfo(sourceHash.toHexString()));
-            } catch (RpcEntityNotFoundException e) {
-                throw new WalletActionException("Source block \"" + sourceHash + "\" could not be found.", e);
-            } catch (RpcException | IOException e) {
-                throw wrapRpcException("Failed to retrieve pending block info.", e);
-            }
-            if (!pendingBlockInfo.isConfirmed()) {
-                throw new WalletActionException("Source block is unconfirmed.");
-            } else if (pendingBlockInfo.getAmount() == null ||
-                    !pendingBlockInfo.getContents().getIntent().isSendFunds().boolLenient()) {
-                throw new WalletActionException("Specified block is not a send block.");
-            }
-            return receive(sourceHash, pendingBlockInfo.getAmount());
+            return receive(sourceHash, getPendingAmount(sourceHash));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Receives the specified pending {@code send} block, returning without waiting for the work to be generated or the
+     * block to be published.
+     *
+     * <p>The source block is looked up and the new block is signed before this method returns, and the account state
+     * is updated immediately so that further blocks may be created straight away. The work is then generated in the
+     * background, and the block is published once its work is available and all previously created asynchronous
+     * blocks have been published. The returned future completes exceptionally with a {@link WalletActionException} if
+     * the work could not be generated or the block was rejected, in which case the account state will be refreshed
+     * before the next action. Cancelling the returned future before the work has been generated cancels the work and
+     * discards the block, along with any asynchronous blocks created after it.</p>
+     *
+     * @param sourceHash the hash of the pending {@code send} block
+     * @return a future which completes with the published {@code receive} block
+     * @throws WalletActionException if an error occurs with the RPC queries or block construction, or the specified
+     *                               block could not be found in the ledger
+     *
+     * @see #receive(HexData)
+     */
+    public CompletableFuture<Block> receiveAsync(HexData sourceHash) throws WalletActionException {
+        if (sourceHash == null)
+            throw new IllegalArgumentException("Source hash cannot be null.");
+        
+        lock.lock();
+        try {
+            NanoAmount amount = getPendingAmount(sourceHash);
+            return processBlockAsync(() -> walletAccount.createReceiveAsync(sourceHash, amount));
         } finally {
             lock.unlock();
         }
@@ -290,6 +362,8 @@ public class LocalRpcWalletAccount {
      * @param count the maximum number of blocks to receive in this batch
      * @return a set containing the generated and published {@code receive} blocks
      * @throws WalletActionException if an error occurs with the RPC queries, work generation or block processing
+     * @throws PartialReceiveException if an error occurs after some of the blocks have been published, containing the
+     *                                 published blocks
      *
      * @see #receiveAll()
      */
@@ -304,10 +378,17 @@ public class LocalRpcWalletAccount {
      * <p>Calling this method will construct and sign a set of new blocks, generate the appropriate work for them, and
      * publish the blocks to the network via RPC.</p>
      *
+     * <p>Blocks are processed as a pipeline: as the root of each block is the hash of the previous block, all of the
+     * blocks are signed up-front and work is requested for a limited number of blocks ahead of the last published
+     * block. The blocks are then published and committed in order as their work completes, so publication of earlier
+     * blocks overlaps with the generation of work for later blocks.</p>
+     *
      * @param count     the maximum number of blocks to receive in this batch
      * @param threshold the minimum amount threshold
      * @return a set containing the generated and published {@code receive} blocks
      * @throws WalletActionException if an error occurs with the RPC queries, work generation or block processing
+     * @throws PartialReceiveException if an error occurs after some of the blocks have been published, containing the
+     *                                 published blocks
      *
      * @see #receiveAll(NanoAmount)
      */
@@ -327,16 +408,104 @@ public class LocalRpcWalletAccount {
                 throw wrapRpcException("Failed to retrieve pending blocks.", e);
             }
             // Receive blocks
-            Set<Block> published = new HashSet<>(pending.getPendingBlocks().size());
-            for (Map.Entry<HexData, ResponsePending.PendingBlock> block : pending.getPendingBlocks().entrySet()) {
-                published.add(receive(block.getKey(), block.getValue().getAmount()));
-            }
-            return published;
+            return receivePipelined(new ArrayList<>(pending.getPendingBlocks().entrySet()));
         } finally {
             lock.unlock();
         }
     }
     
+    private Set<Block> receivePipelined(List<Map.Entry<HexData, ResponsePending.PendingBlock>> pending)
+            throws WalletActionException {
+        Set<Block> published = new HashSet<>(pending.size());
+        try {
+            receivePipelined(pending, published);
+            return published;
+        } catch (WalletActionException e) {
+            if (published.isEmpty())
+                throw e;
+            throw new PartialReceiveException(e.getMessage(), e.getCause(), published);
+        }
+    }
+    
+    private void receivePipelined(List<Map.Entry<HexData, ResponsePending.PendingBlock>> pending,
+                                  Set<Block> published) throws WalletActionException {
+        BlockProducer producer = walletAccount.getBlockProducer();
+        WorkGenerator workGen = producer.getSpecification().getWorkGenerator();
+        awaitAsyncBlocks();
+        initState();
+        for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
+            if (pending.isEmpty()) return;
+            
+            // Create and sign all blocks, starting work generation for the first window of blocks
+            List<BlockAndState> blocks = new ArrayList<>(pending.size());
+            List<FutureWork> work = new ArrayList<>(pending.size());
+            int i = 0;
+            try {
+                AccountState state = walletAccount.getState();
+                for (Map.Entry<HexData, ResponsePending.PendingBlock> entry : pending) {
+                    BlockAndState block = producer.prepareReceive(
+                            walletAccount.getSigningKey(), state, entry.getKey(), entry.getValue().getAmount());
+                    blocks.add(block);
+                    if (work.size() < RECEIVE_WORK_WINDOW)
+                        work.add(requestWork(workGen, block.getBlock()));
+                    state = block.getState();
+                }
+                
+                // Publish and commit blocks in order as their work completes, extending the window as each is published
+                for (; i < blocks.size(); i++) {
+                    Block block = blocks.get(i).getBlock();
+                    if (work.get(i) != null)
+                        block.setWorkSolution(work.get(i).get().getWork());
+                    rpcClient.processRequest(new RequestProcess(block, false, false));
+                    walletAccount.updateState(blocks.get(i).getState());
+                    published.add(block);
+                    if (work.size() < blocks.size())
+                        work.add(requestWork(workGen, blocks.get(work.size()).getBlock()));
+                }
+                return;
+            } catch (RpcExternalException e) {
+                cancelWork(work, i);
+                switch (resync(blocks.get(i).getBlock())) {
+                    case ACCEPTED:
+                        published.add(blocks.get(i).getBlock());
+                        pending = pending.subList(i + 1, pending.size());
+                        break;
+                    case RETRY: // Retry the remaining blocks from the node's state
+                        pending = pending.subList(i, pending.size());
+                        break;
+                    default:
+                        throw wrapRpcException("Block rejected by node: " + e.getMessage(), e);
+                }
+            } catch (BlockProducer.BlockCreationException e) {
+                cancelWork(work, i);
+                throw new WalletActionException(e.getMessage(), e);
+            } catch (ExecutionException e) {
+                cancelWork(work, i);
+                throw new WalletActionException("Couldn't generate work.", e);
+            } catch (InterruptedException e) {
+                cancelWork(work, i);
+                throw new WalletActionException("Work generation was interrupted.", e);
+            } catch (RpcException | IOException e) {
+                cancelWork(work, i);
+                hasRetrievedState = false; // The block may have been processed despite the error
+                throw wrapRpcException("Block rejected by node: " + e.getMessage(), e);
+            }
+        }
+        throw new WalletActionException("Account state outdated, retried too many times. " +
+                "Is the account being concurrently used elsewhere?");
+    }
+    
+    private static FutureWork requestWork(WorkGenerator workGen, Block block) {
+        return block.getWorkSolution() == null ? workGen.generate(block) : null;
+    }
+    
+    private static void cancelWork(List<FutureWork> work, int fromIndex) {
+        for (int i = fromIndex; i < work.size(); i++) {
+            if (work.get(i) != null)
+                work.get(i).cancel();
+        }
+    }
+    
     /**
      * Attempts to receive all pending blocks of at least {@code 0.000001 NANO} in value.
      *
@@ -349,6 +518,8 @@ public class LocalRpcWalletAccount {
      *
      * @return a set containing the generated and published {@code receive} blocks
      * @throws WalletActionException if an error occurs with the RPC queries, work generation or block processing
+     * @throws PartialReceiveException if an error occurs after some of the blocks have been published, containing the
+     *                                 published blocks
      *
      * @see #receiveBatch(int)
      */
@@ -369,15 +540,25 @@ public class LocalRpcWalletAccount {
      * @param threshold the minimum amount threshold
      * @return a set containing the generated and published {@code receive} blocks
      * @throws WalletActionException if an error occurs with the RPC queries, work generation or block processing
+     * @throws PartialReceiveException if an error occurs after some of the blocks have been published, containing the
+     *                                 published blocks
      *
      * @see #receiveBatch(int, NanoAmount)
      */
     public Set<Block> receiveAll(NanoAmount threshold) throws WalletActionException {
         Set<Block> batch, published = new HashSet<>();
-        do {
-            batch = receiveBatch(RECEIVE_BATCH_SIZE, threshold);
-            published.addAll(batch);
-        } while (batch.size() >= RECEIVE_BATCH_SIZE);
+        try {
+            do {
+                batch = receiveBatch(RECEIVE_BATCH_SIZE, threshold);
+                published.addAll(batch);
+            } while (batch.size() >= RECEIVE_BATCH_SIZE);
+        } catch (WalletActionException e) {
+            if (e instanceof PartialReceiveException)
+                published.addAll(((PartialReceiveException)e).getReceivedBlocks());
+            if (published.isEmpty())
+                throw e;
+            throw new PartialReceiveException(e.getMessage(), e.getCause(), published);
+        }
         return published;
     }
     
@@ -409,6 +590,7 @@ public class LocalRpcWalletAccount {
     private Block processBlock(Supplier<Block> blockSupplier) throws WalletActionException {
         lock.lock();
         try {
+            awaitAsyncBlocks();
             initState();
             for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS; attempt++) {
                 // Create block
@@ -417,11 +599,13 @@ public class LocalRpcWalletAccount {
                 try {
                     // Publish block to network
                     rpcClient.processRequest(new RequestProcess(producedBlock, false, false));
-                    walletAccount.commitState();
+                    commitState();
                     return producedBlock;
                 } catch (RpcExternalException e) {
-                    // Refresh cached state and retry
-                    if (!refreshState()) {
+                    Resync result = resync(producedBlock);
+                    if (result == Resync.ACCEPTED) {
+                        return producedBlock;
+                    } else if (result == Resync.REJECTED) {
                         throw e; // State was already up to date
                     }
                 }
@@ -431,27 +615,223 @@ public class LocalRpcWalletAccount {
         } catch (BlockProducer.BlockCreationException e) {
             throw new WalletActionException(e.getMessage(), e);
         } catch (RpcException | IOException e) {
+            hasRetrievedState = false; // The block may have been processed despite the error
             throw wrapRpcException("Block rejected by node: " + e.getMessage(), e);
         } finally {
             lock.unlock();
         }
     }
     
-    private AccountState initState() throws WalletActionException {
-        if (!hasRetrievedState) {
-            lock.lock();
-            try {
-                if (!hasRetrievedState) {
-                    refreshState();
+    private CompletableFuture<Block> processBlockAsync(Supplier<CompletableFuture<Block>> blockSupplier)
+            throws WalletActionException {
+        lock.lock();
+        try {
+            if (publishTail.isCompletedExceptionally())
+                publishTail = CompletableFuture.completedFuture(null); // Previous failure, state is refreshed below
+            CompletableFuture<Block> futureBlock = null;
+            BlockJournal.Entry entry = null;
+            for (int attempt = 0; attempt < MAX_RETRY_ATTEMPTS && entry == null; attempt++) {
+                initState();
+                try {
+                    futureBlock = blockSupplier.get();
+                } catch (BlockProducer.BlockCreationException e) {
+                    throw new WalletActionException(e.getMessage(), e);
+                }
+                // Subsequent blocks follow on before this one is published
+                synchronized (journal) {
+                    AccountState previous = walletAccount.getState();
+                    try {
+                        walletAccount.commitState();
+                        entry = journal.append(previous, walletAccount.getState());
+                    } catch (IllegalStateException e) {
+                        // State was refreshed concurrently, so discard the block and create it again
+                        futureBlock.cancel(true);
+                        hasRetrievedState = false;
+                    }
                 }
-            } finally {
-                lock.unlock();
             }
+            if (entry == null) {
+                throw new WalletActionException("Account state outdated, retried too many times. " +
+                        "Is the account being concurrently used elsewhere?");
+            }
+            BlockJournal.Entry journalEntry = entry;
+            
+            // Publish once the work is generated and the previous blocks have been published
+            CompletableFuture<Block> published = publishTail
+                    .thenCombine(futureBlock, (prev, block) -> block)
+                    .thenCompose(this::publishAsync)
+                    .handle((block, ex) -> {
+                        if (ex == null) {
+                            journal.remove(journalEntry);
+                            return block;
+                        }
+                        rollback(journalEntry, ex);
+                        throw new CompletionException(toWalletException(ex));
+                    });
+            publishTail = published;
+            // Cancelling the returned future cancels the work, which then discards the block
+            return JNH.propagateCancel(futureBlock, published.thenApply(Function.identity()));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private CompletableFuture<Block> publishAsync(Block block) {
+        CompletableFuture<Block> future = new CompletableFuture<>();
+        rpcClient.processRequestAsync(new RequestProcess(block, false, false),
+                new QueryCallback<RequestProcess, ResponseBlockHash>() {
+                    @Override
+                    public void onResponse(ResponseBlockHash response, RequestProcess request) {
+                        future.complete(block);
+                    }
+                    
+                    @Override
+                    public void onFailure(RpcException ex, RequestProcess request) {
+                        future.completeExceptionally(
+                                wrapRpcException("Block rejected by node: " + ex.getMessage(), ex));
+                    }
+                    
+                    @Override
+                    public void onFailure(IOException ex, RequestProcess request) {
+                        future.completeExceptionally(wrapRpcException("Block rejected by node.", ex));
+                    }
+                });
+        return future;
+    }
+    
+    /**
+     * Discards an unpublished block and any blocks which follow it from the journal. If the block was never sent to the
+     * node (eg. the work couldn't be generated), the cached state is rolled back to the state before the block.
+     * Otherwise the node may have processed the block despite the error (eg. the connection failed after sending the
+     * request), so the state is marked as unknown and retrieved from the node before the next action.
+     */
+    private void rollback(BlockJournal.Entry failed, Throwable ex) {
+        List<BlockJournal.Entry> discarded = journal.discardFrom(failed);
+        if (discarded.isEmpty()) return; // Already discarded by the failure of a previous block
+        LocalWalletAccount.StateSnapshot snapshot = walletAccount.getSnapshot();
+        boolean sent = false;
+        for (Throwable cause = ex; cause != null && !sent; cause = cause.getCause())
+            sent = cause instanceof RpcException || cause instanceof IOException;
+        if (sent || !snapshot.getState().equals(discarded.get(discarded.size() - 1).getState())
+                || !walletAccount.compareAndSetState(snapshot, failed.getPrevious()))
+            hasRetrievedState = false;
+    }
+    
+    /** Waits for any outstanding asynchronous blocks to be published, so the state is consistent. */
+    private void awaitAsyncBlocks() {
+        try {
+            publishTail.join();
+        } catch (CompletionException | CancellationException ignored) {
+            publishTail = CompletableFuture.completedFuture(null); // State will be refreshed
         }
+    }
+    
+    private NanoAmount getPendingAmount(HexData sourceHash) throws WalletActionException {
+        ResponseBlockInfo pendingBlockInfo;
+        try {
+            pendingBlockInfo = rpcClient.processRequest(new RequestBlockInfo(sourceHash.toHexString()));
+        } catch (RpcEntityNotFoundException e) {
+            throw new WalletActionException("Source block \"" + sourceHash + "\" could not be found.", e);
+        } catch (RpcException | IOException e) {
+            throw wrapRpcException("Failed to retrieve pending block info.", e);
+        }
+        if (!pendingBlockInfo.isConfirmed()) {
+            throw new WalletActionException("Source block is unconfirmed.");
+        } else if (pendingBlockInfo.getAmount() == null ||
+                !pendingBlockInfo.getContents().getIntent().isSendFunds().boolLenient()) {
+            throw new WalletActionException("Specified block is not a send block.");
+        }
+        return pendingBlockInfo.getAmount();
+    }
+    
+    /** Returns the underlying wallet account, for use by {@link PayoutEngine} while holding the lock. */
+    LocalWalletAccount getWalletAccount() {
+        return walletAccount;
+    }
+    
+    /** Returns the lock which must be held while creating and publishing blocks for this account. */
+    Lock getLock() {
+        return lock;
+    }
+    
+    /** Marks the cached state as unknown, so it is retrieved from the node before the next action. */
+    void invalidateState() {
+        hasRetrievedState = false;
+    }
+    
+    /** Waits for outstanding asynchronous blocks, then returns the state (retrieving it if necessary). */
+    AccountState loadState() throws WalletActionException {
+        awaitAsyncBlocks();
+        return initState();
+    }
+    
+    private AccountState initState() throws WalletActionException {
+        if (!hasRetrievedState)
+            refreshState();
         return walletAccount.getState();
     }
     
-    private WalletActionException wrapRpcException(String message, Exception e) {
+    private AccountState fetchState() throws WalletActionException {
+        try {
+            return AccountState.fromAccountInfo(
+                    rpcClient.processRequest(new RequestAccountInfo(getAccount().toAddress())));
+        } catch (RpcEntityNotFoundException e) {
+            return AccountState.UNOPENED; // Account hasn't been opened
+        } catch (RpcException | IOException e) {
+            throw wrapRpcException("Couldn't retrieve account state.", e);
+        }
+    }
+    
+    private void commitState() {
+        try {
+            walletAccount.commitState();
+        } catch (IllegalStateException e) {
+            hasRetrievedState = false; // State was changed concurrently, so retrieve it before the next block
+        }
+    }
+    
+    /**
+     * Determines why a block was rejected by comparing the cached state with the node's state, and updates the cached
+     * state to match the node.
+     */
+    private Resync resync(Block rejected) throws WalletActionException {
+        LocalWalletAccount.StateSnapshot snapshot = walletAccount.getSnapshot();
+        AccountState nodeState = fetchState();
+        hasRetrievedState = true;
+        if (nodeState.equals(snapshot.getState()))
+            return Resync.REJECTED; // Cached state is up to date, so the block itself is invalid
+        walletAccount.updateState(nodeState);
+        if (nodeState.isOpened() && (nodeState.getFrontierHash().equals(rejected.getHash())
+                || isInLedger(rejected.getHash())))
+            return Resync.ACCEPTED; // Block was already published, possibly followed by other blocks
+        return Resync.RETRY;
+    }
+    
+    /** Returns true if the node holds the block within this account's chain, at any depth. */
+    private boolean isInLedger(HexData hash) throws WalletActionException {
+        try {
+            return rpcClient.processRequest(new RequestBlockInfo(hash.toHexString()))
+                    .getAccount().equalsIgnorePrefix(getAccount());
+        } catch (RpcEntityNotFoundException e) {
+            return false;
+        } catch (RpcException | IOException e) {
+            throw wrapRpcException("Couldn't retrieve block info.", e);
+        }
+    }
+    
+    private static WalletActionException toWalletException(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null)
+            e = e.getCause();
+        if (e instanceof WalletActionException) {
+            return (WalletActionException)e;
+        } else if (e instanceof BlockProducer.BlockCreationException) {
+            return new WalletActionException(e.getMessage(), e);
+        } else {
+            return new WalletActionException("Unexpected exception thrown.", e);
+        }
+    }
+    
+    static WalletActionException wrapRpcException(String message, Exception e) {
         if (e instanceof RpcException) {
             return new WalletActionException(message, e);
         } else if (e instanceof IOException) {
@@ -476,4 +856,14 @@ public class LocalRpcWalletAccount {
         return Objects.hash(rpcClient, walletAccount);
     }
     
+    
+    private enum Resync {
+        /** The block was already published. */
+        ACCEPTED,
+        /** The account was changed elsewhere, and the block should be recreated from the node's state. */
+        RETRY,
+        /** The cached state was up to date, so the block is invalid. */
+        REJECTED
+    }
+    
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import uk.oczadly.karl.jnano.model.block.Block;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Thrown when a batch of {@code receive} blocks could not be completed, after some of the blocks were already
+ * published.
+ *
+ * <p>The message and cause are those of the error which stopped the batch. The published blocks have been committed
+ * to the account state, and can be retrieved through {@link #getReceivedBlocks()}.</p>
+ *
+ * @see LocalRpcWalletAccount#receiveBatch(int, uk.oczadly.karl.jnano.model.NanoAmount)
+ */
+public class PartialReceiveException extends WalletActionException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final Set<Block> received;
+    
+    public PartialReceiveException(String message, Throwable cause, Set<Block> received) {
+        super(message, cause);
+        if (received == null) throw new IllegalArgumentException("Received blocks set cannot be null.");
+        this.received = Collections.unmodifiableSet(new HashSet<>(received));
+    }
+    
+    
+    /**
+     * Returns the {@code receive} blocks which were published before the error occurred.
+     * @return the published blocks
+     */
+    public Set<Block> getReceivedBlocks() {
+        return received;
+    }
+    
+}
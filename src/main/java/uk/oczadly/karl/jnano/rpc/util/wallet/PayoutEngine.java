@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.exception.RpcExternalException;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestProcess;
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockAndState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockProducer;
+import uk.oczadly.karl.jnano.util.blockproducer.LocalWalletAccount;
+import uk.oczadly.karl.jnano.util.workgen.FutureWork;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Sends a large batch of payouts from a single {@link LocalRpcWalletAccount}, without waiting for the work of each
+ * block in turn.
+ *
+ * <p>The chain of {@code send} blocks is constructed and signed locally from consecutive account states, and work is
+ * requested for each block as soon as it is signed. The blocks are published in order as their work completes, while
+ * the work for the following blocks is generated. To limit the number of outstanding work requests, no more than the
+ * configured window of blocks are signed ahead of the last published block.</p>
+ *
+ * <p>If a block is rejected by the node, the unpublished blocks are discarded and the account state is refreshed.
+ * Blocks of this batch which the node already holds are counted as published, and the remaining payouts are rebuilt
+ * from the node's frontier. If publishing fails for another reason (eg. a connection error), the state is refreshed in
+ * the same way before the result is returned, so that blocks which the node processed are not reported as unsent.
+ * Payouts are processed while holding the account's lock, so other actions on the same
+ * {@link LocalRpcWalletAccount} will wait until the batch has finished.</p>
+ *
+ * <pre>{@code
+ * PayoutEngine payouts = new PayoutEngine(walletAccount);
+ * PayoutEngine.Result result = payouts.send(Arrays.asList(
+ *         new PayoutEngine.Payout(account1, NanoAmount.valueOfNano("1")),
+ *         new PayoutEngine.Payout(account2, NanoAmount.valueOfNano("2.5"))));
+ * if (!result.isComplete())
+ *     System.out.println("Failed to send " + result.getUnsent().size() + " payouts: " + result.getError().get());
+ * }</pre>
+ */
+public final class PayoutEngine {
+    
+    /** The default maximum number of blocks which are signed ahead of the last published block. */
+    public static final int DEFAULT_WINDOW = 16;
+    private static final int MAX_RETRY_ATTEMPTS = 3;
+    
+    private final LocalRpcWalletAccount account;
+    private final int window;
+    
+    /**
+     * Constructs a payout engine with the default window of {@value #DEFAULT_WINDOW} blocks.
+     * @param account the account to send payouts from
+     */
+    public PayoutEngine(LocalRpcWalletAccount account) {
+        this(account, DEFAULT_WINDOW);
+    }
+    
+    /**
+     * Constructs a payout engine.
+     * @param account the account to send payouts from
+     * @param window  the maximum number of blocks which are signed ahead of the last published block
+     */
+    public PayoutEngine(LocalRpcWalletAccount account, int window) {
+        if (account == null) throw new IllegalArgumentException("Account cannot be null.");
+        if (window < 1) throw new IllegalArgumentException("Window size must be at least 1.");
+        this.account = account;
+        this.window = window;
+    }
+    
+    
+    /**
+     * Returns the account which payouts are sent from.
+     * @return the account
+     */
+    public LocalRpcWalletAccount getAccount() {
+        return account;
+    }
+    
+    /**
+     * Returns the maximum number of blocks which are signed ahead of the last published block.
+     * @return the window size
+     */
+    public int getWindowSize() {
+        return window;
+    }
+    
+    
+    /**
+     * Sends the given payouts, in order.
+     *
+     * <p>If a payout could not be sent (eg. not enough funds, or the block was rejected too many times), then the
+     * payouts which were published are returned along with the remaining unsent payouts and the error.</p>
+     *
+     * @param payouts the payouts to send
+     * @return the result, containing the published blocks in the same order as the payouts
+     */
+    public Result send(List<Payout> payouts) {
+        if (payouts == null)
+            throw new IllegalArgumentException("Payouts list cannot be null.");
+        if (payouts.contains(null))
+            throw new IllegalArgumentException("Payouts list cannot contain null values.");
+        
+        List<Block> published = new ArrayList<>(payouts.size());
+        Deque<PendingSend> unpublished = new ArrayDeque<>(window);
+        Lock lock = account.getLock();
+        lock.lock();
+        try {
+            LocalWalletAccount wallet = account.getWalletAccount();
+            BlockProducer producer = wallet.getBlockProducer();
+            WorkGenerator workGen = producer.getSpecification().getWorkGenerator();
+            AccountState chainState = account.loadState();
+            BlockProducer.BlockCreationException buildError = null;
+            int built = 0, attempts = 0;
+            while (published.size() < payouts.size()) {
+                // Extend the chain up to the window size, requesting work as soon as each block is signed
+                while (buildError == null && unpublished.size() < window && built < payouts.size()) {
+                    Payout payout = payouts.get(built);
+                    try {
+                        BlockAndState block = producer.prepareSend(wallet.getSigningKey(), chainState,
+                                payout.getDestination(), payout.getAmount());
+                        unpublished.add(new PendingSend(block, block.getBlock().getWorkSolution() == null
+                                ? workGen.generate(block.getBlock()) : null));
+                        chainState = block.getState();
+                        built++;
+                    } catch (BlockProducer.BlockCreationException e) {
+                        buildError = e; // Publish the blocks ahead of this payout first
+                    }
+                }
+                if (unpublished.isEmpty())
+                    throw buildError;
+                
+                // Publish the next block once its work is ready
+                PendingSend next = unpublished.peek();
+                Block block = next.block.getBlock();
+                if (next.work != null)
+                    block.setWorkSolution(next.work.get().getWork());
+                try {
+                    account.getRpcClient().processRequest(new RequestProcess(block, false, false));
+                } catch (RpcExternalException e) {
+                    // Roll back the unpublished chain and resume from the node's frontier
+                    if (++attempts >= MAX_RETRY_ATTEMPTS || !account.refreshState())
+                        throw LocalRpcWalletAccount.wrapRpcException("Block rejected by node: " + e.getMessage(), e);
+                    reconcile(wallet.getState(), unpublished, published);
+                    cancelAll(unpublished);
+                    chainState = wallet.getState();
+                    built = published.size();
+                    buildError = null;
+                    continue;
+                }
+                unpublished.poll();
+                wallet.updateState(next.block.getState());
+                published.add(block);
+            }
+            return new Result(published, Collections.emptyList(), null);
+        } catch (WalletActionException e) {
+            return failed(published, payouts, e);
+        } catch (BlockProducer.BlockCreationException e) {
+            return failed(published, payouts, new WalletActionException(e.getMessage(), e));
+        } catch (ExecutionException e) {
+            return failed(published, payouts, new WalletActionException("Couldn't generate work.", e));
+        } catch (InterruptedException e) {
+            return failed(published, payouts, new WalletActionException("Work generation was interrupted.", e));
+        } catch (RpcException | IOException e) {
+            // The block may have been processed before the error occurred, so check the node's state
+            WalletActionException error = LocalRpcWalletAccount.wrapRpcException(
+                    "Block rejected by node: " + e.getMessage(), e);
+            try {
+                account.refreshState();
+                reconcile(account.getWalletAccount().getState(), unpublished, published);
+            } catch (WalletActionException e2) {
+                account.invalidateState(); // Unknown whether the block was published
+                error.addSuppressed(e2);
+            }
+            return failed(published, payouts, error);
+        } finally {
+            cancelAll(unpublished);
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "PayoutEngine{" +
+                "account=" + account.getAccount() +
+                ", window=" + window + '}';
+    }
+    
+    
+    private static Result failed(List<Block> published, List<Payout> payouts, WalletActionException error) {
+        return new Result(published, new ArrayList<>(payouts.subList(published.size(), payouts.size())), error);
+    }
+    
+    /**
+     * Moves the unpublished blocks which the node already holds (eg. a previous request timed out) to the published
+     * list, up to the node's frontier.
+     */
+    private static void reconcile(AccountState nodeState, Deque<PendingSend> unpublished, List<Block> published) {
+        HexData frontier = nodeState.getFrontierHash();
+        if (unpublished.stream().anyMatch(s -> s.block.getBlock().getHash().equals(frontier))) {
+            PendingSend send;
+            do {
+                send = unpublished.poll();
+                published.add(send.block.getBlock());
+            } while (!send.block.getBlock().getHash().equals(frontier));
+        }
+    }
+    
+    private static void cancelAll(Deque<PendingSend> sends) {
+        PendingSend send;
+        while ((send = sends.poll()) != null) {
+            if (send.work != null)
+                send.work.cancel();
+        }
+    }
+    
+    
+    /**
+     * A single payout of funds to a destination account.
+     */
+    public static final class Payout {
+        private final NanoAccount destination;
+        private final NanoAmount amount;
+        
+        /**
+         * @param destination the account where the funds will be sent
+         * @param amount      the amount to send
+         */
+        public Payout(NanoAccount destination, NanoAmount amount) {
+            if (destination == null) throw new IllegalArgumentException("Destination cannot be null.");
+            if (amount == null) throw new IllegalArgumentException("Amount cannot be null.");
+            this.destination = destination;
+            this.amount = amount;
+        }
+        
+        
+        /**
+         * @return the account where the funds will be sent
+         */
+        public NanoAccount getDestination() {
+            return destination;
+        }
+        
+        /**
+         * @return the amount to send
+         */
+        public NanoAmount getAmount() {
+            return amount;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Payout)) return false;
+            Payout payout = (Payout)o;
+            return destination.equals(payout.destination) && amount.equals(payout.amount);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(destination, amount);
+        }
+        
+        @Override
+        public String toString() {
+            return "Payout{destination=" + destination + ", amount=" + amount + '}';
+        }
+    }
+    
+    
+    /**
+     * The result of sending a batch of payouts.
+     */
+    public static final class Result {
+        private final List<Block> blocks;
+        private final List<Payout> unsent;
+        private final WalletActionException error;
+        
+        private Result(List<Block> blocks, List<Payout> unsent, WalletActionException error) {
+            this.blocks = Collections.unmodifiableList(blocks);
+            this.unsent = Collections.unmodifiableList(unsent);
+            this.error = error;
+        }
+        
+        
+        /**
+         * Returns the published {@code send} blocks, in the same order as the payouts they were created for.
+         * @return the published blocks
+         */
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+        
+        /**
+         * Returns the payouts which were not sent due to an error, in their original order.
+         * @return the unsent payouts, or an empty list if all were sent
+         */
+        public List<Payout> getUnsent() {
+            return unsent;
+        }
+        
+        /**
+         * Returns the error which stopped the remaining payouts from being sent.
+         * @return the error, or empty if all payouts were sent
+         */
+        public Optional<WalletActionException> getError() {
+            return Optional.ofNullable(error);
+        }
+        
+        /**
+         * @return true if all of the payouts were sent
+         */
+        public boolean isComplete() {
+            return error == null;
+        }
+    }
+    
+    
+    private static final class PendingSend {
+        final BlockAndState block;
+        final FutureWork work;
+        
+        PendingSend(BlockAndState block, FutureWork work) {
+            this.block = block;
+            this.work = work;
+        }
+    }
+    
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import uk.oczadly.karl.jnano.internal.NanoConst;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.rpc.QueryCallback;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestMultiAccountBalances;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestMultiAccountFrontiers;
+import uk.oczadly.karl.jnano.rpc.response.ResponseMultiAccountBalances;
+import uk.oczadly.karl.jnano.rpc.response.ResponseMultiAccountFrontiers;
+import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Discovers which account indices of a seed have been used, by checking consecutive windows of accounts with
+ * batched RPC requests.
+ *
+ * <p>Each window of accounts is derived in parallel using {@link WalletUtil#deriveRange(HexData, int, int)}, and
+ * checked with a single {@code accounts_frontiers} and {@code accounts_balances} request. An account is considered
+ * used if it has been opened, or if it has a pending balance. Several windows are requested at once, and the results
+ * are processed in index order. Discovery stops once the configured gap of consecutive unused accounts is reached.</p>
+ *
+ * <pre>{@code
+ * SeedDiscovery discovery = SeedDiscovery.builder(rpcClient)
+ *         .gapLimit(50)
+ *         .build();
+ * discovery.discover(seed, acc -> System.out.println(acc.getIndex() + ": " + acc.getAccount()));
+ * }</pre>
+ */
+public final class SeedDiscovery {
+    
+    private final RpcQueryNode rpcClient;
+    private final int gapLimit, batchSize, maxConcurrentBatches;
+    private final boolean includePending;
+    private final String prefix;
+    
+    private SeedDiscovery(RpcQueryNode rpcClient, int gapLimit, int batchSize, int maxConcurrentBatches,
+                          boolean includePending, String prefix) {
+        this.rpcClient = rpcClient;
+        this.gapLimit = gapLimit;
+        this.batchSize = batchSize;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.includePending = includePending;
+        this.prefix = prefix;
+    }
+    
+    
+    /**
+     * @return the RPC client used to check the accounts
+     */
+    public RpcQueryNode getRpcClient() {
+        return rpcClient;
+    }
+    
+    /**
+     * @return the number of consecutive unused accounts after which discovery stops
+     */
+    public int getGapLimit() {
+        return gapLimit;
+    }
+    
+    /**
+     * @return the number of accounts checked by each batch of requests
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    
+    /**
+     * Discovers the used accounts of a seed, starting from index zero.
+     *
+     * @param seed the seed
+     * @return the used accounts, in index order
+     * @throws IOException  if an error occurs with the connection to the node
+     * @throws RpcException if the node returns an error
+     */
+    public List<DiscoveredAccount> discover(HexData seed) throws IOException, RpcException {
+        List<DiscoveredAccount> accounts = new ArrayList<>();
+        discover(seed, accounts::add);
+        return accounts;
+    }
+    
+    /**
+     * Discovers the used accounts of a seed, starting from index zero. Accounts are passed to the consumer in index
+     * order as soon as each batch has been checked.
+     *
+     * @param seed     the seed
+     * @param consumer the consumer which accepts each used account
+     * @return the number of used accounts discovered
+     * @throws IOException  if an error occurs with the connection to the node
+     * @throws RpcException if the node returns an error
+     */
+    public int discover(HexData seed, Consumer<DiscoveredAccount> consumer) throws IOException, RpcException {
+        if (seed == null)
+            throw new IllegalArgumentException("Seed cannot be null.");
+        if (consumer == null)
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        if (seed.length() != NanoConst.LEN_KEY_B)
+            throw new IllegalArgumentException("Seed length is invalid.");
+        
+        Deque<CompletableFuture<List<DiscoveredAccount>>> batches = new ArrayDeque<>(maxConcurrentBatches);
+        long nextIndex = 0;
+        int found = 0, gap = 0;
+        try {
+            while (true) {
+                // Request the following batches while the current one is being checked
+                while (batches.size() < maxConcurrentBatches && nextIndex <= 0xFFFFFFFFL) {
+                    int count = (int)Math.min(batchSize, 0x100000000L - nextIndex);
+                    batches.add(checkBatch(WalletUtil.deriveRange(seed, (int)nextIndex, count)));
+                    nextIndex += count;
+                }
+                CompletableFuture<List<DiscoveredAccount>> batch = batches.poll();
+                if (batch == null)
+                    return found; // All indices have been checked
+                
+                for (DiscoveredAccount account : batch.join()) {
+                    if (account.isUsed()) {
+                        gap = 0;
+                        found++;
+                        consumer.accept(account);
+                    } else if (++gap >= gapLimit) {
+                        return found;
+                    }
+                }
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException)cause;
+            if (cause instanceof RpcException) throw (RpcException)cause;
+            throw e;
+        } finally {
+            batches.forEach(f -> f.cancel(true));
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "SeedDiscovery{" +
+                "gapLimit=" + gapLimit +
+                ", batchSize=" + batchSize +
+                ", maxConcurrentBatches=" + maxConcurrentBatches +
+                ", includePending=" + includePending + '}';
+    }
+    
+    
+    private CompletableFuture<List<DiscoveredAccount>> checkBatch(WalletUtil.KeyRange keys) {
+        String[] addresses = keys.accounts().parallel()
+                .map(NanoAccount::toAddress)
+                .toArray(String[]::new);
+        CompletableFuture<ResponseMultiAccountFrontiers> frontiers = request(
+                new RequestMultiAccountFrontiers(addresses));
+        CompletableFuture<ResponseMultiAccountBalances> balances = includePending
+                ? request(new RequestMultiAccountBalances(addresses))
+                : CompletableFuture.completedFuture(null);
+        return frontiers.thenCombine(balances, (f, b) -> {
+            Map<String, HexData> frontierMap = byPublicKey(f.getFrontiers());
+            Map<String, ResponseMultiAccountBalances.AccountBalance> balanceMap = b != null
+                    ? byPublicKey(b.getBalances()) : Collections.emptyMap();
+            List<DiscoveredAccount> accounts = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                NanoAccount account = keys.getAccount(i, prefix);
+                ResponseMultiAccountBalances.AccountBalance balance = balanceMap.get(account.toPublicKey());
+                accounts.add(new DiscoveredAccount(keys.getIndex(i), keys.getPrivateKey(i), account,
+                        frontierMap.get(account.toPublicKey()),
+                        balance != null ? balance.getPocketed() : null,
+                        balance != null ? balance.getPending() : null));
+            }
+            return accounts;
+        });
+    }
+    
+    private <Q extends RpcRequest<R>, R extends RpcResponse> CompletableFuture<R> request(Q request) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        rpcClient.processRequestAsync(request, new QueryCallback<Q, R>() {
+            @Override
+            public void onResponse(R response, Q request) {
+                future.complete(response);
+            }
+            
+            @Override
+            public void onFailure(RpcException ex, Q request) {
+                future.completeExceptionally(ex);
+            }
+            
+            @Override
+            public void onFailure(IOException ex, Q request) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+    
+    private static <V> Map<String, V> byPublicKey(Map<NanoAccount, V> map) {
+        if (map == null)
+            return Collections.emptyMap();
+        Map<String, V> keyed = new HashMap<>(map.size() * 2);
+        map.forEach((account, val) -> keyed.put(account.toPublicKey(), val));
+        return keyed;
+    }
+    
+    
+    /**
+     * Creates a new builder for a seed discovery utility.
+     * @param rpcClient the RPC client used to check the accounts
+     * @return a new builder
+     */
+    public static Builder builder(RpcQueryNode rpcClient) {
+        return new Builder(rpcClient);
+    }
+    
+    
+    /**
+     * A builder class for creating new instances of {@link SeedDiscovery}.
+     */
+    public static final class Builder {
+        private final RpcQueryNode rpcClient;
+        private int gapLimit = 20, batchSize = 100, maxConcurrentBatches = 4;
+        private boolean includePending = true;
+        private String prefix = NanoAccount.DEFAULT_PREFIX;
+        
+        private Builder(RpcQueryNode rpcClient) {
+            if (rpcClient == null) throw new IllegalArgumentException("RPC client cannot be null.");
+            this.rpcClient = rpcClient;
+        }
+        
+        
+        /**
+         * Sets the number of consecutive unused accounts after which discovery stops. Defaults to {@code 20}.
+         * @param gapLimit the gap limit
+         * @return this builder
+         */
+        public Builder gapLimit(int gapLimit) {
+            if (gapLimit < 1) throw new IllegalArgumentException("Gap limit must be at least 1.");
+            this.gapLimit = gapLimit;
+            return this;
+        }
+        
+        /**
+         * Sets the number of accounts checked by each batch of requests. Defaults to {@code 100}.
+         * @param batchSize the number of accounts per batch
+         * @return this builder
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1.");
+            this.batchSize = batchSize;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of batches which are requested at once. Defaults to {@code 4}.
+         * @param max the maximum number of batches
+         * @return this builder
+         */
+        public Builder maxConcurrentBatches(int max) {
+            if (max < 1) throw new IllegalArgumentException("Batch limit must be at least 1.");
+            this.maxConcurrentBatches = max;
+            return this;
+        }
+        
+        /**
+         * Sets whether unopened accounts with a pending balance are considered used. If enabled (the default), an
+         * {@code accounts_balances} request is made for each batch in addition to {@code accounts_frontiers}.
+         * @param includePending true if pending balances should be checked
+         * @return this builder
+         */
+        public Builder includePending(boolean includePending) {
+            this.includePending = includePending;
+            return this;
+        }
+        
+        /**
+         * Sets the address prefix of the discovered accounts. Defaults to {@value NanoAccount#DEFAULT_PREFIX}.
+         * @param prefix the address prefix
+         * @return this builder
+         */
+        public Builder addressPrefix(String prefix) {
+            if (prefix == null) throw new IllegalArgumentException("Prefix cannot be null.");
+            this.prefix = prefix;
+            return this;
+        }
+        
+        /**
+         * Creates a new seed discovery utility from the configured parameters.
+         * @return a new seed discovery utility
+         */
+        public SeedDiscovery build() {
+            return new SeedDiscovery(rpcClient, gapLimit, batchSize, maxConcurrentBatches, includePending, prefix);
+        }
+    }
+    
+    
+    /**
+     * An account of a seed, along with its state when it was checked.
+     */
+    public static final class DiscoveredAccount {
+        private final int index;
+        private final HexData privateKey;
+        private final NanoAccount account;
+        private final HexData frontier;
+        private final NanoAmount balance, pending;
+        
+        private DiscoveredAccount(int index, HexData privateKey, NanoAccount account, HexData frontier,
+                                  NanoAmount balance, NanoAmount pending) {
+            this.index = index;
+            this.privateKey = privateKey;
+            this.account = account;
+            this.frontier = frontier;
+            this.balance = balance;
+            this.pending = pending;
+        }
+        
+        
+        /**
+         * @return the index of the account within the seed (as an unsigned integer)
+         */
+        public int getIndex() {
+            return index;
+        }
+        
+        /**
+         * @return the private key of the account
+         */
+        public HexData getPrivateKey() {
+            return privateKey;
+        }
+        
+        /**
+         * @return the account
+         */
+        public NanoAccount getAccount() {
+            return account;
+        }
+        
+        /**
+         * @return the frontier hash, or empty if the account is unopened
+         */
+        public Optional<HexData> getFrontierHash() {
+            return Optional.ofNullable(frontier);
+        }
+        
+        /**
+         * @return the pocketed balance, or empty if pending balances were not checked
+         */
+        public Optional<NanoAmount> getBalance() {
+            return Optional.ofNullable(balance);
+        }
+        
+        /**
+         * @return the pending balance, or empty if pending balances were not checked
+         */
+        public Optional<NanoAmount> getPending() {
+            return Optional.ofNullable(pending);
+        }
+        
+        /**
+         * @return true if the account has been opened
+         */
+        public boolean isOpened() {
+            return frontier != null;
+        }
+        
+        /**
+         * @return true if the account has been opened, or has a pending balance
+         */
+        public boolean isUsed() {
+            return frontier != null || (pending != null && pending.compareTo(NanoAmount.ZERO) > 0);
+        }
+        
+        @Override
+        public String toString() {
+            return "DiscoveredAccount{" +
+                    "index=" + Integer.toUnsignedString(index) +
+                    ", account=" + account +
+                    ", frontier=" + frontier + '}';
+        }
+    }
+    
+}
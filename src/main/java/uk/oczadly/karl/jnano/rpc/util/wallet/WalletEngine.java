@@ -0,0 +1,632 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.rpc.QueryCallback;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.rpc.exception.RpcEntityNotFoundException;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.exception.RpcExternalException;
+import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestAccountInfo;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestProcess;
+import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
+import uk.oczadly.karl.jnano.util.SigningKey;
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockAndState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockProducer;
+import uk.oczadly.karl.jnano.util.blockproducer.LocalWalletAccount;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Manages a large set of accounts which share a single RPC client and {@link BlockProducer} (and therefore work
+ * generator), processing the actions of independent accounts in parallel.
+ *
+ * <p>Each account is assigned a lane, in which actions are performed one at a time in the order they were submitted.
+ * All lanes share a bounded pool of worker threads, which are only occupied while blocks are being signed. Work
+ * generation and RPC requests are performed asynchronously, and the number in progress at once across all accounts is
+ * limited by the engine. This avoids dedicating a thread or lock to each account.</p>
+ *
+ * <p>Actions return a {@link CompletableFuture}, which completes exceptionally with a {@link WalletActionException} if
+ * the action fails. As with {@link LocalRpcWalletAccount}, the state of an account is retrieved before its first
+ * action, and if a block is rejected by the node then the state is refreshed and the block is created again. The
+ * queue length and latency of each lane can be retrieved through {@link #getMetrics(NanoAccount)}.</p>
+ *
+ * <pre>{@code
+ * WalletEngine engine = WalletEngine.builder(rpcClient, blockProducer)
+ *         .maxConcurrentWork(4)
+ *         .build();
+ *
+ * NanoAccount account = engine.addAccount(privateKey);
+ * engine.send(account, destination, NanoAmount.valueOfNano("1"))
+ *         .thenAccept(block -> System.out.println("Sent block " + block.getHash()));
+ * }</pre>
+ */
+public final class WalletEngine {
+    
+    private static final int MAX_RETRY_ATTEMPTS = 3;
+    private static final ThreadFactory WORKER_THREAD_FACTORY = JNH.threadFactory("WalletEngine-Worker", true);
+    
+    private final RpcQueryNode rpcClient;
+    private final BlockProducer blockProducer;
+    private final ExecutorService workers;
+    private final AsyncLimiter workLimiter, rpcLimiter;
+    private final ConcurrentMap<NanoAccount, Lane> lanes = new ConcurrentHashMap<>();
+    
+    private WalletEngine(RpcQueryNode rpcClient, BlockProducer blockProducer, int workerThreads, int maxWork,
+                         int maxRequests) {
+        this.rpcClient = rpcClient;
+        this.blockProducer = blockProducer;
+        this.workers = Executors.newFixedThreadPool(workerThreads, WORKER_THREAD_FACTORY);
+        this.workLimiter = new AsyncLimiter(maxWork);
+        this.rpcLimiter = new AsyncLimiter(maxRequests);
+    }
+    
+    
+    /**
+     * Returns the RPC client used by this engine.
+     * @return the RPC client
+     */
+    public RpcQueryNode getRpcClient() {
+        return rpcClient;
+    }
+    
+    /**
+     * Returns the block producer used to create blocks for all of the accounts.
+     * @return the block producer
+     */
+    public BlockProducer getBlockProducer() {
+        return blockProducer;
+    }
+    
+    
+    /**
+     * Adds an account to this engine. The state of the account will be retrieved before its first action.
+     * @param privateKey the private key of the account
+     * @return the account, using the address prefix of the block producer
+     */
+    public NanoAccount addAccount(HexData privateKey) {
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        return addAccount(new SigningKey(privateKey), null);
+    }
+    
+    /**
+     * Adds an account to this engine. If the account has already been added, then this method has no effect.
+     *
+     * @param key   the signing key of the account
+     * @param state the current state of the account, or null to retrieve the state before the first action
+     * @return the account, using the address prefix of the block producer
+     */
+    public NanoAccount addAccount(SigningKey key, AccountState state) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
+        LocalWalletAccount wallet = new LocalWalletAccount(key, blockProducer, state);
+        lanes.putIfAbsent(wallet.getAccount(), new Lane(wallet, state != null));
+        return wallet.getAccount();
+    }
+    
+    /**
+     * Removes an account from this engine. Actions which have already been submitted for the account will still be
+     * processed.
+     *
+     * @param account the account
+     * @return true if the account was removed, false if it wasn't managed by this engine
+     */
+    public boolean removeAccount(NanoAccount account) {
+        if (account == null)
+            throw new IllegalArgumentException("Account cannot be null.");
+        return lanes.remove(normalize(account)) != null;
+    }
+    
+    /**
+     * Returns the accounts which are managed by this engine.
+     * @return an unmodifiable view of the accounts
+     */
+    public Set<NanoAccount> getAccounts() {
+        return Collections.unmodifiableSet(lanes.keySet());
+    }
+    
+    /**
+     * Returns whether an account is managed by this engine. The prefix of the account is ignored.
+     * @param account the account
+     * @return true if the account is managed by this engine
+     */
+    public boolean containsAccount(NanoAccount account) {
+        return account != null && lanes.containsKey(normalize(account));
+    }
+    
+    /**
+     * Returns the locally cached state of an account, which reflects all of the actions that have completed.
+     * @param account the account
+     * @return the cached state of the account
+     */
+    public AccountState getState(NanoAccount account) {
+        return lane(account).wallet.getState();
+    }
+    
+    
+    /**
+     * Sends the specified amount of funds from an account.
+     *
+     * @param account     the account to send from
+     * @param destination the account where the funds should be sent
+     * @param amount      the amount of funds to send
+     * @return a future which completes with the published {@code send} block
+     * @throws IllegalArgumentException if the account is not managed by this engine
+     */
+    public CompletableFuture<Block> send(NanoAccount account, NanoAccount destination, NanoAmount amount) {
+        if (destination == null)
+            throw new IllegalArgumentException("Destination cannot be null.");
+        if (amount == null)
+            throw new IllegalArgumentException("Amount cannot be null.");
+        return lane(account).submit(lane -> processBlock(lane, state -> Optional.of(
+                blockProducer.prepareSend(lane.wallet.getSigningKey(), state, destination, amount)), false, 0))
+                .thenApply(Optional::get);
+    }
+    
+    /**
+     * Receives a pending {@code send} block to an account. Work for {@code receive} blocks is requested ahead of
+     * other queued actions, so that incoming funds are credited promptly.
+     *
+     * @param account    the account to receive to
+     * @param sourceHash the hash of the pending {@code send} block
+     * @param amount     the amount of the pending send block
+     * @return a future which completes with the published {@code receive} block
+     * @throws IllegalArgumentException if the account is not managed by this engine
+     */
+    public CompletableFuture<Block> receive(NanoAccount account, HexData sourceHash, NanoAmount amount) {
+        if (sourceHash == null)
+            throw new IllegalArgumentException("Source hash cannot be null.");
+        if (amount == null)
+            throw new IllegalArgumentException("Amount cannot be null.");
+        return lane(account).submit(lane -> processBlock(lane, state -> Optional.of(
+                blockProducer.prepareReceive(lane.wallet.getSigningKey(), state, sourceHash, amount)), true, 0))
+                .thenApply(Optional::get);
+    }
+    
+    /**
+     * Changes the representative of an account.
+     *
+     * @param account        the account
+     * @param representative the new representative
+     * @return a future which completes with the published block, or empty if the representative is already set
+     * @throws IllegalArgumentException if the account is not managed by this engine
+     */
+    public CompletableFuture<Optional<Block>> changeRepresentative(NanoAccount account, NanoAccount representative) {
+        if (representative == null)
+            throw new IllegalArgumentException("Representative cannot be null.");
+        return lane(account).submit(lane -> processBlock(lane, state -> blockProducer.prepareChangeRepresentative(
+                lane.wallet.getSigningKey(), state, representative), false, 0));
+    }
+    
+    /**
+     * Retrieves the current state of an account from the node, once all previously submitted actions for the account
+     * have completed.
+     *
+     * @param account the account
+     * @return a future which completes with the refreshed state
+     * @throws IllegalArgumentException if the account is not managed by this engine
+     */
+    public CompletableFuture<AccountState> refreshState(NanoAccount account) {
+        return lane(account).submit(lane -> refreshState(lane).thenApply(changed -> lane.wallet.getState()));
+    }
+    
+    
+    /**
+     * Returns a snapshot of the metrics of an account's lane.
+     * @param account the account
+     * @return the lane metrics
+     * @throws IllegalArgumentException if the account is not managed by this engine
+     */
+    public LaneMetrics getMetrics(NanoAccount account) {
+        return lane(account).metrics();
+    }
+    
+    /**
+     * Returns a snapshot of the metrics of every lane.
+     * @return a map of lane metrics, keyed by account
+     */
+    public Map<NanoAccount, LaneMetrics> getMetrics() {
+        Map<NanoAccount, LaneMetrics> metrics = new HashMap<>();
+        lanes.forEach((account, lane) -> metrics.put(account, lane.metrics()));
+        return metrics;
+    }
+    
+    /**
+     * Returns the number of work generation requests currently in progress across all accounts.
+     * @return the number of active work requests
+     */
+    public int getActiveWorkCount() {
+        return workLimiter.getActiveCount();
+    }
+    
+    /**
+     * Returns the number of blocks waiting for the work generation limit before requesting work.
+     * @return the number of queued work requests
+     */
+    public int getQueuedWorkCount() {
+        return workLimiter.getQueuedCount();
+    }
+    
+    /**
+     * Returns the number of RPC requests currently in progress across all accounts.
+     * @return the number of active RPC requests
+     */
+    public int getActiveRequestCount() {
+        return rpcLimiter.getActiveCount();
+    }
+    
+    /**
+     * Returns the number of RPC requests waiting for the request limit before being sent.
+     * @return the number of queued RPC requests
+     */
+    public int getQueuedRequestCount() {
+        return rpcLimiter.getQueuedCount();
+    }
+    
+    /**
+     * Shuts down the worker threads of this engine. Actions which have not yet started will fail. The RPC client and
+     * work generator are not shut down.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+    
+    @Override
+    public String toString() {
+        return "WalletEngine{" +
+                "accounts=" + lanes.size() +
+                ", blockProducer=" + blockProducer.getClass().getSimpleName() +
+                ", rpcClient=" + rpcClient + '}';
+    }
+    
+    
+    private CompletableFuture<Optional<Block>> processBlock(Lane lane,
+            Function<AccountState, Optional<BlockAndState>> producer, boolean priority, int attempt) {
+        return loadState(lane)
+                .thenApplyAsync(producer, workers) // Sign the block on a worker thread
+                .thenCompose(block -> block.isPresent()
+                        ? publish(lane, block.get(), priority).thenApply(Optional::of)
+                        : CompletableFuture.completedFuture(Optional.<Block>empty()))
+                .handle((block, ex) -> {
+                    if (ex == null)
+                        return CompletableFuture.completedFuture(block);
+                    Throwable cause = unwrap(ex);
+                    if (cause instanceof RpcExternalException && attempt + 1 < MAX_RETRY_ATTEMPTS) {
+                        // Block may have been rejected due to an outdated state
+                        return refreshState(lane).thenCompose(changed -> {
+                            if (!changed) throw new CompletionException(cause); // State was already up to date
+                            return processBlock(lane, producer, priority, attempt + 1);
+                        });
+                    }
+                    return WalletEngine.<Optional<Block>>failed(cause);
+                })
+                .thenCompose(Function.identity());
+    }
+    
+    private CompletableFuture<Block> publish(Lane lane, BlockAndState blockAndState, boolean priority) {
+        Block block = blockAndState.getBlock();
+        return workLimiter.submit(() -> blockProducer.generateWorkAsync(blockAndState), priority)
+                .thenCompose(ignored -> request(new RequestProcess(block, false, false)))
+                .thenApply(response -> {
+                    lane.wallet.updateState(blockAndState.getState());
+                    return block;
+                });
+    }
+    
+    private CompletableFuture<AccountState> loadState(Lane lane) {
+        if (lane.hasState)
+            return CompletableFuture.completedFuture(lane.wallet.getState());
+        return refreshState(lane).thenApply(changed -> lane.wallet.getState());
+    }
+    
+    /** Returns true if the state was previously retrieved and has changed. */
+    private CompletableFuture<Boolean> refreshState(Lane lane) {
+        return request(new RequestAccountInfo(lane.wallet.getAccount().toAddress())).handle((info, ex) -> {
+            AccountState state;
+            if (ex == null) {
+                state = AccountState.fromAccountInfo(info);
+            } else if (unwrap(ex) instanceof RpcEntityNotFoundException) {
+                state = AccountState.UNOPENED; // Account hasn't been opened
+            } else {
+                throw new CompletionException(unwrap(ex));
+            }
+            boolean hasChanged = lane.wallet.updateState(state) && lane.hasState;
+            lane.hasState = true;
+            return hasChanged;
+        });
+    }
+    
+    private <Q extends RpcRequest<R>, R extends RpcResponse> CompletableFuture<R> request(Q request) {
+        return rpcLimiter.submit(() -> {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            rpcClient.processRequestAsync(request, new QueryCallback<Q, R>() {
+                @Override
+                public void onResponse(R response, Q request) {
+                    future.complete(response);
+                }
+                
+                @Override
+                public void onFailure(RpcException ex, Q request) {
+                    future.completeExceptionally(ex);
+                }
+                
+                @Override
+                public void onFailure(IOException ex, Q request) {
+                    future.completeExceptionally(ex);
+                }
+            });
+            return future;
+        });
+    }
+    
+    private Lane lane(NanoAccount account) {
+        if (account == null)
+            throw new IllegalArgumentException("Account cannot be null.");
+        Lane lane = lanes.get(normalize(account));
+        if (lane == null)
+            throw new IllegalArgumentException("Account " + account + " is not managed by this engine.");
+        return lane;
+    }
+    
+    private NanoAccount normalize(NanoAccount account) {
+        return account.withPrefix(blockProducer.getSpecification().getAddressPrefix());
+    }
+    
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null)
+            e = e.getCause();
+        return e;
+    }
+    
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+    
+    private static WalletActionException toWalletException(Throwable e) {
+        e = unwrap(e);
+        if (e instanceof WalletActionException) {
+            return (WalletActionException)e;
+        } else if (e instanceof RpcExternalException) {
+            return new WalletActionException("Block rejected by node: " + e.getMessage(), e);
+        } else if (e instanceof RpcException) {
+            return new WalletActionException("RPC request failed: " + e.getMessage(), e);
+        } else if (e instanceof IOException) {
+            return new WalletActionException("Connection error with RPC client.", e);
+        } else if (e instanceof BlockProducer.BlockCreationException) {
+            return new WalletActionException(e.getMessage(), e);
+        } else {
+            return new WalletActionException("Unexpected exception thrown.", e);
+        }
+    }
+    
+    
+    /**
+     * Creates a new builder for a wallet engine.
+     * @param rpcClient     the RPC client where requests will be sent to
+     * @param blockProducer the block producer used to create blocks for all accounts
+     * @return a new builder
+     */
+    public static Builder builder(RpcQueryNode rpcClient, BlockProducer blockProducer) {
+        return new Builder(rpcClient, blockProducer);
+    }
+    
+    
+    /**
+     * A builder class for creating new instances of {@link WalletEngine}.
+     */
+    public static final class Builder {
+        private final RpcQueryNode rpcClient;
+        private final BlockProducer blockProducer;
+        private int workerThreads = Runtime.getRuntime().availableProcessors();
+        private int maxConcurrentWork = 8, maxConcurrentRequests = 32;
+        
+        private Builder(RpcQueryNode rpcClient, BlockProducer blockProducer) {
+            if (rpcClient == null) throw new IllegalArgumentException("RPC client cannot be null.");
+            if (blockProducer == null) throw new IllegalArgumentException("BlockProducer cannot be null.");
+            this.rpcClient = rpcClient;
+            this.blockProducer = blockProducer;
+        }
+        
+        
+        /**
+         * Sets the number of worker threads used to sign blocks. Defaults to the number of available processors.
+         * @param threads the number of threads
+         * @return this builder
+         */
+        public Builder workerThreads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Thread count must be at least 1.");
+            this.workerThreads = threads;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of work generation requests in progress at once across all accounts. Defaults to
+         * {@code 8}.
+         * @param max the maximum number of work requests
+         * @return this builder
+         */
+        public Builder maxConcurrentWork(int max) {
+            if (max < 1) throw new IllegalArgumentException("Work limit must be at least 1.");
+            this.maxConcurrentWork = max;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of RPC requests in progress at once across all accounts. Defaults to {@code 32}.
+         * @param max the maximum number of RPC requests
+         * @return this builder
+         */
+        public Builder maxConcurrentRequests(int max) {
+            if (max < 1) throw new IllegalArgumentException("Request limit must be at least 1.");
+            this.maxConcurrentRequests = max;
+            return this;
+        }
+        
+        /**
+         * Creates a new wallet engine from the configured parameters.
+         * @return a new wallet engine
+         */
+        public WalletEngine build() {
+            return new WalletEngine(rpcClient, blockProducer, workerThreads, maxConcurrentWork,
+                    maxConcurrentRequests);
+        }
+    }
+    
+    
+    /**
+     * A snapshot of the metrics of a single account's lane.
+     */
+    public static final class LaneMetrics {
+        private final NanoAccount account;
+        private final int queueLength;
+        private final long completed, failed, totalLatency, totalWait, maxLatency;
+        
+        private LaneMetrics(NanoAccount account, int queueLength, long completed, long failed, long totalLatency,
+                            long totalWait, long maxLatency) {
+            this.account = account;
+            this.queueLength = queueLength;
+            this.completed = completed;
+            this.failed = failed;
+            this.totalLatency = totalLatency;
+            this.totalWait = totalWait;
+            this.maxLatency = maxLatency;
+        }
+        
+        
+        /**
+         * @return the account of the lane
+         */
+        public NanoAccount getAccount() {
+            return account;
+        }
+        
+        /**
+         * @return the number of actions which are waiting or in progress
+         */
+        public int getQueueLength() {
+            return queueLength;
+        }
+        
+        /**
+         * @return the number of actions which completed successfully
+         */
+        public long getCompletedCount() {
+            return completed;
+        }
+        
+        /**
+         * @return the number of actions which failed
+         */
+        public long getFailedCount() {
+            return failed;
+        }
+        
+        /**
+         * @return the average time from submission to completion of finished actions
+         */
+        public Duration getAverageLatency() {
+            long count = completed + failed;
+            return Duration.ofNanos(count == 0 ? 0 : totalLatency / count);
+        }
+        
+        /**
+         * @return the average time finished actions waited for preceding actions in the lane
+         */
+        public Duration getAverageWaitTime() {
+            long count = completed + failed;
+            return Duration.ofNanos(count == 0 ? 0 : totalWait / count);
+        }
+        
+        /**
+         * @return the longest time from submission to completion of a finished action
+         */
+        public Duration getMaxLatency() {
+            return Duration.ofNanos(maxLatency);
+        }
+        
+        @Override
+        public String toString() {
+            return "LaneMetrics{" +
+                    "account=" + account +
+                    ", queueLength=" + queueLength +
+                    ", completed=" + completed +
+                    ", failed=" + failed +
+                    ", averageLatency=" + getAverageLatency() +
+                    ", maxLatency=" + getMaxLatency() + '}';
+        }
+    }
+    
+    
+    /** Performs the actions of a single account in order. */
+    private final class Lane {
+        final LocalWalletAccount wallet;
+        volatile boolean hasState;
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null); // Guarded by this
+        private final AtomicInteger queueLength = new AtomicInteger();
+        private final LongAdder completed = new LongAdder(), failed = new LongAdder();
+        private final LongAdder totalLatency = new LongAdder(), totalWait = new LongAdder();
+        private final AtomicLong maxLatency = new AtomicLong();
+        
+        Lane(LocalWalletAccount wallet, boolean hasState) {
+            this.wallet = wallet;
+            this.hasState = hasState;
+        }
+        
+        
+        <T> CompletableFuture<T> submit(Function<Lane, CompletableFuture<T>> action) {
+            long submitted = System.nanoTime();
+            queueLength.incrementAndGet();
+            CompletableFuture<T> result;
+            synchronized (this) {
+                // Start once the previous action has completed, regardless of its outcome
+                result = tail.handle((r, ex) -> null).thenComposeAsync(ignored -> {
+                    totalWait.add(System.nanoTime() - submitted);
+                    try {
+                        return action.apply(this);
+                    } catch (RuntimeException e) {
+                        return failed(e);
+                    }
+                }, workers);
+                tail = result;
+            }
+            return result.handle((r, ex) -> {
+                long latency = System.nanoTime() - submitted;
+                totalLatency.add(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+                queueLength.decrementAndGet();
+                if (ex != null) {
+                    failed.increment();
+                    throw new CompletionException(toWalletException(ex));
+                }
+                completed.increment();
+                return r;
+            });
+        }
+        
+        LaneMetrics metrics() {
+            return new LaneMetrics(wallet.getAccount(), queueLength.get(), completed.sum(), failed.sum(),
+                    totalLatency.sum(), totalWait.sum(), maxLatency.get());
+        }
+    }
+    
+}
@@ -9,6 +9,11 @@ import uk.oczadly.karl.jnano.internal.Ed25519Blake2b;
 import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.internal.NanoConst;
 import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.block.Block;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Low-level operations for hashing, signing and verifying data.
@@ -16,6 +21,8 @@ import uk.oczadly.karl.jnano.model.HexData;
 public final class CryptoUtil {
     private CryptoUtil() {}
     
+    private static final int PARALLEL_HASH_THRESHOLD = 64;
+    
     
     /**
      * Signs a set of data with the given private key, and returns the generated signature.
@@ -46,6 +53,20 @@ public final class CryptoUtil {
         return new HexData(sig, NanoConst.LEN_SIGNATURE_B);
     }
     
+    /**
+     * Signs a set of data with the given expanded key, and returns the generated signature. This avoids re-expanding
+     * the private key for each signature.
+     *
+     * @param data the data to sign
+     * @param key  the expanded signing key
+     * @return the signature
+     */
+    public static HexData sign(byte[][] data, SigningKey key) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
+        return key.sign(data);
+    }
+    
     /**
      * Verifies whether the signature matches the data and public key.
      * @param data      the data to sign
@@ -81,6 +102,38 @@ public final class CryptoUtil {
         return Ed25519Blake2b.verify(publicKey, data, signature);
     }
     
+    /**
+     * Verifies a set of signatures, each against its own data and public key.
+     *
+     * <p>The signatures are checked in batches using randomized batch verification, and distributed across the common
+     * fork-join pool. If a batch fails, each signature within it is checked individually, so the results are the same
+     * as calling {@link #verifySig(byte[], byte[], byte[])} for each signature.</p>
+     *
+     * @param data       the signed data of each signature
+     * @param signatures the signatures (as 64-length byte arrays)
+     * @param publicKeys the public keys of each signature (as 32-length byte arrays)
+     * @return an array containing the result of each signature, in the same order as the given arrays
+     */
+    public static boolean[] verifySigs(byte[][] data, byte[][] signatures, byte[][] publicKeys) {
+        if (data == null)
+            throw new IllegalArgumentException("Data array cannot be null.");
+        if (signatures == null)
+            throw new IllegalArgumentException("Signatures array cannot be null.");
+        if (publicKeys == null)
+            throw new IllegalArgumentException("Public keys array cannot be null.");
+        if (data.length != signatures.length || publicKeys.length != signatures.length)
+            throw new IllegalArgumentException("Array lengths must be equal.");
+        for (int i = 0; i < signatures.length; i++) {
+            if (data[i] == null)
+                throw new IllegalArgumentException("Data cannot be null.");
+            if (signatures[i] == null || signatures[i].length != NanoConst.LEN_SIGNATURE_B)
+                throw new IllegalArgumentException("Signature length is invalid.");
+            if (publicKeys[i] == null || publicKeys[i].length != NanoConst.LEN_KEY_B)
+                throw new IllegalArgumentException("Public key length is invalid.");
+        }
+        return Ed25519Blake2b.verifyAll(publicKeys, data, signatures);
+    }
+    
     
     /**
      * Hashes the given byte array using the {@code Blake2b} message digest algorithm, with a digest output size of 32
@@ -104,4 +157,25 @@ public final class CryptoUtil {
         return new HexData(JNH.blake2b(outputSize, data), outputSize);
     }
     
+    /**
+     * Computes the hashes of the given blocks, in parallel for large lists.
+     *
+     * <p>The computed hashes are also cached by each block, so subsequent calls to {@link Block#getHash()} or
+     * {@link Block#getHash256()} will not recompute them.</p>
+     *
+     * @param blocks the blocks to hash
+     * @return the block hashes, in the same order as the given blocks
+     */
+    public static List<HexData> hashAll(List<? extends Block> blocks) {
+        if (blocks == null)
+            throw new IllegalArgumentException("Blocks list cannot be null.");
+        Stream<? extends Block> stream = blocks.size() >= PARALLEL_HASH_THRESHOLD
+                ? blocks.parallelStream() : blocks.stream();
+        return stream.map(block -> {
+            if (block == null)
+                throw new IllegalArgumentException("Blocks list cannot contain null.");
+            return block.getHash();
+        }).collect(Collectors.toList());
+    }
+    
 }
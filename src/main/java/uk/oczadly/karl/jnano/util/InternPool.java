@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe pool which canonicalizes immutable values by their string representation, so that repeated
+ * occurrences of the same value share a single instance.
+ *
+ * <p>Values are only weakly referenced by the pool, and are removed once they are no longer used elsewhere in the
+ * application. Pools maintain hit and miss counters, which can be used to judge whether interning is worthwhile for
+ * the workload.</p>
+ *
+ * <p>The global {@link #ACCOUNTS} and {@link #HEX_VALUES} pools are used by the JSON adapters of {@link NanoAccount}
+ * and {@link HexData} respectively when deserializing, and are disabled by default. Enabling them can greatly reduce
+ * the memory used by large RPC responses (such as ledger snapshots or delegator lists) in which the same accounts and
+ * hashes appear many times:</p>
+ * <pre>{@code InternPool.ACCOUNTS.setEnabled(true);
+ * }</pre>
+ *
+ * @param <T> the type of value
+ */
+public final class InternPool<T> {
+    
+    /**
+     * The global pool used when deserializing {@link NanoAccount} values from JSON. Disabled by default.
+     */
+    public static final InternPool<NanoAccount> ACCOUNTS = new InternPool<>(false);
+    
+    /**
+     * The global pool used when deserializing {@link HexData} values (such as block hashes) from JSON. Disabled by
+     * default.
+     */
+    public static final InternPool<HexData> HEX_VALUES = new InternPool<>(false);
+    
+    private final ConcurrentHashMap<String, ValueRef<T>> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+    private volatile boolean enabled;
+    
+    /**
+     * Constructs a new enabled pool.
+     */
+    public InternPool() {
+        this(true);
+    }
+    
+    /**
+     * Constructs a new pool.
+     * @param enabled whether the pool is initially enabled
+     */
+    public InternPool(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    
+    /**
+     * Returns whether this pool is enabled. When disabled, {@link #intern(String, Function)} will always create a new
+     * value.
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Sets whether this pool is enabled. Disabling the pool does not remove the currently pooled values.
+     * @param enabled true to enable the pool
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Returns the canonical value for the given string, creating and pooling a new value if none exists.
+     *
+     * <p>The factory must always create equal values for equal strings. If the pool is disabled, the factory is
+     * always called and the value is not pooled.</p>
+     *
+     * @param str     the string representation of the value
+     * @param factory the function used to create a new value from the string
+     * @return the canonical value
+     */
+    public T intern(String str, Function<String, ? extends T> factory) {
+        if (str == null) throw new IllegalArgumentException("String cannot be null.");
+        if (factory == null) throw new IllegalArgumentException("Factory cannot be null.");
+        if (!enabled) return factory.apply(str);
+        
+        ValueRef<T> ref = map.get(str);
+        T val;
+        if (ref != null && (val = ref.get()) != null) {
+            hits.increment();
+            return val;
+        }
+        misses.increment();
+        val = factory.apply(str);
+        expungeCleared();
+        
+        ValueRef<T> newRef = new ValueRef<>(str, val, queue);
+        while (true) {
+            ValueRef<T> existing = map.putIfAbsent(str, newRef);
+            if (existing == null)
+                return val;
+            T existingVal = existing.get();
+            if (existingVal != null)
+                return existingVal; // Lost a race to another thread
+            if (map.replace(str, existing, newRef))
+                return val;
+        }
+    }
+    
+    /**
+     * Returns the number of values currently held in the pool, including any which have been garbage collected but
+     * not yet removed.
+     * @return the number of pooled values
+     */
+    public int size() {
+        expungeCleared();
+        return map.size();
+    }
+    
+    /**
+     * Removes all values from the pool. The statistics are not reset.
+     */
+    public void clear() {
+        map.clear();
+        expungeCleared();
+    }
+    
+    /**
+     * Returns the number of lookups which returned an existing pooled value.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    /**
+     * Returns the number of lookups which created a new value.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    /**
+     * Returns the proportion of lookups which returned an existing pooled value.
+     * @return the hit rate, between {@code 0} and {@code 1} (or {@code 0} if no lookups have been made)
+     */
+    public double getHitRate() {
+        long hits = getHitCount(), total = hits + getMissCount();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+    
+    /**
+     * Resets the hit and miss counters to zero.
+     */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+    
+    @Override
+    public String toString() {
+        return "InternPool{enabled=" + enabled + ", size=" + map.size() + ", hitRate=" + getHitRate() + '}';
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void expungeCleared() {
+        ValueRef<T> ref;
+        while ((ref = (ValueRef<T>)queue.poll()) != null)
+            map.remove(ref.key, ref);
+    }
+    
+    
+    private static final class ValueRef<T> extends WeakReference<T> {
+        final String key;
+        
+        ValueRef(String key, T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+    
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import net.i2p.crypto.eddsa.EdDSAPrivateKey;
+import uk.oczadly.karl.jnano.internal.Ed25519Blake2b;
+import uk.oczadly.karl.jnano.internal.NanoConst;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+/**
+ * A private key which has been expanded in preparation for signing.
+ *
+ * <p>Signing with a raw private key requires the key to be hashed into the secret scalar and prefix, and the public key
+ * to be derived from the scalar, for every signature. Instances of this class perform this expansion once on
+ * construction, and should be retained and reused when signing multiple blocks or messages with the same key.</p>
+ *
+ * <p>This class is thread-safe, and a single instance may be used to sign from multiple threads concurrently.</p>
+ *
+ * @see uk.oczadly.karl.jnano.model.block.Block#sign(SigningKey)
+ */
+public final class SigningKey {
+    
+    private final HexData privateKey;
+    private final EdDSAPrivateKey expandedKey;
+    private final NanoAccount account;
+    
+    /**
+     * Expands the given private key.
+     * @param privateKey the private key (32-byte value)
+     */
+    public SigningKey(HexData privateKey) {
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        if (privateKey.length() != NanoConst.LEN_KEY_B)
+            throw new IllegalArgumentException("Private key length is invalid.");
+        this.privateKey = privateKey;
+        this.expandedKey = Ed25519Blake2b.expandPrivateKey(privateKey.toByteArray());
+        this.account = new NanoAccount(expandedKey.getAbyte());
+    }
+    
+    
+    /**
+     * Returns the secret private key which this signing key was expanded from.
+     * @return the private key
+     */
+    public HexData getPrivateKey() {
+        return privateKey;
+    }
+    
+    /**
+     * Returns the account (public key) of this key, using the default Nano prefix.
+     * @return the account
+     */
+    public NanoAccount getAccount() {
+        return account;
+    }
+    
+    /**
+     * Returns the account (public key) of this key, using the specified prefix.
+     * @param prefix the address prefix
+     * @return the account
+     */
+    public NanoAccount getAccount(String prefix) {
+        return account.withPrefix(prefix);
+    }
+    
+    /**
+     * Signs a set of data with this key, and returns the generated signature.
+     * @param data the data to sign
+     * @return the signature
+     */
+    public HexData sign(byte[]... data) {
+        if (data == null)
+            throw new IllegalArgumentException("Data array cannot be null.");
+        return new HexData(Ed25519Blake2b.sign(expandedKey, data), NanoConst.LEN_SIGNATURE_B);
+    }
+    
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SigningKey)) return false;
+        return privateKey.equals(((SigningKey)o).privateKey);
+    }
+    
+    @Override
+    public int hashCode() {
+        return privateKey.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return "SigningKey{account=" + account + '}';
+    }
+    
+}
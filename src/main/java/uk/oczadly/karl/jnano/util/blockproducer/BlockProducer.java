@@ -5,15 +5,25 @@
 
 package uk.oczadly.karl.jnano.util.blockproducer;
 
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.util.SigningKey;
+import uk.oczadly.karl.jnano.util.workgen.GeneratedWork;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * This class can be used to create and sign new blocks based on an existing account state.
  *
+ * <p>Subclasses may return blocks without a work solution from the {@code _create} methods, in which case the work is
+ * generated afterwards using the work generator of the {@link BlockProducerSpecification specification}.</p>
+ *
  * @see StateBlockProducer
  * @see LegacyBlockProducer
  */
@@ -58,17 +68,31 @@ public abstract class BlockProducer {
      */
     public final Optional<BlockAndState> createSendAll(HexData privateKey, AccountState state,
                                                        NanoAccount destination) {
-        if (privateKey == null)
-            throw new IllegalArgumentException("Private key cannot be null.");
+        return createSendAll(signingKey(privateKey), state, destination);
+    }
+    
+    /**
+     * Constructs and signs a new block which sends all of the account's funds to the specified destination. An empty
+     * optional will be returned if the account has no funds or hasn't been opened.
+     *
+     * @param key         the signing key of the account
+     * @param state       the state of the account prior to the block
+     * @param destination the destination account where the funds will be sent
+     * @return the constructed block and new account state, or empty if the account has no funds
+     * @throws BlockCreationException if the block couldn't be constructed, or work couldn't be generated
+     */
+    public final Optional<BlockAndState> createSendAll(SigningKey key, AccountState state, NanoAccount destination) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
         if (state == null)
             throw new IllegalArgumentException("State cannot be null.");
         if (destination == null)
             throw new IllegalArgumentException("Destination cannot be null.");
-    
+        
         if (state.getBalance().compareTo(NanoAmount.ZERO) <= 0) {
             return Optional.empty();
         } else {
-            return Optional.of(createSend(privateKey, state, destination, state.getBalance()));
+            return Optional.of(createSend(key, state, destination, state.getBalance()));
         }
     }
     
@@ -86,8 +110,66 @@ public abstract class BlockProducer {
      */
     public final BlockAndState createSend(HexData privateKey, AccountState state, NanoAccount destination,
                                           NanoAmount amount) {
-        if (privateKey == null)
-            throw new IllegalArgumentException("Private key cannot be null.");
+        return createSend(signingKey(privateKey), state, destination, amount);
+    }
+    
+    /**
+     * Constructs and signs a new block which sends a specified amount of funds from the account.
+     *
+     * @param key         the signing key of the account
+     * @param state       the state of the account prior to the block
+     * @param destination the destination account where the funds will be sent
+     * @param amount      the amount to send
+     * @return the constructed block and new account state
+     * @throws BlockCreationException if the block couldn't be constructed, work couldn't be generated, or the account
+     *                                state doesn't match the arguments (eg. not enough funds)
+     */
+    public final BlockAndState createSend(SigningKey key, AccountState state, NanoAccount destination,
+                                          NanoAmount amount) {
+        return withWork(prepareSend(key, state, destination, amount));
+    }
+    
+    /**
+     * Constructs and signs a new block which sends a specified amount of funds from the account, returning without
+     * waiting for the work to be generated.
+     *
+     * <p>The block is signed immediately, and the new account state can be used to create the next block straight
+     * away. The returned future completes once the work has been generated and set on the block, or exceptionally
+     * with a {@link BlockCreationException} if the work couldn't be generated.</p>
+     *
+     * @param key         the signing key of the account
+     * @param state       the state of the account prior to the block
+     * @param destination the destination account where the funds will be sent
+     * @param amount      the amount to send
+     * @return the constructed block and new account state, which completes once the block contains work
+     * @throws BlockCreationException if the block couldn't be constructed, or the account state doesn't match the
+     *                                arguments (eg. not enough funds)
+     */
+    public final CompletableFuture<BlockAndState> createSendAsync(SigningKey key, AccountState state,
+                                                                  NanoAccount destination, NanoAmount amount) {
+        return generateWorkAsync(prepareSend(key, state, destination, amount));
+    }
+    
+    /**
+     * Constructs and signs a new block which sends a specified amount of funds from the account, without waiting for
+     * the work to be generated.
+     *
+     * <p>As with {@link #prepareReceive(SigningKey, AccountState, HexData, NanoAmount)}, the returned block may not
+     * contain a work solution, which must be set (eg. via {@link #generateWorkAsync(BlockAndState)}) before the block
+     * is published.</p>
+     *
+     * @param key         the signing key of the account
+     * @param state       the state of the account prior to the block
+     * @param destination the destination account where the funds will be sent
+     * @param amount      the amount to send
+     * @return the constructed block, which may not yet contain work, and new account state
+     * @throws BlockCreationException if the block couldn't be constructed, or the account state doesn't match the
+     *                                arguments (eg. not enough funds)
+     */
+    public final BlockAndState prepareSend(SigningKey key, AccountState state, NanoAccount destination,
+                                           NanoAmount amount) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
         if (state == null)
             throw new IllegalArgumentException("State cannot be null.");
         if (destination == null)
@@ -102,7 +184,7 @@ public abstract class BlockProducer {
             throw new BlockCreationException(String.format("Not enough funds (requested: %s, balance: %s)",
                     amount, state.getBalance()));
         
-        return _createSend(privateKey, state, destination, amount);
+        return _createSend(key, state, destination, amount);
     }
     
     /**
@@ -118,8 +200,68 @@ public abstract class BlockProducer {
      */
     public final BlockAndState createReceive(HexData privateKey, AccountState state, HexData sourceHash,
                                              NanoAmount amount) {
-        if (privateKey == null)
-            throw new IllegalArgumentException("Private key cannot be null.");
+        return createReceive(signingKey(privateKey), state, sourceHash, amount);
+    }
+    
+    /**
+     * Constructs and signs a new block which receives a pending block.
+     *
+     * @param key        the signing key of the account
+     * @param state      the state of the account prior to the block
+     * @param sourceHash the hash of the pending {@code send} block
+     * @param amount     the amount of the pending send block
+     * @return the constructed block and new account state
+     * @throws BlockCreationException if the block couldn't be constructed, work couldn't be generated, or the account
+     *                                state doesn't match the arguments (eg. receiving too many funds)
+     */
+    public final BlockAndState createReceive(SigningKey key, AccountState state, HexData sourceHash,
+                                             NanoAmount amount) {
+        return withWork(prepareReceive(key, state, sourceHash, amount));
+    }
+    
+    /**
+     * Constructs and signs a new block which receives a pending block, returning without waiting for the work to be
+     * generated.
+     *
+     * <p>The block is signed immediately, and the new account state can be used to create the next block straight
+     * away. The returned future completes once the work has been generated and set on the block, or exceptionally
+     * with a {@link BlockCreationException} if the work couldn't be generated.</p>
+     *
+     * @param key        the signing key of the account
+     * @param state      the state of the account prior to the block
+     * @param sourceHash the hash of the pending {@code send} block
+     * @param amount     the amount of the pending send block
+     * @return the constructed block and new account state, which completes once the block contains work
+     * @throws BlockCreationException if the block couldn't be constructed, or the account state doesn't match the
+     *                                arguments (eg. receiving too many funds)
+     * @see #prepareReceive(SigningKey, AccountState, HexData, NanoAmount)
+     */
+    public final CompletableFuture<BlockAndState> createReceiveAsync(SigningKey key, AccountState state,
+                                                                     HexData sourceHash, NanoAmount amount) {
+        return generateWorkAsync(prepareReceive(key, state, sourceHash, amount));
+    }
+    
+    /**
+     * Constructs and signs a new block which receives a pending block, without waiting for the work to be generated.
+     *
+     * <p>As the signature and hash of a block do not cover the work value, the returned block and state are final
+     * other than the work, and the returned state can be used to create the next block straight away. If the block
+     * does not contain a work solution, then it must be generated and set (eg. via
+     * {@link uk.oczadly.karl.jnano.util.workgen.WorkGenerator#generate(uk.oczadly.karl.jnano.model.block.Block)})
+     * before the block is published. This allows the work of successive blocks to be generated in a pipeline.</p>
+     *
+     * @param key        the signing key of the account
+     * @param state      the state of the account prior to the block
+     * @param sourceHash the hash of the pending {@code send} block
+     * @param amount     the amount of the pending send block
+     * @return the constructed block, which may not yet contain work, and new account state
+     * @throws BlockCreationException if the block couldn't be constructed, or the account state doesn't match the
+     *                                arguments (eg. receiving too many funds)
+     */
+    public final BlockAndState prepareReceive(SigningKey key, AccountState state, HexData sourceHash,
+                                              NanoAmount amount) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
         if (state == null)
             throw new IllegalArgumentException("State cannot be null.");
         if (sourceHash == null)
@@ -127,7 +269,7 @@ public abstract class BlockProducer {
         if (amount == null)
             throw new IllegalArgumentException("Amount cannot be null.");
         
-        return _createReceive(privateKey, state, sourceHash, amount);
+        return _createReceive(key, state, sourceHash, amount);
     }
     
     /**
@@ -142,8 +284,43 @@ public abstract class BlockProducer {
      */
     public final Optional<BlockAndState> createChangeRepresentative(HexData privateKey, AccountState state,
                                                                     NanoAccount representative) {
-        if (privateKey == null)
-            throw new IllegalArgumentException("Private key cannot be null.");
+        return createChangeRepresentative(signingKey(privateKey), state, representative);
+    }
+    
+    /**
+     * Constructs and signs a new block which changes the account's representative. An empty optional will be returned
+     * if the representative is already set to the one given.
+     *
+     * @param key            the signing key of the account
+     * @param state          the state of the account prior to the block
+     * @param representative the representative account
+     * @return the constructed block and new account state, or empty if the representative is already set
+     * @throws BlockCreationException if the block couldn't be constructed, or work couldn't be generated
+     */
+    public final Optional<BlockAndState> createChangeRepresentative(SigningKey key, AccountState state,
+                                                                    NanoAccount representative) {
+        return prepareChangeRepresentative(key, state, representative).map(this::withWork);
+    }
+    
+    /**
+     * Constructs and signs a new block which changes the account's representative, without waiting for the work to be
+     * generated. An empty optional will be returned if the representative is already set to the one given.
+     *
+     * <p>As with {@link #prepareReceive(SigningKey, AccountState, HexData, NanoAmount)}, the returned block may not
+     * contain a work solution, which must be set (eg. via {@link #generateWorkAsync(BlockAndState)}) before the block
+     * is published.</p>
+     *
+     * @param key            the signing key of the account
+     * @param state          the state of the account prior to the block
+     * @param representative the representative account
+     * @return the constructed block, which may not yet contain work, and new account state, or empty if the
+     *         representative is already set
+     * @throws BlockCreationException if the block couldn't be constructed
+     */
+    public final Optional<BlockAndState> prepareChangeRepresentative(SigningKey key, AccountState state,
+                                                                     NanoAccount representative) {
+        if (key == null)
+            throw new IllegalArgumentException("Signing key cannot be null.");
         if (state == null)
             throw new IllegalArgumentException("State cannot be null.");
         if (representative == null)
@@ -154,20 +331,67 @@ public abstract class BlockProducer {
         if (representative.equalsIgnorePrefix(state.getRepresentative())) {
             return Optional.empty();
         } else {
-            return Optional.ofNullable(_createChangeRepresentative(privateKey, state, representative));
+            return Optional.ofNullable(_createChangeRepresentative(key, state, representative));
         }
     }
     
-    protected abstract BlockAndState _createSend(HexData privateKey, AccountState state, NanoAccount destination,
+    /**
+     * Generates and sets the work of a block returned by one of the {@code prepare} methods, using the work generator
+     * of the {@link BlockProducerSpecification specification}. If the block already contains work, then the returned
+     * future will already be complete.
+     *
+     * @param blockAndState the block and state
+     * @return a future which completes with the given block and state once the block contains work, or exceptionally
+     *         with a {@link BlockCreationException} if the work couldn't be generated
+     */
+    public final CompletableFuture<BlockAndState> generateWorkAsync(BlockAndState blockAndState) {
+        if (blockAndState == null)
+            throw new IllegalArgumentException("Block and state cannot be null.");
+        
+        Block block = blockAndState.getBlock();
+        if (block.getWorkSolution() != null)
+            return CompletableFuture.completedFuture(blockAndState);
+        
+        CompletableFuture<GeneratedWork> futureWork = spec.getWorkGenerator().generate(block).toCompletableFuture();
+        return JNH.propagateCancel(futureWork, futureWork.handle((work, ex) -> {
+            if (ex != null)
+                throw new CompletionException(new BlockCreationException("Couldn't generate work.", ex));
+            block.setWorkSolution(work.getWork());
+            return blockAndState;
+        }));
+    }
+    
+    protected abstract BlockAndState _createSend(SigningKey key, AccountState state, NanoAccount destination,
                                                  NanoAmount amount);
     
-    protected abstract BlockAndState _createReceive(HexData privateKey, AccountState state, HexData sourceHash,
+    protected abstract BlockAndState _createReceive(SigningKey key, AccountState state, HexData sourceHash,
                                                     NanoAmount amount);
     
-    protected abstract BlockAndState _createChangeRepresentative(HexData privateKey, AccountState state,
+    protected abstract BlockAndState _createChangeRepresentative(SigningKey key, AccountState state,
                                                                  NanoAccount representative);
     
     
+    private BlockAndState withWork(BlockAndState blockAndState) {
+        Block block = blockAndState.getBlock();
+        if (block.getWorkSolution() == null) {
+            try {
+                block.setWorkSolution(spec.getWorkGenerator().generate(block).get().getWork());
+            } catch (ExecutionException e) {
+                throw new BlockCreationException("Couldn't generate work.", e);
+            } catch (InterruptedException e) {
+                throw new BlockCreationException("Work generation was interrupted.", e);
+            }
+        }
+        return blockAndState;
+    }
+    
+    private static SigningKey signingKey(HexData privateKey) {
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        return new SigningKey(privateKey);
+    }
+    
+    
     public static class BlockCreationException extends RuntimeException {
         public BlockCreationException(String message) {
             super(message);
@@ -181,5 +405,5 @@ public abstract class BlockProducer {
             super(message, cause);
         }
     }
-
+    
 }
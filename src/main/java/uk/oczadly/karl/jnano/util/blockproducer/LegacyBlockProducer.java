@@ -9,9 +9,7 @@ import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.*;
-import uk.oczadly.karl.jnano.util.workgen.GeneratedWork;
-
-import java.util.concurrent.ExecutionException;
+import uk.oczadly.karl.jnano.util.SigningKey;
 
 /**
  * A block producer which constructs and signs legacy block types ({@link SendBlock}, {@link OpenBlock},
@@ -38,15 +36,15 @@ public class LegacyBlockProducer extends BlockProducer {
     
     
     @Override
-    protected BlockAndState _createSend(HexData privateKey, AccountState state, NanoAccount destination,
+    protected BlockAndState _createSend(SigningKey key, AccountState state, NanoAccount destination,
                                         NanoAmount amount) {
         NanoAmount balance = state.getBalance().subtract(amount);
-        return createBlock(privateKey, balance, state.getRepresentative(),
+        return createBlock(key, balance, state.getRepresentative(),
                 new SendBlock(null, null, state.getFrontierHash(), destination, balance));
     }
     
     @Override
-    protected BlockAndState _createReceive(HexData privateKey, AccountState state, HexData sourceHash,
+    protected BlockAndState _createReceive(SigningKey key, AccountState state, HexData sourceHash,
                                            NanoAmount amount) {
         NanoAmount newBal;
         try {
@@ -57,33 +55,27 @@ public class LegacyBlockProducer extends BlockProducer {
         
         if (state.isOpened()) {
             // Receive
-            return createBlock(privateKey, newBal, state.getRepresentative(),
+            return createBlock(key, newBal, state.getRepresentative(),
                     new ReceiveBlock(null, null, state.getFrontierHash(), sourceHash));
         } else {
             // Open
-            return createBlock(privateKey, newBal, getSpecification().getDefaultRepresentative(),
+            return createBlock(key, newBal, getSpecification().getDefaultRepresentative(),
                     new OpenBlock(null, null, sourceHash,
-                            NanoAccount.fromPrivateKey(privateKey, getSpecification().getAddressPrefix()),
+                            key.getAccount(getSpecification().getAddressPrefix()),
                             getSpecification().getDefaultRepresentative()));
         }
     }
     
     @Override
-    protected BlockAndState _createChangeRepresentative(HexData privateKey, AccountState state,
+    protected BlockAndState _createChangeRepresentative(SigningKey key, AccountState state,
                                                         NanoAccount representative) {
-        return createBlock(privateKey, state.getBalance(), representative,
+        return createBlock(key, state.getBalance(), representative,
                 new ChangeBlock(null, null, state.getFrontierHash(), representative));
     }
     
     
-    private BlockAndState createBlock(HexData privateKey, NanoAmount stateBal, NanoAccount stateRep, Block block) {
-        try {
-            GeneratedWork work = getSpecification().getWorkGenerator().generate(block).get();
-            block.setWorkSolution(work.getWork());
-        } catch (InterruptedException | ExecutionException e) {
-            throw new BlockCreationException("Couldn't generate work.", e);
-        }
-        block.sign(privateKey);
+    private BlockAndState createBlock(SigningKey key, NanoAmount stateBal, NanoAccount stateRep, Block block) {
+        block.sign(key); // Work is generated afterwards
         return new BlockAndState(block, new AccountState(block.getHash(), stateBal, stateRep));
     }
     
@@ -11,8 +11,11 @@ import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.Block;
 import uk.oczadly.karl.jnano.rpc.util.wallet.LocalRpcWalletAccount;
+import uk.oczadly.karl.jnano.util.SigningKey;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class can be used to locally create and sign blocks for an account. Each instance represents a single account,
@@ -23,6 +26,16 @@ import java.util.Optional;
  * will be set. If the block is approved (eg. work is valid, block accepted on the Nano network) then you <em>must</em>
  * call the {@link #commitState()} method to update the internal state for the next block.</p>
  *
+ * <p>The state is held as an immutable, versioned {@link StateSnapshot}, which is replaced atomically without locking.
+ * A transaction is based on the snapshot it was created from, and {@link #commitState()} will fail if the state has
+ * since been changed to a different value. For optimistic updates, a snapshot may be retrieved through
+ * {@link #getSnapshot()} and later replaced using {@link #compareAndSetState(StateSnapshot, AccountState)}.</p>
+ *
+ * <p>Only one uncommitted transaction is held at a time, and each call to a {@code create} method replaces it. Reading
+ * and updating the state is thread-safe, but the creation and commit of blocks must be externally serialized (as
+ * {@link LocalRpcWalletAccount} does by holding a lock), otherwise a block may be committed with the state of another
+ * block.</p>
+ *
  * <p>Consider the example below, which creates a brand new account:</p>
  * <pre>{@code
  * // Construct a block producer object with your configuration
@@ -55,10 +68,11 @@ import java.util.Optional;
  */
 public class LocalWalletAccount {
 
-    private final HexData privateKey;
+    private final SigningKey key;
     private final NanoAccount account;
     private final BlockProducer blockProducer;
-    private volatile AccountState state, transactionState;
+    private final AtomicReference<StateSnapshot> snapshot;
+    private final AtomicReference<Transaction> transaction = new AtomicReference<>();
     
     /**
      * Constructs a new LocalWalletAccount with an unopened initial state.
@@ -78,12 +92,33 @@ public class LocalWalletAccount {
      * @param state         the initial account state, or null if not opened
      */
     public LocalWalletAccount(HexData privateKey, BlockProducer blockProducer, AccountState state) {
-        if (privateKey == null) throw new IllegalArgumentException("Account private key cannot be null.");
+        this(toSigningKey(privateKey), blockProducer, state);
+    }
+    
+    /**
+     * Constructs a new LocalWalletAccount with an unopened initial state.
+     *
+     * @param key           the signing key of the account
+     * @param blockProducer the block producer
+     */
+    public LocalWalletAccount(SigningKey key, BlockProducer blockProducer) {
+        this(key, blockProducer, AccountState.UNOPENED);
+    }
+    
+    /**
+     * Constructs a new LocalWalletAccount with the provided initial state.
+     *
+     * @param key           the signing key of the account
+     * @param blockProducer the block producer
+     * @param state         the initial account state, or null if not opened
+     */
+    public LocalWalletAccount(SigningKey key, BlockProducer blockProducer, AccountState state) {
+        if (key == null) throw new IllegalArgumentException("Account signing key cannot be null.");
         if (blockProducer == null) throw new IllegalArgumentException("BlockProducer cannot be null.");
-        this.privateKey = privateKey;
-        this.account = NanoAccount.fromPrivateKey(privateKey, blockProducer.getSpecification().getAddressPrefix());
+        this.key = key;
+        this.account = key.getAccount(blockProducer.getSpecification().getAddressPrefix());
         this.blockProducer = blockProducer;
-        this.state = JNH.nonNull(state, AccountState.UNOPENED);
+        this.snapshot = new AtomicReference<>(new StateSnapshot(JNH.nonNull(state, AccountState.UNOPENED), 0));
     }
     
     
@@ -100,7 +135,15 @@ public class LocalWalletAccount {
      * @return the private key
      */
     public final HexData getPrivateKey() {
-        return privateKey;
+        return key.getPrivateKey();
+    }
+    
+    /**
+     * Returns the expanded signing key of the account, which is reused for each block created.
+     * @return the signing key
+     */
+    public final SigningKey getSigningKey() {
+        return key;
     }
     
     /**
@@ -116,7 +159,16 @@ public class LocalWalletAccount {
      * @return the state of this account
      */
     public final AccountState getState() {
-        return state;
+        return snapshot.get().getState();
+    }
+    
+    /**
+     * Returns the current internal committed state of this account, along with its version.
+     * @return the current state snapshot
+     * @see #compareAndSetState(StateSnapshot, AccountState)
+     */
+    public final StateSnapshot getSnapshot() {
+        return snapshot.get();
     }
     
     /**
@@ -126,27 +178,56 @@ public class LocalWalletAccount {
      * @param state the new state object
      * @return true if the new state is different from the previous, false if it's the same
      */
-    public final synchronized boolean updateState(AccountState state) {
+    public final boolean updateState(AccountState state) {
+        if (state == null)
+            throw new IllegalArgumentException("State cannot be null.");
+        transaction.set(null);
+        StateSnapshot current;
+        do {
+            current = snapshot.get();
+            if (current.getState().equals(state))
+                return false;
+        } while (!snapshot.compareAndSet(current, current.next(state)));
+        return true;
+    }
+    
+    /**
+     * Updates the internal state of this account to the given state data, only if the state has not been changed since
+     * the given snapshot was retrieved. Unlike {@link #updateState(AccountState)}, the transactional state is not
+     * erased.
+     *
+     * @param expected the snapshot which the new state is based on
+     * @param state    the new state object
+     * @return true if the state was updated (or is already equal to the new state), false if the state has since been
+     *         changed
+     */
+    public final boolean compareAndSetState(StateSnapshot expected, AccountState state) {
+        if (expected == null)
+            throw new IllegalArgumentException("Expected snapshot cannot be null.");
         if (state == null)
             throw new IllegalArgumentException("State cannot be null.");
-        boolean hasChanged = !this.state.equals(state);
-        this.state = state;
-        this.transactionState = null;
-        return hasChanged;
+        StateSnapshot current = snapshot.get();
+        if (current.getState().equals(state))
+            return true;
+        return snapshot.compareAndSet(expected, expected.next(state));
     }
     
     /**
      * Updates the internal state of this account to the new state generated by one of the {@code create} methods.
      *
      * <p>Throws an {@link IllegalStateException} if there is no current transaction in progress. No exception will be
-     * thrown if the creation method returned an empty optional, but the state will also remain the same.</p>
+     * thrown if the creation method returned an empty optional, but the state will also remain the same. The
+     * transaction committed is the one created by the most recent call to a {@code create} method, from any thread.</p>
      *
-     * @throws IllegalStateException if there is currently no uncommitted transaction
+     * @throws IllegalStateException if there is currently no uncommitted transaction, or the state has been changed
+     *                               since the transaction was created
      */
-    public final synchronized void commitState() {
-        if (transactionState == null)
+    public final void commitState() {
+        Transaction tx = transaction.getAndSet(null);
+        if (tx == null)
             throw new IllegalStateException("No transaction currently in progress.");
-        updateState(transactionState);
+        if (tx.state != tx.base.getState() && !compareAndSetState(tx.base, tx.state))
+            throw new IllegalStateException("Account state was changed since the transaction was created.");
     }
     
     
@@ -163,8 +244,29 @@ public class LocalWalletAccount {
      * @throws BlockProducer.BlockCreationException if the block couldn't be constructed, work couldn't be generated,
      *         or the account state doesn't match the arguments (eg. not enough funds)
      */
-    public synchronized Block createSend(NanoAccount destination, NanoAmount amount) {
-        return updateState(blockProducer.createSend(privateKey, state, destination, amount));
+    public Block createSend(NanoAccount destination, NanoAmount amount) {
+        StateSnapshot base = snapshot.get();
+        return beginTransaction(base, blockProducer.createSend(key, base.getState(), destination, amount));
+    }
+    
+    /**
+     * Constructs and signs a new block which sends a specified amount of funds from the account, returning without
+     * waiting for the work to be generated.
+     *
+     * <p>The block is signed and the uncommitted transaction state is set before this method returns, so
+     * {@link #commitState()} may be called straight away to begin creating the next block. The returned future
+     * completes once the work has been set on the block, which must happen before it is published.</p>
+     *
+     * @param destination the destination account where the funds will be sent
+     * @param amount      the amount to send
+     * @return a future which completes with the constructed block
+     * @throws BlockProducer.BlockCreationException if the block couldn't be constructed, or the account state doesn't
+     *         match the arguments (eg. not enough funds)
+     * @see BlockProducer#createSendAsync(SigningKey, AccountState, NanoAccount, NanoAmount)
+     */
+    public CompletableFuture<Block> createSendAsync(NanoAccount destination, NanoAmount amount) {
+        StateSnapshot base = snapshot.get();
+        return beginTransactionAsync(base, blockProducer.prepareSend(key, base.getState(), destination, amount));
     }
     
     /**
@@ -180,8 +282,9 @@ public class LocalWalletAccount {
      * @return the constructed block, or empty if the account has no funds
      * @throws BlockProducer.BlockCreationException if the block couldn't be constructed, or work couldn't be generated
      */
-    public synchronized Optional<Block> createSendAll(NanoAccount destination) {
-        return updateState(blockProducer.createSendAll(privateKey, state, destination));
+    public Optional<Block> createSendAll(NanoAccount destination) {
+        StateSnapshot base = snapshot.get();
+        return beginTransaction(base, blockProducer.createSendAll(key, base.getState(), destination));
     }
     
     /**
@@ -197,8 +300,29 @@ public class LocalWalletAccount {
      * @throws BlockProducer.BlockCreationException if the block couldn't be constructed, work couldn't be generated,
      *         or the account state doesn't match the arguments (eg. receiving too many funds)
      */
-    public synchronized Block createReceive(HexData sourceHash, NanoAmount amount) {
-        return updateState(blockProducer.createReceive(privateKey, state, sourceHash, amount));
+    public Block createReceive(HexData sourceHash, NanoAmount amount) {
+        StateSnapshot base = snapshot.get();
+        return beginTransaction(base, blockProducer.createReceive(key, base.getState(), sourceHash, amount));
+    }
+    
+    /**
+     * Constructs and signs a new block which receives a pending block, returning without waiting for the work to be
+     * generated.
+     *
+     * <p>The block is signed and the uncommitted transaction state is set before this method returns, so
+     * {@link #commitState()} may be called straight away to begin creating the next block. The returned future
+     * completes once the work has been set on the block, which must happen before it is published.</p>
+     *
+     * @param sourceHash the hash of the pending {@code send} block
+     * @param amount     the amount of the pending send block
+     * @return a future which completes with the constructed block
+     * @throws BlockProducer.BlockCreationException if the block couldn't be constructed, or the account state doesn't
+     *         match the arguments (eg. receiving too many funds)
+     * @see BlockProducer#createReceiveAsync(SigningKey, AccountState, HexData, NanoAmount)
+     */
+    public CompletableFuture<Block> createReceiveAsync(HexData sourceHash, NanoAmount amount) {
+        StateSnapshot base = snapshot.get();
+        return beginTransactionAsync(base, blockProducer.prepareReceive(key, base.getState(), sourceHash, amount));
     }
     
     /**
@@ -214,18 +338,32 @@ public class LocalWalletAccount {
      * @return the constructed block, or empty if the representative is already set
      * @throws BlockProducer.BlockCreationException if the block couldn't be constructed, or work couldn't be generated
      */
-    public synchronized Optional<Block> createChangeRepresentative(NanoAccount representative) {
-        return updateState(blockProducer.createChangeRepresentative(privateKey, state, representative));
+    public Optional<Block> createChangeRepresentative(NanoAccount representative) {
+        StateSnapshot base = snapshot.get();
+        return beginTransaction(base,
+                blockProducer.createChangeRepresentative(key, base.getState(), representative));
     }
     
     
-    private synchronized Block updateState(BlockAndState block) {
-        transactionState = block.getState();
+    private static SigningKey toSigningKey(HexData privateKey) {
+        if (privateKey == null) throw new IllegalArgumentException("Account private key cannot be null.");
+        return new SigningKey(privateKey);
+    }
+    
+    private Block beginTransaction(StateSnapshot base, BlockAndState block) {
+        transaction.set(new Transaction(base, block.getState()));
         return block.getBlock();
     }
     
-    private synchronized Optional<Block> updateState(Optional<BlockAndState> block) {
-        transactionState = block.map(BlockAndState::getState).orElse(state);
+    private CompletableFuture<Block> beginTransactionAsync(StateSnapshot base, BlockAndState block) {
+        // The state is known once signed, so doesn't wait for the work
+        transaction.set(new Transaction(base, block.getState()));
+        CompletableFuture<BlockAndState> futureWork = blockProducer.generateWorkAsync(block);
+        return JNH.propagateCancel(futureWork, futureWork.thenApply(BlockAndState::getBlock));
+    }
+    
+    private Optional<Block> beginTransaction(StateSnapshot base, Optional<BlockAndState> block) {
+        transaction.set(new Transaction(base, block.map(BlockAndState::getState).orElse(base.getState())));
         return block.map(BlockAndState::getBlock);
     }
     
@@ -237,4 +375,54 @@ public class LocalWalletAccount {
                 ", blockProducer=" + getBlockProducer().getClass().getSimpleName() + '}';
     }
     
+    
+    /**
+     * An immutable snapshot of the committed state of an account. The version is incremented each time the state is
+     * changed to a different value.
+     */
+    public static final class StateSnapshot {
+        private final AccountState state;
+        private final long version;
+        
+        private StateSnapshot(AccountState state, long version) {
+            this.state = state;
+            this.version = version;
+        }
+        
+        
+        /**
+         * @return the state of the account
+         */
+        public AccountState getState() {
+            return state;
+        }
+        
+        /**
+         * @return the version of the state, starting from zero
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        private StateSnapshot next(AccountState state) {
+            return new StateSnapshot(state, version + 1);
+        }
+        
+        @Override
+        public String toString() {
+            return "StateSnapshot{version=" + version + ", frontier=" + state.getFrontierHash() + '}';
+        }
+    }
+    
+    
+    private static final class Transaction {
+        final StateSnapshot base;
+        final AccountState state;
+        
+        Transaction(StateSnapshot base, AccountState state) {
+            this.base = base;
+            this.state = state;
+        }
+    }
+    
 }
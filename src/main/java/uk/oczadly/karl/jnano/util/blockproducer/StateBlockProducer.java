@@ -11,6 +11,7 @@ import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.StateBlock;
 import uk.oczadly.karl.jnano.model.block.StateBlockBuilder;
 import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.util.SigningKey;
 
 /**
  * A block producer which constructs and signs {@link StateBlock} blocks.
@@ -36,16 +37,16 @@ public class StateBlockProducer extends BlockProducer {
     
     
     @Override
-    protected BlockAndState _createSend(HexData privateKey, AccountState state, NanoAccount destination,
+    protected BlockAndState _createSend(SigningKey key, AccountState state, NanoAccount destination,
                                         NanoAmount amount) {
-        return sign(privateKey, builder(state)
+        return sign(key, builder(state)
                 .subtype(StateBlockSubType.SEND)
                 .balance(state.getBalance().subtract(amount))
                 .link(destination));
     }
     
     @Override
-    protected BlockAndState _createReceive(HexData privateKey, AccountState state, HexData sourceHash,
+    protected BlockAndState _createReceive(SigningKey key, AccountState state, HexData sourceHash,
                                            NanoAmount amount) {
         NanoAmount newBal;
         try {
@@ -53,16 +54,16 @@ public class StateBlockProducer extends BlockProducer {
         } catch (ArithmeticException e) {
             throw new BlockCreationException("Receiving more funds than possible.");
         }
-        return sign(privateKey, builder(state)
+        return sign(key, builder(state)
                 .subtype(state.isOpened() ? StateBlockSubType.RECEIVE : StateBlockSubType.OPEN)
                 .balance(newBal)
                 .link(sourceHash));
     }
     
     @Override
-    protected BlockAndState _createChangeRepresentative(HexData privateKey, AccountState state,
+    protected BlockAndState _createChangeRepresentative(SigningKey key, AccountState state,
                                                         NanoAccount representative) {
-        return sign(privateKey, builder(state)
+        return sign(key, builder(state)
                 .subtype(StateBlockSubType.CHANGE)
                 .representative(representative));
     }
@@ -74,14 +75,13 @@ public class StateBlockProducer extends BlockProducer {
                 .previous(state.getFrontierHash())
                 .representative(state.isOpened() ? state.getRepresentative() :
                         getSpecification().getDefaultRepresentative())
-                .generateWork(getSpecification().getWorkGenerator())
                 .usingAddressPrefix(getSpecification().getAddressPrefix());
     }
     
-    private static BlockAndState sign(HexData privateKey, StateBlockBuilder builder) {
+    private static BlockAndState sign(SigningKey key, StateBlockBuilder builder) {
         StateBlock block;
         try {
-            block = builder.buildAndSign(privateKey);
+            block = builder.buildAndSign(key);
         } catch (StateBlockBuilder.BlockCreationException e) {
             throw new BlockCreationException(e.getMessage(), e);
         }
@@ -137,7 +137,22 @@ public abstract class AbstractWorkGenerator implements WorkGenerator {
         if (isShutdown())
             throw new IllegalStateException("Work generator is shut down and cannot accept new requests.");
         
-        return new FutureWork(requestExecutor.submit(new WorkGeneratorTask(spec)));
+        CompletableFuture<GeneratedWork> completion = new CompletableFuture<>();
+        FutureTask<GeneratedWork> task = new FutureTask<GeneratedWork>(new WorkGeneratorTask(spec)) {
+            @Override
+            protected void done() {
+                // Notify the completion future without a thread waiting on the result
+                try {
+                    completion.complete(get());
+                } catch (ExecutionException e) {
+                    completion.completeExceptionally(e.getCause());
+                } catch (InterruptedException | CancellationException e) {
+                    completion.completeExceptionally(e);
+                }
+            }
+        };
+        requestExecutor.execute(task);
+        return new FutureWork(task, completion);
     }
     
     
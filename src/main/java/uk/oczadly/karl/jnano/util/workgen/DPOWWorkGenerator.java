@@ -8,8 +8,8 @@ package uk.oczadly.karl.jnano.util.workgen;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.java_websocket.handshake.ServerHandshake;
-import uk.oczadly.karl.jnano.internal.utils.IDRequestTracker;
 import uk.oczadly.karl.jnano.internal.utils.ReconnectingWebsocketClient;
+import uk.oczadly.karl.jnano.internal.utils.RequestCorrelator;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
@@ -17,6 +17,7 @@ import uk.oczadly.karl.jnano.util.NetworkConstants;
 import uk.oczadly.karl.jnano.util.workgen.policy.WorkDifficultyPolicy;
 
 import java.net.URI;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
@@ -57,7 +58,7 @@ public class DPOWWorkGenerator extends AbstractWorkGenerator {
     private final String user, apiKey;
     private final long timeoutMillis, timeoutSecs;
     private final WSHandler websocket;
-    private final IDRequestTracker<JsonObject> reqTracker = new IDRequestTracker<>();
+    private final RequestCorrelator<JsonObject> reqTracker = new RequestCorrelator<>();
     
     /**
      * Creates a new {@code DPOWWorkGenerator} which generates work on the external DPoW service.
@@ -141,25 +142,27 @@ public class DPOWWorkGenerator extends AbstractWorkGenerator {
     @Override
     protected final WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context)
             throws WorkGenerationException, InterruptedException {
-        IDRequestTracker<JsonObject>.Tracker tracker = null;
+        RequestCorrelator<JsonObject>.Request request = null;
         try {
             // Await connection
             websocket.awaitConnection(timeoutMillis, TimeUnit.MILLISECONDS);
             
             // Send
-            tracker = reqTracker.newTracker();
-            JsonObject request = buildRequest(tracker.getID(), root, difficulty, context);
-            websocket.send(request.toString());
+            request = reqTracker.register(timeoutMillis);
+            JsonObject requestJson = buildRequest(request.getIdString(), root, difficulty, context);
+            websocket.send(requestJson.toString());
     
-            JsonObject response = tracker.await(timeoutMillis, TimeUnit.MILLISECONDS); // Await response
+            JsonObject response = request.getFuture().get(); // Await response (timeout enforced by correlator)
             return parseResponse(response); // Parse and return response
         } catch (TimeoutException e) {
             throw new WorkGenerationException("Connection timeout.", e);
-        } catch (IDRequestTracker.TrackerExpiredException e) {
-            throw new AssertionError("Tracker expired.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException)
+                throw new WorkGenerationException("Connection timeout.", e.getCause());
+            throw new WorkGenerationException("Work request failed.", e.getCause());
         } finally {
-            if (tracker != null)
-                tracker.expire();
+            if (request != null)
+                request.cancel();
         }
     }
     
@@ -310,12 +313,12 @@ public class DPOWWorkGenerator extends AbstractWorkGenerator {
     
     
     private static class WSHandler extends ReconnectingWebsocketClient {
-        private final IDRequestTracker<JsonObject> tracker;
+        private final RequestCorrelator<JsonObject> tracker;
         private final Lock notifyLock = new ReentrantLock();
         private final Condition notifyCond = notifyLock.newCondition();
         private volatile boolean open = false;
         
-        public WSHandler(URI serverUri, IDRequestTracker<JsonObject> tracker) {
+        public WSHandler(URI serverUri, RequestCorrelator<JsonObject> tracker) {
             super(serverUri, 2000);
             this.tracker = tracker;
         }
@@ -5,10 +5,9 @@
 
 package uk.oczadly.karl.jnano.util.workgen;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import uk.oczadly.karl.jnano.internal.JNH;
+
+import java.util.concurrent.*;
 
 /**
  * Represents a {@code Future<GeneratedWork>} object which has yet to complete. Allows retrieval of root hash, and
@@ -16,13 +15,31 @@ import java.util.concurrent.TimeoutException;
  */
 public class FutureWork implements Future<GeneratedWork> {
     
+    /** How often the waiter thread checks futures which have no completion future, in milliseconds. */
+    private static final long WAITER_POLL_INTERVAL = 5;
+    private static final ScheduledExecutorService WAITER_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            JNH.threadFactory("FutureWork-Waiter", true));
+    
     private final Future<GeneratedWork> future;
+    private final CompletableFuture<GeneratedWork> completion;
     
     /**
      * @param future the future proxy object
      */
+    @SuppressWarnings("unchecked")
     public FutureWork(Future<GeneratedWork> future) {
+        this(future, future instanceof CompletableFuture ? (CompletableFuture<GeneratedWork>)future : null);
+    }
+    
+    /**
+     * @param future     the future proxy object
+     * @param completion a future which is completed with the same result as {@code future}, or null if unavailable
+     */
+    public FutureWork(Future<GeneratedWork> future, CompletableFuture<GeneratedWork> completion) {
+        if (future == null)
+            throw new IllegalArgumentException("Future cannot be null.");
         this.future = future;
+        this.completion = completion;
     }
     
     
@@ -76,4 +93,63 @@ public class FutureWork implements Future<GeneratedWork> {
         return future.get(timeout, unit);
     }
     
+    /**
+     * Returns a {@link CompletableFuture} which completes when the work has been generated, allowing dependent actions
+     * to be chained without blocking a thread on {@link #get()}. Cancelling the returned future will also cancel the
+     * work generation.
+     *
+     * <p>If the work generator did not supply a completion future, then the result is instead polled by a single shared
+     * background thread, so the returned future may complete a few milliseconds after the work is generated.</p>
+     *
+     * @return a future which completes with the generated work
+     */
+    public CompletableFuture<GeneratedWork> toCompletableFuture() {
+        CompletableFuture<GeneratedWork> result = new CompletableFuture<GeneratedWork>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                FutureWork.this.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        if (completion != null) {
+            completion.whenComplete((work, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                            ? ex.getCause() : ex);
+                } else {
+                    result.complete(work);
+                }
+            });
+        } else {
+            WAITER_EXECUTOR.execute(new Waiter(result));
+        }
+        return result;
+    }
+    
+    
+    /** Polls the future from the shared waiter thread, completing the result once it is done. */
+    private class Waiter implements Runnable {
+        private final CompletableFuture<GeneratedWork> result;
+        
+        Waiter(CompletableFuture<GeneratedWork> result) {
+            this.result = result;
+        }
+        
+        @Override
+        public void run() {
+            if (result.isDone()) return; // Cancelled
+            if (!future.isDone()) {
+                WAITER_EXECUTOR.schedule(this, WAITER_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            }
+            try {
+                result.complete(future.get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (InterruptedException | CancellationException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+    
 }
@@ -7,6 +7,7 @@ package uk.oczadly.karl.jnano.util.workgen;
 
 import uk.oczadly.karl.jnano.internal.NanoConst;
 import uk.oczadly.karl.jnano.internal.utils.LRUCache;
+import uk.oczadly.karl.jnano.model.Hash256;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
@@ -29,7 +30,7 @@ public final class WorkCache {
      */
     public static final WorkCache GLOBAL_INSTANCE = new WorkCache(100);
     
-    private final LRUCache<HexData, CachedWork> map;
+    private final LRUCache<Hash256, CachedWork> map;
     
     /**
      * Constructs a work cache with the specified maximum cache size.
@@ -86,15 +87,28 @@ public final class WorkCache {
      *         stored for this root
      */
     public boolean store(WorkSolution work, HexData root) {
+        return store(work, toHash256(root));
+    }
+    
+    /**
+     * Stores the generated work in the cache.
+     *
+     * @param work the generated work solution
+     * @param root the root the work was generated for
+     * @return true if the work was written to the cache, false if the cache already has a higher difficulty value
+     *         stored for this root
+     */
+    public boolean store(WorkSolution work, Hash256 root) {
         if (work == null) throw new IllegalArgumentException("Work cannot be null.");
         if (root == null) throw new IllegalArgumentException("Root cannot be null.");
         return store(work, work.calculateDifficulty(root), root);
     }
     
-    private synchronized boolean store(WorkSolution work, WorkDifficulty difficulty, HexData root) {
-        if (root.length() != NanoConst.LEN_HASH_B)
-            throw new IllegalArgumentException("Invalid root length.");
-        
+    private boolean store(WorkSolution work, WorkDifficulty difficulty, HexData root) {
+        return store(work, difficulty, toHash256(root));
+    }
+    
+    private synchronized boolean store(WorkSolution work, WorkDifficulty difficulty, Hash256 root) {
         CachedWork current = map.get(root);
         if (current != null && difficulty.compareTo(current.difficulty) < 0) {
             // Bump existing cache (but don't overwrite)
@@ -113,11 +127,19 @@ public final class WorkCache {
      * @param root the root hash
      * @return true if a cached work value was removed
      */
-    public synchronized boolean remove(HexData root) {
+    public boolean remove(HexData root) {
+        return remove(toHash256(root));
+    }
+    
+    /**
+     * Removes any cached work for the specified root.
+     *
+     * @param root the root hash
+     * @return true if a cached work value was removed
+     */
+    public synchronized boolean remove(Hash256 root) {
         if (root == null)
             throw new IllegalArgumentException("Root cannot be null.");
-        if (root.length() != NanoConst.LEN_HASH_B)
-            throw new IllegalArgumentException("Invalid root length.");
         return map.remove(root) != null;
     }
     
@@ -129,11 +151,21 @@ public final class WorkCache {
      * @param threshold the minimum acceptable difficulty threshold of the work
      * @return the cached work value, or empty if not cached or if the work doesn't meet the difficulty threshold
      */
-    public synchronized Optional<WorkSolution> get(HexData root, WorkDifficulty threshold) {
+    public Optional<WorkSolution> get(HexData root, WorkDifficulty threshold) {
+        return get(toHash256(root), threshold);
+    }
+    
+    /**
+     * Returns the current cached value for the given root if the cached work is greater than the specified difficulty
+     * threshold.
+     *
+     * @param root      the root hash that the work is for
+     * @param threshold the minimum acceptable difficulty threshold of the work
+     * @return the cached work value, or empty if not cached or if the work doesn't meet the difficulty threshold
+     */
+    public synchronized Optional<WorkSolution> get(Hash256 root, WorkDifficulty threshold) {
         if (root == null)
             throw new IllegalArgumentException("Root cannot be null.");
-        if (root.length() != NanoConst.LEN_HASH_B)
-            throw new IllegalArgumentException("Invalid root length.");
         if (threshold == null)
             throw new IllegalArgumentException("Threshold cannot be null.");
         
@@ -151,6 +183,14 @@ public final class WorkCache {
     }
     
     
+    private static Hash256 toHash256(HexData root) {
+        if (root == null)
+            throw new IllegalArgumentException("Root cannot be null.");
+        if (root.length() != NanoConst.LEN_HASH_B)
+            throw new IllegalArgumentException("Invalid root length.");
+        return Hash256.of(root);
+    }
+    
     /** Stores the work and difficulty for the given root. */
     private static class CachedWork {
         private final WorkSolution work;
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket;
+
+import java.util.List;
+
+/**
+ * A listener which receives the messages of a topic in batches, rather than individually.
+ *
+ * <p>Batches are accumulated until either the configured size limit is reached, or the configured delay has elapsed
+ * since the previous delivery. Messages within a batch are provided in the order they were received.</p>
+ *
+ * @see Topic#registerBatchListener(BatchTopicListener, int, long)
+ */
+@FunctionalInterface
+public interface BatchTopicListener<T> {
+    
+    /**
+     * This method is called when a batch of messages for the topic is ready to be processed.
+     * @param messages an unmodifiable list of message contents (never empty)
+     */
+    void onMessages(List<T> messages);
+    
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the raw text frames received by a {@link NanoWebSocketClient} to an append-only file, so that they can later
+ * be replayed through a {@link FrameReplayer} without a live node.
+ *
+ * <p>Each record contains the time at which the frame was received (in nanoseconds since the epoch), followed by the
+ * length and UTF-8 encoded contents of the frame. Recording to an existing file will append the new frames to the
+ * end, after discarding any incomplete frame left at the end of the file (eg. if the process was terminated while
+ * writing).</p>
+ *
+ * <p>Below is an example of how this class could be used:</p>
+ * <pre>{@code
+ * NanoWebSocketClient ws = new NanoWebSocketClient();
+ * ws.setFrameRecorder(new FrameRecorder(Paths.get("frames.bin")));
+ * ws.connect();
+ * }</pre>
+ *
+ * @see FrameReplayer
+ */
+public final class FrameRecorder implements Closeable {
+    
+    /** The magic header written at the start of every recording file. */
+    static final int MAGIC = 0x4A4E5752; // "JNWR"
+    
+    private final Path path;
+    private final DataOutputStream out;
+    private final long baseEpochNanos, baseNanoTime;
+    private long frameCount;
+    private boolean closed;
+    
+    /**
+     * Opens a recorder which appends frames to the given file, creating it if it does not exist.
+     * @param path the recording file
+     * @throws IOException if the file cannot be opened, or is an existing file which is not a frame recording
+     */
+    public FrameRecorder(Path path) throws IOException {
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null.");
+        this.path = path;
+        boolean writeHeader = !Files.exists(path) || Files.size(path) == 0;
+        if (!writeHeader)
+            truncateIncompleteFrame(path);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 65536));
+        if (writeHeader)
+            out.writeInt(MAGIC);
+        this.baseEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        this.baseNanoTime = System.nanoTime();
+    }
+    
+    
+    /**
+     * @return the recording file
+     */
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * @return the number of frames recorded by this instance
+     */
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+    
+    /**
+     * Appends a frame to the recording, timestamped with the current time.
+     * @param frame the raw frame contents
+     * @throws IOException if the frame cannot be written
+     */
+    public void record(String frame) throws IOException {
+        record(frame, baseEpochNanos + (System.nanoTime() - baseNanoTime));
+    }
+    
+    /**
+     * Appends a frame to the recording.
+     * @param frame      the raw frame contents
+     * @param epochNanos the time at which the frame was received, in nanoseconds since the epoch
+     * @throws IOException if the frame cannot be written
+     */
+    public synchronized void record(String frame, long epochNanos) throws IOException {
+        if (frame == null)
+            throw new IllegalArgumentException("Frame cannot be null.");
+        if (closed)
+            throw new IOException("Recorder has been closed.");
+        byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+        out.writeLong(epochNanos);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        frameCount++;
+    }
+    
+    /**
+     * Flushes any buffered frames to the file.
+     * @throws IOException if the frames cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed)
+            out.flush();
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        out.close();
+    }
+    
+    
+    /** Verifies the header of an existing recording, and removes any incomplete trailing frame. */
+    private static void truncateIncompleteFrame(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            long size = ch.size();
+            if (size < 4 || readFully(ch, header, 0, 4) < 4 || header.getInt(0) != MAGIC)
+                throw new IOException("File is not a frame recording.");
+            long pos = 4;
+            while (readFully(ch, header, pos, 12) == 12) {
+                int len = header.getInt(8);
+                if (len < 0 || pos + 12 + len > size) break;
+                pos += 12 + len;
+            }
+            if (pos < size)
+                ch.truncate(pos);
+        }
+    }
+    
+    private static int readFully(FileChannel ch, ByteBuffer buf, long pos, int len) throws IOException {
+        buf.clear().limit(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) break;
+        }
+        return buf.position();
+    }
+    
+}
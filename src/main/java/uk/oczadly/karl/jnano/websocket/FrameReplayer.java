@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket;
+
+import com.google.gson.JsonObject;
+import uk.oczadly.karl.jnano.internal.JNH;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays frames captured by a {@link FrameRecorder} through the topics of a {@link NanoWebSocketClient}, without
+ * requiring a connection to a live node.
+ *
+ * <p>Frames are dispatched on the calling thread through the same parsing and listener notification path used for
+ * live messages, so the registered topic listeners (and batch listeners) will be notified as normal. Acknowledgement
+ * frames and frames for unregistered topics are skipped. Frames can be replayed at the recorded rate, at a scaled rate,
+ * or as fast as possible using {@link #MAX_SPEED}.</p>
+ *
+ * <p>Below is an example of how this class could be used to benchmark a listener:</p>
+ * <pre>{@code
+ * NanoWebSocketClient ws = new NanoWebSocketClient(); // Never connected
+ * ws.getTopics().topicConfirmedBlocks().registerListener(myListener);
+ *
+ * FrameReplayer.Result result = new FrameReplayer(ws, Paths.get("frames.bin")).replay(FrameReplayer.MAX_SPEED);
+ * System.out.printf("%.0f msg/s, p99 latency %d us%n", result.getMessagesPerSecond(),
+ *         TimeUnit.NANOSECONDS.toMicros(result.getLatencyPercentile(99)));
+ * }</pre>
+ *
+ * @see FrameRecorder
+ */
+public final class FrameReplayer {
+    
+    /** Replays frames as fast as possible, ignoring the recorded timings. */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+    
+    private final NanoWebSocketClient client;
+    private final Path path;
+    
+    /**
+     * @param client the client whose topics will be notified
+     * @param path   the recording file
+     */
+    public FrameReplayer(NanoWebSocketClient client, Path path) {
+        if (client == null)
+            throw new IllegalArgumentException("Client cannot be null.");
+        if (path == null)
+            throw new IllegalArgumentException("Path cannot be null.");
+        this.client = client;
+        this.path = path;
+    }
+    
+    
+    /**
+     * Replays all of the recorded frames. This method blocks until every frame has been dispatched.
+     *
+     * <p>The dispatch latency of each frame is measured from the instant it was due to be replayed (or read from
+     * the file, when replaying at {@link #MAX_SPEED}) until all of its listeners have returned.</p>
+     *
+     * @param speed the replay speed multiplier, where {@code 1} replays at the recorded rate, {@code 2} at twice the
+     *              recorded rate, and {@link #MAX_SPEED} without any delays
+     * @return the replay statistics
+     * @throws IOException if the recording cannot be read or is corrupt
+     */
+    public Result replay(double speed) throws IOException {
+        if (!(speed > 0))
+            throw new IllegalArgumentException("Speed must be positive.");
+        
+        long[] latencies = new long[1024];
+        int dispatched = 0;
+        long skipped = 0;
+        long firstFrameNanos = 0, startNanos = System.nanoTime();
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 65536))) {
+            if (in.readInt() != FrameRecorder.MAGIC)
+                throw new IOException("File is not a frame recording.");
+            
+            byte[] buffer = new byte[4096];
+            boolean first = true;
+            while (true) {
+                long frameNanos;
+                int len;
+                try {
+                    frameNanos = in.readLong();
+                    len = in.readInt();
+                    if (len < 0)
+                        throw new IOException("Corrupt frame length.");
+                    if (len > buffer.length)
+                        buffer = new byte[Math.max(len, buffer.length * 2)];
+                    in.readFully(buffer, 0, len);
+                } catch (EOFException e) {
+                    break; // End of recording, or an incomplete trailing frame
+                }
+                
+                // Wait until the frame is due
+                long dueNanos;
+                if (first) {
+                    firstFrameNanos = frameNanos;
+                    startNanos = System.nanoTime();
+                    first = false;
+                }
+                if (speed == MAX_SPEED) {
+                    dueNanos = System.nanoTime();
+                } else {
+                    dueNanos = startNanos + (long)((frameNanos - firstFrameNanos) / speed);
+                    long waitNanos;
+                    while ((waitNanos = dueNanos - System.nanoTime()) > 0)
+                        LockSupport.parkNanos(waitNanos);
+                }
+                
+                // Dispatch
+                if (dispatch(new String(buffer, 0, len, StandardCharsets.UTF_8))) {
+                    if (dispatched == latencies.length)
+                        latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    latencies[dispatched++] = System.nanoTime() - dueNanos;
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        return new Result(Arrays.copyOf(latencies, dispatched), skipped, elapsed);
+    }
+    
+    
+    private boolean dispatch(String frame) {
+        JsonObject json;
+        try {
+            json = JNH.parseJson(frame);
+        } catch (Exception e) {
+            return false;
+        }
+        if (!json.has("message") || !json.has("topic")) return false;
+        Topic<?> topic = client.getTopics().get(json.get("topic").getAsString());
+        if (topic == null) return false;
+        topic.notifyListeners(json);
+        return true;
+    }
+    
+    
+    /**
+     * The statistics of a completed replay.
+     */
+    public static final class Result {
+        private final long[] sortedLatencies;
+        private final long skippedCount, elapsedNanos;
+        private final double meanLatency;
+        
+        private Result(long[] latencies, long skippedCount, long elapsedNanos) {
+            Arrays.sort(latencies);
+            this.sortedLatencies = latencies;
+            this.skippedCount = skippedCount;
+            this.elapsedNanos = elapsedNanos;
+            long total = 0;
+            for (long latency : latencies)
+                total += latency;
+            this.meanLatency = latencies.length == 0 ? 0 : (double)total / latencies.length;
+        }
+        
+        /** @return the number of frames dispatched to topics */
+        public long getMessageCount() {
+            return sortedLatencies.length;
+        }
+        
+        /** @return the number of frames which were skipped (acknowledgements or unregistered topics) */
+        public long getSkippedCount() {
+            return skippedCount;
+        }
+        
+        /**
+         * @param unit the time unit
+         * @return the total duration of the replay
+         */
+        public long getElapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        
+        /** @return the sustained dispatch rate, in messages per second */
+        public double getMessagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : sortedLatencies.length * 1e9 / elapsedNanos;
+        }
+        
+        /** @return the mean dispatch latency, in nanoseconds */
+        public double getMeanLatency() {
+            return meanLatency;
+        }
+        
+        /**
+         * Returns the dispatch latency at the given percentile, using the nearest-rank method.
+         * @param percentile the percentile, between 0 and 100 (inclusive)
+         * @return the latency in nanoseconds, or zero if no frames were dispatched
+         */
+        public long getLatencyPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+            if (sortedLatencies.length == 0) return 0;
+            int rank = (int)Math.ceil(percentile / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(rank - 1, 0)];
+        }
+        
+        /** @return the maximum dispatch latency, in nanoseconds */
+        public long getMaxLatency() {
+            return sortedLatencies.length == 0 ? 0 : sortedLatencies[sortedLatencies.length - 1];
+        }
+        
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "messages=" + getMessageCount() +
+                    ", skipped=" + skippedCount +
+                    ", messagesPerSecond=" + getMessagesPerSecond() +
+                    ", meanLatencyNanos=" + meanLatency +
+                    ", p99LatencyNanos=" + getLatencyPercentile(99) +
+                    '}';
+        }
+    }
+    
+}
@@ -8,13 +8,13 @@ package uk.oczadly.karl.jnano.websocket;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import uk.oczadly.karl.jnano.internal.JNC;
-import uk.oczadly.karl.jnano.internal.utils.IDRequestTracker;
+import uk.oczadly.karl.jnano.internal.utils.RequestCorrelator;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * <p>This class represents a WebSocket which can interact with the Nano WebSocket RPC API.</p>
@@ -47,7 +47,8 @@ public final class NanoWebSocketClient {
     private final URI uri;
     private volatile WebSocketHandler ws;
     private volatile WsObserver wsObserver = WsObserver.DEFAULT;
-    private volatile IDRequestTracker<Void> requestTracker;
+    private volatile RequestCorrelator<Void> requestTracker;
+    private volatile FrameRecorder frameRecorder;
     
     private final Gson gson = JNC.GSON;
     private final ExecutorService listenerExecutors = Executors.newFixedThreadPool(500);
@@ -95,8 +96,9 @@ public final class NanoWebSocketClient {
         if (isOpen())
             throw new IllegalStateException("WebSocket is already open.");
     
-        this.requestTracker = new IDRequestTracker<>();
-        this.ws = new WebSocketHandler(uri, topicRegistry, requestTracker, wsObserver, listenerExecutors);
+        this.requestTracker = new RequestCorrelator<>();
+        this.ws = new WebSocketHandler(uri, topicRegistry, requestTracker, wsObserver, listenerExecutors,
+                frameRecorder);
         return ws.connectBlocking();
     }
     
@@ -137,6 +139,26 @@ public final class NanoWebSocketClient {
         return wsObserver;
     }
     
+    /**
+     * Sets the recorder which captures the raw frames received by this WebSocket, or null to disable recording. The
+     * recorder is not closed by this client. This method will only work while the socket is unopened or closed.
+     * @param frameRecorder the frame recorder, or null
+     * @throws IllegalStateException if the socket is currently open
+     * @see FrameReplayer
+     */
+    public synchronized void setFrameRecorder(FrameRecorder frameRecorder) {
+        if (isOpen())
+            throw new IllegalStateException("The frame recorder cannot be updated while the WebSocket is open.");
+        this.frameRecorder = frameRecorder;
+    }
+    
+    /**
+     * @return the frame recorder, or null if frames are not being recorded
+     */
+    public FrameRecorder getFrameRecorder() {
+        return frameRecorder;
+    }
+    
     /**
      * Returns the topic registry, which contains all the available topics which can be subscribed to.
      * @return the topic registry
@@ -164,26 +186,32 @@ public final class NanoWebSocketClient {
      * @throws InterruptedException if interrupted whilst waiting
      */
     protected boolean sendAck(JsonObject json, long timeout) throws InterruptedException {
+        try {
+            return sendAckAsync(json, timeout).get();
+        } catch (ExecutionException e) {
+            throw new AssertionError("Acknowledgement future completed exceptionally.", e);
+        }
+    }
+    
+    /**
+     * Send the JSON object to the node, and return a future which completes once acknowledged. No threads are blocked
+     * while awaiting the acknowledgement.
+     * @param json    the json data
+     * @param timeout the timeout in millis, or zero for no timeout
+     * @return a future which completes with true if acknowledged, or false if the timeout expires or the socket closed
+     */
+    protected CompletableFuture<Boolean> sendAckAsync(JsonObject json, long timeout) {
         if (!isOpen())
             throw new IllegalStateException("WebSocket is not currently open.");
         
         // Send
-        IDRequestTracker<Void>.Tracker tracker = requestTracker.newTracker();
-        json.addProperty("id", tracker.getID());
+        RequestCorrelator<Void>.Request request = requestTracker.register(timeout);
+        json.addProperty("id", request.getIdString());
         json.addProperty("ack", true);
         ws.send(json.toString());
         
-        // Await ack
-        try {
-            if (timeout <= 0) {
-                tracker.await();
-            } else {
-                tracker.await(timeout, TimeUnit.MILLISECONDS);
-            }
-            return true;
-        } catch (IDRequestTracker.TrackerExpiredException | TimeoutException e) {
-            return false;
-        }
+        // Await ack (timeouts and closures complete the future exceptionally)
+        return request.getFuture().handle((r, e) -> e == null);
     }
 
 }
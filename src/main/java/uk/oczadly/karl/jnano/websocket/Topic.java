@@ -11,7 +11,9 @@ import uk.oczadly.karl.jnano.websocket.topic.message.MessageContext;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 public class Topic<M> {
     
@@ -22,6 +24,7 @@ public class Topic<M> {
     private final Class<M> classMessage;
     private final NanoWebSocketClient client;
     private final CopyOnWriteArrayList<TopicListener<M>> listeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<TopicBatcher<M>> batchers = new CopyOnWriteArrayList<>();
     
     public Topic(String topicName, Class<M> classMessage, NanoWebSocketClient client) {
         this.topicName = topicName;
@@ -75,6 +78,53 @@ public class Topic<M> {
         return Collections.unmodifiableList(listeners);
     }
     
+    /**
+     * Registers a new batch listener for this topic.
+     *
+     * <p>Received messages will be accumulated and delivered to the listener as a single list once
+     * {@code maxBatchSize} messages have been buffered, or every {@code maxDelay} milliseconds if there are any
+     * outstanding messages. Messages are only parsed once regardless of the number of registered listeners, and no
+     * {@link MessageContext} objects are created for batch listeners.</p>
+     *
+     * @param listener     the listener to register
+     * @param maxBatchSize the maximum number of messages in each batch
+     * @param maxDelay     the maximum time (in milliseconds) a message may be buffered before being delivered
+     */
+    public final void registerBatchListener(BatchTopicListener<M> listener, int maxBatchSize, long maxDelay) {
+        if (listener == null)
+            throw new IllegalArgumentException("Listener cannot be null.");
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Max batch size must be at least 1.");
+        if (maxDelay <= 0)
+            throw new IllegalArgumentException("Max delay must be positive.");
+        batchers.add(new TopicBatcher<>(listener, maxBatchSize, maxDelay, client));
+    }
+    
+    /**
+     * De-registers a batch listener for this topic. Any messages which are currently buffered will be delivered to
+     * the listener before this method returns.
+     * @param listener the listener to remove
+     * @return true if the listener was removed
+     */
+    public final boolean deregisterBatchListener(BatchTopicListener<M> listener) {
+        for (TopicBatcher<M> batcher : batchers) {
+            if (batcher.getListener() == listener && batchers.remove(batcher)) {
+                batcher.close();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return a list of batch listeners registered to this topic
+     */
+    public final List<BatchTopicListener<M>> getBatchListeners() {
+        return batchers.stream()
+                .map(TopicBatcher::getListener)
+                .collect(Collectors.toList());
+    }
+    
     
     /**
      * <p>Subscribe to this topic without any options or configurations. The underlying WebSocket <em>must</em> be open
@@ -120,6 +170,22 @@ public class Topic<M> {
     }
     
     
+    /**
+     * <p>Subscribe to this topic without any options or configurations. The underlying WebSocket <em>must</em> be open
+     * before you call this method.</p>
+     * <p>This method will not block the thread. The returned future will complete with true once the associated
+     * acknowledgement message has been received, or false if the WebSocket closed or the timeout period expires.</p>
+     *
+     * @param timeout the timeout in milliseconds, or zero for no timeout
+     * @return a future which completes with true if the action completed successfully
+     *
+     * @throws IllegalStateException if the WebSocket is not currently open
+     */
+    public final CompletableFuture<Boolean> subscribeAsync(long timeout) {
+        return processRequestAsync(createJson(ACTION_SUBSCRIBE), timeout);
+    }
+    
+    
     /**
      * <p>Unsubscribes from this topic without any options or configurations. The underlying WebSocket <em>must</em> be
      * open before you call this method.</p>
@@ -165,6 +231,22 @@ public class Topic<M> {
     }
     
     
+    /**
+     * <p>Unsubscribes from this topic without any options or configurations. The underlying WebSocket <em>must</em> be
+     * open before you call this method.</p>
+     * <p>This method will not block the thread. The returned future will complete with true once the associated
+     * acknowledgement message has been received, or false if the WebSocket closed or the timeout period expires.</p>
+     *
+     * @param timeout the timeout in milliseconds, or zero for no timeout
+     * @return a future which completes with true if the action completed successfully
+     *
+     * @throws IllegalStateException if the WebSocket is not currently open
+     */
+    public final CompletableFuture<Boolean> unsubscribeAsync(long timeout) {
+        return processRequestAsync(createJson(ACTION_UNSUBSCRIBE), timeout);
+    }
+    
+    
     /**
      * Processes an asynchronous request.
      * @param request the request object
@@ -185,14 +267,31 @@ public class Topic<M> {
     }
     
     
+    /**
+     * Processes an asynchronous request, and tracks the acknowledgement.
+     * @param request the request object
+     * @param timeout the time out in millis, or {@code 0} for no timeout
+     * @return a future which completes with {@code true} if the request succeeded
+     */
+    protected final CompletableFuture<Boolean> processRequestAsync(JsonObject request, long timeout) {
+        return client.sendAckAsync(request, timeout);
+    }
+    
+    
     void notifyListeners(JsonObject json) {
-        if (listeners.isEmpty()) return; // Skip if no listeners
+        if (listeners.isEmpty() && batchers.isEmpty()) return; // Skip if no listeners
     
         // Parse
         JsonObject messageJson = json.getAsJsonObject("message");
+        M message = client.getGson().fromJson(messageJson, classMessage);
+        
+        // Queue for batch listeners
+        for (TopicBatcher<M> batcher : batchers)
+            batcher.add(message);
+        
+        if (listeners.isEmpty()) return;
         MessageContext context = new MessageContext(client, Instant.ofEpochMilli(json.get("time").getAsLong()),
                 messageJson);
-        M message = client.getGson().fromJson(messageJson, classMessage);
         
         // Notify
         for (TopicListener<M> listener : listeners) {
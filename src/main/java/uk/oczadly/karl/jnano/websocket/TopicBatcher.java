@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates topic messages and delivers them to a {@link BatchTopicListener} once the batch size limit is reached,
+ * or when the periodic flush timer fires.
+ */
+final class TopicBatcher<M> {
+    
+    private static final ScheduledThreadPoolExecutor FLUSH_SCHEDULER = new ScheduledThreadPoolExecutor(1,
+            JNH.threadFactory("WebSocket-BatchFlusher", true));
+    
+    static {
+        FLUSH_SCHEDULER.setRemoveOnCancelPolicy(true); // Don't retain cancelled flush tasks in the queue
+    }
+    
+    private final BatchTopicListener<M> listener;
+    private final int maxBatchSize;
+    private final NanoWebSocketClient client;
+    private final Object bufferLock = new Object(), deliveryLock = new Object();
+    private final ScheduledFuture<?> flushTask;
+    private List<M> buffer;
+    
+    TopicBatcher(BatchTopicListener<M> listener, int maxBatchSize, long maxDelayMillis, NanoWebSocketClient client) {
+        this.listener = listener;
+        this.maxBatchSize = maxBatchSize;
+        this.client = client;
+        this.buffer = new ArrayList<>(maxBatchSize);
+        FlushTask task = new FlushTask(this);
+        this.flushTask = task.future = FLUSH_SCHEDULER.scheduleWithFixedDelay(
+                task, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    
+    BatchTopicListener<M> getListener() {
+        return listener;
+    }
+    
+    void add(M message) {
+        boolean full;
+        synchronized (bufferLock) {
+            buffer.add(message);
+            full = buffer.size() >= maxBatchSize;
+        }
+        if (full) flush();
+    }
+    
+    void flush() {
+        synchronized (deliveryLock) { // Ensures batches are delivered in order
+            List<M> batch;
+            synchronized (bufferLock) {
+                if (buffer.isEmpty()) return;
+                batch = buffer;
+                buffer = new ArrayList<>(maxBatchSize);
+            }
+            try {
+                listener.onMessages(Collections.unmodifiableList(batch));
+            } catch (Exception e) {
+                WsObserver wsObserver = client.getObserver();
+                if (wsObserver != null) {
+                    wsObserver.onHandlerError(e); // Notify socket listener of exception
+                }
+            }
+        }
+    }
+    
+    /** Stops the flush timer and delivers any remaining buffered messages. */
+    void close() {
+        flushTask.cancel(false);
+        flush();
+    }
+    
+    
+    /**
+     * Flushes the batcher, holding only a weak reference so that batchers which are never closed (eg. when the client
+     * is discarded) can still be garbage collected. The task cancels itself once the batcher has been collected.
+     */
+    private static final class FlushTask implements Runnable {
+        private final WeakReference<TopicBatcher<?>> batcher;
+        private volatile ScheduledFuture<?> future;
+        
+        FlushTask(TopicBatcher<?> batcher) {
+            this.batcher = new WeakReference<>(batcher);
+        }
+        
+        @Override
+        public void run() {
+            TopicBatcher<?> b = batcher.get();
+            if (b != null) {
+                b.flush();
+            } else {
+                ScheduledFuture<?> f = future;
+                if (f != null) f.cancel(false);
+            }
+        }
+    }
+    
+}
@@ -7,6 +7,8 @@ package uk.oczadly.karl.jnano.websocket;
 
 import com.google.gson.JsonObject;
 
+import java.util.concurrent.CompletableFuture;
+
 public class TopicWithSubParams<M, S> extends Topic<M> {
     
     public TopicWithSubParams(String topicName, Class<M> classMessage, NanoWebSocketClient client) {
@@ -61,6 +63,23 @@ public class TopicWithSubParams<M, S> extends Topic<M> {
     }
     
     
+    /**
+     * <p>Subscribes to this topic with a set of defined parameters. The underlying WebSocket <em>must</em> be open
+     * before you call this method.</p>
+     * <p>This method will not block the thread. The returned future will complete with true once the associated
+     * acknowledgement message has been received, or false if the WebSocket closed or the timeout period expires.</p>
+     *
+     * @param timeout the timeout in milliseconds, or zero for no timeout
+     * @param args    an object containing the configuration arguments for this topic
+     * @return a future which completes with true if the action completed successfully
+     *
+     * @throws IllegalStateException if the WebSocket is not currently open
+     */
+    public final CompletableFuture<Boolean> subscribeAsync(long timeout, S args) {
+        return processRequestAsync(createJson(ACTION_SUBSCRIBE, args), timeout);
+    }
+    
+    
     /**
      * Creates a template {@link JsonObject} for building requests.
      * @param action  the action of the request
@@ -5,6 +5,8 @@
 
 package uk.oczadly.karl.jnano.websocket;
 
+import java.util.concurrent.CompletableFuture;
+
 public class TopicWithUpdateParams<M, S, U> extends TopicWithSubParams<M, S> {
     
     protected static final String ACTION_UPDATE = "update";
@@ -62,4 +64,20 @@ public class TopicWithUpdateParams<M, S, U> extends TopicWithSubParams<M, S> {
         return processRequest(createJson(ACTION_UPDATE, args), timeout);
     }
     
+    /**
+     * <p>Updates the parameters of this topic. The underlying WebSocket <em>must</em> be open before you call this
+     * method.</p>
+     * <p>This method will not block the thread. The returned future will complete with true once the associated
+     * acknowledgement message has been received, or false if the WebSocket closed or the timeout period expires.</p>
+     *
+     * @param timeout the timeout in milliseconds, or zero for no timeout
+     * @param args    an object containing the configuration arguments for this topic
+     * @return a future which completes with true if the action completed successfully
+     *
+     * @throws IllegalStateException if the WebSocket is not currently open
+     */
+    public final CompletableFuture<Boolean> updateAsync(long timeout, U args) {
+        return processRequestAsync(createJson(ACTION_UPDATE, args), timeout);
+    }
+    
 }
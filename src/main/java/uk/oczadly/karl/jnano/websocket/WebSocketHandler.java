@@ -9,25 +9,28 @@ import com.google.gson.JsonObject;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 import uk.oczadly.karl.jnano.internal.JNH;
-import uk.oczadly.karl.jnano.internal.utils.IDRequestTracker;
+import uk.oczadly.karl.jnano.internal.utils.RequestCorrelator;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.concurrent.ExecutorService;
 
 class WebSocketHandler extends WebSocketClient {
     
     private final TopicRegistry topicRegistry;
-    private final IDRequestTracker<Void> requestTracker;
+    private final RequestCorrelator<Void> requestTracker;
     private final WsObserver observer;
     private final ExecutorService listenerExecutor;
+    private final FrameRecorder recorder;
     
-    public WebSocketHandler(URI serverUri, TopicRegistry topicRegistry, IDRequestTracker<Void> requestTracker,
-                            WsObserver observer, ExecutorService listenerExecutor) {
+    public WebSocketHandler(URI serverUri, TopicRegistry topicRegistry, RequestCorrelator<Void> requestTracker,
+                            WsObserver observer, ExecutorService listenerExecutor, FrameRecorder recorder) {
         super(serverUri);
         this.topicRegistry = topicRegistry;
         this.requestTracker = requestTracker;
         this.observer = observer;
         this.listenerExecutor = listenerExecutor;
+        this.recorder = recorder;
     }
     
     
@@ -40,6 +43,16 @@ class WebSocketHandler extends WebSocketClient {
     
     @Override
     public void onMessage(String message) {
+        // Record raw frame
+        if (recorder != null) {
+            try {
+                recorder.record(message);
+            } catch (IOException e) {
+                if (observer != null)
+                    observer.onHandlerError(e);
+            }
+        }
+        
         try {
             JsonObject json = JNH.parseJson(message);
             boolean handled = false;
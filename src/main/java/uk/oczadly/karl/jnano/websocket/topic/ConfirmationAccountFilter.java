@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket.topic;
+
+import uk.oczadly.karl.jnano.internal.utils.PublicKeySet;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.SendBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.websocket.TopicListener;
+import uk.oczadly.karl.jnano.websocket.topic.message.MessageContext;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A client-side alternative to the {@link TopicConfirmation.SubArgs#filterAccounts(Collection) accounts filter} of the
+ * {@code confirmation} topic, for use with very large sets of accounts.
+ *
+ * <p>Rather than sending the list of accounts to the node, subscribe to the topic <em>without</em> an accounts filter
+ * and register an instance of this class as the listener. Messages will only be forwarded to the wrapped listener if
+ * the block's account (or the destination account of a send block) is contained within the filter. Accounts are
+ * stored as primitive public key values, and may be added or removed at any time without re-subscribing.</p>
+ *
+ * <p>Note that destination accounts can only be matched if the block contents are included in the messages
+ * (see {@link TopicConfirmation.SubArgs#includeBlockContents()}).</p>
+ *
+ * <p>Below is an example of how this class could be used:</p>
+ * <pre>{@code
+ * ConfirmationAccountFilter filter = new ConfirmationAccountFilter((message, context) -> {
+ *     System.out.println("Deposit block: " + message.getHash());
+ * });
+ * filter.addAccounts(depositAccounts);
+ *
+ * ws.getTopics().topicConfirmedBlocks().registerListener(filter);
+ * ws.getTopics().topicConfirmedBlocks().subscribe(new TopicConfirmation.SubArgs().includeBlockContents());
+ * }</pre>
+ */
+public final class ConfirmationAccountFilter implements TopicListener<TopicMessageConfirmation> {
+    
+    private final TopicListener<TopicMessageConfirmation> listener;
+    private final PublicKeySet keys;
+    
+    /**
+     * Constructs a new, empty filter which forwards matching messages to the given listener.
+     * @param listener the listener to notify of matching messages
+     */
+    public ConfirmationAccountFilter(TopicListener<TopicMessageConfirmation> listener) {
+        this(listener, 16);
+    }
+    
+    /**
+     * Constructs a new, empty filter which forwards matching messages to the given listener.
+     * @param listener     the listener to notify of matching messages
+     * @param expectedSize the expected number of accounts, used to size the initial capacity
+     */
+    public ConfirmationAccountFilter(TopicListener<TopicMessageConfirmation> listener, int expectedSize) {
+        if (listener == null)
+            throw new IllegalArgumentException("Listener cannot be null.");
+        this.listener = listener;
+        this.keys = new PublicKeySet(expectedSize);
+    }
+    
+    
+    /**
+     * Adds an account to the filter.
+     * @param account the account to add
+     * @return true if the account was not already present in the filter
+     */
+    public boolean addAccount(NanoAccount account) {
+        return keys.add(account.getPublicKeyBytes());
+    }
+    
+    /**
+     * Adds a collection of accounts to the filter.
+     * @param accounts the accounts to add
+     */
+    public void addAccounts(Collection<NanoAccount> accounts) {
+        for (NanoAccount account : accounts)
+            addAccount(account);
+    }
+    
+    /**
+     * Adds an array of accounts to the filter.
+     * @param accounts the accounts to add
+     */
+    public void addAccounts(NanoAccount... accounts) {
+        addAccounts(Arrays.asList(accounts));
+    }
+    
+    /**
+     * Removes an account from the filter.
+     * @param account the account to remove
+     * @return true if the account was present in the filter
+     */
+    public boolean removeAccount(NanoAccount account) {
+        return keys.remove(account.getPublicKeyBytes());
+    }
+    
+    /**
+     * Removes a collection of accounts from the filter.
+     * @param accounts the accounts to remove
+     */
+    public void removeAccounts(Collection<NanoAccount> accounts) {
+        for (NanoAccount account : accounts)
+            removeAccount(account);
+    }
+    
+    /**
+     * Removes all accounts from the filter.
+     */
+    public void clear() {
+        keys.clear();
+    }
+    
+    /**
+     * Returns whether the given account is contained within the filter. The prefix of the account is ignored.
+     * @param account the account to check
+     * @return true if the account is present in the filter
+     */
+    public boolean containsAccount(NanoAccount account) {
+        return account != null && keys.contains(account.getPublicKeyBytes());
+    }
+    
+    /**
+     * @return the number of accounts currently held by this filter
+     */
+    public int size() {
+        return keys.size();
+    }
+    
+    /**
+     * Tests whether the given message matches the filter. This may also be used to filter messages which are
+     * delivered through a batch listener.
+     * @param message the message to test
+     * @return true if the block account or send destination is contained within the filter
+     */
+    public boolean matches(TopicMessageConfirmation message) {
+        if (containsAccount(message.getAccount()))
+            return true;
+        Block block = message.getBlock();
+        if (block instanceof StateBlock) {
+            StateBlock sb = (StateBlock)block;
+            return sb.getSubType() == StateBlockSubType.SEND && containsAccount(sb.getLink().asAccount());
+        } else if (block instanceof SendBlock) {
+            return containsAccount(((SendBlock)block).getDestinationAccount());
+        }
+        return false;
+    }
+    
+    @Override
+    public void onMessage(TopicMessageConfirmation message, MessageContext context) {
+        if (matches(message))
+            listener.onMessage(message, context);
+    }
+    
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket.topic;
+
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.websocket.TopicListener;
+import uk.oczadly.karl.jnano.websocket.topic.message.MessageContext;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageTelemetry;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the node telemetry messages received from the {@code telemetry} topic, maintaining a rolling window of
+ * samples for each peer.
+ *
+ * <p>Statistics across all peers can be retrieved through {@link #getPercentile(Metric, double)}, and a sync lag score
+ * may be computed for any individual node using {@link #getSyncLagScore(NanoAccount)}. Nodes which you operate can be
+ * registered through {@link #addOwnNode(NanoAccount)}, and then ranked using {@link #getOwnNodeScores()} to route
+ * traffic away from lagging nodes.</p>
+ *
+ * <p>Peers which have not sent a telemetry message within the configured maximum age are excluded from all statistics,
+ * and are purged when new messages are received.</p>
+ *
+ * <p>Below is an example of how this class could be used:</p>
+ * <pre>{@code
+ * TelemetryAggregator telemetry = new TelemetryAggregator();
+ * telemetry.addOwnNode(NanoAccount.parse("node_1cmi8difuruopgzpnb4ybrnnj5rproxwuwe5mad7ucbsekakiwn37qqg1zo5"));
+ *
+ * ws.getTopics().topicTelemetry().registerListener(telemetry);
+ * ws.getTopics().topicTelemetry().subscribe();
+ *
+ * // Later on...
+ * long medianCemented = telemetry.getPercentile(TelemetryAggregator.Metric.CEMENTED_COUNT, 50);
+ * Map<NanoAccount, Double> ranked = telemetry.getOwnNodeScores(); // Best (least lagging) first
+ * }</pre>
+ */
+public final class TelemetryAggregator implements TopicListener<TopicMessageTelemetry> {
+    
+    private static final double REFERENCE_PERCENTILE = 90;
+    
+    private final int windowSize;
+    private final long maxAgeNanos;
+    private final Map<NanoAccount, PeerWindow> peers = new ConcurrentHashMap<>();
+    private final Set<NanoAccount> ownNodes = new CopyOnWriteArraySet<>();
+    
+    /**
+     * Constructs a new aggregator, retaining the last 30 samples of each peer and discarding peers which have not
+     * been heard from in the last 10 minutes.
+     */
+    public TelemetryAggregator() {
+        this(30, 10, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Constructs a new aggregator.
+     * @param windowSize the number of samples to retain for each peer
+     * @param maxAge     the duration after which a silent peer is discarded
+     * @param unit       the unit of {@code maxAge}
+     */
+    public TelemetryAggregator(int windowSize, long maxAge, TimeUnit unit) {
+        if (windowSize < 2)
+            throw new IllegalArgumentException("Window size must be at least 2.");
+        if (maxAge <= 0)
+            throw new IllegalArgumentException("Max age must be positive.");
+        if (unit == null)
+            throw new IllegalArgumentException("Time unit cannot be null.");
+        this.windowSize = windowSize;
+        this.maxAgeNanos = unit.toNanos(maxAge);
+    }
+    
+    
+    @Override
+    public void onMessage(TopicMessageTelemetry message, MessageContext context) {
+        record(message, System.nanoTime());
+    }
+    
+    /**
+     * Records a telemetry sample.
+     * @param message the telemetry message
+     */
+    public void record(TopicMessageTelemetry message) {
+        record(message, System.nanoTime());
+    }
+    
+    void record(TopicMessageTelemetry message, long receivedNanos) {
+        if (message == null)
+            throw new IllegalArgumentException("Message cannot be null.");
+        if (message.getNodeId() == null) return; // Cannot attribute the sample to a peer
+        // Atomic with purgeExpired, so samples are never added to a window which is being removed
+        peers.compute(message.getNodeId(), (k, window) -> {
+            if (window == null)
+                window = new PeerWindow(windowSize);
+            window.add(message, receivedNanos);
+            return window;
+        });
+        purgeExpired(receivedNanos);
+    }
+    
+    /**
+     * Registers a node which you operate, so that it is included in {@link #getOwnNodeScores()}.
+     * @param nodeId the node ID of the node
+     */
+    public void addOwnNode(NanoAccount nodeId) {
+        if (nodeId == null)
+            throw new IllegalArgumentException("Node ID cannot be null.");
+        ownNodes.add(nodeId);
+    }
+    
+    /**
+     * Removes a node previously registered through {@link #addOwnNode(NanoAccount)}.
+     * @param nodeId the node ID of the node
+     */
+    public void removeOwnNode(NanoAccount nodeId) {
+        ownNodes.remove(nodeId);
+    }
+    
+    /**
+     * @return an unmodifiable view of the registered nodes
+     */
+    public Set<NanoAccount> getOwnNodes() {
+        return Collections.unmodifiableSet(ownNodes);
+    }
+    
+    /**
+     * @return the node IDs of all peers which currently have samples available
+     */
+    public Set<NanoAccount> getPeers() {
+        long now = System.nanoTime();
+        Set<NanoAccount> active = new HashSet<>();
+        for (Map.Entry<NanoAccount, PeerWindow> entry : peers.entrySet())
+            if (!entry.getValue().isExpired(now, maxAgeNanos))
+                active.add(entry.getKey());
+        return active;
+    }
+    
+    /**
+     * Returns a snapshot of the current statistics for the given peer.
+     * @param nodeId the node ID of the peer
+     * @return the peer's statistics, or null if no samples are available
+     */
+    public PeerStats getPeerStats(NanoAccount nodeId) {
+        PeerWindow window = peers.get(nodeId);
+        if (window == null || window.isExpired(System.nanoTime(), maxAgeNanos))
+            return null;
+        return window.snapshot(nodeId);
+    }
+    
+    /**
+     * Returns the value of a metric at the given percentile, computed from the latest sample of every peer using the
+     * nearest-rank method.
+     * @param metric     the metric
+     * @param percentile the percentile, between 0 and 100 (inclusive)
+     * @return the metric value, or -1 if no peers have samples available
+     */
+    public long getPercentile(Metric metric, double percentile) {
+        if (metric == null)
+            throw new IllegalArgumentException("Metric cannot be null.");
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        long[] values = latestValues(metric);
+        if (values.length == 0) return -1;
+        Arrays.sort(values);
+        int rank = (int)Math.ceil(percentile / 100 * values.length);
+        return values[Math.max(rank - 1, 0)];
+    }
+    
+    /**
+     * Returns the number of cemented blocks which the given node is behind the 90th percentile of all peers.
+     * @param nodeId the node ID of the node
+     * @return the cemented block lag (zero if not lagging), or -1 if no samples are available for the node
+     */
+    public long getCementedLag(NanoAccount nodeId) {
+        PeerStats stats = getPeerStats(nodeId);
+        if (stats == null) return -1;
+        long reference = getPercentile(Metric.CEMENTED_COUNT, REFERENCE_PERCENTILE);
+        return Math.max(reference - stats.getCementedCount(), 0);
+    }
+    
+    /**
+     * Computes the sync lag score of the given node, as the estimated number of seconds the node's cemented block
+     * count trails behind the 90th percentile of all peers. The estimate uses the median cementing rate of the network,
+     * as observed over the sample windows.
+     *
+     * <p>A score of zero indicates the node is fully synchronized, and lower scores are always better. If the node is
+     * lagging but the network cementing rate cannot yet be determined, {@link Double#POSITIVE_INFINITY} is
+     * returned.</p>
+     *
+     * @param nodeId the node ID of the node
+     * @return the sync lag score, or {@link Double#NaN} if no samples are available for the node
+     */
+    public double getSyncLagScore(NanoAccount nodeId) {
+        long lag = getCementedLag(nodeId);
+        if (lag < 0) return Double.NaN;
+        if (lag == 0) return 0;
+        double rate = getNetworkCementRate();
+        return rate > 0 ? lag / rate : Double.POSITIVE_INFINITY;
+    }
+    
+    /**
+     * Computes the sync lag score for each of the registered nodes, ordered from best (least lagging) to worst.
+     * Nodes without available samples are ordered last, with a score of {@link Double#NaN}.
+     * @return an ordered map of node IDs to sync lag scores
+     * @see #getSyncLagScore(NanoAccount)
+     */
+    public Map<NanoAccount, Double> getOwnNodeScores() {
+        List<Map.Entry<NanoAccount, Double>> scores = new ArrayList<>();
+        for (NanoAccount node : ownNodes)
+            scores.add(new AbstractMap.SimpleImmutableEntry<>(node, getSyncLagScore(node)));
+        scores.sort(Map.Entry.comparingByValue()); // Double ordering places NaN last
+        
+        Map<NanoAccount, Double> ordered = new LinkedHashMap<>();
+        for (Map.Entry<NanoAccount, Double> score : scores)
+            ordered.put(score.getKey(), score.getValue());
+        return Collections.unmodifiableMap(ordered);
+    }
+    
+    /**
+     * Returns the median rate at which peers are cementing blocks, measured across each peer's sample window.
+     * @return the median number of blocks cemented per second, or zero if unknown
+     */
+    public double getNetworkCementRate() {
+        long now = System.nanoTime();
+        List<Double> rates = new ArrayList<>();
+        for (PeerWindow window : peers.values()) {
+            if (window.isExpired(now, maxAgeNanos)) continue;
+            double rate = window.cementRate();
+            if (rate > 0) rates.add(rate);
+        }
+        if (rates.isEmpty()) return 0;
+        Collections.sort(rates);
+        int mid = rates.size() / 2;
+        return rates.size() % 2 == 1 ? rates.get(mid) : (rates.get(mid - 1) + rates.get(mid)) / 2;
+    }
+    
+    /**
+     * Removes all peers and their samples. Registered nodes are retained.
+     */
+    public void clear() {
+        peers.clear();
+    }
+    
+    
+    private long[] latestValues(Metric metric) {
+        long now = System.nanoTime();
+        long[] values = new long[peers.size()];
+        int count = 0;
+        for (PeerWindow window : peers.values()) {
+            if (count == values.length) break; // Peers added concurrently
+            if (!window.isExpired(now, maxAgeNanos))
+                values[count++] = window.latest(metric);
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+    
+    private void purgeExpired(long now) {
+        for (NanoAccount nodeId : peers.keySet())
+            peers.computeIfPresent(nodeId, (k, window) -> window.isExpired(now, maxAgeNanos) ? null : window);
+    }
+    
+    
+    /** The telemetry metrics tracked for each peer. */
+    public enum Metric {
+        BLOCK_COUNT, CEMENTED_COUNT, BANDWIDTH_CAP, UPTIME
+    }
+    
+    
+    /**
+     * An immutable snapshot of the statistics of a single peer.
+     */
+    public static final class PeerStats {
+        private final NanoAccount nodeId;
+        private final String address;
+        private final int port;
+        private final long blockCount, cementedCount, bandwidthCap, uptime;
+        private final int sampleCount;
+        private final double blockRate, cementRate;
+        
+        private PeerStats(NanoAccount nodeId, String address, int port, long blockCount, long cementedCount,
+                          long bandwidthCap, long uptime, int sampleCount, double blockRate, double cementRate) {
+            this.nodeId = nodeId;
+            this.address = address;
+            this.port = port;
+            this.blockCount = blockCount;
+            this.cementedCount = cementedCount;
+            this.bandwidthCap = bandwidthCap;
+            this.uptime = uptime;
+            this.sampleCount = sampleCount;
+            this.blockRate = blockRate;
+            this.cementRate = cementRate;
+        }
+        
+        public NanoAccount getNodeId() {
+            return nodeId;
+        }
+        
+        public String getAddress() {
+            return address;
+        }
+        
+        public int getPort() {
+            return port;
+        }
+        
+        /** @return the most recently reported block count */
+        public long getBlockCount() {
+            return blockCount;
+        }
+        
+        /** @return the most recently reported cemented block count */
+        public long getCementedCount() {
+            return cementedCount;
+        }
+        
+        /** @return the most recently reported bandwidth cap, in bytes per second */
+        public long getBandwidthCap() {
+            return bandwidthCap;
+        }
+        
+        /** @return the most recently reported uptime, in seconds */
+        public long getUptime() {
+            return uptime;
+        }
+        
+        /** @return the number of samples currently held within the peer's window */
+        public int getSampleCount() {
+            return sampleCount;
+        }
+        
+        /** @return the average number of blocks received per second over the window, or zero if unknown */
+        public double getBlockRate() {
+            return blockRate;
+        }
+        
+        /** @return the average number of blocks cemented per second over the window, or zero if unknown */
+        public double getCementRate() {
+            return cementRate;
+        }
+        
+        @Override
+        public String toString() {
+            return "PeerStats{" +
+                    "nodeId=" + nodeId +
+                    ", blockCount=" + blockCount +
+                    ", cementedCount=" + cementedCount +
+                    ", bandwidthCap=" + bandwidthCap +
+                    ", uptime=" + uptime +
+                    ", cementRate=" + cementRate +
+                    '}';
+        }
+    }
+    
+    
+    /**
+     * A fixed-size ring buffer of samples for a single peer. Samples are timed by their {@link System#nanoTime()}
+     * receipt time; the node-reported timestamp is only compared against the same peer's previous sample to discard
+     * duplicates.
+     */
+    private static final class PeerWindow {
+        private final long[] blockCount, cementedCount, bandwidthCap, uptime, timestamp;
+        private int head, size; // head = index of the next write
+        private long lastReported = Long.MIN_VALUE;
+        private volatile long lastReceived;
+        private String address;
+        private int port;
+        
+        PeerWindow(int capacity) {
+            this.blockCount = new long[capacity];
+            this.cementedCount = new long[capacity];
+            this.bandwidthCap = new long[capacity];
+            this.uptime = new long[capacity];
+            this.timestamp = new long[capacity];
+        }
+        
+        synchronized void add(TopicMessageTelemetry msg, long receivedNanos) {
+            Instant ts = msg.getTimestamp();
+            if (ts != null) {
+                if (ts.toEpochMilli() <= lastReported)
+                    return; // Duplicate or out-of-order sample
+                lastReported = ts.toEpochMilli();
+            }
+            
+            blockCount[head] = msg.getBlockCount();
+            cementedCount[head] = msg.getCementedCount();
+            bandwidthCap[head] = msg.getBandwidthCap();
+            uptime[head] = msg.getUptime();
+            timestamp[head] = receivedNanos;
+            head = (head + 1) % timestamp.length;
+            if (size < timestamp.length) size++;
+            address = msg.getAddress();
+            port = msg.getPort();
+            lastReceived = receivedNanos;
+        }
+        
+        boolean isExpired(long now, long maxAgeNanos) {
+            return now - lastReceived > maxAgeNanos;
+        }
+        
+        synchronized long latest(Metric metric) {
+            int i = index(0);
+            switch (metric) {
+                case BLOCK_COUNT:    return blockCount[i];
+                case CEMENTED_COUNT: return cementedCount[i];
+                case BANDWIDTH_CAP:  return bandwidthCap[i];
+                case UPTIME:         return uptime[i];
+                default: throw new AssertionError();
+            }
+        }
+        
+        synchronized double cementRate() {
+            return rate(cementedCount);
+        }
+        
+        synchronized PeerStats snapshot(NanoAccount nodeId) {
+            int i = index(0);
+            return new PeerStats(nodeId, address, port, blockCount[i], cementedCount[i], bandwidthCap[i], uptime[i],
+                    size, rate(blockCount), rate(cementedCount));
+        }
+        
+        /** Returns the average increase per second between the oldest and newest samples. */
+        private double rate(long[] values) {
+            if (size < 2) return 0;
+            int newest = index(0), oldest = index(size - 1);
+            long elapsedNanos = timestamp[newest] - timestamp[oldest];
+            long delta = values[newest] - values[oldest];
+            if (elapsedNanos <= 0 || delta <= 0) return 0;
+            return delta * 1e9 / elapsedNanos;
+        }
+        
+        /** Returns the array index of the n-th most recent sample. */
+        private int index(int n) {
+            int len = timestamp.length;
+            return ((head - 1 - n) % len + len) % len;
+        }
+    }
+    
+}
@@ -74,6 +74,8 @@ public class TopicConfirmation extends TopicWithUpdateParams<TopicMessageConfirm
     
         /**
          * Sets the accounts filter. Only confirmed blocks held by these accounts will trigger a notification.
+         * <p>For very large sets of accounts, consider filtering on the client using a
+         * {@link ConfirmationAccountFilter} instead.</p>
          * @param accounts a list of account addresses, or null to disable the filter
          * @return this argument builder
          */
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.callback;
+
+import com.google.gson.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.internal.httpserver.HttpRequest;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class BlockCallbackServerTest {
+    
+    static final String BLOCK_JSON = "{" +
+            "\"type\": \"state\"," +
+            "\"account\": \"nano_3x4ui45q1cw8hydmfdn4ec5ijsdqi4ryp14g4ayh71jcdkwmddrq7ca9xzn9\"," +
+            "\"previous\": \"D7B1B764399B3417BC1220C602A9608D9C883CF2064EA481E14152813F3A6B9E\"," +
+            "\"representative\": \"nano_3rw4un6ys57hrb39sy1qx8qy5wukst1iiponztrz9qiz6qqa55kxzx4491or\"," +
+            "\"balance\": \"0\"," +
+            "\"link\": \"65706F636820763220626C6F636B000000000000000000000000000000000000\"," +
+            "\"signature\": \"C79A2779903119007A5A597EBA57931485D729CB4C5D12502967C3645624C042D6E867D6E783CFF" +
+            "7D2B01292AB8834A66BD7F9508B2981FEBF14542988F8AF02\"," +
+            "\"work\": \"1c147cfad9657bb5\"}";
+    
+    BlockCallbackServer server;
+    BlockingQueue<BlockData> received = new LinkedBlockingQueue<>();
+    
+    @Before
+    public void setUp() throws IOException {
+        server = new BlockCallbackServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.setMaxBodySize(4096);
+        server.registerListener((block, target, node) -> received.add(block));
+        server.start();
+    }
+    
+    @After
+    public void tearDown() {
+        if (server.isRunning())
+            server.stop();
+    }
+    
+    
+    @Test
+    public void testPipelinedKeepAlive() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            
+            // Two pipelined requests in a single write
+            String req1 = request(callbackBody("2000"), false), req2 = request(callbackBody("3000"), false);
+            out.write((req1 + req2).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(2, countResponses(socket.getInputStream(), 2, "200 OK"));
+            
+            // Third request on the same connection
+            out.write(request(callbackBody("4000"), false).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(1, countResponses(socket.getInputStream(), 1, "200 OK"));
+        }
+        
+        Set<String> amounts = new HashSet<>(); // Listeners may be notified out of order
+        for (int i = 0; i < 3; i++) {
+            BlockData data = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(data);
+            assertTrue(data.isSendTransaction());
+            assertTrue(data.getBlockContents() instanceof StateBlock);
+            amounts.add(data.getTransactionalAmount().getAsRaw().toString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("2000", "3000", "4000")), amounts);
+    }
+    
+    @Test
+    public void testBodyTooLarge() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(("POST / HTTP/1.1\r\nContent-Length: 5000\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            assertEquals(1, countResponses(socket.getInputStream(), 1, "413"));
+            assertEquals(-1, socket.getInputStream().read()); // Closed by server
+        }
+    }
+    
+    @Test
+    public void testRestart() throws Exception {
+        server.stop();
+        assertFalse(server.isRunning());
+        server.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request(callbackBody("1"), true).getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, countResponses(socket.getInputStream(), 1, "200 OK"));
+        }
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    }
+    
+    
+    @Test
+    public void testExpectContinue() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(5000);
+            String body = callbackBody("5");
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /callback HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: "
+                    + body.getBytes(StandardCharsets.UTF_8).length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals(1, countResponses(socket.getInputStream(), 1, "100 Continue"));
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(1, countResponses(socket.getInputStream(), 1, "200 OK"));
+        }
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testLegacyServerSocket() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            BlockCallbackServer legacy = new BlockCallbackServer(socket);
+            legacy.registerListener((block, target, node) -> received.add(block));
+            assertEquals(socket.getLocalPort(), legacy.getPort()); // Not re-bound
+            legacy.start();
+            try {
+                for (int i = 0; i < 2; i++) {
+                    try (Socket client = new Socket(InetAddress.getLoopbackAddress(), legacy.getPort())) {
+                        client.setSoTimeout(5000);
+                        client.getOutputStream().write(
+                                request(callbackBody("7"), false).getBytes(StandardCharsets.UTF_8));
+                        assertEquals(1, countResponses(client.getInputStream(), 1, "200 OK"));
+                    }
+                    BlockData data = received.poll(5, TimeUnit.SECONDS);
+                    assertNotNull(data);
+                    assertEquals("7", data.getTransactionalAmount().getAsRaw().toString());
+                }
+            } finally {
+                legacy.stop();
+            }
+            assertFalse(socket.isClosed());
+        }
+    }
+    
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testLegacyStopClosesConnections() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            BlockCallbackServer legacy = new BlockCallbackServer(socket);
+            legacy.start();
+            try (Socket client = new Socket(InetAddress.getLoopbackAddress(), legacy.getPort())) {
+                client.setSoTimeout(5000);
+                client.getOutputStream().write("POST / HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII));
+                client.getOutputStream().flush();
+                Thread.sleep(100); // Wait for the connection to be accepted
+                legacy.stop();
+                assertEquals(-1, client.getInputStream().read()); // Closed by server
+            }
+        }
+    }
+    
+    @Test
+    public void testParseBody() {
+        String body = "{\"account\":\"nano_3x4ui45q1cw8hydmfdn4ec5ijsdqi4ryp14g4ayh71jcdkwmddrq7ca9xzn9\"," +
+                "\"hash\":\"82D68AE43E3E04CBBF9ED150999A347C2ABBE74B38D6E506C18DF7B1994E06C2\"," +
+                "\"block\":" + BLOCK_JSON + ",\"amount\":\"0\",\"unknown\":[1,2],\"subtype\":\"epoch\"}";
+        BlockData data = BlockCallbackServer.parseBody(
+                new HttpRequest(null, "/", body.getBytes(StandardCharsets.UTF_8)));
+        
+        assertEquals("nano_3x4ui45q1cw8hydmfdn4ec5ijsdqi4ryp14g4ayh71jcdkwmddrq7ca9xzn9",
+                data.getAccountAddress().toAddress());
+        assertEquals("82D68AE43E3E04CBBF9ED150999A347C2ABBE74B38D6E506C18DF7B1994E06C2",
+                data.getBlockHash().toHexString());
+        assertEquals(BigInteger.ZERO, data.getTransactionalAmount().getAsRaw());
+        assertNull(data.getSubtype()); // Not a legacy type
+        assertEquals(body, data.getRawJson());
+        
+        // Block object (json_block) and epoch subtype
+        StateBlock block = (StateBlock)data.getBlockContents();
+        assertEquals(StateBlockSubType.EPOCH, block.getSubType());
+        assertSame(block, data.getBlockContents());
+        assertFalse(data.isSendTransaction());
+    }
+    
+    
+    @Test
+    public void testJournalReplay() throws Exception {
+        server.stop();
+        Path dir = Files.createTempDirectory("jnano-journal");
+        try (CallbackJournal journal = new CallbackJournal(dir, 65536)) {
+            // Entry received while a previous process was stopped
+            journal.append("/", null, callbackBody("10").getBytes(StandardCharsets.UTF_8));
+            
+            BlockingQueue<List<BlockData>> batches = new LinkedBlockingQueue<>();
+            server.registerBatchListener(batches::add);
+            server.setJournal(journal);
+            server.start();
+            assertEquals("10", received.poll(5, TimeUnit.SECONDS).getTransactionalAmount().getAsRaw().toString());
+            assertEquals(1, batches.poll(5, TimeUnit.SECONDS).size());
+            
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                socket.setSoTimeout(5000);
+                socket.getOutputStream().write(request(callbackBody("20"), true).getBytes(StandardCharsets.UTF_8));
+                assertEquals(1, countResponses(socket.getInputStream(), 1, "200 OK"));
+            }
+            assertEquals("20", received.poll(5, TimeUnit.SECONDS).getTransactionalAmount().getAsRaw().toString());
+            server.stop();
+            assertEquals(0, journal.getBacklog());
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+    
+    @Test
+    public void testJournalRetriesFailedListener() throws Exception {
+        server.stop();
+        Path dir = Files.createTempDirectory("jnano-journal");
+        try (CallbackJournal journal = new CallbackJournal(dir, 65536)) {
+            journal.setSyncOnAppend(true); // Acknowledged once synced by the journal thread
+            AtomicInteger attempts = new AtomicInteger();
+            server.registerListener((block, target, node) -> {
+                if (attempts.incrementAndGet() == 1)
+                    throw new RuntimeException("Listener failure");
+            });
+            server.setJournal(journal);
+            server.start();
+            
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                socket.setSoTimeout(5000);
+                socket.getOutputStream().write(request(callbackBody("30"), true).getBytes(StandardCharsets.UTF_8));
+                assertEquals(1, countResponses(socket.getInputStream(), 1, "200 OK"));
+            }
+            // Other listener is still notified, and the entry is retried rather than committed
+            assertNotNull(received.poll(5, TimeUnit.SECONDS));
+            assertNotNull(received.poll(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && journal.getBacklog() > 0; i++)
+                Thread.sleep(10);
+            assertEquals(0, journal.getBacklog());
+            assertEquals(2, attempts.get());
+            server.stop();
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+    
+    
+    static String callbackBody(String amount) {
+        JsonObject json = new JsonObject();
+        json.addProperty("account", "nano_3x4ui45q1cw8hydmfdn4ec5ijsdqi4ryp14g4ayh71jcdkwmddrq7ca9xzn9");
+        json.addProperty("hash", "82D68AE43E3E04CBBF9ED150999A347C2ABBE74B38D6E506C18DF7B1994E06C2");
+        json.addProperty("block", BLOCK_JSON);
+        json.addProperty("amount", amount);
+        json.addProperty("is_send", "true");
+        json.addProperty("subtype", "send");
+        return json.toString();
+    }
+    
+    static String request(String body, boolean close) {
+        return "POST /callback HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Content-Type: application/json\r\n" +
+                (close ? "Connection: close\r\n" : "") +
+                "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n" +
+                "\r\n" + body;
+    }
+    
+    /** Reads the given number of (empty bodied) responses, and returns how many contained the expected status. */
+    static int countResponses(InputStream in, int count, String status) throws IOException {
+        int matched = 0;
+        StringBuilder sb = new StringBuilder();
+        while (count > 0) {
+            int b = in.read();
+            if (b < 0) break;
+            sb.append((char)b);
+            if (sb.toString().endsWith("\r\n\r\n")) {
+                if (sb.toString().startsWith("HTTP/1.1 " + status)) matched++;
+                sb.setLength(0);
+                count--;
+            }
+        }
+        return matched;
+    }
+    
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.callback;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class CallbackJournalTest {
+    
+    Path dir;
+    
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("jnano-journal");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+    
+    
+    @Test
+    public void testReplayUncommitted() throws Exception {
+        InetAddress addr = InetAddress.getLoopbackAddress();
+        CallbackJournal journal = new CallbackJournal(dir, 4096);
+        journal.append("/a", addr, bytes("one"));
+        journal.append("/b", null, bytes("two"));
+        journal.append("/c", addr, bytes("three"));
+        
+        List<CallbackJournal.Entry> entries = journal.read(2, 0);
+        assertEquals(2, entries.size());
+        assertEquals("/a", entries.get(0).getPath());
+        assertEquals(addr, entries.get(0).getClientAddress());
+        assertEquals("one", str(entries.get(0).getBody()));
+        assertNull(entries.get(1).getClientAddress());
+        journal.commit(entries.get(0).getNextOffset()); // Only first is processed
+        journal.close();
+        
+        // Re-open, second and third entries should be replayed
+        journal = new CallbackJournal(dir, 4096);
+        entries = journal.read(10, 0);
+        assertEquals(2, entries.size());
+        assertEquals("two", str(entries.get(0).getBody()));
+        assertEquals("three", str(entries.get(1).getBody()));
+        assertTrue(journal.read(10, 0).isEmpty());
+        
+        // New entries are appended after the existing ones
+        journal.append("/d", addr, bytes("four"));
+        assertEquals("four", str(journal.read(10, 0).get(0).getBody()));
+        journal.close();
+    }
+    
+    @Test
+    public void testAppendAsync() throws Exception {
+        try (CallbackJournal journal = new CallbackJournal(dir, 4096)) {
+            CompletableFuture<Long> unsynced = journal.appendAsync("/a", null, bytes("one"));
+            assertTrue(unsynced.isDone());
+            
+            journal.setSyncOnAppend(true);
+            List<CompletableFuture<Long>> synced = new ArrayList<>();
+            for (int i = 0; i < 20; i++)
+                synced.add(journal.appendAsync("/b", null, bytes("entry " + i)));
+            long previous = unsynced.get();
+            for (CompletableFuture<Long> future : synced) {
+                long offset = future.get(5, TimeUnit.SECONDS);
+                assertTrue(offset > previous);
+                previous = offset;
+            }
+            assertEquals(21, journal.read(100, 0).size());
+        }
+    }
+    
+    @Test
+    public void testSegmentRollover() throws Exception {
+        CallbackJournal journal = new CallbackJournal(dir, 1024);
+        byte[] body = new byte[300];
+        for (int i = 0; i < 10; i++) {
+            body[0] = (byte)i;
+            journal.append("/", null, body);
+        }
+        assertTrue(segmentCount() > 3);
+        
+        List<CallbackJournal.Entry> entries = journal.read(100, 0);
+        assertEquals(10, entries.size());
+        for (int i = 0; i < 10; i++)
+            assertEquals(i, entries.get(i).getBody()[0]);
+        
+        journal.commit(entries.get(9).getNextOffset());
+        assertEquals(1, segmentCount()); // Consumed segments deleted
+        assertEquals(0, journal.getBacklog());
+        journal.close();
+    }
+    
+    @Test
+    public void testTornEntryDiscarded() throws Exception {
+        CallbackJournal journal = new CallbackJournal(dir, 4096);
+        journal.append("/", null, bytes("complete"));
+        long torn = journal.getWriteOffset();
+        journal.close();
+        
+        // Simulate a partially written entry (length written, payload missing)
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*");
+             FileChannel ch = FileChannel.open(files.iterator().next(), StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 50, 1, 2, 3, 4}), torn);
+        }
+        
+        journal = new CallbackJournal(dir, 4096);
+        assertEquals(torn, journal.getWriteOffset());
+        journal.append("/", null, bytes("next"));
+        List<CallbackJournal.Entry> entries = journal.read(10, 0);
+        assertEquals(2, entries.size());
+        assertEquals("next", str(entries.get(1).getBody()));
+        journal.close();
+    }
+    
+    
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+    
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static String str(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal;
+
+import com.rfksystems.blake2b.security.Blake2b512Digest;
+import net.i2p.crypto.eddsa.EdDSAPrivateKey;
+import net.i2p.crypto.eddsa.math.GroupElement;
+import net.i2p.crypto.eddsa.math.ScalarOps;
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Ed25519BatchVerifierTest {
+    
+    @Test
+    public void testAllValid() {
+        Sigs sigs = new Sigs(300, 7);
+        boolean[] results = Ed25519BatchVerifier.verifyAll(sigs.keys, sigs.data, sigs.sigs);
+        for (boolean result : results)
+            assertTrue(result);
+    }
+    
+    @Test
+    public void testFailuresIdentified() {
+        Sigs sigs = new Sigs(300, 7);
+        sigs.sigs[3][40] ^= 1;                            // Modified S
+        sigs.sigs[64][5] ^= 1;                            // Modified R
+        sigs.data[150][0] ^= 1;                           // Modified message
+        sigs.keys[151] = sigs.keys[152].clone();          // Wrong signer
+        sigs.keys[200] = Ed25519Blake2BTest.PRIV.clone(); // Invalid public key point
+        sigs.sigs[299] = new byte[64];                    // Zero signature
+        
+        boolean[] results = Ed25519BatchVerifier.verifyAll(sigs.keys, sigs.data, sigs.sigs);
+        for (int i = 0; i < results.length; i++) {
+            assertEquals("Signature " + i, Ed25519Blake2b.verify(sigs.keys[i], new byte[][] { sigs.data[i] },
+                    sigs.sigs[i]), results[i]);
+        }
+        assertFalse(results[3]);
+        assertFalse(results[64]);
+        assertFalse(results[150]);
+        assertFalse(results[151]);
+        assertFalse(results[200]);
+        assertFalse(results[299]);
+        assertTrue(results[0]);
+        assertTrue(results[152]);
+    }
+    
+    @Test
+    public void testBatchEquation() {
+        Sigs sigs = new Sigs(40, 3);
+        Ed25519BatchVerifier.Batch batch = new Ed25519BatchVerifier.Batch(40);
+        for (int i = 0; i < 40; i++)
+            assertTrue(batch.add(sigs.keys[i], sigs.data[i], sigs.sigs[i]));
+        assertEquals(40, batch.size());
+        assertTrue(batch.verify());
+        
+        sigs.sigs[39][33] ^= 1;
+        batch = new Ed25519BatchVerifier.Batch(40);
+        for (int i = 0; i < 40; i++)
+            assertTrue(batch.add(sigs.keys[i], sigs.data[i], sigs.sigs[i]));
+        assertFalse(batch.verify());
+    }
+    
+    @Test
+    public void testSmallBatch() {
+        Sigs sigs = new Sigs(2, 2);
+        sigs.sigs[1][0] ^= 1;
+        assertArrayEquals(new boolean[] { true, false },
+                Ed25519BatchVerifier.verifyAll(sigs.keys, sigs.data, sigs.sigs));
+        assertEquals(0, Ed25519BatchVerifier.verifyAll(new byte[0][], new byte[0][], new byte[0][]).length);
+    }
+    
+    @Test
+    public void testCanonicalEncoding() {
+        assertTrue(Ed25519BatchVerifier.isCanonical(Ed25519Blake2BTest.PUB));
+        byte[] p = JNC.ENC_16.decode("EDFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF7F"); // y = p
+        assertFalse(Ed25519BatchVerifier.isCanonical(p));
+        p[0] = (byte)0xEC; // y = p - 1
+        assertTrue(Ed25519BatchVerifier.isCanonical(p));
+        p[31] |= 0x80;     // x = -0
+        assertFalse(Ed25519BatchVerifier.isCanonical(p));
+        byte[] one = new byte[32];
+        one[0] = 1;
+        assertTrue(Ed25519BatchVerifier.isCanonical(one));
+        one[31] = (byte)0x80;
+        assertFalse(Ed25519BatchVerifier.isCanonical(one));
+    }
+    
+    @Test
+    public void testSmallOrderComponent() {
+        // Signatures with R = [r]B + T, for a point T of order 2 (y = -1)
+        byte[] t = JNC.ENC_16.decode("ECFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF7F");
+        GroupElement torsion = new GroupElement(Ed25519Blake2b.CURVE_SPEC.getCurve(), t);
+        assertFalse(Ed25519BatchVerifier.isTorsionFree(torsion));
+        
+        Sigs sigs = new Sigs(64, 4);
+        Random random = new Random(1);
+        EdDSAPrivateKey key = Ed25519Blake2b.expandPrivateKey(Ed25519Blake2BTest.PRIV);
+        ScalarOps scalarOps = Ed25519Blake2b.CURVE_SPEC.getScalarOps();
+        for (int i = 0; i < 16; i++) {
+            byte[] rSeed = new byte[64];
+            random.nextBytes(rSeed);
+            byte[] r = scalarOps.reduce(rSeed);
+            byte[] rBytes = Ed25519Blake2b.CURVE_SPEC.getB().scalarMultiply(r)
+                    .add(torsion.toCached()).toP3().toByteArray();
+            MessageDigest digest = new Blake2b512Digest();
+            digest.update(rBytes);
+            digest.update(key.getAbyte());
+            digest.update(sigs.data[i]);
+            byte[] h = scalarOps.reduce(digest.digest());
+            byte[] sig = new byte[64];
+            System.arraycopy(rBytes, 0, sig, 0, 32);
+            System.arraycopy(scalarOps.multiplyAndAdd(h, key.geta(), r), 0, sig, 32, 32);
+            sigs.keys[i] = key.getAbyte();
+            sigs.sigs[i] = sig;
+        }
+        
+        // Every run uses new random coefficients, which cancel the torsion out half of the time
+        for (int run = 0; run < 32; run++) {
+            boolean[] results = Ed25519BatchVerifier.verifyAll(sigs.keys, sigs.data, sigs.sigs);
+            for (int i = 0; i < results.length; i++) {
+                assertEquals("Signature " + i, Ed25519Blake2b.verify(sigs.keys[i], new byte[][] { sigs.data[i] },
+                        sigs.sigs[i]), results[i]);
+                assertEquals("Signature " + i, i >= 16, results[i]);
+            }
+        }
+    }
+    
+    
+    static class Sigs {
+        final byte[][] keys, data, sigs;
+        
+        Sigs(int count, int accounts) {
+            Random random = new Random(count);
+            byte[][] privKeys = new byte[accounts][32];
+            byte[][] pubKeys = new byte[accounts][];
+            for (int i = 0; i < accounts; i++) {
+                random.nextBytes(privKeys[i]);
+                pubKeys[i] = Ed25519Blake2b.derivePublicKey(privKeys[i]);
+            }
+            keys = new byte[count][];
+            data = new byte[count][32];
+            sigs = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                random.nextBytes(data[i]);
+                keys[i] = pubKeys[i % accounts];
+                sigs[i] = Ed25519Blake2b.sign(privKeys[i % accounts], new byte[][] { data[i] });
+            }
+        }
+    }
+    
+}
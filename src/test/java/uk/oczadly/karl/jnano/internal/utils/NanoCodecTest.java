@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.internal.JNC;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NanoCodecTest {
+    
+    @Test
+    public void testMatchesBaseEncoder() {
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            byte[] key = new byte[32], checksum = new byte[5];
+            random.nextBytes(key);
+            random.nextBytes(checksum);
+            
+            String keyStr = JNC.ENC_32.encode(key), checkStr = JNC.ENC_32.encode(checksum);
+            String hexStr = JNC.ENC_16.encode(key);
+            assertEquals(keyStr, NanoCodec.encodeKey(key));
+            assertEquals(checkStr, NanoCodec.encodeChecksum(checksum));
+            assertEquals(hexStr, NanoCodec.encodeHex(key));
+            assertArrayEquals(key, NanoCodec.decodeKey(keyStr, 0));
+            assertArrayEquals(key, NanoCodec.decodeKey("nano_" + keyStr, 5));
+            assertArrayEquals(checksum, NanoCodec.decodeChecksum(checkStr, 0));
+            assertArrayEquals(key, NanoCodec.decodeHex(hexStr));
+            assertArrayEquals(key, NanoCodec.decodeHex(hexStr.toLowerCase()));
+        }
+    }
+    
+    @Test
+    public void testEdgeValues() {
+        byte[] zero = new byte[32], ones = new byte[32];
+        Arrays.fill(ones, (byte)0xFF);
+        assertEquals("1111111111111111111111111111111111111111111111111111", NanoCodec.encodeKey(zero));
+        assertEquals("3zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz", NanoCodec.encodeKey(ones));
+        assertArrayEquals(ones, NanoCodec.decodeKey("3zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz", 0));
+    }
+    
+    @Test
+    public void testInvalidCharacters() {
+        String key = "34qjpc8t1u6wnb584pc4iwsukwa8jhrobpx4oea5gbaitnqafm6q";
+        assertNotNull(NanoCodec.decodeKey(key, 0));
+        assertNull(NanoCodec.decodeKey("5" + key.substring(1), 0));     // Padding bits set
+        assertNull(NanoCodec.decodeKey(key.replace('q', '2'), 0));      // Not in alphabet
+        assertNull(NanoCodec.decodeKey(key.replace('q', 'Q'), 0));      // Uppercase
+        assertNull(NanoCodec.decodeKey(key.replace('q', '\u0171'), 0)); // Non-ASCII, low bits match 'q'
+        assertNull(NanoCodec.decodeChecksum("sgoacpi0", 0));
+        assertNotNull(NanoCodec.decodeChecksum("sgoacpiz", 0));
+        
+        assertNull(NanoCodec.decodeHex("ABC"));
+        assertNull(NanoCodec.decodeHex("ABCG"));
+        assertNull(NanoCodec.decodeHex("AB\u0141C"));
+        assertTrue(NanoCodec.isHex("0123456789abcdefABCDEF"));
+        assertFalse(NanoCodec.isHex("0x12"));
+    }
+    
+}
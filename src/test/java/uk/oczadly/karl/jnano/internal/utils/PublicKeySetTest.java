@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PublicKeySetTest {
+    
+    @Test
+    public void testAddContainsRemove() {
+        PublicKeySet set = new PublicKeySet();
+        byte[] key1 = randomKey(new Random(1)), key2 = randomKey(new Random(2));
+        
+        assertFalse(set.contains(key1));
+        assertTrue(set.add(key1));
+        assertFalse(set.add(key1));
+        assertTrue(set.contains(key1));
+        assertFalse(set.contains(key2));
+        assertEquals(1, set.size());
+        
+        assertFalse(set.remove(key2));
+        assertTrue(set.remove(key1));
+        assertFalse(set.contains(key1));
+        assertEquals(0, set.size());
+    }
+    
+    @Test
+    public void testZeroKey() {
+        PublicKeySet set = new PublicKeySet();
+        byte[] zero = new byte[32];
+        assertFalse(set.contains(zero));
+        assertTrue(set.add(zero));
+        assertTrue(set.contains(zero));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(zero));
+        assertFalse(set.contains(zero));
+    }
+    
+    @Test
+    public void testResizeAndRemoval() {
+        PublicKeySet set = new PublicKeySet(0);
+        Random random = new Random(42);
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            byte[] key = randomKey(random);
+            key[0] = 0; key[31] = (byte)i; // Encourage collisions in some words
+            keys.add(key);
+            set.add(key);
+        }
+        assertEquals(5000, set.size());
+        
+        // Remove every other key
+        for (int i = 0; i < keys.size(); i += 2)
+            assertTrue(set.remove(keys.get(i)));
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(i % 2 != 0, set.contains(keys.get(i)));
+        assertEquals(2500, set.size());
+        
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(keys.get(1)));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidKeyLength() {
+        new PublicKeySet().add(new byte[16]);
+    }
+    
+    
+    private static byte[] randomKey(Random random) {
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        return key;
+    }
+    
+}
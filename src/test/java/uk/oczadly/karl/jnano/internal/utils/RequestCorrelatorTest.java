@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class RequestCorrelatorTest {
+    
+    @Test
+    public void testComplete() throws Exception {
+        RequestCorrelator<String> correlator = new RequestCorrelator<>();
+        RequestCorrelator<String>.Request req1 = correlator.register(0);
+        RequestCorrelator<String>.Request req2 = correlator.register(0);
+        assertNotEquals(req1.getId(), req2.getId());
+        assertEquals(2, correlator.pendingCount());
+        
+        assertTrue(correlator.complete(req2.getIdString().toUpperCase(), "two"));
+        assertFalse(correlator.complete(req2.getId(), "again"));
+        assertFalse(correlator.complete("not-hex", "invalid"));
+        assertEquals("two", req2.getFuture().get());
+        assertFalse(req1.getFuture().isDone());
+        assertEquals(1, correlator.pendingCount());
+    }
+    
+    @Test
+    public void testTimeout() throws Exception {
+        RequestCorrelator<String> correlator = new RequestCorrelator<>();
+        RequestCorrelator<String>.Request req = correlator.register(30);
+        try {
+            req.getFuture().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, correlator.pendingCount());
+        assertFalse(correlator.complete(req.getId(), "late"));
+    }
+    
+    @Test
+    public void testCancelAll() {
+        RequestCorrelator<String> correlator = new RequestCorrelator<>();
+        RequestCorrelator<String>.Request req = correlator.register(60000);
+        correlator.cancelAll();
+        assertTrue(req.getFuture().isCompletedExceptionally());
+        try {
+            req.getFuture().join();
+            fail();
+        } catch (CancellationException ignored) {}
+        assertEquals(0, correlator.pendingCount());
+    }
+    
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    
+    private TimingWheel wheel;
+    
+    @After
+    public void tearDown() {
+        if (wheel != null)
+            wheel.shutdown();
+    }
+    
+    
+    @Test
+    public void testExpiry() throws InterruptedException {
+        wheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8); // Small wheel, forces multiple rounds
+        CountDownLatch latch = new CountDownLatch(2);
+        long start = System.nanoTime();
+        wheel.schedule(latch::countDown, 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+        
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    
+    @Test
+    public void testCancel() throws InterruptedException {
+        wheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8);
+        AtomicBoolean ran = new AtomicBoolean();
+        CountDownLatch latch = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(latch::countDown, 60, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.isCancelled());
+        assertFalse(ran.get());
+    }
+    
+    @Test
+    public void testShutdown() throws InterruptedException {
+        wheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 8);
+        AtomicBoolean ran = new AtomicBoolean();
+        wheel.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+        wheel.shutdown();
+        
+        assertTrue(wheel.isShutdown());
+        for (int i = 0; i < 100 && wheel.isWorkerRunning(); i++)
+            Thread.sleep(10);
+        Thread.sleep(100);
+        assertFalse(ran.get());
+        try {
+            wheel.schedule(() -> {}, 10, TimeUnit.MILLISECONDS);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ignored) {}
+    }
+    
+    @Test
+    public void testIdleWorkerExits() throws InterruptedException {
+        wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 200 && wheel.isWorkerRunning(); i++)
+            Thread.sleep(10);
+        assertFalse(wheel.isWorkerRunning());
+        
+        // Worker is restarted for new timeouts
+        CountDownLatch latch2 = new CountDownLatch(1);
+        wheel.schedule(latch2::countDown, 5, TimeUnit.MILLISECONDS);
+        assertTrue(latch2.await(5, TimeUnit.SECONDS));
+    }
+    
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AmountArrayTest {
+    
+    @Test
+    public void testGetSet() {
+        AmountArray arr = new AmountArray(3);
+        assertEquals(3, arr.size());
+        assertEquals(NanoAmount.ZERO, arr.get(2));
+        arr.set(1, NanoAmount.MAX_VALUE);
+        assertEquals(NanoAmount.MAX_VALUE, arr.get(1));
+        assertArrayEquals(new NanoAmount[] { NanoAmount.ZERO, NanoAmount.MAX_VALUE, NanoAmount.ZERO }, arr.toArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> arr.get(3));
+        assertThrows(IllegalArgumentException.class, () -> arr.set(0, null));
+    }
+    
+    @Test
+    public void testAddSubtract() {
+        AmountArray arr = AmountArray.of(NanoAmount.valueOfRaw(100), NanoAmount.MAX_VALUE);
+        arr.add(0, NanoAmount.valueOfRaw(-1L >>> 1));
+        assertEquals(NanoAmount.valueOfRaw(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.valueOf(100))),
+                arr.get(0));
+        arr.subtract(0, NanoAmount.valueOfRaw(-1L >>> 1));
+        assertEquals(NanoAmount.valueOfRaw(100), arr.get(0));
+        
+        assertThrows(ArithmeticException.class, () -> arr.subtract(0, NanoAmount.valueOfRaw(101)));
+        assertThrows(ArithmeticException.class, () -> arr.add(1, NanoAmount.ONE_RAW));
+        assertEquals(NanoAmount.valueOfRaw(100), arr.get(0)); // Unchanged
+        assertEquals(NanoAmount.MAX_VALUE, arr.get(1));
+    }
+    
+    @Test
+    public void testSum() {
+        Random random = new Random(7);
+        NanoAmount[] amounts = new NanoAmount[500];
+        BigInteger expected = BigInteger.ZERO;
+        for (int i = 0; i < amounts.length; i++) {
+            BigInteger val = new BigInteger(110, random);
+            amounts[i] = NanoAmount.valueOfRaw(val);
+            expected = expected.add(val);
+        }
+        AmountArray arr = AmountArray.of(Arrays.asList(amounts));
+        assertEquals(expected, arr.sum().getAsRaw());
+        assertEquals(amounts[3].add(amounts[4]), arr.sum(3, 5));
+        assertEquals(NanoAmount.ZERO, arr.sum(5, 5));
+        
+        assertThrows(ArithmeticException.class,
+                () -> AmountArray.of(NanoAmount.MAX_VALUE, NanoAmount.ZERO, NanoAmount.ONE_RAW).sum());
+    }
+    
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class Hash256Test {
+    
+    static final String HEX = "0123456789ABCDEF8899AABBCCDDEEFF00112233445566778899AABBCCDDEEFF";
+    
+    @Test
+    public void testParse() {
+        Hash256 hash = Hash256.parse(HEX.toLowerCase());
+        assertEquals(HEX, hash.toHexString());
+        assertEquals(HEX, hash.toString());
+        assertEquals(new HexData(HEX), hash.toHexData());
+        assertArrayEquals(new HexData(HEX).toByteArray(), hash.toByteArray());
+        assertFalse(hash.isZero());
+        assertTrue(Hash256.of(new byte[32]).isZero());
+    }
+    
+    @Test
+    public void testParseInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Hash256.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.parse(HEX.substring(2)));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.parse(HEX + "00"));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.parse("G" + HEX.substring(1)));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.of(new byte[31]));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.of(new HexData("FF")));
+    }
+    
+    @Test
+    public void testBytes() {
+        byte[] bytes = new HexData(HEX).toByteArray();
+        assertEquals(Hash256.parse(HEX), Hash256.of(bytes));
+        assertEquals(Hash256.parse(HEX), Hash256.of(new HexData(HEX)));
+        
+        byte[] padded = new byte[40];
+        System.arraycopy(bytes, 0, padded, 4, 32);
+        assertEquals(Hash256.parse(HEX), Hash256.of(padded, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> Hash256.of(padded, 9));
+        
+        byte[] dest = new byte[40];
+        Hash256.parse(HEX).writeTo(dest, 4);
+        assertArrayEquals(padded, dest);
+    }
+    
+    @Test
+    public void testBuffer() {
+        Hash256 hash = Hash256.parse(HEX);
+        for (ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(33), ByteBuffer.allocateDirect(33) }) {
+            buf.put((byte)1);
+            hash.writeTo(buf);
+            assertEquals(33, buf.position());
+            buf.flip();
+            buf.get();
+            assertEquals(hash, Hash256.of(buf));
+            assertFalse(buf.hasRemaining());
+        }
+    }
+    
+    @Test
+    public void testEqualityAndOrder() {
+        Hash256 a = Hash256.parse(HEX), b = Hash256.parse(HEX);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(0, a.compareTo(b));
+        
+        Hash256 high = Hash256.parse("F" + HEX.substring(1)); // Unsigned comparison
+        assertNotEquals(a, high);
+        assertTrue(a.compareTo(high) < 0);
+        assertTrue(high.compareTo(a) > 0);
+        assertTrue(Hash256.ZERO.compareTo(a) < 0);
+    }
+    
+    @Test
+    public void testJson() {
+        Gson gson = new Gson();
+        Hash256 hash = Hash256.parse(HEX);
+        assertEquals("\"" + HEX + "\"", gson.toJson(hash));
+        assertEquals(hash, gson.fromJson("\"" + HEX.toLowerCase() + "\"", Hash256.class));
+    }
+    
+}
@@ -10,6 +10,8 @@ import org.junit.Test;
 import uk.oczadly.karl.jnano.internal.JNC;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -85,6 +87,38 @@ public class NanoAccountTest {
                 () -> NanoAccount.parseAddressSegment(ACC_1_ADDRSEG, ACC_1_PREFIX, INVALID_CHECKSUM));
     }
     
+    @Test
+    public void testParseInvalidCharacters() {
+        assertThrows(NanoAccount.AddressFormatException.class,
+                () -> NanoAccount.parseAddress(ACC_2_ADDR.replace('q', '2')));
+        assertThrows(NanoAccount.AddressFormatException.class,
+                () -> NanoAccount.parseAddress(ACC_2_ADDR.substring(0, 63) + "0"));
+        assertThrows(NanoAccount.AddressFormatException.class,
+                () -> NanoAccount.parseAddress("nano_5" + ACC_2_ADDR.substring(6)));
+        assertThrows(NanoAccount.AddressFormatException.class,
+                () -> NanoAccount.parseAddress("na-no" + ACC_2_ADDR.substring(4)));
+        assertThrows(NanoAccount.AddressFormatException.class,
+                () -> NanoAccount.parsePublicKey(ACC_2_PUBKEY.replace('A', 'G')));
+        assertEquals(ACC_2_ADDR, NanoAccount.parsePublicKey(ACC_2_PUBKEY.toLowerCase()).toAddress());
+        assertEquals(ACC_2_PUBKEY, NanoAccount.parsePublicKey(ACC_2_PUBKEY.toLowerCase()).toPublicKey());
+    }
+    
+    @Test
+    public void testBulk() {
+        List<NanoAccount> accounts = NanoAccount.parseAll(Arrays.asList(ACC_1_ADDR, ACC_2_PUBKEY, ACC_1_ADDRSEG));
+        assertEquals(3, accounts.size());
+        assertEquals(NanoAccount.parse(ACC_1_ADDR), accounts.get(0));
+        assertEquals(NanoAccount.parse(ACC_2_ADDR), accounts.get(1));
+        assertEquals(NanoAccount.parseAddressSegment(ACC_1_ADDRSEG), accounts.get(2));
+        
+        List<String> addresses = NanoAccount.encodeAll(accounts);
+        assertEquals(Arrays.asList(ACC_1_ADDR, ACC_2_ADDR, NanoAccount.parseAddressSegment(ACC_1_ADDRSEG).toAddress()),
+                addresses);
+        assertEquals(accounts, NanoAccount.parseAll(addresses));
+        assertThrows(NanoAccount.AddressFormatException.class,
+                () -> NanoAccount.parseAll(Arrays.asList(ACC_1_ADDR, INVALID_ADDR)));
+    }
+    
     @Test
     public void testChangePrefix() {
         NanoAccount addr1 = NanoAccount.parseAddress(ACC_1_ADDR);
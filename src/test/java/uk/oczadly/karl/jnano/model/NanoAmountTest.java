@@ -11,6 +11,7 @@ import uk.oczadly.karl.jnano.util.NanoUnit;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -98,4 +99,58 @@ public class NanoAmountTest {
                 NanoAmount.valueOfRaw("100").difference(NanoAmount.valueOfRaw("500")));
     }
     
-}
\ No newline at end of file
+    @Test
+    public void testRawStrings() {
+        assertEquals("0", NanoAmount.ZERO.toRawString());
+        assertEquals("340282366920938463463374607431768211455", NanoAmount.MAX_VALUE.toRawString());
+        assertEquals("1230000000000000000000000000001", VAL_B.toRawString());
+        assertEquals(NanoAmount.MAX_VALUE, NanoAmount.valueOfRaw("340282366920938463463374607431768211455"));
+        assertEquals(NanoAmount.ONE_RAW, NanoAmount.valueOfRaw("0001"));
+        assertThrows(IllegalArgumentException.class,
+                () -> NanoAmount.valueOfRaw("340282366920938463463374607431768211456"));
+        assertThrows(IllegalArgumentException.class, () -> NanoAmount.valueOfRaw("-1"));
+        assertThrows(IllegalArgumentException.class, () -> NanoAmount.valueOfRaw(-1));
+        assertThrows(NumberFormatException.class, () -> NanoAmount.valueOfRaw("1.0"));
+        assertThrows(NumberFormatException.class, () -> NanoAmount.valueOfRaw(""));
+    }
+    
+    @Test
+    public void testNanoStrings() {
+        assertEquals("1.23", VAL_A.toNanoString());
+        assertEquals("1.230000000000000000000000000001", VAL_B.toNanoString());
+        assertEquals("0", NanoAmount.ZERO.toNanoString());
+        assertEquals("0.000000000000000000000000000001", NanoAmount.ONE_RAW.toNanoString());
+        assertEquals("1000", NanoAmount.valueOfNano(1000).toNanoString());
+        assertEquals(VAL_A, NanoAmount.valueOfNano("1.2300"));
+        assertEquals(VAL_A, NanoAmount.valueOfNano("1.23E0"));
+        assertEquals(NanoAmount.valueOfRaw("500000000000000000000000000000"), NanoAmount.valueOfNano(".5"));
+        assertEquals(NanoAmount.valueOfRaw("27000000000000000000000000000000"), NanoAmount.valueOfNano("27."));
+        assertThrows(IllegalArgumentException.class,
+                () -> NanoAmount.valueOfNano("0.0000000000000000000000000000001"));
+        assertThrows(IllegalArgumentException.class, () -> NanoAmount.valueOfNano("340282366.921"));
+        assertThrows(NumberFormatException.class, () -> NanoAmount.valueOfNano("."));
+    }
+    
+    @Test
+    public void testArithmeticMatchesBigInteger() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            BigInteger a = new BigInteger(1 + random.nextInt(128), random);
+            BigInteger b = new BigInteger(1 + random.nextInt(128), random);
+            NanoAmount amountA = NanoAmount.valueOfRaw(a), amountB = NanoAmount.valueOfRaw(b);
+            
+            assertEquals(a.toString(), amountA.toRawString());
+            assertEquals(amountA, NanoAmount.valueOfRaw(a.toString()));
+            assertEquals(a, NanoAmount.valueOfRaw(a.toString()).getAsRaw());
+            assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(amountA.compareTo(amountB)));
+            assertEquals(0, amountA.getAsNano().compareTo(new BigDecimal(amountA.toNanoString())));
+            assertEquals(a.subtract(b).abs(), amountA.difference(amountB).getAsRaw());
+            if (a.add(b).bitLength() <= 128) {
+                assertEquals(a.add(b), amountA.add(amountB).getAsRaw());
+            } else {
+                assertThrows(ArithmeticException.class, () -> amountA.add(amountB));
+            }
+        }
+    }
+    
+}
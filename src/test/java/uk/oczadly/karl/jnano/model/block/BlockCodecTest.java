@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BlockCodecTest {
+    
+    static final HexData SIG = new HexData(
+            "DEE5EC5D771E92B5DE3C76EBFE8FE844284A3AFCA32D6183643BA1B553C75F2377A1138DB6" +
+            "20832D6557C0AD46D804D577F372C592C1D05DDA10571D14872304");
+    static final WorkSolution WORK = new WorkSolution("8017b5301c0b822c");
+    static final HexData HASH1 = new HexData("91862D068AB5F836360738002EBB421B0A89996CF1AF64E1C9D400B2410BEDF0");
+    static final HexData HASH2 = new HexData("B2EC73C1F503F47E051AD72ECB512C63BA8E1A0ACC2CEE4EA9A22FE1CBDB693F");
+    static final NanoAccount ACC1 = NanoAccount.parseAddress(
+            "nano_14ghgrw1y9itsopkyscpofbpgrjr6hoy1qug4gda3utunrq11xzee9yfhtg3");
+    static final NanoAccount ACC2 = NanoAccount.parseAddress(
+            "nano_3t6k35gi95xu6tergt6p69ck76ogmitsa8mnijtpxm9fkcm736xtoncuohr3");
+    
+    static final List<Block> BLOCKS = Arrays.asList(
+            new SendBlock(SIG, WORK, HASH1, ACC1, NanoAmount.valueOfRaw("689999000000000000000000000000")),
+            new ReceiveBlock(SIG, WORK, HASH1, HASH2),
+            new OpenBlock(SIG, WORK, HASH1, ACC1, ACC2),
+            new ChangeBlock(SIG, WORK, HASH1, ACC2),
+            new StateBlock(StateBlockSubType.SEND, SIG, WORK, ACC1, HASH1, ACC2, NanoAmount.MAX_VALUE,
+                    new HexData(ACC2.getPublicKeyBytes())),
+            new StateBlock(StateBlockSubType.RECEIVE, null, null, ACC2, HASH2, ACC1, NanoAmount.ONE_RAW, HASH1));
+    
+    
+    @Test
+    public void testRoundTrip() {
+        for (Block block : BLOCKS) {
+            ByteBuffer buf = ByteBuffer.allocate(block.getBinaryLength() + 3);
+            buf.position(3);
+            block.writeTo(buf);
+            assertFalse(buf.hasRemaining());
+            buf.position(3);
+            Block decoded = Block.readFrom(buf);
+            assertFalse(buf.hasRemaining());
+            assertEquals(block.getClass(), decoded.getClass());
+            assertTrue(block.contentEquals(decoded));
+            assertEquals(block.toJsonObject(), decoded.toJsonObject());
+        }
+    }
+    
+    @Test
+    public void testRoundTripDirectBuffer() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(BlockCodec.MAX_LENGTH * BLOCKS.size());
+        for (Block block : BLOCKS)
+            block.writeTo(buf);
+        buf.flip();
+        for (Block block : BLOCKS)
+            assertTrue(block.contentEquals(Block.readFrom(buf)));
+        assertFalse(buf.hasRemaining());
+    }
+    
+    @Test
+    public void testLengths() {
+        assertEquals(153, BLOCKS.get(0).getBinaryLength());
+        assertEquals(137, BLOCKS.get(1).getBinaryLength());
+        assertEquals(169, BLOCKS.get(2).getBinaryLength());
+        assertEquals(137, BLOCKS.get(3).getBinaryLength());
+        assertEquals(217, BLOCKS.get(4).getBinaryLength());
+    }
+    
+    @Test
+    public void testStateLayout() {
+        StateBlock block = (StateBlock)BLOCKS.get(4);
+        ByteBuffer buf = ByteBuffer.allocate(block.getBinaryLength());
+        block.writeTo(buf);
+        byte[] bytes = buf.array();
+        assertEquals(0x16, bytes[0]);
+        assertArrayEquals(ACC1.getPublicKeyBytes(), Arrays.copyOfRange(bytes, 1, 33));
+        assertArrayEquals(HASH1.toByteArray(), Arrays.copyOfRange(bytes, 33, 65));
+        assertArrayEquals(ACC2.getPublicKeyBytes(), Arrays.copyOfRange(bytes, 65, 97));
+        assertArrayEquals(SIG.toByteArray(), Arrays.copyOfRange(bytes, 145, 209));
+        assertEquals((byte)0x80, bytes[209]); // Big-endian work
+        assertEquals((byte)0x2c, bytes[216]);
+    }
+    
+    @Test
+    public void testLegacyWorkLittleEndian() {
+        ByteBuffer buf = ByteBuffer.allocate(BlockCodec.MAX_LENGTH);
+        BLOCKS.get(1).writeTo(buf);
+        assertEquals(3, buf.get(0));
+        assertEquals((byte)0x2c, buf.get(129));
+        assertEquals((byte)0x80, buf.get(136));
+    }
+    
+    @Test
+    public void testNullSignatureAndWork() {
+        Block block = BLOCKS.get(5);
+        ByteBuffer buf = ByteBuffer.allocate(block.getBinaryLength());
+        block.writeTo(buf);
+        buf.flip();
+        Block decoded = Block.readFrom(buf);
+        assertNull(decoded.getSignature());
+        assertNull(decoded.getWorkSolution());
+        assertEquals(StateBlockSubType.RECEIVE, ((StateBlock)decoded).getSubType());
+    }
+    
+    @Test
+    public void testInvalidData() {
+        ByteBuffer buf = ByteBuffer.wrap(new byte[] { 7, 0, 0 });
+        assertThrows(BlockDeserializer.BlockParseException.class, () -> Block.readFrom(buf));
+        assertEquals(0, buf.position());
+        ByteBuffer truncated = ByteBuffer.wrap(new byte[] { 6 | (1 << 4), 0, 0 });
+        assertThrows(BlockDeserializer.BlockParseException.class, () -> Block.readFrom(truncated));
+        assertThrows(IndexOutOfBoundsException.class, () -> BLOCKS.get(0).writeTo(ByteBuffer.allocate(100)));
+    }
+    
+    @Test
+    public void testStreams() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (BlockOutputStream out = new BlockOutputStream(baos)) {
+            out.writeBlock(BLOCKS.get(4));
+            for (int i = 0; i < 20; i++)
+                out.writeBlocks(BLOCKS);
+        }
+        
+        List<Block> decoded;
+        try (BlockInputStream in = new BlockInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            decoded = in.readBlocks();
+            assertNull(in.readBlock());
+        }
+        assertEquals(1 + BLOCKS.size() * 20, decoded.size());
+        assertTrue(BLOCKS.get(4).contentEquals(decoded.get(0)));
+        for (int i = 1; i < decoded.size(); i++)
+            assertTrue(BLOCKS.get((i - 1) % BLOCKS.size()).contentEquals(decoded.get(i)));
+    }
+    
+    @Test
+    public void testStreamBatches() throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            blocks.add(BLOCKS.get(4 + i % 2)); // State blocks, which have the maximum length
+        AtomicInteger writes = new AtomicInteger();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.incrementAndGet();
+                super.write(b, off, len);
+            }
+        };
+        try (BlockOutputStream out = new BlockOutputStream(baos)) {
+            out.writeBlocks(blocks);
+        }
+        assertEquals(4, writes.get()); // Batches of 32 blocks
+        
+        List<Block> decoded;
+        try (BlockInputStream in = new BlockInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            decoded = in.readBlocks();
+        }
+        assertEquals(blocks.size(), decoded.size());
+        for (int i = 0; i < decoded.size(); i++)
+            assertTrue(blocks.get(i).contentEquals(decoded.get(i)));
+    }
+    
+    @Test
+    public void testStreamTruncated() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new BlockOutputStream(baos).writeBlock(BLOCKS.get(0));
+        byte[] data = Arrays.copyOf(baos.toByteArray(), 100);
+        BlockInputStream in = new BlockInputStream(new ByteArrayInputStream(data));
+        assertThrows(EOFException.class, in::readBlock);
+    }
+    
+}
@@ -6,11 +6,21 @@
 package uk.oczadly.karl.jnano.model.block;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
 import org.junit.Test;
 import uk.oczadly.karl.jnano.TestBlock;
 import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.internal.JNC;
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
 import static org.junit.Assert.*;
 
 /**
@@ -67,4 +77,85 @@ public class BlockDeserializerTest {
         assertThrows(BlockDeserializer.BlockParseException.class, () -> des.deserialize(new JsonObject()));
     }
     
-}
\ No newline at end of file
+    @Test
+    public void testDeserializeReader() throws IOException {
+        JsonObject json = JNH.parseJson(StateBlockTest.TEST_BLOCK_JSON);
+        Block expected = BlockDeserializer.withDefaults().deserialize(json);
+        BlockDeserializer des = BlockDeserializer.withDefaults();
+        // From object
+        Block block1 = des.deserialize(new JsonReader(new StringReader(json.toString())));
+        assertTrue(block1 instanceof StateBlock);
+        assertTrue(expected.contentEquals(block1));
+        assertEquals(expected.toJsonObject(), block1.toJsonObject());
+        // From string containing JSON
+        Block block2 = des.deserialize(new JsonReader(new StringReader(new JsonPrimitive(json.toString()).toString())));
+        assertTrue(expected.contentEquals(block2));
+        // Missing type
+        json.remove("type");
+        assertThrows(BlockDeserializer.BlockParseException.class,
+                () -> des.deserialize(new JsonReader(new StringReader(json.toString()))));
+        // Not an object
+        assertThrows(BlockDeserializer.BlockParseException.class,
+                () -> des.deserialize(new JsonReader(new StringReader("[]"))));
+    }
+    
+    @Test
+    public void testDeserializeReaderParity() throws IOException {
+        // The streaming path must build the same blocks as each type's deserializer function
+        BlockDeserializer des = BlockDeserializer.withDefaults();
+        Set<BlockType> types = EnumSet.noneOf(BlockType.class);
+        for (Block block : BlockCodecTest.BLOCKS) {
+            JsonObject full = block.toJsonObject();
+            JsonObject partial = full.deepCopy();
+            partial.remove("work");
+            partial.remove("signature");
+            JsonObject linkAccount = full.deepCopy(); // State blocks may only specify link_as_account
+            linkAccount.remove("link");
+            for (JsonObject json : Arrays.asList(full, partial, linkAccount)) {
+                Block expected = block.getType().getDeserializerFunction().apply(json);
+                Block actual = des.deserialize(new JsonReader(new StringReader(json.toString())));
+                assertEquals(json.toString(), expected.getClass(), actual.getClass());
+                assertEquals(json.toString(), expected.toJsonObject(true), actual.toJsonObject(true));
+            }
+            types.add(block.getType());
+        }
+        assertEquals(EnumSet.allOf(BlockType.class), types);
+    }
+    
+    @Test
+    public void testDeserializeReaderCustom() throws IOException {
+        BlockDeserializer des = BlockDeserializer.withNone();
+        des.registerDeserializer("test", json -> {
+            assertTrue(json.get("extra").isJsonObject()); // Unknown fields are retained
+            return TestBlock.DESERIALIZER.apply(json);
+        });
+        Block block = des.deserialize(new JsonReader(new StringReader(
+                "{\"type\":\"test\",\"extra\":{\"a\":[1,2]},\"val\":\"abc\",\"work\":\"8017b5301c0b822c\"}")));
+        assertTrue(block instanceof TestBlock);
+        assertEquals("abc", ((TestBlock)block).getVal());
+        assertEquals(new WorkSolution("8017b5301c0b822c"), block.getWorkSolution());
+        // Unsupported type
+        assertThrows(BlockDeserializer.BlockParseException.class,
+                () -> des.deserialize(new JsonReader(new StringReader("{\"type\":\"state\"}"))));
+    }
+    
+    @Test
+    public void testStreamingAdapter() {
+        JsonObject json = JNH.parseJson(StateBlockTest.TEST_BLOCK_JSON);
+        Block expected = Block.parse(json);
+        JsonObject container = new JsonObject();
+        container.add("obj", json);
+        container.addProperty("str", json.toString());
+        BlockContainer parsed = JNC.GSON.fromJson(container.toString(), BlockContainer.class);
+        assertTrue(expected.contentEquals(parsed.obj));
+        assertTrue(expected.contentEquals(parsed.str));
+        assertNull(parsed.none);
+        // Serialization
+        assertEquals(expected.toJsonObject(), JNC.GSON.toJsonTree(parsed).getAsJsonObject().get("obj"));
+    }
+    
+    static class BlockContainer {
+        Block obj, str, none;
+    }
+    
+}
@@ -9,7 +9,17 @@ import org.junit.Test;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.SigningKey;
+import uk.oczadly.karl.jnano.util.workgen.AbstractWorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
+import uk.oczadly.karl.jnano.util.workgen.policy.WorkDifficultyPolicy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -43,6 +53,55 @@ public class StateBlockBuilderTest {
     }
     
 
+    @Test
+    public void testBuildAndSignAsync() throws Exception {
+        WorkSolution work = new WorkSolution(1337);
+        WorkDifficultyPolicy policy = new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE);
+        WorkGenerator workGen = new AbstractWorkGenerator(policy, null) {
+            @Override
+            protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context) {
+                return work;
+            }
+        };
+        CompletableFuture<StateBlock> future = newBuilder()
+                .removeSignature()
+                .removeWork()
+                .generateWork(workGen)
+                .buildAndSignAsync(new SigningKey(PRIVATE_KEY));
+        StateBlock block = future.get(5, TimeUnit.SECONDS);
+        assertEquals(SIGNATURE, block.getSignature());
+        assertEquals(work, block.getWorkSolution());
+        workGen.shutdown();
+    }
+    
+    @Test
+    public void testBuildAndSignAsyncCancel() throws Exception {
+        CountDownLatch started = new CountDownLatch(1), interrupted = new CountDownLatch(1);
+        WorkDifficultyPolicy policy = new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE);
+        WorkGenerator workGen = new AbstractWorkGenerator(policy, null) {
+            @Override
+            protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context)
+                    throws InterruptedException {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } finally {
+                    interrupted.countDown();
+                }
+                return null;
+            }
+        };
+        CompletableFuture<StateBlock> future = newBuilder()
+                .removeSignature()
+                .removeWork()
+                .generateWork(workGen)
+                .buildAndSignAsync(new SigningKey(PRIVATE_KEY));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS)); // Work generation was cancelled
+        workGen.shutdown();
+    }
+    
     @Test
     public void testBuildMultiple() {
         StateBlockBuilder builder = newBuilder();
@@ -99,6 +158,12 @@ public class StateBlockBuilderTest {
     public void testBuildSign() {
         StateBlock b = newBuilder().removeSignature().buildAndSign(PRIVATE_KEY);
         assertEquals(SIGNATURE, b.getSignature());
+        
+        SigningKey key = new SigningKey(PRIVATE_KEY);
+        assertEquals(SIGNATURE, newBuilder().removeSignature().buildAndSign(key).getSignature());
+        assertEquals(SIGNATURE, newBuilder().removeSignature().buildAndSign(key).getSignature());
+        assertEquals("ban", newBuilder().account((NanoAccount)null).usingAddressPrefix("ban").buildAndSign(key)
+                .getAccount().getPrefix());
     }
     
     @Test
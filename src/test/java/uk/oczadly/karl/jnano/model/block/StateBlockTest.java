@@ -15,9 +15,12 @@ import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.epoch.UnrecognizedEpochException;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.CryptoUtil;
 import uk.oczadly.karl.jnano.util.NetworkConstants;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -149,6 +152,62 @@ public class StateBlockTest {
                 () -> block.verifySignature(NetworkConstants.BANANO.getEpochUpgrades()));
     }
     
+    @Test
+    public void testHashAll() {
+        List<StateBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            blocks.add(builder().balance(NanoAmount.valueOfRaw(BigInteger.ONE.shiftLeft(i % 128)))
+                    .link(new NanoAccount(BigInteger.valueOf(i))).signature((HexData)null)
+                    .build());
+        }
+        List<HexData> hashes = CryptoUtil.hashAll(blocks);
+        assertEquals(blocks.size(), hashes.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            assertEquals(CryptoUtil.hash(blocks.get(i).hashables()), hashes.get(i)); // Legacy path
+            assertEquals(hashes.get(i), blocks.get(i).getHash());
+        }
+    }
+    
+    @Test
+    public void testBatchSigVerification() {
+        StateBlock epoch = StateBlock.parse("{\n" +
+                "\"type\": \"state\",\n" +
+                "\"account\": \"nano_3x4ui45q1cw8hydmfdn4ec5ijsdqi4ryp14g4ayh71jcdkwmddrq7ca9xzn9\",\n" +
+                "\"previous\": \"D7B1B764399B3417BC1220C602A9608D9C883CF2064EA481E14152813F3A6B9E\",\n" +
+                "\"representative\": \"nano_3rw4un6ys57hrb39sy1qx8qy5wukst1iiponztrz9qiz6qqa55kxzx4491or\",\n" +
+                "\"balance\": \"0\",\n" +
+                "\"link\": \"65706F636820763220626C6F636B000000000000000000000000000000000000\",\n" +
+                "\"signature\": \"C79A2779903119007A5A597EBA57931485D729CB4C5D12502967C3645624C042D6E867D6E783CFF7D2" +
+                "B01292AB8834A66BD7F9508B2981FEBF14542988F8AF02\",\n" +
+                "\"work\": \"1c147cfad9657bb5\",\n" +
+                "\"subtype\": \"epoch\"}");
+        StateBlock incorrectSig = builder().build();
+        incorrectSig.setSignature(JNC.ZEROES_128_HD);
+        StateBlock noSig = builder().build();
+        noSig.setSignature(null);
+        
+        List<StateBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            blocks.add(builder().balance(NanoAmount.valueOfRaw(i)).buildAndSign(TB_PRIVKEY));
+            blocks.add(TEST_BLOCK);
+        }
+        blocks.add(epoch);
+        blocks.add(incorrectSig);
+        blocks.add(noSig);
+        
+        boolean[] results = Block.verifySignatures(blocks);
+        for (int i = 0; i < 41; i++)
+            assertTrue(results[i]);
+        assertFalse(results[41]);
+        assertFalse(results[42]);
+        assertThrows(UnrecognizedEpochException.class,
+                () -> Block.verifySignatures(blocks, NetworkConstants.BANANO.getEpochUpgrades()));
+        
+        // Explicit signers
+        assertArrayEquals(new boolean[] { true, false }, Block.verifySignatures(JNH.ofList(TEST_BLOCK, TEST_BLOCK),
+                JNH.ofList(TB_ACCOUNT, NanoAccount.ZERO_ACCOUNT)));
+    }
+    
     @Test
     public void testSelfSignedVerification() {
         // Standard block
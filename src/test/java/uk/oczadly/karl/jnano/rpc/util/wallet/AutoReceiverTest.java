@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.callback.BlockData;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.BlockType;
+import uk.oczadly.karl.jnano.model.block.SendBlock;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockProducerSpecification;
+import uk.oczadly.karl.jnano.util.blockproducer.StateBlockProducer;
+import uk.oczadly.karl.jnano.util.workgen.AbstractWorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AutoReceiverTest {
+    
+    private MockNode node;
+    private WorkGenerator workGen;
+    private WalletEngine engine;
+    
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        workGen = new AbstractWorkGenerator(new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE), null) {
+            @Override
+            protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context) {
+                return new WorkSolution(1);
+            }
+        };
+        StateBlockProducer producer = new StateBlockProducer(BlockProducerSpecification.builder()
+                .defaultRepresentative(TestConstants.randAccount())
+                .workGenerator(workGen)
+                .build());
+        engine = WalletEngine.builder(RpcQueryNode.builder().setRequestExecutor(node).build(), producer).build();
+    }
+    
+    @After
+    public void tearDown() {
+        engine.shutdown();
+        workGen.shutdown();
+    }
+    
+    
+    @Test
+    public void testCallbackSend() throws Exception {
+        NanoAccount account = engine.addAccount(WalletUtil.generateRandomKey());
+        CompletableFuture<Block> received = new CompletableFuture<>();
+        AutoReceiver receiver = AutoReceiver.builder(engine)
+                .listener((acc, block) -> received.complete(block))
+                .build();
+        
+        // Send to an unmanaged account is ignored
+        receiver.onNewBlock(sendData(TestConstants.randAccount(), NanoAmount.valueOfRaw(5)), "", null);
+        assertEquals(0, receiver.getInFlightCount());
+        
+        BlockData send = sendData(account, NanoAmount.valueOfRaw(10));
+        receiver.onNewBlock(send, "", null);
+        received.get(5, TimeUnit.SECONDS);
+        assertEquals(1, node.processed(account).size());
+        assertEquals(send.getBlockHash(), node.processed(account).get(0).getLink().asHex());
+        assertEquals(NanoAmount.valueOfRaw(10), engine.getState(account).getBalance());
+        assertEquals(1, receiver.getReceivedCount());
+    }
+    
+    @Test
+    public void testSweep() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+        AutoReceiver receiver = AutoReceiver.builder(engine)
+                .sweepBatchSize(2)
+                .listener((acc, block) -> latch.countDown())
+                .build();
+        for (int i = 0; i < 3; i++) {
+            NanoAccount account = engine.addAccount(WalletUtil.generateRandomKey());
+            node.addPending(account, TestConstants.randHash(), NanoAmount.valueOfRaw(7));
+        }
+        
+        assertEquals(3, receiver.sweep());
+        assertEquals(2, node.requestCount("accounts_pending"));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (NanoAccount account : engine.getAccounts())
+            assertEquals(NanoAmount.valueOfRaw(7), engine.getState(account).getBalance());
+        
+        assertEquals(0, receiver.sweep()); // Already received
+    }
+    
+    @Test
+    public void testSubmitFilters() throws Exception {
+        NanoAccount account = engine.addAccount(WalletUtil.generateRandomKey());
+        AutoReceiver receiver = AutoReceiver.builder(engine)
+                .minimumAmount(NanoAmount.valueOfRaw(100))
+                .build();
+        HexData hash = TestConstants.randHash();
+        
+        assertFalse(receiver.submit(account, hash, NanoAmount.valueOfRaw(99)));
+        assertFalse(receiver.submit(TestConstants.randAccount(), hash, NanoAmount.valueOfRaw(100)));
+        assertTrue(receiver.submit(account, hash, NanoAmount.valueOfRaw(100)));
+    }
+    
+    
+    private static BlockData sendData(NanoAccount destination, NanoAmount amount) {
+        SendBlock block = new SendBlock(TestConstants.randHex(128), new WorkSolution(1), TestConstants.randHash(),
+                destination, NanoAmount.valueOfRaw(1000));
+        return new BlockData(null, TestConstants.randAccount(), block.getHash(), block, BlockType.SEND, true, amount);
+    }
+    
+}
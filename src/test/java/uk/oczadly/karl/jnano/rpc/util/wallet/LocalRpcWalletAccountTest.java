@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockProducerSpecification;
+import uk.oczadly.karl.jnano.util.blockproducer.StateBlockProducer;
+import uk.oczadly.karl.jnano.util.workgen.AbstractWorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LocalRpcWalletAccountTest {
+    
+    private static final NanoAccount REP = TestConstants.randAccount();
+    
+    private final MockNode node = new MockNode();
+    private WorkGenerator workGen;
+    private LocalRpcWalletAccount account;
+    private HexData frontier;
+    private final AtomicInteger workRequests = new AtomicInteger();
+    private final AtomicInteger maxWorkAhead = new AtomicInteger();
+    private final AtomicInteger workCancelled = new AtomicInteger();
+    private volatile CountDownLatch workGate;
+    
+    @Before
+    public void setUp() throws Exception {
+        workGen = new AbstractWorkGenerator(new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE), null) {
+            @Override
+            protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context)
+                    throws InterruptedException {
+                maxWorkAhead.accumulateAndGet(workRequests.incrementAndGet() - node.requestCount("process"), Math::max);
+                CountDownLatch gate = workGate;
+                if (gate != null) {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        workCancelled.incrementAndGet();
+                        throw e;
+                    }
+                }
+                return new WorkSolution(1);
+            }
+        };
+        account = new LocalRpcWalletAccount(WalletUtil.generateRandomKey(),
+                RpcQueryNode.builder().setRequestExecutor(node).build(),
+                new StateBlockProducer(BlockProducerSpecification.builder().workGenerator(workGen).build()));
+        frontier = TestConstants.randHash();
+        node.setState(account.getAccount(), new AccountState(frontier, NanoAmount.valueOfRaw(1000), REP));
+    }
+    
+    @After
+    public void tearDown() {
+        workGen.shutdown();
+    }
+    
+    
+    @Test
+    public void testInvalidBlockNotRetried() throws Exception {
+        account.refreshState();
+        node.rejectError = "Bad signature";
+        assertThrows(WalletActionException.class, () -> account.send(TestConstants.randAccount(), NanoAmount.valueOfRaw(10)));
+        assertEquals(1, node.requestCount("process"));
+        assertEquals(2, node.requestCount("account_info")); // Initial state and resync
+    }
+    
+    @Test
+    public void testAlreadyPublishedBlock() throws Exception {
+        node.errorAfterProcess = "Old block";
+        Block block = account.send(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertEquals(1, node.requestCount("process"));
+        assertEquals(block.getHash(), account.getFrontierHash().get());
+        assertEquals(NanoAmount.valueOfRaw(990), account.getBalance());
+    }
+    
+    @Test
+    public void testAlreadyPublishedDeepInChain() throws Exception {
+        // Block is processed and followed by other blocks, but the response is lost
+        node.errorAfterProcess = "Old block";
+        node.externalAfterProcess = 20;
+        Block block = account.send(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertEquals(1, node.requestCount("process"));
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(21, processed.size());
+        assertEquals(processed.get(0), block);
+        assertEquals(processed.get(20).getHash(), account.getFrontierHash().get());
+        assertEquals(NanoAmount.valueOfRaw(990), account.getBalance());
+    }
+    
+    @Test
+    public void testChangedElsewhere() throws Exception {
+        account.refreshState();
+        HexData external = TestConstants.randHash();
+        node.setState(account.getAccount(), new AccountState(external, NanoAmount.valueOfRaw(500), REP));
+        
+        account.send(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertEquals(2, node.requestCount("process"));
+        assertEquals(external, node.processed(account.getAccount()).get(0).getPreviousBlockHash());
+        assertEquals(NanoAmount.valueOfRaw(490), account.getBalance());
+    }
+    
+    @Test
+    public void testReceivePipelined() throws Exception {
+        List<HexData> sources = addPending(40);
+        Set<Block> received = account.receiveBatch(40, NanoAmount.ZERO);
+        
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(40, received.size());
+        assertEquals(40, processed.size());
+        assertEquals(frontier, processed.get(0).getPreviousBlockHash());
+        for (int i = 0; i < processed.size(); i++) {
+            assertEquals(sources.get(i), processed.get(i).getLink().asHex());
+            if (i > 0)
+                assertEquals(processed.get(i - 1).getHash(), processed.get(i).getPreviousBlockHash());
+        }
+        assertEquals(new HashSet<>(processed), received);
+        assertEquals(processed.get(39).getHash(), account.getFrontierHash().get());
+        assertEquals(NanoAmount.valueOfRaw(1000 + 40 * 10), account.getBalance());
+        
+        // Work is only requested for a window of blocks ahead of the last published block
+        assertEquals(40, workRequests.get());
+        assertTrue(maxWorkAhead.get() <= PayoutEngine.DEFAULT_WINDOW);
+    }
+    
+    @Test
+    public void testReceiveRejectedMidBatch() throws Exception {
+        addPending(10);
+        node.processLimit = 4;
+        PartialReceiveException e = assertThrows(PartialReceiveException.class, () -> account.receiveBatch(10, NanoAmount.ZERO));
+        
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(4, processed.size());
+        assertEquals(new HashSet<>(processed), e.getReceivedBlocks());
+        assertEquals(processed.get(3).getHash(), account.getFrontierHash().get());
+        assertEquals(NanoAmount.valueOfRaw(1040), account.getBalance());
+        
+        // Remaining blocks are received by the next batch
+        node.processLimit = Integer.MAX_VALUE;
+        assertEquals(6, account.receiveAll(NanoAmount.ZERO).size());
+        assertEquals(NanoAmount.valueOfRaw(1100), account.getBalance());
+    }
+    
+    @Test
+    public void testReceiveConnectionErrorAfterProcess() throws Exception {
+        addPending(3);
+        node.offlineAfterProcess = true;
+        assertThrows(WalletActionException.class, () -> account.receiveBatch(3, NanoAmount.ZERO));
+        
+        // The node processed the first block, so the next batch follows on from it
+        node.offlineAfterProcess = false;
+        HexData hash = node.processed(account.getAccount()).get(0).getHash();
+        assertEquals(hash, account.getFrontierHash().get());
+        assertEquals(2, account.receiveAll(NanoAmount.ZERO).size());
+        assertEquals(hash, node.processed(account.getAccount()).get(1).getPreviousBlockHash());
+        assertEquals(NanoAmount.valueOfRaw(1030), account.getBalance());
+    }
+    
+    @Test
+    public void testSendAsync() throws Exception {
+        List<CompletableFuture<Block>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            futures.add(account.sendAsync(TestConstants.randAccount(), NanoAmount.valueOfRaw(10)));
+        assertEquals(NanoAmount.valueOfRaw(950), account.getBalance()); // Committed before publishing
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(5, processed.size());
+        for (int i = 0; i < 5; i++)
+            assertEquals(processed.get(i), futures.get(i).get());
+        assertEquals(frontier, processed.get(0).getPreviousBlockHash());
+        assertEquals(0, account.getUnpublishedCount());
+        assertEquals(processed.get(4).getHash(), account.getFrontierHash().get());
+    }
+    
+    @Test
+    public void testReceiveAsync() throws Exception {
+        List<HexData> sources = addPending(3);
+        List<CompletableFuture<Block>> futures = new ArrayList<>();
+        for (HexData source : sources)
+            futures.add(account.receiveAsync(source));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(3, processed.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(sources.get(i), processed.get(i).getLink().asHex());
+            assertEquals(processed.get(i), futures.get(i).get());
+        }
+        assertEquals(NanoAmount.valueOfRaw(1030), account.getBalance());
+        assertThrows(WalletActionException.class, () -> account.receiveAsync(TestConstants.randHash()));
+    }
+    
+    @Test
+    public void testAsyncCancel() throws Exception {
+        account.refreshState();
+        workGate = new CountDownLatch(1);
+        CompletableFuture<Block> future = account.sendAsync(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertEquals(1, account.getUnpublishedCount());
+        while (workRequests.get() == 0)
+            Thread.sleep(1);
+        
+        // Cancelling the block cancels its work and rolls back the state
+        assertTrue(future.cancel(true));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (workCancelled.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(1, workCancelled.get());
+        assertEquals(0, account.getUnpublishedCount());
+        assertEquals(frontier, account.getFrontierHash().get());
+        assertEquals(0, node.requestCount("process"));
+        workGate = null;
+    }
+    
+    @Test
+    public void testRefreshWithUnpublishedBlock() throws Exception {
+        account.refreshState();
+        workGate = new CountDownLatch(1);
+        CompletableFuture<Block> future1 = account.sendAsync(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        
+        // The node's state is behind the unpublished block, so the cached state is kept
+        assertFalse(account.refreshState());
+        assertEquals(1, account.getUnpublishedCount());
+        assertEquals(NanoAmount.valueOfRaw(990), account.getBalance());
+        CompletableFuture<Block> future2 = account.sendAsync(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        workGate.countDown();
+        CompletableFuture.allOf(future1, future2).get(5, TimeUnit.SECONDS);
+        
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(2, processed.size());
+        assertEquals(frontier, processed.get(0).getPreviousBlockHash());
+        assertEquals(processed.get(0).getHash(), processed.get(1).getPreviousBlockHash());
+        assertEquals(processed.get(1).getHash(), account.getFrontierHash().get());
+        workGate = null;
+    }
+    
+    @Test
+    public void testAsyncRollback() throws Exception {
+        account.refreshState();
+        node.offline = true;
+        CompletableFuture<Block> future = account.sendAsync(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals(0, account.getUnpublishedCount());
+        
+        // The block may have been processed, so the state is retrieved from the node again
+        assertEquals(frontier, account.getFrontierHash().get());
+        assertEquals(NanoAmount.valueOfRaw(1000), account.getBalance());
+        assertEquals(2, node.requestCount("account_info"));
+    }
+    
+    @Test
+    public void testAsyncConnectionErrorAfterProcess() throws Exception {
+        account.refreshState();
+        node.offlineAfterProcess = true;
+        CompletableFuture<Block> future = account.sendAsync(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        
+        // The node processed the block, so the state isn't rolled back to before it
+        node.offlineAfterProcess = false;
+        HexData hash = node.processed(account.getAccount()).get(0).getHash();
+        assertEquals(hash, account.getFrontierHash().get());
+        assertEquals(NanoAmount.valueOfRaw(990), account.getBalance());
+        account.send(TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        assertEquals(hash, node.processed(account.getAccount()).get(1).getPreviousBlockHash());
+        assertEquals(2, node.requestCount("process"));
+    }
+    
+    
+    private List<HexData> addPending(int count) {
+        List<HexData> sources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HexData source = TestConstants.randHash();
+            node.addPending(account.getAccount(), source, NanoAmount.valueOfRaw(10));
+            sources.add(source);
+        }
+        return sources;
+    }
+    
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.rpc.RpcRequestExecutor;
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A mock node which tracks the state of each account from the processed state blocks. Accounts are unopened unless
+ * their state has been set, and blocks which don't follow the account's frontier are rejected as forks. Pending blocks
+ * are removed once they have been received.
+ */
+class MockNode implements RpcRequestExecutor {
+    
+    private final List<StateBlock> processed = new ArrayList<>();
+    private final Map<String, AccountState> states = new HashMap<>();
+    private final Map<String, Map<HexData, NanoAmount>> pending = new HashMap<>();
+    private final Map<HexData, NanoAmount> sources = new HashMap<>();
+    private final Map<String, Integer> requestCounts = new HashMap<>();
+    /** Blocks are rejected with the given error message while non-null. */
+    volatile String rejectError;
+    /** Blocks are processed, but the given error message is returned while non-null. */
+    volatile String errorAfterProcess;
+    /** Blocks fail to be submitted with an {@link IOException} while true. */
+    volatile boolean offline;
+    /** Blocks are processed, but fail to return a response with an {@link IOException} while true. */
+    volatile boolean offlineAfterProcess;
+    /** Each processed block is followed by this many blocks from elsewhere. */
+    volatile int externalAfterProcess;
+    /** Blocks are rejected once this many blocks have been processed. */
+    volatile int processLimit = Integer.MAX_VALUE;
+    
+    
+    @Override
+    public synchronized String submit(String request, int timeout) throws IOException {
+        JsonObject json = JsonParser.parseString(request).getAsJsonObject();
+        String action = json.get("action").getAsString();
+        requestCounts.merge(action, 1, Integer::sum);
+        switch (action) {
+            case "account_info":
+                AccountState state = states.get(key(NanoAccount.parse(json.get("account").getAsString())));
+                if (state == null)
+                    return "{\"error\": \"Account not found\"}";
+                return "{\"frontier\": \"" + state.getFrontierHash() + "\", " +
+                        "\"balance\": \"" + state.getBalance().toRawString() + "\", " +
+                        "\"representative\": \"" + state.getRepresentative() + "\"}";
+            case "process":
+                if (offline)
+                    throw new IOException("Node is offline.");
+                if (rejectError != null)
+                    return "{\"error\": \"" + rejectError + "\"}";
+                if (processed.size() >= processLimit)
+                    return "{\"error\": \"Bad signature\"}";
+                StateBlock block = (StateBlock)Block.parse(json.getAsJsonObject("block"));
+                AccountState current = states.get(key(block.getAccount()));
+                HexData frontier = current != null ? current.getFrontierHash() : null;
+                if (block.getPreviousBlockHash().isZero() ? frontier != null
+                        : !block.getPreviousBlockHash().equals(frontier))
+                    return "{\"error\": \"Fork\"}";
+                processed.add(block);
+                if (block.getSubType() == StateBlockSubType.RECEIVE || block.getSubType() == StateBlockSubType.OPEN)
+                    pending.getOrDefault(key(block.getAccount()), new HashMap<>()).remove(block.getLink().asHex());
+                states.put(key(block.getAccount()), AccountState.fromBlock(block));
+                for (int i = 0; i < externalAfterProcess; i++) {
+                    StateBlock external = new StateBlock(StateBlockSubType.CHANGE, null, null, block.getAccount(),
+                            states.get(key(block.getAccount())).getFrontierHash(), NanoAccount.ZERO_ACCOUNT,
+                            block.getBalance(), new HexData(new byte[32]));
+                    processed.add(external);
+                    states.put(key(block.getAccount()), AccountState.fromBlock(external));
+                }
+                if (errorAfterProcess != null)
+                    return "{\"error\": \"" + errorAfterProcess + "\"}";
+                if (offlineAfterProcess)
+                    throw new IOException("Connection reset.");
+                return "{\"hash\": \"" + block.getHash() + "\"}";
+            case "block_info":
+                HexData infoHash = new HexData(json.get("hash").getAsString());
+                for (StateBlock b : processed) {
+                    if (b.getHash().equals(infoHash))
+                        return blockInfo(b, NanoAmount.ZERO);
+                }
+                if (sources.containsKey(infoHash)) {
+                    return blockInfo(new StateBlock(StateBlockSubType.SEND, null, null, NanoAccount.ZERO_ACCOUNT,
+                            new HexData(new byte[32]), NanoAccount.ZERO_ACCOUNT, NanoAmount.ZERO,
+                            new HexData(new byte[32])), sources.get(infoHash));
+                }
+                return "{\"error\": \"Block not found\"}";
+            case "accounts_frontiers":
+                JsonObject frontiers = new JsonObject();
+                json.getAsJsonArray("accounts").forEach(e -> {
+                    AccountState accState = states.get(key(NanoAccount.parse(e.getAsString())));
+                    if (accState != null)
+                        frontiers.addProperty(e.getAsString(), accState.getFrontierHash().toString());
+                });
+                return "{\"frontiers\": " + frontiers + "}";
+            case "accounts_balances":
+                JsonObject balances = new JsonObject();
+                json.getAsJsonArray("accounts").forEach(e -> {
+                    NanoAccount acc = NanoAccount.parse(e.getAsString());
+                    AccountState accState = states.get(key(acc));
+                    JsonObject balance = new JsonObject();
+                    balance.addProperty("balance", accState != null ? accState.getBalance().toRawString() : "0");
+                    balance.addProperty("pending", pending.getOrDefault(key(acc), new HashMap<>()).values().stream()
+                            .map(NanoAmount::getAsRaw)
+                            .reduce(BigInteger.ZERO, BigInteger::add).toString());
+                    balances.add(e.getAsString(), balance);
+                });
+                return "{\"balances\": " + balances + "}";
+            case "pending":
+                JsonObject accPending = new JsonObject();
+                BigInteger threshold = json.get("threshold").getAsBigInteger();
+                pending.getOrDefault(key(NanoAccount.parse(json.get("account").getAsString())), new HashMap<>())
+                        .forEach((h, a) -> {
+                            if (accPending.size() >= json.get("count").getAsInt()
+                                    || a.getAsRaw().compareTo(threshold) < 0) return;
+                            JsonObject info = new JsonObject();
+                            info.addProperty("amount", a.toRawString());
+                            info.addProperty("source", NanoAccount.ZERO_ACCOUNT.toAddress());
+                            accPending.add(h.toString(), info);
+                        });
+                return "{\"blocks\": " + accPending + "}";
+            case "accounts_pending":
+                JsonObject blocks = new JsonObject();
+                json.getAsJsonArray("accounts").forEach(e -> {
+                    JsonObject accBlocks = new JsonObject();
+                    pending.getOrDefault(key(NanoAccount.parse(e.getAsString())), new HashMap<>()).forEach((h, a) -> {
+                        JsonObject info = new JsonObject();
+                        info.addProperty("amount", a.toRawString());
+                        info.addProperty("source", NanoAccount.ZERO_ACCOUNT.toAddress());
+                        accBlocks.add(h.toString(), info);
+                    });
+                    blocks.add(e.getAsString(), accBlocks);
+                });
+                JsonObject response = new JsonObject();
+                response.add("blocks", blocks);
+                return response.toString();
+            default:
+                return "{\"error\": \"Unknown command\"}";
+        }
+    }
+    
+    synchronized void setState(NanoAccount account, AccountState state) {
+        states.put(key(account), state);
+    }
+    
+    synchronized void addPending(NanoAccount account, HexData hash, NanoAmount amount) {
+        pending.computeIfAbsent(key(account), k -> new LinkedHashMap<>()).put(hash, amount);
+        sources.put(hash, amount);
+    }
+    
+    synchronized int requestCount(String action) {
+        return requestCounts.getOrDefault(action, 0);
+    }
+    
+    synchronized List<StateBlock> processed(NanoAccount account) {
+        return processed.stream()
+                .filter(b -> b.getAccount().equalsIgnorePrefix(account))
+                .collect(Collectors.toList());
+    }
+    
+    private static String blockInfo(StateBlock block, NanoAmount amount) {
+        JsonObject info = new JsonObject();
+        info.addProperty("block_account", block.getAccount().toAddress());
+        info.addProperty("amount", amount.toRawString());
+        info.addProperty("balance", block.getBalance().toRawString());
+        info.addProperty("height", "1");
+        info.addProperty("local_timestamp", "0");
+        info.addProperty("confirmed", "true");
+        info.addProperty("subtype", block.getSubType().getProtocolName());
+        info.add("contents", block.toJsonObject());
+        return info.toString();
+    }
+    
+    private static String key(NanoAccount account) {
+        return account.toPublicKey();
+    }
+    
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockProducerSpecification;
+import uk.oczadly.karl.jnano.util.blockproducer.StateBlockProducer;
+import uk.oczadly.karl.jnano.util.workgen.AbstractWorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PayoutEngineTest {
+    
+    private static final NanoAccount REP = TestConstants.randAccount();
+    
+    private final MockNode node = new MockNode();
+    private WorkGenerator workGen;
+    private LocalRpcWalletAccount account;
+    
+    @Before
+    public void setUp() throws Exception {
+        workGen = new AbstractWorkGenerator(new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE), null) {
+            @Override
+            protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context) {
+                return new WorkSolution(1);
+            }
+        };
+        account = new LocalRpcWalletAccount(WalletUtil.generateRandomKey(),
+                RpcQueryNode.builder().setRequestExecutor(node).build(),
+                new StateBlockProducer(BlockProducerSpecification.builder().workGenerator(workGen).build()));
+        node.setState(account.getAccount(),
+                new AccountState(TestConstants.randHash(), NanoAmount.valueOfRaw(1000), REP));
+    }
+    
+    @After
+    public void tearDown() {
+        workGen.shutdown();
+    }
+    
+    
+    @Test
+    public void testSendChain() throws Exception {
+        HexData frontier = account.getFrontierHash().get();
+        List<PayoutEngine.Payout> payouts = new ArrayList<>();
+        for (int i = 1; i <= 20; i++)
+            payouts.add(new PayoutEngine.Payout(TestConstants.randAccount(), NanoAmount.valueOfRaw(i)));
+        
+        PayoutEngine.Result result = new PayoutEngine(account, 4).send(payouts);
+        assertTrue(result.isComplete());
+        assertEquals(20, result.getBlocks().size());
+        assertTrue(result.getUnsent().isEmpty());
+        assertChain(frontier, node.processed(account.getAccount()));
+        for (int i = 0; i < payouts.size(); i++)
+            assertEquals(payouts.get(i).getDestination(), ((StateBlock)result.getBlocks().get(i)).getLinkAsAccount());
+        assertEquals(NanoAmount.valueOfRaw(1000 - 210), account.getBalance());
+    }
+    
+    @Test
+    public void testInsufficientFunds() {
+        PayoutEngine.Payout p1 = new PayoutEngine.Payout(TestConstants.randAccount(), NanoAmount.valueOfRaw(600));
+        PayoutEngine.Payout p2 = new PayoutEngine.Payout(TestConstants.randAccount(), NanoAmount.valueOfRaw(600));
+        
+        PayoutEngine.Result result = new PayoutEngine(account).send(Arrays.asList(p1, p2));
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getBlocks().size());
+        assertEquals(Arrays.asList(p2), result.getUnsent());
+        assertTrue(result.getError().isPresent());
+    }
+    
+    @Test
+    public void testResumeFromNodeFrontier() throws Exception {
+        account.refreshState();
+        // Account is changed elsewhere, so the cached state is outdated
+        HexData frontier = TestConstants.randHash();
+        node.setState(account.getAccount(), new AccountState(frontier, NanoAmount.valueOfRaw(900), REP));
+        
+        PayoutEngine.Result result = new PayoutEngine(account).send(Arrays.asList(
+                new PayoutEngine.Payout(TestConstants.randAccount(), NanoAmount.valueOfRaw(100)),
+                new PayoutEngine.Payout(TestConstants.randAccount(), NanoAmount.valueOfRaw(100))));
+        assertTrue(result.isComplete());
+        assertChain(frontier, node.processed(account.getAccount()));
+        assertEquals(NanoAmount.valueOfRaw(700), account.getBalance());
+    }
+    
+    @Test
+    public void testConnectionErrorAfterProcess() throws Exception {
+        HexData frontier = account.getFrontierHash().get();
+        List<PayoutEngine.Payout> payouts = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            payouts.add(new PayoutEngine.Payout(TestConstants.randAccount(), NanoAmount.valueOfRaw(10)));
+        
+        // The first block is processed, but the response is lost
+        node.offlineAfterProcess = true;
+        PayoutEngine engine = new PayoutEngine(account, 2);
+        PayoutEngine.Result result = engine.send(payouts);
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getBlocks().size());
+        assertEquals(node.processed(account.getAccount()).get(0), result.getBlocks().get(0));
+        assertEquals(payouts.subList(1, 5), result.getUnsent());
+        assertEquals(NanoAmount.valueOfRaw(990), account.getBalance());
+        
+        // Retrying the unsent payouts doesn't pay the first destination twice
+        node.offlineAfterProcess = false;
+        assertTrue(engine.send(result.getUnsent()).isComplete());
+        List<StateBlock> processed = node.processed(account.getAccount());
+        assertEquals(5, processed.size());
+        assertChain(frontier, processed);
+        for (int i = 0; i < 5; i++)
+            assertEquals(payouts.get(i).getDestination(), processed.get(i).getLinkAsAccount());
+        assertEquals(NanoAmount.valueOfRaw(950), account.getBalance());
+    }
+    
+    
+    private static void assertChain(HexData frontier, List<StateBlock> blocks) {
+        for (StateBlock block : blocks) {
+            assertEquals(frontier, block.getPreviousBlockHash());
+            frontier = block.getHash();
+        }
+    }
+    
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.util.blockproducer.AccountState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SeedDiscoveryTest {
+    
+    private final MockNode node = new MockNode();
+    private final RpcQueryNode rpc = RpcQueryNode.builder().setRequestExecutor(node).build();
+    private HexData seed;
+    
+    @Before
+    public void setUp() {
+        seed = TestConstants.randHash();
+        node.setState(account(0), new AccountState(TestConstants.randHash(), NanoAmount.valueOfRaw(1), account(0)));
+        node.setState(account(3), new AccountState(TestConstants.randHash(), NanoAmount.ZERO, account(0)));
+        node.addPending(account(30), TestConstants.randHash(), NanoAmount.valueOfRaw(5));
+    }
+    
+    
+    @Test
+    public void testGapLimit() throws Exception {
+        SeedDiscovery discovery = SeedDiscovery.builder(rpc).gapLimit(20).batchSize(7).maxConcurrentBatches(3).build();
+        List<SeedDiscovery.DiscoveredAccount> accounts = discovery.discover(seed);
+        assertEquals(2, accounts.size());
+        assertEquals(0, accounts.get(0).getIndex());
+        assertEquals(WalletUtil.deriveKeyFromSeed(seed, 0), accounts.get(0).getPrivateKey());
+        assertEquals(NanoAmount.valueOfRaw(1), accounts.get(0).getBalance().get());
+        assertEquals(3, accounts.get(1).getIndex());
+        assertTrue(accounts.get(1).isOpened());
+    }
+    
+    @Test
+    public void testPendingAccount() throws Exception {
+        SeedDiscovery discovery = SeedDiscovery.builder(rpc).gapLimit(30).batchSize(7).build();
+        List<SeedDiscovery.DiscoveredAccount> accounts = discovery.discover(seed);
+        assertEquals(3, accounts.size());
+        SeedDiscovery.DiscoveredAccount pending = accounts.get(2);
+        assertEquals(30, pending.getIndex());
+        assertTrue(account(30).equalsIgnorePrefix(pending.getAccount()));
+        assertFalse(pending.isOpened());
+        assertEquals(NanoAmount.valueOfRaw(5), pending.getPending().get());
+        
+        // Pending balance is ignored if disabled
+        discovery = SeedDiscovery.builder(rpc).gapLimit(30).includePending(false).build();
+        assertEquals(2, discovery.discover(seed, acc -> {}));
+    }
+    
+    @Test
+    public void testStreamsInIndexOrder() throws Exception {
+        for (int i = 4; i < 60; i += 2)
+            node.setState(account(i), new AccountState(TestConstants.randHash(), NanoAmount.ZERO, account(0)));
+        List<Integer> indices = new ArrayList<>();
+        SeedDiscovery.builder(rpc).gapLimit(5).batchSize(4).maxConcurrentBatches(8).build()
+                .discover(seed, acc -> indices.add(acc.getIndex()));
+        assertEquals(30, indices.size());
+        assertEquals(indices.stream().sorted().collect(Collectors.toList()), indices);
+    }
+    
+    
+    private NanoAccount account(int index) {
+        return NanoAccount.fromPrivateKey(WalletUtil.deriveKeyFromSeed(seed, index));
+    }
+    
+}
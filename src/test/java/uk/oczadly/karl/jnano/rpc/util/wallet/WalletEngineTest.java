@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util.wallet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.util.blockproducer.BlockProducerSpecification;
+import uk.oczadly.karl.jnano.util.blockproducer.StateBlockProducer;
+import uk.oczadly.karl.jnano.util.workgen.AbstractWorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WalletEngineTest {
+    
+    private MockNode node;
+    private WorkGenerator workGen;
+    private WalletEngine engine;
+    
+    @Before
+    public void setUp() {
+        node = new MockNode();
+        workGen = new AbstractWorkGenerator(new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE), null) {
+            @Override
+            protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context) {
+                return new WorkSolution(1);
+            }
+        };
+        StateBlockProducer producer = new StateBlockProducer(BlockProducerSpecification.builder()
+                .defaultRepresentative(TestConstants.randAccount())
+                .workGenerator(workGen)
+                .build());
+        engine = WalletEngine.builder(RpcQueryNode.builder().setRequestExecutor(node).build(), producer)
+                .workerThreads(2)
+                .maxConcurrentWork(2)
+                .build();
+    }
+    
+    @After
+    public void tearDown() {
+        engine.shutdown();
+        workGen.shutdown();
+    }
+    
+    
+    @Test
+    public void testLanesProcessInOrder() throws Exception {
+        NanoAccount acc1 = engine.addAccount(WalletUtil.generateRandomKey());
+        NanoAccount acc2 = engine.addAccount(WalletUtil.generateRandomKey());
+        
+        List<CompletableFuture<Block>> futures = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            futures.add(engine.receive(acc1, TestConstants.randHash(), NanoAmount.valueOfRaw(i)));
+            futures.add(engine.receive(acc2, TestConstants.randHash(), NanoAmount.valueOfRaw(i * 10)));
+        }
+        for (CompletableFuture<Block> future : futures)
+            assertNotNull(future.get(5, TimeUnit.SECONDS).getWorkSolution());
+        
+        assertChain(node.processed(acc1));
+        assertChain(node.processed(acc2));
+        assertEquals(NanoAmount.valueOfRaw(6), engine.getState(acc1).getBalance());
+        assertEquals(NanoAmount.valueOfRaw(60), engine.getState(acc2).getBalance());
+        
+        WalletEngine.LaneMetrics metrics = engine.getMetrics(acc1);
+        assertEquals(3, metrics.getCompletedCount());
+        assertEquals(0, metrics.getFailedCount());
+        assertEquals(0, metrics.getQueueLength());
+        assertEquals(2, engine.getMetrics().size());
+    }
+    
+    @Test
+    public void testRejectedBlock() throws Exception {
+        NanoAccount account = engine.addAccount(WalletUtil.generateRandomKey());
+        node.rejectError = "Fork";
+        
+        CompletableFuture<Block> future = engine.receive(account, TestConstants.randHash(), NanoAmount.valueOfRaw(1));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof WalletActionException);
+        assertEquals(1, engine.getMetrics(account).getFailedCount());
+        
+        // Lane continues with later actions
+        node.rejectError = null;
+        engine.receive(account, TestConstants.randHash(), NanoAmount.valueOfRaw(1)).get(5, TimeUnit.SECONDS);
+        assertEquals(NanoAmount.valueOfRaw(1), engine.getState(account).getBalance());
+    }
+    
+    @Test
+    public void testUnmanagedAccount() {
+        assertThrows(IllegalArgumentException.class, () ->
+                engine.send(TestConstants.randAccount(), TestConstants.randAccount(), NanoAmount.valueOfRaw(1)));
+    }
+    
+    
+    private static void assertChain(List<StateBlock> blocks) {
+        assertEquals(3, blocks.size());
+        assertTrue(blocks.get(0).getPreviousBlockHash().isZero());
+        for (int i = 1; i < blocks.size(); i++)
+            assertEquals(blocks.get(i - 1).getHash(), blocks.get(i).getPreviousBlockHash());
+    }
+    
+}
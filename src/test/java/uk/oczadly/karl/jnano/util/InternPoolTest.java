@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import static org.junit.Assert.*;
+
+public class InternPoolTest {
+    
+    static final String ADDR = "nano_34qjpc8t1u6wnb584pc4iwsukwa8jhrobpx4oea5gbaitnqafm6qsgoacpiz";
+    
+    @Test
+    public void testIntern() {
+        InternPool<HexData> pool = new InternPool<>();
+        HexData val1 = pool.intern("CAFE", HexData::new);
+        HexData val2 = pool.intern(new String("CAFE"), HexData::new);
+        HexData val3 = pool.intern("BABE", HexData::new);
+        assertSame(val1, val2);
+        assertNotSame(val1, val3);
+        assertEquals(2, pool.size());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+        assertEquals(1 / 3d, pool.getHitRate(), 1e-9);
+        
+        pool.resetStats();
+        assertEquals(0, pool.getHitRate(), 0);
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertNotSame(val1, pool.intern("CAFE", HexData::new));
+    }
+    
+    @Test
+    public void testDisabled() {
+        InternPool<HexData> pool = new InternPool<>(false);
+        assertNotSame(pool.intern("CAFE", HexData::new), pool.intern("CAFE", HexData::new));
+        assertEquals(0, pool.size());
+        assertEquals(0, pool.getMissCount());
+    }
+    
+    @Test
+    public void testJsonAdapters() {
+        Gson gson = new Gson();
+        String json = "[\"" + ADDR + "\",\"" + ADDR + "\"]";
+        NanoAccount[] accounts = gson.fromJson(json, NanoAccount[].class);
+        assertNotSame(accounts[0], accounts[1]); // Disabled by default
+        
+        InternPool.ACCOUNTS.setEnabled(true);
+        InternPool.HEX_VALUES.setEnabled(true);
+        try {
+            accounts = gson.fromJson(json, NanoAccount[].class);
+            assertSame(accounts[0], accounts[1]);
+            assertEquals(NanoAccount.parse(ADDR), accounts[0]);
+            HexData[] hashes = gson.fromJson("[\"CAFE\",\"CAFE\"]", HexData[].class);
+            assertSame(hashes[0], hashes[1]);
+            assertTrue(InternPool.ACCOUNTS.getHitCount() > 0);
+        } finally {
+            InternPool.ACCOUNTS.setEnabled(false);
+            InternPool.HEX_VALUES.setEnabled(false);
+            InternPool.ACCOUNTS.clear();
+            InternPool.HEX_VALUES.clear();
+        }
+    }
+    
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class SigningKeyTest {
+    
+    static final HexData PRIV = new HexData("2091F47280DEAE6A7B5CE0CAFEA85C330BAD2897DAD896B705814DD963BADE99");
+    static final HexData DATA = new HexData("956195CA1223250F2AB7B726B0013CE19BFAEB5E77CD0F2F8FE40D31810804AC");
+    static final HexData SIG = new HexData("4D15E4B60730D177C761B975C94F7633CACEE32A48D0E0CD593C14EB52FC0D2A" +
+            "5FF9F59B4A249E24336B0FCDDAEF442436E0DC7F678CE2D07D36FA4B06D1F501");
+    
+    @Test
+    public void testSign() {
+        SigningKey key = new SigningKey(PRIV);
+        assertEquals(SIG, key.sign(DATA.toByteArray()));
+        assertEquals(SIG, key.sign(DATA.toByteArray())); // Reused
+        assertEquals(SIG, CryptoUtil.sign(new byte[][] { DATA.toByteArray() }, key));
+        assertEquals(CryptoUtil.sign(DATA.toByteArray(), PRIV.toByteArray()), key.sign(DATA.toByteArray()));
+    }
+    
+    @Test
+    public void testConcurrentSign() {
+        SigningKey key = new SigningKey(PRIV);
+        assertTrue(IntStream.range(0, 500).parallel()
+                .mapToObj(i -> key.sign(DATA.toByteArray()))
+                .allMatch(SIG::equals));
+    }
+    
+    @Test
+    public void testAccount() {
+        SigningKey key = new SigningKey(PRIV);
+        NanoAccount expected = NanoAccount.fromPrivateKey(PRIV);
+        assertEquals(expected, key.getAccount());
+        assertEquals(NanoAccount.DEFAULT_PREFIX, key.getAccount().getPrefix());
+        assertEquals("ban", key.getAccount("ban").getPrefix());
+        assertTrue(expected.equalsIgnorePrefix(key.getAccount("ban")));
+        assertEquals(PRIV, key.getPrivateKey());
+    }
+    
+    @Test
+    public void testInvalidKey() {
+        assertThrows(IllegalArgumentException.class, () -> new SigningKey(null));
+        assertThrows(IllegalArgumentException.class, () -> new SigningKey(new HexData("00")));
+    }
+    
+    @Test
+    public void testEquals() {
+        assertEquals(new SigningKey(PRIV), new SigningKey(PRIV));
+        assertEquals(new SigningKey(PRIV).hashCode(), new SigningKey(PRIV).hashCode());
+        assertNotEquals(new SigningKey(PRIV), new SigningKey(new HexData(
+                "8977C62F7D02E3FEA690BA90EB09F750B9BB8C3FB5FC61570C018E2D62E9FCF6")));
+        assertFalse(new SigningKey(PRIV).toString().contains(PRIV.toHexString()));
+    }
+    
+}
@@ -8,11 +8,11 @@ package uk.oczadly.karl.jnano.util;
 import org.junit.Test;
 import uk.oczadly.karl.jnano.internal.NanoConst;
 import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
 
 import java.security.NoSuchAlgorithmException;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 public class WalletUtilTest {
     
@@ -31,5 +31,34 @@ public class WalletUtilTest {
         assertEquals(new HexData("FA91C5FFA80C6A99A4D5F8FB0928D69269546F43BB51FD335787848D0F740C52"),
                 WalletUtil.deriveKeyFromSeed(seed, -1));
     }
+    
+    @Test
+    public void deriveRange() {
+        HexData seed = new HexData("4F4648622C812DD194E0FAAB0A5BA2DFE6391E807FCDD814FE3FBB28A9919136");
+        WalletUtil.KeyRange range = WalletUtil.deriveRange(seed, 20, 600);
+        assertEquals(20, range.getFromIndex());
+        assertEquals(600, range.size());
+        assertEquals(600 * 32, range.getPublicKeys().length);
+        for (int i = 0; i < range.size(); i++) {
+            HexData privKey = WalletUtil.deriveKeyFromSeed(seed, 20 + i);
+            assertEquals(20 + i, range.getIndex(i));
+            assertEquals(privKey, range.getPrivateKey(i));
+            assertEquals(NanoAccount.fromPrivateKey(privKey), range.getAccount(i));
+        }
+        assertEquals(new HexData("A09DAA9C69FD79A940B51ADC04DF5C9F5693F8445B8B02EFA6A9C9DC650C586B"),
+                range.getPrivateKey(4));
+        assertEquals(NanoAccount.fromPrivateKey(range.getPrivateKey(4), "ban").toAddress(),
+                range.getAccount(4, "ban").toAddress());
+        assertEquals(range.getAccount(599).toAddress(), range.getAddress(599));
+        assertArrayEquals(range.accounts().toArray(), range.accounts().parallel().toArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> range.getAccount(600));
+        
+        // Upper index boundary
+        WalletUtil.KeyRange last = WalletUtil.deriveRange(seed, -2, 2);
+        assertEquals(new HexData("FA91C5FFA80C6A99A4D5F8FB0928D69269546F43BB51FD335787848D0F740C52"),
+                last.getPrivateKey(1));
+        assertThrows(IllegalArgumentException.class, () -> WalletUtil.deriveRange(seed, -2, 3));
+        assertEquals(0, WalletUtil.deriveRange(seed, 0, 0).size());
+    }
 
 }
\ No newline at end of file
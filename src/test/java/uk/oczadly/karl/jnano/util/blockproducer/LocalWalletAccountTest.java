@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.blockproducer;
+
+import org.junit.After;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.util.workgen.AbstractWorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.WorkGenerator;
+import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
+
+import static org.junit.Assert.*;
+
+public class LocalWalletAccountTest {
+    
+    private static final NanoAccount REP = TestConstants.randAccount();
+    
+    private final WorkGenerator workGen = new AbstractWorkGenerator(
+            new ConstantDifficultyPolicy(WorkDifficulty.MIN_VALUE), null) {
+        @Override
+        protected WorkSolution generateWork(HexData root, WorkDifficulty difficulty, RequestContext context) {
+            return new WorkSolution(1);
+        }
+    };
+    private final BlockProducer producer = new StateBlockProducer(BlockProducerSpecification.builder()
+            .defaultRepresentative(REP)
+            .workGenerator(workGen)
+            .build());
+    
+    @After
+    public void tearDown() {
+        workGen.shutdown();
+    }
+    
+    
+    @Test
+    public void testSnapshotVersion() throws Exception {
+        LocalWalletAccount account = new LocalWalletAccount(WalletUtil.generateRandomKey(), producer);
+        LocalWalletAccount.StateSnapshot initial = account.getSnapshot();
+        assertEquals(0, initial.getVersion());
+        assertSame(AccountState.UNOPENED, initial.getState());
+        
+        assertFalse(account.updateState(AccountState.UNOPENED));
+        assertSame(initial, account.getSnapshot()); // Unchanged state keeps the same version
+        
+        AccountState state = randState();
+        assertTrue(account.updateState(state));
+        assertEquals(1, account.getSnapshot().getVersion());
+        assertEquals(state, account.getState());
+    }
+    
+    @Test
+    public void testCompareAndSetState() throws Exception {
+        LocalWalletAccount account = new LocalWalletAccount(WalletUtil.generateRandomKey(), producer);
+        LocalWalletAccount.StateSnapshot snapshot = account.getSnapshot();
+        AccountState state1 = randState(), state2 = randState();
+        
+        assertTrue(account.compareAndSetState(snapshot, state1));
+        assertFalse(account.compareAndSetState(snapshot, state2)); // Snapshot is outdated
+        assertEquals(state1, account.getState());
+        assertTrue(account.compareAndSetState(snapshot, state1)); // Already equal
+        assertTrue(account.compareAndSetState(account.getSnapshot(), state2));
+        assertEquals(state2, account.getState());
+    }
+    
+    @Test
+    public void testCommitAfterConcurrentChange() throws Exception {
+        LocalWalletAccount account = new LocalWalletAccount(WalletUtil.generateRandomKey(), producer, randState());
+        account.createReceive(TestConstants.randHash(), NanoAmount.valueOfRaw(1));
+        
+        // Changed elsewhere while the transaction was in progress
+        LocalWalletAccount.StateSnapshot snapshot = account.getSnapshot();
+        AccountState external = randState();
+        assertTrue(account.compareAndSetState(snapshot, external));
+        assertThrows(IllegalStateException.class, account::commitState);
+        assertEquals(external, account.getState());
+        
+        // Transaction based on the latest state
+        account.createSend(TestConstants.randAccount(), NanoAmount.valueOfRaw(1));
+        account.commitState();
+        assertEquals(external.getBalance().subtract(NanoAmount.valueOfRaw(1)), account.getState().getBalance());
+    }
+    
+    
+    private static AccountState randState() {
+        return new AccountState(TestConstants.randHash(), NanoAmount.valueOfRaw(1000), REP);
+    }
+    
+}
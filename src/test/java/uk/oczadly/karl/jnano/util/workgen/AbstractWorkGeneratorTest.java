@@ -14,7 +14,9 @@ import uk.oczadly.karl.jnano.util.workgen.policy.ConstantDifficultyPolicy;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
@@ -64,6 +66,15 @@ public class AbstractWorkGeneratorTest {
     
     }
     
+    @Test
+    public void testCompletableFuture() throws Exception {
+        TestGenerator generator = new TestGenerator();
+        
+        CompletableFuture<GeneratedWork> future = generator.generate(TestConstants.randHash()).toCompletableFuture();
+        WorkSolution work = future.get(5, TimeUnit.SECONDS).getWork();
+        assertSame(generator.requestLog.get(0).result, work);
+    }
+    
     
     
     static class TestGenerator extends AbstractWorkGenerator {
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class FutureWorkTest {
+    
+    private static final GeneratedWork WORK = new GeneratedWork(new WorkSolution(1), TestConstants.randHash(),
+            WorkDifficulty.MIN_VALUE, WorkDifficulty.MIN_VALUE);
+    
+    
+    @Test
+    public void testWaiterCompletes() throws Exception {
+        // Plain futures have no completion future, so are polled by the waiter thread
+        FutureTask<GeneratedWork> task1 = new FutureTask<>(() -> WORK);
+        FutureTask<GeneratedWork> task2 = new FutureTask<>(() -> { throw new WorkGenerationException("Failed."); });
+        CompletableFuture<GeneratedWork> future1 = new FutureWork(task1).toCompletableFuture();
+        CompletableFuture<GeneratedWork> future2 = new FutureWork(task2).toCompletableFuture();
+        Thread.sleep(20);
+        assertFalse(future1.isDone());
+        
+        task2.run();
+        task1.run();
+        assertSame(WORK, future1.get(5, TimeUnit.SECONDS));
+        try {
+            future2.get(5, TimeUnit.SECONDS);
+            fail("Expected exception.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof WorkGenerationException);
+        }
+    }
+    
+    @Test
+    public void testCancelPropagated() {
+        FutureTask<GeneratedWork> task = new FutureTask<>(() -> WORK);
+        CompletableFuture<GeneratedWork> future = new FutureWork(task).toCompletableFuture();
+        assertTrue(future.cancel(true));
+        assertTrue(task.isCancelled());
+    }
+    
+}
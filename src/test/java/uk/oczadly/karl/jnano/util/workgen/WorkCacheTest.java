@@ -6,6 +6,7 @@
 package uk.oczadly.karl.jnano.util.workgen;
 
 import org.junit.Test;
+import uk.oczadly.karl.jnano.model.Hash256;
 import uk.oczadly.karl.jnano.model.HexData;
 import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
@@ -38,6 +39,11 @@ public class WorkCacheTest {
         assertFalse(cache.get(root2, WorkDifficulty.MIN_VALUE).isPresent());
         assertFalse(cache.get(root2, diff1).isPresent());
         assertFalse(cache.get(root2, diff2).isPresent());
+        
+        // Hash256 keys share entries with HexData keys
+        assertEquals(work1, cache.get(Hash256.of(root1), diff1).get());
+        assertTrue(cache.remove(Hash256.of(root1)));
+        assertFalse(cache.get(root1, WorkDifficulty.MIN_VALUE).isPresent());
     }
     
     @Test
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageTelemetry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameReplayerTest {
+    
+    @Test
+    public void testRecordAndReplay() throws IOException {
+        Path file = Files.createTempFile("jnano-frames", ".bin");
+        try {
+            Files.delete(file); // Recorder should create the file
+            long base = TimeUnit.SECONDS.toNanos(1600000000);
+            try (FrameRecorder recorder = new FrameRecorder(file)) {
+                recorder.record(telemetryFrame(10), base);
+                recorder.record("{\"ack\":\"subscribe\",\"time\":\"1600000000000\",\"id\":\"1\"}", base);
+                assertEquals(2, recorder.getFrameCount());
+            }
+            try (FrameRecorder recorder = new FrameRecorder(file)) { // Appends
+                recorder.record(telemetryFrame(20), base + TimeUnit.MILLISECONDS.toNanos(1000));
+            }
+            
+            NanoWebSocketClient client = new NanoWebSocketClient();
+            List<Integer> received = new CopyOnWriteArrayList<>();
+            client.getTopics().topicTelemetry().registerListener((m, c) -> received.add(m.getBlockCount()));
+            
+            // Max speed
+            FrameReplayer replayer = new FrameReplayer(client, file);
+            FrameReplayer.Result result = replayer.replay(FrameReplayer.MAX_SPEED);
+            assertEquals(2, result.getMessageCount());
+            assertEquals(1, result.getSkippedCount());
+            assertTrue(result.getLatencyPercentile(100) >= result.getLatencyPercentile(50));
+            assertEquals(result.getMaxLatency(), result.getLatencyPercentile(100));
+            
+            // Scaled (1 second gap at 20x speed = 50ms)
+            result = replayer.replay(20);
+            assertEquals(2, result.getMessageCount());
+            assertTrue(result.getElapsed(TimeUnit.MILLISECONDS) >= 50);
+            
+            assertEquals(4, received.size());
+            assertEquals(10, (int)received.get(0));
+            assertEquals(20, (int)received.get(1));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        Path file = Files.createTempFile("jnano-frames", ".bin");
+        try {
+            Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            new FrameReplayer(new NanoWebSocketClient(), file).replay(1);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    public void testTruncatedTrailingFrame() throws IOException {
+        Path file = Files.createTempFile("jnano-frames", ".bin");
+        try {
+            Files.delete(file);
+            try (FrameRecorder recorder = new FrameRecorder(file)) {
+                recorder.record(telemetryFrame(10), 0);
+                recorder.record(telemetryFrame(20), 0);
+            }
+            byte[] data = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(data, data.length - 5)); // Simulate an interrupted write
+            
+            NanoWebSocketClient client = new NanoWebSocketClient();
+            List<Integer> received = new CopyOnWriteArrayList<>();
+            client.getTopics().topicTelemetry().registerListener((m, c) -> received.add(m.getBlockCount()));
+            assertEquals(1, new FrameReplayer(client, file).replay(FrameReplayer.MAX_SPEED).getMessageCount());
+            
+            // Appending discards the incomplete frame
+            try (FrameRecorder recorder = new FrameRecorder(file)) {
+                recorder.record(telemetryFrame(30), 0);
+            }
+            received.clear();
+            assertEquals(2, new FrameReplayer(client, file).replay(FrameReplayer.MAX_SPEED).getMessageCount());
+            assertEquals(Arrays.asList(10, 30), received);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    public void testAppendToInvalidFile() throws IOException {
+        Path file = Files.createTempFile("jnano-frames", ".bin");
+        try {
+            byte[] contents = {1, 2, 3, 4, 5, 6, 7, 8};
+            Files.write(file, contents);
+            try {
+                new FrameRecorder(file).close();
+                fail("Expected IOException");
+            } catch (IOException ignored) {}
+            assertArrayEquals(contents, Files.readAllBytes(file)); // File left untouched
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    
+    private static String telemetryFrame(int blockCount) {
+        return "{\"topic\":\"telemetry\",\"time\":\"1600000000000\",\"message\":{\"block_count\":\""
+                + blockCount + "\"}}";
+    }
+    
+}
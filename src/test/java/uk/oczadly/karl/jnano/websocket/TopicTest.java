@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class TopicTest {
+    
+    @Test
+    public void testBatchListenerSizeLimit() {
+        Topic<JsonObject> topic = new Topic<>("test", JsonObject.class, new NanoWebSocketClient());
+        List<List<JsonObject>> batches = new CopyOnWriteArrayList<>();
+        BatchTopicListener<JsonObject> listener = batches::add;
+        topic.registerBatchListener(listener, 3, 60000);
+        
+        for (int i = 0; i < 7; i++)
+            topic.notifyListeners(createMessage(i));
+        
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertEquals(0, batches.get(0).get(0).get("val").getAsInt());
+        assertEquals(5, batches.get(1).get(2).get("val").getAsInt());
+        
+        // Remaining message should be flushed upon removal
+        assertTrue(topic.deregisterBatchListener(listener));
+        assertEquals(3, batches.size());
+        assertEquals(1, batches.get(2).size());
+    }
+    
+    @Test
+    public void testBatchListenerFlushOnDeregister() {
+        Topic<JsonObject> topic = new Topic<>("test", JsonObject.class, new NanoWebSocketClient());
+        List<JsonObject> received = new ArrayList<>();
+        BatchTopicListener<JsonObject> listener = received::addAll;
+        topic.registerBatchListener(listener, 100, 60000);
+        
+        topic.notifyListeners(createMessage(1));
+        topic.notifyListeners(createMessage(2));
+        assertTrue(received.isEmpty());
+        
+        assertTrue(topic.deregisterBatchListener(listener));
+        assertEquals(2, received.size());
+        assertTrue(topic.getBatchListeners().isEmpty());
+    }
+    
+    @Test
+    public void testBatchListenerTimedFlush() throws InterruptedException {
+        Topic<JsonObject> topic = new Topic<>("test", JsonObject.class, new NanoWebSocketClient());
+        List<JsonObject> received = new CopyOnWriteArrayList<>();
+        topic.registerBatchListener(received::addAll, 100, 50);
+        
+        topic.notifyListeners(createMessage(1));
+        for (int i = 0; i < 40 && received.isEmpty(); i++)
+            Thread.sleep(50);
+        assertEquals(1, received.size());
+    }
+    
+    @Test
+    public void testUnclosedBatcherCollected() throws InterruptedException {
+        TopicBatcher<JsonObject> batcher = new TopicBatcher<>(msgs -> {}, 100, 60000, new NanoWebSocketClient());
+        WeakReference<TopicBatcher<JsonObject>> ref = new WeakReference<>(batcher);
+        batcher = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(ref.get()); // Scheduled flush task must not retain the batcher
+    }
+    
+    
+    private static JsonObject createMessage(int val) {
+        JsonObject message = new JsonObject();
+        message.addProperty("val", val);
+        JsonObject json = new JsonObject();
+        json.addProperty("topic", "test");
+        json.addProperty("time", System.currentTimeMillis());
+        json.add("message", message);
+        return json;
+    }
+    
+}
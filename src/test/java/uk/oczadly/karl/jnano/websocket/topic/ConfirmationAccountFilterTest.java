@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket.topic;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.internal.JNC;
+import uk.oczadly.karl.jnano.model.HexData;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.SendBlock;
+import uk.oczadly.karl.jnano.model.block.StateBlockBuilder;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.WalletUtil;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConfirmationAccountFilterTest {
+    
+    @Test
+    public void testMatchesAccount() {
+        NanoAccount account = TestConstants.randAccount();
+        ConfirmationAccountFilter filter = new ConfirmationAccountFilter((m, c) -> {});
+        filter.addAccount(account);
+        
+        assertTrue(filter.matches(message(account, null)));
+        assertFalse(filter.matches(message(TestConstants.randAccount(), null)));
+    }
+    
+    @Test
+    public void testMatchesStateSendDestination() throws Exception {
+        NanoAccount dest = TestConstants.randAccount();
+        ConfirmationAccountFilter filter = new ConfirmationAccountFilter((m, c) -> {});
+        filter.addAccount(dest);
+        
+        HexData key = WalletUtil.generateRandomKey();
+        Block send = new StateBlockBuilder()
+                .subtype(StateBlockSubType.SEND)
+                .account(NanoAccount.fromPrivateKey(key))
+                .previous(TestConstants.randHash())
+                .representative(TestConstants.randAccount())
+                .balance(NanoAmount.valueOfRaw(10))
+                .link(dest)
+                .work(new WorkSolution(1))
+                .buildAndSign(key);
+        assertTrue(filter.matches(message(TestConstants.randAccount(), send)));
+    }
+    
+    @Test
+    public void testMatchesLegacySendDestination() {
+        NanoAccount dest = TestConstants.randAccount();
+        List<TopicMessageConfirmation> received = new ArrayList<>();
+        ConfirmationAccountFilter filter = new ConfirmationAccountFilter((m, c) -> received.add(m));
+        filter.addAccount(dest);
+        
+        SendBlock send = new SendBlock(TestConstants.randHex(128), new WorkSolution(1), TestConstants.randHash(),
+                dest, NanoAmount.valueOfRaw(10));
+        SendBlock other = new SendBlock(TestConstants.randHex(128), new WorkSolution(1), TestConstants.randHash(),
+                TestConstants.randAccount(), NanoAmount.valueOfRaw(10));
+        filter.onMessage(message(TestConstants.randAccount(), send), null);
+        filter.onMessage(message(TestConstants.randAccount(), other), null);
+        
+        assertEquals(1, received.size());
+        assertEquals(send, received.get(0).getBlock());
+    }
+    
+    
+    private static TopicMessageConfirmation message(NanoAccount account, Block block) {
+        JsonObject json = new JsonObject();
+        json.addProperty("account", account.toAddress());
+        json.addProperty("hash", TestConstants.randHash().toHexString());
+        if (block != null)
+            json.add("block", block.toJsonObject());
+        return JNC.GSON.fromJson(json, TopicMessageConfirmation.class);
+    }
+    
+}
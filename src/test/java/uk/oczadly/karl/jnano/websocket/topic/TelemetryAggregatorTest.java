@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.websocket.topic;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.internal.JNC;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageTelemetry;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TelemetryAggregatorTest {
+    
+    static final NanoAccount NODE_A = NanoAccount.parsePublicKey(
+            "0000000000000000000000000000000000000000000000000000000000000001", "node");
+    static final NanoAccount NODE_B = NanoAccount.parsePublicKey(
+            "0000000000000000000000000000000000000000000000000000000000000002", "node");
+    static final NanoAccount NODE_C = NanoAccount.parsePublicKey(
+            "0000000000000000000000000000000000000000000000000000000000000003", "node");
+    
+    
+    @Test
+    public void testPercentiles() {
+        TelemetryAggregator agg = new TelemetryAggregator();
+        assertEquals(-1, agg.getPercentile(TelemetryAggregator.Metric.BLOCK_COUNT, 50));
+        agg.record(telemetry(NODE_A, 1000, 100, 900, 10));
+        agg.record(telemetry(NODE_B, 1000, 200, 950, 20));
+        agg.record(telemetry(NODE_C, 1000, 300, 1000, 30));
+        
+        assertEquals(3, agg.getPeers().size());
+        assertEquals(100, agg.getPercentile(TelemetryAggregator.Metric.BLOCK_COUNT, 0));
+        assertEquals(200, agg.getPercentile(TelemetryAggregator.Metric.BLOCK_COUNT, 50));
+        assertEquals(300, agg.getPercentile(TelemetryAggregator.Metric.BLOCK_COUNT, 100));
+        assertEquals(20, agg.getPercentile(TelemetryAggregator.Metric.UPTIME, 50));
+    }
+    
+    @Test
+    public void testSyncLagScores() {
+        TelemetryAggregator agg = new TelemetryAggregator();
+        agg.addOwnNode(NODE_A);
+        agg.addOwnNode(NODE_B);
+        long now = System.nanoTime(), later = now + TimeUnit.SECONDS.toNanos(10);
+        agg.record(telemetry(NODE_A, 1000, 100, 100, 0), now);
+        agg.record(telemetry(NODE_A, 11000, 110, 105, 10), later); // 0.5 blocks/sec
+        agg.record(telemetry(NODE_C, 1000, 200, 200, 0), now);
+        agg.record(telemetry(NODE_C, 11000, 215, 215, 10), later); // 1.5 blocks/sec
+        
+        assertEquals(1.0, agg.getNetworkCementRate(), 1e-9);
+        assertEquals(110, agg.getCementedLag(NODE_A));
+        assertEquals(110, agg.getSyncLagScore(NODE_A), 1e-9);
+        assertEquals(0, agg.getSyncLagScore(NODE_C), 1e-9);
+        assertTrue(Double.isNaN(agg.getSyncLagScore(NODE_B)));
+        
+        TelemetryAggregator.PeerStats stats = agg.getPeerStats(NODE_A);
+        assertEquals(2, stats.getSampleCount());
+        assertEquals(105, stats.getCementedCount());
+        assertEquals(1.0, stats.getBlockRate(), 1e-9);
+        
+        Iterator<Map.Entry<NanoAccount, Double>> ranked = agg.getOwnNodeScores().entrySet().iterator();
+        assertEquals(NODE_A, ranked.next().getKey());
+        assertEquals(NODE_B, ranked.next().getKey());
+    }
+    
+    @Test
+    public void testWindowAndExpiry() {
+        TelemetryAggregator agg = new TelemetryAggregator(2, 1, TimeUnit.MINUTES);
+        long now = System.nanoTime(), second = TimeUnit.SECONDS.toNanos(1);
+        agg.record(telemetry(NODE_A, 1000, 100, 100, 0), now);
+        agg.record(telemetry(NODE_A, 1000, 100, 100, 0), now + second); // Duplicate timestamp ignored
+        agg.record(telemetry(NODE_A, 2000, 110, 110, 1), now + 2 * second);
+        agg.record(telemetry(NODE_A, 3000, 130, 130, 2), now + 3 * second); // Evicts first sample
+        assertEquals(20.0, agg.getPeerStats(NODE_A).getCementRate(), 1e-9);
+        
+        agg.record(telemetry(NODE_B, 3000, 130, 130, 2), now + TimeUnit.MINUTES.toNanos(2));
+        assertNull(agg.getPeerStats(NODE_A));
+        assertFalse(agg.getPeers().contains(NODE_A));
+    }
+    
+    
+    static TopicMessageTelemetry telemetry(NanoAccount node, long timestamp, int blocks, int cemented,
+                                           long uptime) {
+        return JNC.GSON.fromJson("{\"node_id\":\"" + node + "\",\"timestamp\":\"" + timestamp
+                + "\",\"block_count\":\"" + blocks + "\",\"cemented_count\":\"" + cemented
+                + "\",\"uptime\":\"" + uptime + "\"}", TopicMessageTelemetry.class);
+    }
+    
+}